@@ -0,0 +1,267 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Generates a reproducible corpus of JavaScript sources for the compiler benchmarks.
+ *
+ * <p>The same style, size and seed always produce byte-identical sources, so numbers collected on
+ * different machines or compiler versions are comparable. The generated code is valid, type
+ * checks cleanly, and exercises the constructs the optimization passes care about: classes and
+ * prototype methods, namespaces, enums, loops, closures and string manipulation.
+ */
+final class BenchmarkCorpus {
+
+  /** The flavor of JavaScript to generate. */
+  enum Style {
+    /** ES5 code with goog.provide/goog.require and JSDoc-annotated constructors. */
+    CLOSURE(LanguageMode.ECMASCRIPT5),
+    /** ES2017 classes, arrow functions, async functions, destructuring and templates. */
+    ES2017(LanguageMode.ECMASCRIPT_2017);
+
+    final LanguageMode languageIn;
+
+    Style(LanguageMode languageIn) {
+      this.languageIn = languageIn;
+    }
+  }
+
+  /** The amount of code to generate. */
+  enum Size {
+    SMALL(10, 5),
+    MEDIUM(100, 10),
+    HUGE(1000, 20);
+
+    final int files;
+    final int classesPerFile;
+
+    Size(int files, int classesPerFile) {
+      this.files = files;
+      this.classesPerFile = classesPerFile;
+    }
+  }
+
+  static final long DEFAULT_SEED = 0x5eedc0de5eedL;
+
+  private static final String[] TYPES = {"number", "string", "boolean"};
+
+  private final Style style;
+  private final Size size;
+  private final Random random;
+
+  private BenchmarkCorpus(Style style, Size size, long seed) {
+    this.style = style;
+    this.size = size;
+    this.random = new Random(seed);
+  }
+
+  /** Generates the corpus for the given style and size using the default seed. */
+  static ImmutableList<SourceFile> generate(Style style, Size size) {
+    return generate(style, size, DEFAULT_SEED);
+  }
+
+  static ImmutableList<SourceFile> generate(Style style, Size size, long seed) {
+    return new BenchmarkCorpus(style, size, seed).generate();
+  }
+
+  /** The default browser externs, as used by the command line runner. */
+  static ImmutableList<SourceFile> externs() throws IOException {
+    return ImmutableList.copyOf(
+        AbstractCommandLineRunner.getBuiltinExterns(CompilerOptions.Environment.BROWSER));
+  }
+
+  private ImmutableList<SourceFile> generate() {
+    ImmutableList.Builder<SourceFile> files = ImmutableList.builder();
+    if (style == Style.CLOSURE) {
+      files.add(
+          SourceFile.fromCode(
+              "base.js",
+              "/** @const */ var goog = goog || {};\n"
+                  + "/** @param {string} name */ goog.provide = function(name) {};\n"
+                  + "/** @param {string} name */ goog.require = function(name) {};\n"));
+    }
+    for (int i = 0; i < size.files; i++) {
+      String name = "bench/file" + i + ".js";
+      String code = style == Style.CLOSURE ? closureFile(i) : es2017File(i);
+      files.add(SourceFile.fromCode(name, code));
+    }
+    return files.build();
+  }
+
+  private String closureFile(int index) {
+    StringBuilder sb = new StringBuilder();
+    String ns = "bench.m" + index;
+    sb.append("goog.provide('").append(ns).append("');\n");
+    int dep = index > 0 ? random.nextInt(index) : -1;
+    if (dep >= 0) {
+      sb.append("goog.require('bench.m").append(dep).append("');\n");
+    }
+    sb.append("\n/** @enum {number} */\n")
+        .append(ns)
+        .append(".Kind = {A: 0, B: 1, C: 2};\n\n");
+
+    String[] types = new String[size.classesPerFile];
+    for (int c = 0; c < size.classesPerFile; c++) {
+      String cls = ns + ".C" + c;
+      String type = types[c] = TYPES[random.nextInt(TYPES.length)];
+      sb.append("/**\n * @param {")
+          .append(type)
+          .append("} value\n * @constructor\n */\n")
+          .append(cls)
+          .append(" = function(value) {\n  /** @private {")
+          .append(type)
+          .append("} */\n  this.value_ = value;\n  /** @private {!Array<string>} */\n")
+          .append("  this.log_ = [];\n};\n\n");
+
+      int methods = 2 + random.nextInt(4);
+      for (int m = 0; m < methods; m++) {
+        sb.append("/**\n * @param {number} n\n * @return {number}\n */\n")
+            .append(cls)
+            .append(".prototype.method")
+            .append(m)
+            .append(" = function(n) {\n")
+            .append("  var total = 0;\n")
+            .append("  for (var i = 0; i < n; i++) {\n")
+            .append("    if (i % ")
+            .append(2 + random.nextInt(5))
+            .append(" == 0) {\n")
+            .append("      total += i * ")
+            .append(random.nextInt(100))
+            .append(";\n    } else {\n")
+            .append("      this.log_.push('step' + i);\n    }\n  }\n")
+            .append("  var self = this;\n")
+            .append("  var helper = function(x) { return x + self.log_.length; };\n")
+            .append("  return helper(total);\n};\n\n");
+      }
+      sb.append("/** @return {string} */\n")
+          .append(cls)
+          .append(".prototype.describe = function() {\n")
+          .append("  return 'C")
+          .append(c)
+          .append(":' + String(this.value_) + ':' + this.log_.join(',');\n};\n\n");
+    }
+
+    sb.append("/** @return {number} */\n")
+        .append(ns)
+        .append(".main = function() {\n  var sum = 0;\n");
+    for (int c = 0; c < size.classesPerFile; c++) {
+      sb.append("  sum += new ")
+          .append(ns)
+          .append(".C")
+          .append(c)
+          .append("(")
+          .append(literal(types[c], c))
+          .append(").method0(")
+          .append(random.nextInt(10))
+          .append(");\n");
+    }
+    if (dep >= 0) {
+      sb.append("  sum += bench.m").append(dep).append(".main();\n");
+    }
+    sb.append("  return sum;\n};\n");
+    if (index == size.files - 1) {
+      sb.append("console.log(").append(ns).append(".main());\n");
+    }
+    return sb.toString();
+  }
+
+  private String es2017File(int index) {
+    StringBuilder sb = new StringBuilder();
+    String prefix = "m" + index + "_";
+    sb.append("const ").append(prefix).append("Kind = {A: 0, B: 1, C: 2};\n\n");
+
+    String[] types = new String[size.classesPerFile];
+    for (int c = 0; c < size.classesPerFile; c++) {
+      String cls = prefix + "C" + c;
+      String type = types[c] = TYPES[random.nextInt(TYPES.length)];
+      sb.append("class ")
+          .append(cls)
+          .append(" {\n  /** @param {")
+          .append(type)
+          .append("} value */\n  constructor(value) {\n")
+          .append("    /** @private @const */\n    this.value_ = value;\n")
+          .append("    /** @private @const {!Array<string>} */\n    this.log_ = [];\n  }\n\n");
+
+      int methods = 2 + random.nextInt(4);
+      for (int m = 0; m < methods; m++) {
+        sb.append("  /**\n   * @param {number} n\n   * @return {number}\n   */\n")
+            .append("  method")
+            .append(m)
+            .append("(n) {\n")
+            .append("    let total = 0;\n")
+            .append("    for (let i = 0; i < n; i++) {\n")
+            .append("      const [a, b] = [i, i * ")
+            .append(random.nextInt(100))
+            .append("];\n")
+            .append("      total += a % ")
+            .append(2 + random.nextInt(5))
+            .append(" ? b : 0;\n")
+            .append("      this.log_.push(`step${i}`);\n    }\n")
+            .append("    const helper = (x) => x + this.log_.length;\n")
+            .append("    return helper(total);\n  }\n\n");
+      }
+      sb.append("  /** @return {!Promise<string>} */\n")
+          .append("  async describe() {\n")
+          .append("    const {length} = this.log_;\n")
+          .append("    return `C")
+          .append(c)
+          .append(":${this.value_}:${length}`;\n  }\n}\n\n");
+    }
+
+    sb.append("/** @return {number} */\nfunction ")
+        .append(prefix)
+        .append("main() {\n  const values = [];\n");
+    for (int c = 0; c < size.classesPerFile; c++) {
+      sb.append("  values.push(new ")
+          .append(prefix)
+          .append("C")
+          .append(c)
+          .append("(")
+          .append(literal(types[c], c))
+          .append(").method0(")
+          .append(random.nextInt(10))
+          .append("));\n");
+    }
+    sb.append("  let sum = 0;\n  for (const v of values) {\n    sum += v;\n  }\n");
+    if (index > 0) {
+      sb.append("  sum += m").append(random.nextInt(index)).append("_main();\n");
+    }
+    sb.append("  return sum;\n}\n");
+    if (index == size.files - 1) {
+      sb.append("console.log(").append(prefix).append("main());\n");
+    }
+    return sb.toString();
+  }
+
+  private static String literal(String type, int value) {
+    switch (type) {
+      case "number":
+        return String.valueOf(value);
+      case "string":
+        return "'v" + value + "'";
+      case "boolean":
+        return value % 2 == 0 ? "true" : "false";
+      default:
+        throw new IllegalArgumentException(type);
+    }
+  }
+}
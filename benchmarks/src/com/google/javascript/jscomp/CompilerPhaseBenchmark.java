@@ -0,0 +1,234 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.javascript.jscomp.BenchmarkCorpus.Size;
+import com.google.javascript.jscomp.BenchmarkCorpus.Style;
+import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
+import com.google.javascript.rhino.Node;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for the individual phases of a compilation: parsing, checks, optimizations and
+ * code printing.
+ *
+ * <p>Each phase is measured in isolation. The compiler state a phase depends on is rebuilt
+ * outside of the measured region, so e.g. the optimization numbers do not include parsing or
+ * type checking. Run with:
+ *
+ * <pre>
+ * mvn -DskipTests -Pbenchmarks install
+ * java -jar benchmarks/target/benchmarks.jar CompilerPhaseBenchmark -p size=SMALL
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xss8m", "-Xmx4g"})
+public class CompilerPhaseBenchmark {
+
+  /** The optimization levels worth measuring; WHITESPACE_ONLY does not run checks. */
+  public enum OptimizationLevel {
+    SIMPLE(CompilationLevel.SIMPLE_OPTIMIZATIONS),
+    ADVANCED(CompilationLevel.ADVANCED_OPTIMIZATIONS);
+
+    final CompilationLevel compilationLevel;
+
+    OptimizationLevel(CompilationLevel compilationLevel) {
+      this.compilationLevel = compilationLevel;
+    }
+  }
+
+  /** The generated corpus and externs, shared by all invocations of a trial. */
+  @State(Scope.Benchmark)
+  public static class Corpus {
+    @Param({"CLOSURE", "ES2017"})
+    public Style style;
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    public Size size;
+
+    @Param({"SIMPLE", "ADVANCED"})
+    public OptimizationLevel level;
+
+    ImmutableList<SourceFile> externs;
+    ImmutableList<SourceFile> inputs;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+      externs = BenchmarkCorpus.externs();
+      inputs = BenchmarkCorpus.generate(style, size);
+    }
+
+    CompilerOptions createOptions() {
+      CompilerOptions options = new CompilerOptions();
+      options.setLanguageIn(style.languageIn);
+      options.setLanguageOut(LanguageMode.ECMASCRIPT5);
+      level.compilationLevel.setOptionsForCompilationLevel(options);
+      level.compilationLevel.setTypeBasedOptimizationOptions(options);
+      WarningLevel.DEFAULT.setOptionsForWarningLevel(options);
+      options.setClosurePass(style == Style.CLOSURE);
+      return options;
+    }
+
+    Compiler createCompiler() {
+      Compiler compiler = new Compiler(new PrintStream(ByteStreams.nullOutputStream()));
+      compiler.init(externs, inputs, createOptions());
+      return compiler;
+    }
+  }
+
+  /** A freshly initialized compiler that has not parsed anything yet. */
+  @State(Scope.Thread)
+  public static class Initialized {
+    Compiler compiler;
+
+    @Setup(Level.Invocation)
+    public void setUp(Corpus corpus) {
+      compiler = corpus.createCompiler();
+    }
+  }
+
+  /** A compiler that has parsed its inputs and is ready to run checks. */
+  @State(Scope.Thread)
+  public static class Parsed {
+    Compiler compiler;
+
+    @Setup(Level.Invocation)
+    public void setUp(Corpus corpus) {
+      compiler = corpus.createCompiler();
+      compiler.parseForCompilation();
+      assertNoErrors(compiler);
+    }
+  }
+
+  /** A compiler that has run all checks and is ready to optimize. */
+  @State(Scope.Thread)
+  public static class Checked {
+    Compiler compiler;
+
+    @Setup(Level.Invocation)
+    public void setUp(Corpus corpus) {
+      compiler = corpus.createCompiler();
+      compiler.parseForCompilation();
+      compiler.stage1Passes();
+      assertNoErrors(compiler);
+    }
+  }
+
+  /**
+   * A fully optimized compiler. Printing does not modify the AST, so a single compilation is
+   * shared by every invocation of the trial.
+   */
+  @State(Scope.Benchmark)
+  public static class Optimized {
+    Compiler compiler;
+
+    @Setup(Level.Trial)
+    public void setUp(Corpus corpus) {
+      compiler = corpus.createCompiler();
+      compiler.parseForCompilation();
+      compiler.stage1Passes();
+      compiler.stage2Passes();
+      assertNoErrors(compiler);
+    }
+  }
+
+  @Benchmark
+  public Node parse(Initialized state) {
+    state.compiler.parseForCompilation();
+    return state.compiler.getRoot();
+  }
+
+  @Benchmark
+  public Node check(Parsed state) {
+    final Compiler compiler = state.compiler;
+    compiler.runInCompilerThread(
+        new Callable<Void>() {
+          @Override
+          public Void call() {
+            compiler.check();
+            return null;
+          }
+        });
+    return compiler.getRoot();
+  }
+
+  @Benchmark
+  public Node optimize(Checked state) {
+    final Compiler compiler = state.compiler;
+    compiler.runInCompilerThread(
+        new Callable<Void>() {
+          @Override
+          public Void call() {
+            compiler.performOptimizations();
+            return null;
+          }
+        });
+    return compiler.getRoot();
+  }
+
+  @Benchmark
+  public String print(Optimized state) {
+    Compiler compiler = state.compiler;
+    return new CodePrinter.Builder(compiler.getJsRoot())
+        .setCompilerOptions(compiler.getOptions())
+        .build();
+  }
+
+  @Benchmark
+  public String printWithSourceMap(Optimized state) {
+    Compiler compiler = state.compiler;
+    SourceMap sourceMap = SourceMap.Format.V3.getInstance();
+    return new CodePrinter.Builder(compiler.getJsRoot())
+        .setCompilerOptions(compiler.getOptions())
+        .setSourceMap(sourceMap)
+        .build();
+  }
+
+  /**
+   * The generated corpus is expected to compile cleanly. Measuring a compilation that bailed out
+   * early would silently report meaningless numbers, so fail the trial instead.
+   */
+  private static void assertNoErrors(Compiler compiler) {
+    checkState(
+        !compiler.hasErrors(),
+        "Benchmark corpus failed to compile: %s",
+        Arrays.toString(compiler.getErrors()));
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.newtypes;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for the persistent maps that can back a {@link TypeEnv}, with the operations
+ * that new type inference performs on type environments.
+ *
+ * <p>The {@code join} benchmark follows {@link TypeEnv#join}: it walks the entries of one map,
+ * looks each name up in the other, and replaces the few that differ. Run with:
+ *
+ * <pre>
+ * mvn -DskipTests -Pbenchmarks install
+ * java -jar benchmarks/target/benchmarks.jar PersistentMapBenchmark
+ * </pre>
+ *
+ * <p>To type check with a given implementation, start the compiler's JVM with e.g.
+ * {@code -Djscomp.newtypes.typeEnvMap=indexed}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PersistentMapBenchmark {
+
+  /** Two environments over the same variables that differ in a few of them. */
+  @State(Scope.Benchmark)
+  public static class Envs {
+    @Param({"naive", "clojure", "indexed"})
+    public String implementation;
+
+    // Most functions have a handful of variables; some have hundreds.
+    @Param({"4", "16", "128"})
+    public int size;
+
+    String[] names;
+    PersistentMap<String, Object> env;
+    PersistentMap<String, Object> otherEnv;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      names = new String[size];
+      PersistentMap<String, Object> map = PersistentMap.create(implementation);
+      for (int i = 0; i < size; i++) {
+        names[i] = "var" + i;
+        map = map.with(names[i], Integer.valueOf(i));
+      }
+      env = map;
+      // Every fourth variable has a different type in the other branch.
+      for (int i = 0; i < size; i += 4) {
+        map = map.with(names[i], Integer.valueOf(-i));
+      }
+      otherEnv = map;
+    }
+  }
+
+  @Benchmark
+  public Map<String, Object> build(Envs envs) {
+    PersistentMap<String, Object> map = PersistentMap.create(envs.implementation);
+    for (int i = 0; i < envs.size; i++) {
+      map = map.with(envs.names[i], envs.names[i]);
+    }
+    return map;
+  }
+
+  @Benchmark
+  public int lookup(Envs envs) {
+    int found = 0;
+    for (String name : envs.names) {
+      if (envs.env.get(name) != null) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  @Benchmark
+  public Map<String, Object> update(Envs envs) {
+    return envs.env.with(envs.names[envs.size / 2], envs.names[0]);
+  }
+
+  @Benchmark
+  public Map<String, Object> join(Envs envs) {
+    PersistentMap<String, Object> joined = envs.env;
+    for (Map.Entry<String, Object> entry : envs.otherEnv.entrySet()) {
+      Object current = joined.get(entry.getKey());
+      if (!current.equals(entry.getValue())) {
+        joined = joined.with(entry.getKey(), entry.getKey());
+      }
+    }
+    return joined;
+  }
+}
@@ -0,0 +1,806 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.debugging.sourcemap;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.base.Preconditions;
+import com.google.debugging.sourcemap.Base64VLQ.CharIterator;
+import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
+import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping.Builder;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A V3 source map consumer for very large source maps.
+ *
+ * <p>It answers the same queries as {@link SourceMapConsumerV3}, but instead
+ * of an object per mapping it keeps the raw "mappings" field, plus the offset
+ * and the decoder state at the start of each line. A line is decoded into an
+ * int array the first time it is looked up, and the reverse mapping is a
+ * sorted array built on first use. The source map can also be read from a
+ * memory-mapped file with {@link #parseFile}, so that the mappings don't have
+ * to be loaded on the heap at all.
+ *
+ * <p>Like SourceMapConsumerV3, this class isn't thread safe.
+ */
+public final class CompactSourceMapConsumerV3 implements SourceMapConsumer,
+    SourceMappingReversable {
+  private static final int UNMAPPED = SourceMapConsumerV3.UNMAPPED;
+
+  // The fields of a decoded entry. Unmapped entries have UNMAPPED as source
+  // and name, and entries without a name have UNMAPPED as name.
+  private static final int COLUMN = 0;
+  private static final int SOURCE = 1;
+  private static final int SOURCE_LINE = 2;
+  private static final int SOURCE_COLUMN = 3;
+  private static final int NAME = 4;
+  private static final int ENTRY_SIZE = 5;
+
+  // The relative values that carry over from one line to the next.
+  private static final int STATE_SOURCE = 0;
+  private static final int STATE_SOURCE_LINE = 1;
+  private static final int STATE_SOURCE_COLUMN = 2;
+  private static final int STATE_NAME = 3;
+  private static final int STATE_SIZE = 4;
+
+  private String[] sources;
+  private String[] names;
+  private int lineCount;
+  private String sourceRoot;
+  private final Map<String, Object> extensions = new LinkedHashMap<>();
+
+  /** The "mappings" field, which may be backed by a memory-mapped file. */
+  private CharSequence mappings;
+  private int numLines;
+  /**
+   * The offset of each line in mappings. The line i ends at
+   * lineStarts[i + 1] - 1, where the ';' separating the lines is.
+   */
+  private int[] lineStarts;
+  /** The relative values at the start of each line, STATE_SIZE ints per line. */
+  private int[] lineStates;
+  /** The decoded entries of the lines looked up so far, ENTRY_SIZE ints each. */
+  private int[][] decodedLines;
+
+  /** Built on the first call to getReverseMapping. */
+  private ReverseMapping reverseMapping;
+
+  /**
+   * Parses the given contents containing a source map.
+   */
+  @Override
+  public void parse(String contents) throws SourceMapParseException {
+    parse(SourceMapObjectParser.parse(contents), null);
+  }
+
+  /**
+   * Parses the given contents containing a source map.
+   */
+  void parse(SourceMapObject sourceMapObject, SourceMapSupplier sectionSupplier)
+      throws SourceMapParseException {
+    if (sourceMapObject.getSections() != null) {
+      parseMetaMap(sourceMapObject, sectionSupplier);
+      return;
+    }
+    String rawMappings = sourceMapObject.getMappings();
+    init(sourceMapObject, rawMappings == null ? "" : rawMappings);
+  }
+
+  /**
+   * Merges the sections of an index map into a regular source map, and
+   * parses that, like SourceMapConsumerV3 does.
+   */
+  private void parseMetaMap(
+      SourceMapObject sourceMapObject, SourceMapSupplier sectionSupplier)
+      throws SourceMapParseException {
+    if (sectionSupplier == null) {
+      sectionSupplier = new SourceMapConsumerV3.DefaultSourceMapSupplier();
+    }
+
+    try {
+      if (sourceMapObject.getLineCount() >= 0
+          || sourceMapObject.getMappings() != null
+          || sourceMapObject.getSources() != null
+          || sourceMapObject.getNames() != null) {
+        throw new SourceMapParseException("Invalid map format");
+      }
+
+      SourceMapGeneratorV3 generator = new SourceMapGeneratorV3();
+      for (SourceMapSection section : sourceMapObject.getSections()) {
+        String mapSectionContents = section.getSectionValue();
+        if (section.getSectionType() == SourceMapSection.SectionType.URL) {
+          mapSectionContents = sectionSupplier.getSourceMap(section.getSectionValue());
+        }
+        if (mapSectionContents == null) {
+          throw new SourceMapParseException("Unable to retrieve: " + section.getSectionValue());
+        }
+        generator.mergeMapSection(section.getLine(), section.getColumn(), mapSectionContents);
+      }
+
+      StringBuilder sb = new StringBuilder();
+      generator.appendTo(sb, sourceMapObject.getFile());
+      parse(sb.toString());
+    } catch (IOException ex) {
+      throw new SourceMapParseException("IO exception: " + ex);
+    }
+  }
+
+  /**
+   * Reads a source map from a file. The file is memory-mapped, and only the
+   * fields other than "mappings" are copied to the heap.
+   */
+  @GwtIncompatible("java.nio")
+  public static CompactSourceMapConsumerV3 parseFile(File file)
+      throws IOException, SourceMapParseException {
+    ByteBuffer buffer;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel()) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new SourceMapParseException("Source map is too large: " + file);
+      }
+      // The mapping stays valid after the channel is closed.
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    CompactSourceMapConsumerV3 consumer = new CompactSourceMapConsumerV3();
+    int[] mappingsRange = findMappingsField(buffer);
+    if (mappingsRange == null) {
+      consumer.parse(decode(buffer, 0, buffer.limit()));
+      return consumer;
+    }
+
+    // Parse everything but the mappings, which are left empty.
+    String otherFields =
+        decode(buffer, 0, mappingsRange[0])
+        + decode(buffer, mappingsRange[1], buffer.limit());
+    SourceMapObject sourceMapObject = SourceMapObjectParser.parse(otherFields);
+    if (sourceMapObject.getSections() != null) {
+      throw new SourceMapParseException("Invalid map format");
+    }
+    consumer.init(
+        sourceMapObject,
+        new AsciiCharSequence(buffer, mappingsRange[0], mappingsRange[1] - mappingsRange[0]));
+    return consumer;
+  }
+
+  private void init(SourceMapObject sourceMapObject, CharSequence mappings)
+      throws SourceMapParseException {
+    if (sourceMapObject.getVersion() != 3) {
+      throw new SourceMapParseException("Unknown version: " + sourceMapObject.getVersion());
+    }
+
+    String file = sourceMapObject.getFile();
+    if (file != null && file.isEmpty()) {
+      throw new SourceMapParseException("File entry is empty");
+    }
+
+    lineCount = sourceMapObject.getLineCount();
+    sourceRoot = sourceMapObject.getSourceRoot();
+    sources = sourceMapObject.getSources();
+    names = sourceMapObject.getNames();
+    extensions.putAll(sourceMapObject.getExtensions());
+    this.mappings = mappings;
+    reverseMapping = null;
+    indexLines();
+  }
+
+  @Override
+  public OriginalMapping getMappingForLine(int lineNumber, int column) {
+    // Normalize the line and column numbers to 0.
+    lineNumber--;
+    column--;
+
+    if (lineNumber < 0 || lineNumber >= numLines) {
+      return null;
+    }
+
+    checkState(column >= 0);
+
+    // If the line is empty return the previous mapping.
+    if (isEmptyLine(lineNumber)) {
+      return getPreviousMapping(lineNumber);
+    }
+
+    int[] entries = getLine(lineNumber);
+    if (entries[COLUMN] > column) {
+      return getPreviousMapping(lineNumber);
+    }
+
+    int index = search(entries, column, 0, entries.length / ENTRY_SIZE - 1);
+    Preconditions.checkState(index >= 0, "unexpected:%s", index);
+    return getOriginalMappingForEntry(entries, index * ENTRY_SIZE);
+  }
+
+  @Override
+  public Collection<String> getOriginalSources() {
+    return Arrays.asList(sources);
+  }
+
+  @Override
+  public Collection<OriginalMapping> getReverseMapping(String originalFile,
+      int line, int column) {
+    // Like SourceMapConsumerV3, this doesn't make use of the column.
+    if (reverseMapping == null) {
+      reverseMapping = new ReverseMapping();
+    }
+    return reverseMapping.get(originalFile, line);
+  }
+
+  public String getSourceRoot() {
+    return this.sourceRoot;
+  }
+
+  /**
+   * Returns all extensions and their values (which can be any json value)
+   * in a Map object.
+   */
+  public Map<String, Object> getExtensions() {
+    return this.extensions;
+  }
+
+  /**
+   * Finds where each line starts, and the relative values at that point,
+   * checking the entries like SourceMapConsumerV3 does.
+   */
+  private void indexLines() throws SourceMapParseException {
+    int length = mappings.length();
+    int[] starts = new int[Math.max(lineCount, 0) + 2];
+    int[] states = new int[starts.length * STATE_SIZE];
+    MappingsIterator content = new MappingsIterator(mappings, 0);
+    int line = 0;
+    starts[0] = 0;
+    boolean lineHasEntries = false;
+    while (content.hasNext()) {
+      if (content.peek() == ';') {
+        content.next();
+        line++;
+        if (line + 1 >= starts.length) {
+          starts = Arrays.copyOf(starts, starts.length * 2);
+          states = Arrays.copyOf(states, starts.length * STATE_SIZE);
+        }
+        starts[line] = content.current;
+        content.column = 0;
+        content.saveState(states, line * STATE_SIZE);
+        lineHasEntries = false;
+      } else {
+        Preconditions.checkState((lineCount < 0) || (line < lineCount),
+            "line=%s, lineCount=%s", line, lineCount);
+        content.nextEntry(null, 0);
+        checkState(content.lastSource == UNMAPPED || content.lastSource < sources.length);
+        checkState(content.lastName == UNMAPPED || content.lastName < names.length);
+        lineHasEntries = true;
+        // Consume the separating token, if there is one.
+        if (content.hasNext() && content.peek() == ',') {
+          content.next();
+        }
+      }
+    }
+    // Some source map generators (e.g. UglifyJS) don't end the last line
+    // with a separator. The end of the last line is then the end of the
+    // mappings, as if there was a separator after it.
+    if (lineHasEntries) {
+      line++;
+      starts[line] = length + 1;
+    }
+
+    numLines = line;
+    lineStarts = starts;
+    lineStates = states;
+    decodedLines = new int[numLines][];
+  }
+
+  private boolean isEmptyLine(int line) {
+    return lineStarts[line + 1] - 1 == lineStarts[line];
+  }
+
+  /** Returns the entries of a non-empty line. */
+  private int[] getLine(int line) {
+    int[] entries = decodedLines[line];
+    if (entries == null) {
+      entries = decodeLine(line);
+      decodedLines[line] = entries;
+    }
+    return entries;
+  }
+
+  private int[] decodeLine(int line) {
+    int start = lineStarts[line];
+    int end = lineStarts[line + 1] - 1;
+    int numEntries = 1;
+    for (int i = start; i < end; i++) {
+      if (mappings.charAt(i) == ',') {
+        numEntries++;
+      }
+    }
+    int[] entries = new int[numEntries * ENTRY_SIZE];
+    MappingsIterator content = new MappingsIterator(mappings, start);
+    content.restoreState(lineStates, line * STATE_SIZE);
+    for (int i = 0; i < numEntries; i++) {
+      try {
+        content.nextEntry(entries, i * ENTRY_SIZE);
+      } catch (SourceMapParseException e) {
+        // The entries were checked when the lines were indexed.
+        throw new IllegalStateException(e);
+      }
+      if (content.hasNext() && content.peek() == ',') {
+        content.next();
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Perform a binary search on the entries to find a section that covers
+   * the target column, like SourceMapConsumerV3 does.
+   */
+  private static int search(int[] entries, int target, int start, int end) {
+    while (true) {
+      int mid = ((end - start) / 2) + start;
+      int compare = entries[mid * ENTRY_SIZE + COLUMN] - target;
+      if (compare == 0) {
+        return mid;
+      } else if (compare < 0) {
+        // it is in the upper half
+        start = mid + 1;
+        if (start > end) {
+          return end;
+        }
+      } else {
+        // it is in the lower half
+        end = mid - 1;
+        if (end < start) {
+          return end;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the mapping entry that proceeds the supplied line or null if no
+   * such entry exists.
+   */
+  private OriginalMapping getPreviousMapping(int lineNumber) {
+    do {
+      if (lineNumber == 0) {
+        return null;
+      }
+      lineNumber--;
+    } while (isEmptyLine(lineNumber));
+    int[] entries = getLine(lineNumber);
+    return getOriginalMappingForEntry(entries, entries.length - ENTRY_SIZE);
+  }
+
+  /**
+   * Creates an "OriginalMapping" object for the entry at the given offset.
+   */
+  private OriginalMapping getOriginalMappingForEntry(int[] entries, int entry) {
+    if (entries[entry + SOURCE] == UNMAPPED) {
+      return null;
+    }
+    // Adjust the line/column here to be start at 1.
+    Builder x = OriginalMapping.newBuilder()
+        .setOriginalFile(sources[entries[entry + SOURCE]])
+        .setLineNumber(entries[entry + SOURCE_LINE] + 1)
+        .setColumnPosition(entries[entry + SOURCE_COLUMN] + 1);
+    if (entries[entry + NAME] != UNMAPPED) {
+      x.setIdentifier(names[entries[entry + NAME]]);
+    }
+    return x.build();
+  }
+
+  /**
+   * The mapped entries sorted by original file and line, so that the entries
+   * of a line can be found with a binary search. The entries of a line stay
+   * in the order of the generated code.
+   */
+  private class ReverseMapping {
+    /** The index of each original file, the first in sources with its name. */
+    private final Map<String, Integer> sourceIndices = new HashMap<>();
+    /**
+     * The entries of each source are sourceStarts[source] to
+     * sourceStarts[source + 1] in keys, which hold the original line in the
+     * upper half and the index of the entry in targetLines and targetColumns
+     * in the lower half.
+     */
+    private final int[] sourceStarts;
+    private final long[] keys;
+    private final int[] targetLines;
+    private final int[] targetColumns;
+
+    ReverseMapping() {
+      for (int i = 0; i < sources.length; i++) {
+        if (!sourceIndices.containsKey(sources[i])) {
+          sourceIndices.put(sources[i], i);
+        }
+      }
+
+      // Collect the mapped entries in the order of the generated code.
+      int size = 0;
+      int[] entrySources = new int[64];
+      int[] entryLines = new int[64];
+      int[] lines = new int[64];
+      int[] columns = new int[64];
+      for (int line = 0; line < numLines; line++) {
+        if (isEmptyLine(line)) {
+          continue;
+        }
+        // Don't keep the decoded lines, which would hold the whole map.
+        int[] entries = decodedLines[line] != null ? decodedLines[line] : decodeLine(line);
+        for (int entry = 0; entry < entries.length; entry += ENTRY_SIZE) {
+          if (entries[entry + SOURCE] == UNMAPPED || entries[entry + SOURCE_LINE] < 0) {
+            continue;
+          }
+          if (size == lines.length) {
+            entrySources = Arrays.copyOf(entrySources, size * 2);
+            entryLines = Arrays.copyOf(entryLines, size * 2);
+            lines = Arrays.copyOf(lines, size * 2);
+            columns = Arrays.copyOf(columns, size * 2);
+          }
+          entrySources[size] = sourceIndices.get(sources[entries[entry + SOURCE]]);
+          entryLines[size] = entries[entry + SOURCE_LINE];
+          lines[size] = line;
+          columns[size] = entries[entry + COLUMN];
+          size++;
+        }
+      }
+      targetLines = Arrays.copyOf(lines, size);
+      targetColumns = Arrays.copyOf(columns, size);
+
+      // Group the entries by source, keeping their order, and then sort the
+      // entries of each source by original line.
+      sourceStarts = new int[sources.length + 1];
+      for (int i = 0; i < size; i++) {
+        sourceStarts[entrySources[i] + 1]++;
+      }
+      for (int i = 0; i < sources.length; i++) {
+        sourceStarts[i + 1] += sourceStarts[i];
+      }
+      int[] next = Arrays.copyOf(sourceStarts, sources.length);
+      keys = new long[size];
+      for (int i = 0; i < size; i++) {
+        keys[next[entrySources[i]]++] = ((long) entryLines[i] << 32) | i;
+      }
+      for (int i = 0; i < sources.length; i++) {
+        Arrays.sort(keys, sourceStarts[i], sourceStarts[i + 1]);
+      }
+    }
+
+    Collection<OriginalMapping> get(String originalFile, int line) {
+      Integer source = sourceIndices.get(originalFile);
+      if (source == null || line < 0) {
+        return Collections.emptyList();
+      }
+
+      // Find the first entry of the line.
+      long lineKey = (long) line << 32;
+      int low = sourceStarts[source];
+      int high = sourceStarts[source + 1];
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (keys[mid] < lineKey) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+
+      List<OriginalMapping> result = new ArrayList<>();
+      for (int i = low; i < sourceStarts[source + 1] && (keys[i] >>> 32) == line; i++) {
+        int entry = (int) keys[i];
+        result.add(OriginalMapping.newBuilder()
+            .setLineNumber(targetLines[entry])
+            .setColumnPosition(targetColumns[entry])
+            .build());
+      }
+      return result.isEmpty() ? Collections.<OriginalMapping>emptyList() : result;
+    }
+  }
+
+  /**
+   * Decodes the entries of the mappings field, keeping track of the
+   * relative values.
+   */
+  private static class MappingsIterator implements CharIterator {
+    private static final int MAX_ENTRY_VALUES = 5;
+
+    private final CharSequence content;
+    private final int length;
+    private final int[] values = new int[MAX_ENTRY_VALUES];
+    int current;
+
+    // The values of the last entry, which the next entry is relative to.
+    // The column is reset at the start of each line.
+    int column = 0;
+    int source = 0;
+    int sourceLine = 0;
+    int sourceColumn = 0;
+    int name = 0;
+
+    // The source and name of the last entry, UNMAPPED if it doesn't have them.
+    int lastSource;
+    int lastName;
+
+    MappingsIterator(CharSequence content, int start) {
+      this.content = content;
+      this.length = content.length();
+      this.current = start;
+    }
+
+    @Override
+    public char next() {
+      return content.charAt(current++);
+    }
+
+    char peek() {
+      return content.charAt(current);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return current < length;
+    }
+
+    void saveState(int[] states, int offset) {
+      states[offset + STATE_SOURCE] = source;
+      states[offset + STATE_SOURCE_LINE] = sourceLine;
+      states[offset + STATE_SOURCE_COLUMN] = sourceColumn;
+      states[offset + STATE_NAME] = name;
+    }
+
+    void restoreState(int[] states, int offset) {
+      source = states[offset + STATE_SOURCE];
+      sourceLine = states[offset + STATE_SOURCE_LINE];
+      sourceColumn = states[offset + STATE_SOURCE_COLUMN];
+      name = states[offset + STATE_NAME];
+      column = 0;
+    }
+
+    /**
+     * Decodes the next entry, and stores it at the given offset of entries
+     * if entries is not null.
+     */
+    void nextEntry(int[] entries, int offset) throws SourceMapParseException {
+      int numValues = 0;
+      while (hasNext() && peek() != ';' && peek() != ',') {
+        if (numValues == MAX_ENTRY_VALUES) {
+          throw new SourceMapParseException(
+              "Unexpected number of values for entry:" + (numValues + 1));
+        }
+        values[numValues++] = Base64VLQ.decode(this);
+      }
+
+      // The values are relative to the last encountered value for that
+      // field, see SourceMapConsumerV3.MappingBuilder#decodeEntry.
+      int entrySource;
+      int entryName;
+      switch (numValues) {
+        case 1:
+          column += values[0];
+          entrySource = UNMAPPED;
+          entryName = UNMAPPED;
+          break;
+        case 4:
+        case 5:
+          column += values[0];
+          source += values[1];
+          sourceLine += values[2];
+          sourceColumn += values[3];
+          entrySource = source;
+          if (numValues == 5) {
+            name += values[4];
+            entryName = name;
+          } else {
+            entryName = UNMAPPED;
+          }
+          break;
+        default:
+          throw new SourceMapParseException(
+              "Unexpected number of values for entry:" + numValues);
+      }
+
+      if (entries != null) {
+        entries[offset + COLUMN] = column;
+        entries[offset + SOURCE] = entrySource;
+        entries[offset + SOURCE_LINE] = entrySource == UNMAPPED ? UNMAPPED : sourceLine;
+        entries[offset + SOURCE_COLUMN] = entrySource == UNMAPPED ? UNMAPPED : sourceColumn;
+        entries[offset + NAME] = entryName;
+      }
+      lastSource = entrySource;
+      lastName = entryName;
+    }
+  }
+
+  /**
+   * Finds the value of the top level "mappings" field of a source map.
+   *
+   * @return The start and end offsets of the value, without the quotes, or
+   *     null if there is no such field or it contains escapes.
+   */
+  @GwtIncompatible("java.nio")
+  private static int[] findMappingsField(ByteBuffer json) throws SourceMapParseException {
+    // UTF-8 encodes non-ASCII characters with bytes that are all above 0x7F,
+    // so the JSON syntax can be found by looking at single bytes.
+    int pos = skipWhitespace(json, 0);
+    expect(json, pos++, '{');
+    while (true) {
+      pos = skipWhitespace(json, pos);
+      if (json.get(pos) == '}') {
+        return null;
+      }
+      int keyStart = pos + 1;
+      pos = skipValue(json, pos);
+      boolean isMappings = isMappingsKey(json, keyStart, pos - 1);
+      pos = skipWhitespace(json, pos);
+      expect(json, pos++, ':');
+      pos = skipWhitespace(json, pos);
+      int valueStart = pos;
+      pos = skipValue(json, pos);
+      if (isMappings) {
+        if (json.get(valueStart) != '"') {
+          return null;
+        }
+        for (int i = valueStart + 1; i < pos - 1; i++) {
+          if (json.get(i) == '\\') {
+            return null;
+          }
+        }
+        return new int[] {valueStart + 1, pos - 1};
+      }
+      pos = skipWhitespace(json, pos);
+      if (json.get(pos) == ',') {
+        pos++;
+      } else {
+        expect(json, pos, '}');
+        return null;
+      }
+    }
+  }
+
+  @GwtIncompatible("java.nio")
+  private static boolean isMappingsKey(ByteBuffer json, int start, int end) {
+    String key = "mappings";
+    if (end - start != key.length()) {
+      return false;
+    }
+    for (int i = 0; i < key.length(); i++) {
+      if (json.get(start + i) != key.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the offset after the JSON value that starts at pos. */
+  @GwtIncompatible("java.nio")
+  private static int skipValue(ByteBuffer json, int pos) throws SourceMapParseException {
+    int depth = 0;
+    int limit = json.limit();
+    while (pos < limit) {
+      byte b = json.get(pos);
+      if (b == '"') {
+        pos++;
+        while (pos < limit && json.get(pos) != '"') {
+          pos += json.get(pos) == '\\' ? 2 : 1;
+        }
+        pos++;
+      } else if (b == '{' || b == '[') {
+        depth++;
+        pos++;
+      } else if (b == '}' || b == ']') {
+        if (depth == 0) {
+          return pos;
+        }
+        depth--;
+        pos++;
+      } else if (depth == 0 && (b == ',' || b == ':' || isWhitespace(b))) {
+        return pos;
+      } else {
+        pos++;
+      }
+      if (depth == 0 && (b == '"' || b == '}' || b == ']')) {
+        return pos;
+      }
+    }
+    if (depth != 0 || pos > limit) {
+      throw new SourceMapParseException("JSON parse exception: unexpected end of input");
+    }
+    return pos;
+  }
+
+  @GwtIncompatible("java.nio")
+  private static int skipWhitespace(ByteBuffer json, int pos) throws SourceMapParseException {
+    while (pos < json.limit() && isWhitespace(json.get(pos))) {
+      pos++;
+    }
+    if (pos >= json.limit()) {
+      throw new SourceMapParseException("JSON parse exception: unexpected end of input");
+    }
+    return pos;
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+  }
+
+  @GwtIncompatible("java.nio")
+  private static void expect(ByteBuffer json, int pos, char c) throws SourceMapParseException {
+    if (json.get(pos) != c) {
+      throw new SourceMapParseException(
+          "JSON parse exception: expected '" + c + "' at offset " + pos);
+    }
+  }
+
+  @GwtIncompatible("java.nio")
+  private static String decode(ByteBuffer buffer, int start, int end) {
+    byte[] bytes = new byte[end - start];
+    ByteBuffer slice = buffer.duplicate();
+    slice.position(start);
+    slice.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * The mappings field of a memory-mapped source map. The field only contains
+   * ASCII characters, one byte each.
+   */
+  @GwtIncompatible("java.nio")
+  private static final class AsciiCharSequence implements CharSequence {
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int length;
+
+    AsciiCharSequence(ByteBuffer buffer, int start, int length) {
+      this.buffer = buffer;
+      this.start = start;
+      this.length = length;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return (char) buffer.get(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+      return new AsciiCharSequence(buffer, start + from, to - from);
+    }
+
+    @Override
+    public String toString() {
+      return decode(buffer, start, start + length);
+    }
+  }
+}
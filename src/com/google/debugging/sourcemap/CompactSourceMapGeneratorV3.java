@@ -0,0 +1,488 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.debugging.sourcemap;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A V3 source map generator that keeps its mappings in a flat int array
+ * instead of an object per mapping.
+ *
+ * <p>Source and symbol names are interned as they are added, and the
+ * "mappings" field is VLQ encoded into a single buffer. The generated source
+ * map is the same as the one of {@link SourceMapGeneratorV3}, which should be
+ * used instead when the maps need to be merged or given extensions.
+ */
+final class CompactSourceMapGeneratorV3 implements SourceMapGenerator {
+  private static final int NONE = -1;
+
+  // The fields of a mapping, see SourceMapGeneratorV3.Mapping.
+  private static final int SOURCE = 0;
+  private static final int NAME = 1;
+  private static final int ORIGINAL_LINE = 2;
+  private static final int ORIGINAL_COLUMN = 3;
+  private static final int START_LINE = 4;
+  private static final int START_COLUMN = 5;
+  private static final int END_LINE = 6;
+  private static final int END_COLUMN = 7;
+  private static final int MAPPING_SIZE = 8;
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  /** The mappings in the order they were added, MAPPING_SIZE ints each. */
+  private int[] mappings = new int[INITIAL_CAPACITY * MAPPING_SIZE];
+  private int mappingCount = 0;
+
+  // The source and symbol names, in the order they were first added. The
+  // indices in the written source map are assigned in the order the names are
+  // first written, which can differ.
+  private final Map<String, Integer> sourceIndices = new HashMap<>();
+  private final List<String> sources = new ArrayList<>();
+  private final Map<String, Integer> nameIndices = new HashMap<>();
+  private final List<String> names = new ArrayList<>();
+
+  // Cache of the last mapping's source name and index.
+  private String lastSource = null;
+  private int lastSourceIndex = NONE;
+
+  private final LinkedHashMap<String, String> sourceFileContentMap = new LinkedHashMap<>();
+
+  // The positions the mappings are offset by, see setStartingPosition and
+  // setWrapperPrefix.
+  private int offsetLine = 0;
+  private int offsetColumn = 0;
+  private int prefixLine = 0;
+  private int prefixColumn = 0;
+
+  @Override
+  public void reset() {
+    mappingCount = 0;
+    sourceIndices.clear();
+    sources.clear();
+    nameIndices.clear();
+    names.clear();
+    lastSource = null;
+    lastSourceIndex = NONE;
+    sourceFileContentMap.clear();
+    offsetLine = 0;
+    offsetColumn = 0;
+    prefixLine = 0;
+    prefixColumn = 0;
+  }
+
+  @Override
+  public void validate(boolean validate) {
+    // Nothing currently.
+  }
+
+  @Override
+  public void setWrapperPrefix(String prefix) {
+    prefixLine = 0;
+    prefixColumn = 0;
+    for (int i = 0; i < prefix.length(); ++i) {
+      if (prefix.charAt(i) == '\n') {
+        prefixLine++;
+        prefixColumn = 0;
+      } else {
+        prefixColumn++;
+      }
+    }
+  }
+
+  @Override
+  public void setStartingPosition(int offsetLine, int offsetIndex) {
+    checkState(offsetLine >= 0);
+    checkState(offsetIndex >= 0);
+    this.offsetLine = offsetLine;
+    this.offsetColumn = offsetIndex;
+  }
+
+  @Override
+  public void addMapping(
+      String sourceName, @Nullable String symbolName,
+      FilePosition sourceStartPosition,
+      FilePosition startPosition, FilePosition endPosition) {
+    // Don't bother if there is not sufficient information to be useful.
+    if (sourceName == null || sourceStartPosition.getLine() < 0) {
+      return;
+    }
+
+    // Mappings on the first line are offset by the column the code starts at.
+    int startLine = startPosition.getLine() + offsetLine;
+    int startColumn = startPosition.getColumn()
+        + (startPosition.getLine() == 0 ? offsetColumn : 0);
+    int endLine = endPosition.getLine() + offsetLine;
+    int endColumn = endPosition.getColumn()
+        + (endPosition.getLine() == 0 ? offsetColumn : 0);
+
+    // Validate the mappings are in a proper order.
+    if (mappingCount > 0) {
+      int last = (mappingCount - 1) * MAPPING_SIZE;
+      int lastLine = mappings[last + START_LINE];
+      int lastColumn = mappings[last + START_COLUMN];
+      checkState(startLine > lastLine
+          || (startLine == lastLine && startColumn >= lastColumn),
+          "Incorrect source mappings order, previous : (%s,%s)\n"
+          + "new : (%s,%s)",
+          lastLine, lastColumn, startLine, startColumn);
+    }
+
+    int m = mappingCount * MAPPING_SIZE;
+    if (m == mappings.length) {
+      mappings = Arrays.copyOf(mappings, mappings.length * 2);
+    }
+    mappings[m + SOURCE] = getSourceIndex(sourceName);
+    mappings[m + NAME] = symbolName == null ? NONE : getNameIndex(symbolName);
+    mappings[m + ORIGINAL_LINE] = sourceStartPosition.getLine();
+    mappings[m + ORIGINAL_COLUMN] = sourceStartPosition.getColumn();
+    mappings[m + START_LINE] = startLine;
+    mappings[m + START_COLUMN] = startColumn;
+    mappings[m + END_LINE] = endLine;
+    mappings[m + END_COLUMN] = endColumn;
+    mappingCount++;
+  }
+
+  private int getSourceIndex(String sourceName) {
+    // The mappings of a file usually come one after the other, and share the
+    // same string.
+    if (sourceName != lastSource) {
+      lastSource = sourceName;
+      lastSourceIndex = intern(sourceName, sourceIndices, sources);
+    }
+    return lastSourceIndex;
+  }
+
+  private int getNameIndex(String symbolName) {
+    return intern(symbolName, nameIndices, names);
+  }
+
+  private static int intern(String value, Map<String, Integer> indices, List<String> values) {
+    Integer index = indices.get(value);
+    if (index == null) {
+      index = values.size();
+      indices.put(value, index);
+      values.add(value);
+    }
+    return index;
+  }
+
+  @Override
+  public void addSourcesContent(String source, String content) {
+    sourceFileContentMap.put(source, content);
+  }
+
+  @Override
+  public void appendTo(Appendable out, String name) throws IOException {
+    // Find the used mappings, and the number of lines they cover.
+    MappingTraversal usedMappings = new MappingTraversal();
+    usedMappings.traverse(null);
+    int maxLine = usedMappings.maxUsedLine + prefixLine + 1;
+
+    // Encode the mappings first, as this decides the order of the source and
+    // symbol names in the written map.
+    LineMapper lineMapper = new LineMapper(maxLine);
+    lineMapper.appendLineMappings();
+
+    out.append("{\n");
+    appendFirstField(out, "version", "3");
+    appendField(out, "file", Util.escapeString(name));
+    appendField(out, "lineCount", String.valueOf(maxLine));
+
+    appendFieldStart(out, "mappings");
+    out.append(lineMapper.out);
+
+    appendFieldStart(out, "sources");
+    out.append("[");
+    appendNames(out, sources, lineMapper.writtenSources, lineMapper.writtenSourceCount);
+    out.append("]");
+
+    appendSourcesContent(out, lineMapper);
+
+    appendFieldStart(out, "names");
+    out.append("[");
+    appendNames(out, names, lineMapper.writtenNames, lineMapper.writtenNameCount);
+    out.append("]");
+
+    out.append("\n}\n");
+  }
+
+  private static void appendNames(
+      Appendable out, List<String> values, int[] writtenValues, int writtenCount)
+      throws IOException {
+    for (int i = 0; i < writtenCount; i++) {
+      if (i != 0) {
+        out.append(",");
+      }
+      out.append(Util.escapeString(values.get(writtenValues[i])));
+    }
+  }
+
+  private void appendSourcesContent(Appendable out, LineMapper lineMapper) throws IOException {
+    int size = lineMapper.writtenSourceCount;
+    String[] contents = new String[size];
+    boolean found = false;
+    for (int i = 0; i < size; i++) {
+      String content = sourceFileContentMap.get(sources.get(lineMapper.writtenSources[i]));
+      if (content != null) {
+        contents[i] = content;
+        found = true;
+      }
+    }
+    if (!found) {
+      return;
+    }
+    appendFieldStart(out, "sourcesContent");
+    out.append("[");
+    for (int i = 0; i < size; i++) {
+      if (i != 0) {
+        out.append(",");
+      }
+      out.append(Util.escapeString(contents[i] == null ? "" : contents[i]));
+    }
+    out.append("]");
+  }
+
+  private static void appendFirstField(Appendable out, String name, CharSequence value)
+      throws IOException {
+    out.append("\"").append(name).append("\":").append(value);
+  }
+
+  private static void appendField(Appendable out, String name, CharSequence value)
+      throws IOException {
+    appendFieldStart(out, name);
+    out.append(value);
+  }
+
+  private static void appendFieldStart(Appendable out, String name) throws IOException {
+    out.append(",\n\"").append(name).append("\":");
+  }
+
+  @Override
+  public void appendIndexMapTo(Appendable out, String name, List<SourceMapSection> sections)
+      throws IOException {
+    // Index maps don't contain any mappings of their own.
+    new SourceMapGeneratorV3().appendIndexMapTo(out, name, sections);
+  }
+
+  /**
+   * Walks the mappings like SourceMapGeneratorV3.MappingTraversal, visiting
+   * each segment of the generated code with the index of the innermost mapping
+   * that covers it, or NONE for unmapped segments.
+   */
+  private class MappingTraversal {
+    // The last line and column visited.
+    private int line = 0;
+    private int col = 0;
+    // The last line of the used mappings, computed by traverse(null).
+    int maxUsedLine = 0;
+
+    void traverse(@Nullable LineMapper v) throws IOException {
+      // The mappings are ordered as a pre-order traversal, so the enclosing
+      // mappings of the current one are those on the stack that overlap it.
+      int[] stack = new int[16];
+      int stackSize = 0;
+      for (int m = 0; m < mappingCount; m++) {
+        while (stackSize > 0 && !isOverlapped(stack[stackSize - 1], m)) {
+          maybeVisit(v, stack[--stackSize]);
+        }
+
+        // Any gaps between the current position and the start of the
+        // current mapping belong to the parent.
+        int parent = stackSize > 0 ? stack[stackSize - 1] : NONE;
+        int start = m * MAPPING_SIZE;
+        int nextLine = getAdjustedLine(start + START_LINE);
+        int nextCol = getAdjustedCol(start + START_LINE);
+        checkState(line < nextLine || col <= nextCol);
+        if (line < nextLine || (line == nextLine && col < nextCol)) {
+          visit(v, parent, nextLine, nextCol);
+        }
+
+        if (stackSize == stack.length) {
+          stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = m;
+      }
+
+      while (stackSize > 0) {
+        maybeVisit(v, stack[--stackSize]);
+      }
+    }
+
+    /** The line of the position at the given offset, adjusted for the prefix. */
+    private int getAdjustedLine(int positionOffset) {
+      return mappings[positionOffset] + prefixLine;
+    }
+
+    /** The column of the position at the given offset, adjusted for the prefix. */
+    private int getAdjustedCol(int positionOffset) {
+      int rawCol = mappings[positionOffset + 1];
+      // Only the first line needs the character position adjusted.
+      return mappings[positionOffset] != 0 ? rawCol : rawCol + prefixColumn;
+    }
+
+    /** Whether mapping m1 ends after mapping m2 starts. */
+    private boolean isOverlapped(int m1, int m2) {
+      int l1 = mappings[m1 * MAPPING_SIZE + END_LINE];
+      int c1 = mappings[m1 * MAPPING_SIZE + END_COLUMN];
+      int l2 = mappings[m2 * MAPPING_SIZE + START_LINE];
+      int c2 = mappings[m2 * MAPPING_SIZE + START_COLUMN];
+      return (l1 == l2 && c1 >= c2) || l1 > l2;
+    }
+
+    private void maybeVisit(@Nullable LineMapper v, int m) throws IOException {
+      int end = m * MAPPING_SIZE + END_LINE;
+      int nextLine = getAdjustedLine(end);
+      int nextCol = getAdjustedCol(end);
+      if (line < nextLine || (line == nextLine && col < nextCol)) {
+        visit(v, m, nextLine, nextCol);
+      }
+    }
+
+    private void visit(@Nullable LineMapper v, int m, int nextLine, int nextCol)
+        throws IOException {
+      checkState(line <= nextLine);
+      checkState(line < nextLine || col < nextCol);
+      if (v != null) {
+        v.visit(m, line, col, nextLine, nextCol);
+      } else if (m != NONE) {
+        maxUsedLine = Math.max(maxUsedLine, mappings[m * MAPPING_SIZE + END_LINE]);
+      }
+      line = nextLine;
+      col = nextCol;
+    }
+  }
+
+  /** Encodes the "mappings" field, see SourceMapGeneratorV3.LineMapper. */
+  private class LineMapper {
+    final StringBuilder out;
+    private final int maxLine;
+
+    private int previousLine = -1;
+    private int previousColumn = 0;
+
+    // Previous values used for storing relative ids.
+    private int previousSourceId;
+    private int previousSourceLine;
+    private int previousSourceColumn;
+    private int previousNameId;
+
+    // The indices of the source and symbol names in the written map, by
+    // their interned index, and the interned indices in written order.
+    private final int[] sourceIds;
+    final int[] writtenSources;
+    int writtenSourceCount = 0;
+    private final int[] nameIds;
+    final int[] writtenNames;
+    int writtenNameCount = 0;
+
+    LineMapper(int maxLine) {
+      this.maxLine = maxLine;
+      // Most mappings take up 4 to 5 VLQ values of 1 or 2 digits.
+      this.out = new StringBuilder(mappingCount * 8 + maxLine + 2);
+      this.sourceIds = newIdMap(sources.size());
+      this.writtenSources = new int[sources.size()];
+      this.nameIds = newIdMap(names.size());
+      this.writtenNames = new int[names.size()];
+    }
+
+    private int[] newIdMap(int size) {
+      int[] ids = new int[size];
+      Arrays.fill(ids, NONE);
+      return ids;
+    }
+
+    void appendLineMappings() throws IOException {
+      out.append('\"');
+      new MappingTraversal().traverse(this);
+      out.append(';');
+      out.append('\"');
+    }
+
+    void visit(int m, int line, int col, int nextLine, int nextCol) {
+      if (previousLine != line) {
+        previousColumn = 0;
+      }
+
+      if (line != nextLine || col != nextCol) {
+        if (line < maxLine) {
+          if (previousLine == line) { // not the first entry for the line
+            out.append(',');
+          }
+          writeEntry(m, col);
+          previousLine = line;
+          previousColumn = col;
+        } else {
+          checkState(m == NONE);
+        }
+      }
+
+      for (int i = line; i < nextLine && i < maxLine; i++) {
+        out.append(';');
+      }
+    }
+
+    private void writeEntry(int m, int column) {
+      Base64VLQ.encode(out, column - previousColumn);
+      previousColumn = column;
+      if (m != NONE) {
+        int start = m * MAPPING_SIZE;
+        int sourceId = getSourceId(mappings[start + SOURCE]);
+        Base64VLQ.encode(out, sourceId - previousSourceId);
+        previousSourceId = sourceId;
+
+        int srcLine = mappings[start + ORIGINAL_LINE];
+        int srcColumn = mappings[start + ORIGINAL_COLUMN];
+        Base64VLQ.encode(out, srcLine - previousSourceLine);
+        previousSourceLine = srcLine;
+        Base64VLQ.encode(out, srcColumn - previousSourceColumn);
+        previousSourceColumn = srcColumn;
+
+        int name = mappings[start + NAME];
+        if (name != NONE) {
+          int nameId = getNameId(name);
+          Base64VLQ.encode(out, nameId - previousNameId);
+          previousNameId = nameId;
+        }
+      }
+    }
+
+    private int getSourceId(int source) {
+      if (sourceIds[source] == NONE) {
+        sourceIds[source] = writtenSourceCount;
+        writtenSources[writtenSourceCount++] = source;
+      }
+      return sourceIds[source];
+    }
+
+    private int getNameId(int name) {
+      if (nameIds[name] == NONE) {
+        nameIds[name] = writtenNameCount;
+        writtenNames[writtenNameCount++] = name;
+      }
+      return nameIds[name];
+    }
+  }
+}
@@ -24,5 +24,11 @@ public enum SourceMapFormat {
    DEFAULT,
 
    /** V3: A nice compact format */
-   V3;
+   V3,
+
+   /**
+    * V3, generated with less memory. The source maps are the same as V3's,
+    * but the generator doesn't support merging maps or extensions.
+    */
+   V3_COMPACT;
 }
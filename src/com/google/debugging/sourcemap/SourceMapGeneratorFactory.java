@@ -28,6 +28,8 @@ public final class SourceMapGeneratorFactory {
       case DEFAULT:
       case V3:
         return new SourceMapGeneratorV3();
+      case V3_COMPACT:
+        return new CompactSourceMapGeneratorV3();
       default:
         throw new IllegalStateException("unsupported source map format");
     }
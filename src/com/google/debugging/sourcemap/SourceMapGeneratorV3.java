@@ -19,7 +19,9 @@ package com.google.debugging.sourcemap;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
 import com.google.debugging.sourcemap.SourceMapConsumerV3.EntryVisitor;
+import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -283,6 +285,71 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
     }
   }
 
+  /**
+   * Maps the original positions of the visited entries through the input
+   * source maps of their sources before adding them.
+   */
+  class ComposingEntryVisitor implements EntryVisitor {
+    // The generated code usually has several mappings for the same original
+    // position in a row (e.g. a call and its callee), so the lookups are
+    // memoized in a small direct-mapped cache.
+    private static final int CACHE_SIZE = 1024;
+
+    private final Map<String, ? extends SourceMapping> inputSourceMaps;
+    private final SourceMapping[] cachedInputs = new SourceMapping[CACHE_SIZE];
+    private final int[] cachedLines = new int[CACHE_SIZE];
+    private final int[] cachedColumns = new int[CACHE_SIZE];
+    private final OriginalMapping[] cachedMappings = new OriginalMapping[CACHE_SIZE];
+
+    ComposingEntryVisitor(Map<String, ? extends SourceMapping> inputSourceMaps) {
+      this.inputSourceMaps = inputSourceMaps;
+    }
+
+    @Override
+    public void visit(
+        String sourceName, String symbolName,
+        FilePosition sourceStartPosition,
+        FilePosition startPosition, FilePosition endPosition) {
+      // Follow the chain of input source maps, but no further than the number
+      // of input source maps, in case they map back to each other.
+      for (int i = 0; i < inputSourceMaps.size(); i++) {
+        SourceMapping input = inputSourceMaps.get(sourceName);
+        if (input == null) {
+          break;
+        }
+        OriginalMapping mapping = getMapping(input, sourceStartPosition);
+        if (mapping == null) {
+          break;
+        }
+        sourceName = mapping.getOriginalFile();
+        if (!Strings.isNullOrEmpty(mapping.getIdentifier())) {
+          symbolName = mapping.getIdentifier();
+        }
+        // Source maps use 1-based lines and columns, FilePositions 0-based ones.
+        sourceStartPosition = new FilePosition(
+            mapping.getLineNumber() - 1, mapping.getColumnPosition() - 1);
+      }
+      addMapping(sourceName, symbolName,
+          sourceStartPosition, startPosition, endPosition);
+    }
+
+    private OriginalMapping getMapping(SourceMapping input, FilePosition position) {
+      int line = position.getLine();
+      int column = position.getColumn();
+      int index = (System.identityHashCode(input) + 31 * (31 * line + column))
+          & (CACHE_SIZE - 1);
+      if (cachedInputs[index] != input
+          || cachedLines[index] != line
+          || cachedColumns[index] != column) {
+        cachedInputs[index] = input;
+        cachedLines[index] = line;
+        cachedColumns[index] = column;
+        cachedMappings[index] = input.getMappingForLine(line + 1, column + 1);
+      }
+      return cachedMappings[index];
+    }
+  }
+
   /**
    * Merges current mapping with {@code mapSectionContents} considering the
    * offset {@code (line, column)}. Any extension in the map section will be
@@ -301,6 +368,30 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
     section.visitMappings(new ConsumerEntryVisitor());
   }
 
+  /**
+   * Works like {@link #mergeMapSection(int, int, String)}, except that the
+   * original positions are mapped through the input source maps of their
+   * sources, so that the merged mappings point to the sources the inputs
+   * were generated from. Input source maps are applied transitively, which
+   * flattens a chain of source maps in a single pass over the section.
+   * Source names are looked up in {@code inputSourceMaps} as they appear in
+   * the source maps, without resolving them relative to each other.
+   *
+   * @param line The line offset
+   * @param column The column offset
+   * @param mapSectionContents The map section to be appended
+   * @param inputSourceMaps The source maps of the sources, by source name
+   * @throws SourceMapParseException
+   */
+  public void composeMapSection(int line, int column, String mapSectionContents,
+      Map<String, ? extends SourceMapping> inputSourceMaps)
+      throws SourceMapParseException {
+    setStartingPosition(line, column);
+    SourceMapConsumerV3 section = new SourceMapConsumerV3();
+    section.parse(mapSectionContents);
+    section.visitMappings(new ComposingEntryVisitor(inputSourceMaps));
+  }
+
   /**
    * Works like {@link #mergeMapSection(int, int, String)}, except that
    * extensions from the @{code mapSectionContents} are merged to the top level
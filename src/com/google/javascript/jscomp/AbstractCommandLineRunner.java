@@ -44,10 +44,13 @@ import com.google.javascript.jscomp.deps.ModuleLoader;
 import com.google.javascript.jscomp.deps.SourceCodeEscapers;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.TokenStream;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.CodedOutputStream;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
@@ -60,10 +63,12 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -71,6 +76,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -179,8 +185,15 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
   static final String OUTPUT_MARKER = "%output%";
   private static final String OUTPUT_MARKER_JS_STRING = "%output|jsstring%";
 
+  // The builtin externs read so far, see getBuiltinExterns.
+  private static final Map<CompilerOptions.Environment, ImmutableList<SourceFile>>
+      builtinExterns = new EnumMap<>(CompilerOptions.Environment.class);
+
   private final List<JsonFileSpec> filesToStreamOut = new ArrayList<>();
 
+  // Set when this runner performs a request of a persistent worker.
+  @Nullable private WorkerState workerState = null;
+
   AbstractCommandLineRunner() {
     this(System.in, System.out, System.err);
   }
@@ -447,11 +460,28 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
   }
 
   /**
+   * Returns the externs bundled with the compiler for the given environment. They are read once per
+   * process and shared with {@link SharedExterns}, so that all compiles using them parse them only
+   * once.
+   *
    * @return a mutable list
    * @throws IOException
    */
   public static List<SourceFile> getBuiltinExterns(CompilerOptions.Environment env)
       throws IOException {
+    synchronized (builtinExterns) {
+      ImmutableList<SourceFile> externs = builtinExterns.get(env);
+      if (externs == null) {
+        externs = ImmutableList.copyOf(readBuiltinExterns(env));
+        SharedExterns.share(externs);
+        builtinExterns.put(env, externs);
+      }
+      return new ArrayList<>(externs);
+    }
+  }
+
+  private static List<SourceFile> readBuiltinExterns(CompilerOptions.Environment env)
+      throws IOException {
     InputStream input = AbstractCommandLineRunner.class.getResourceAsStream(
         "/externs.zip");
     if (input == null) {
@@ -509,6 +539,151 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
     exitCodeReceiver.apply(result);
   }
 
+  /**
+   * Returns whether the configuration is valid and specifies to run the compiler. Runners that
+   * validate their own flags override this.
+   */
+  public boolean shouldRunCompiler() {
+    return true;
+  }
+
+  /** Returns whether the configuration has errors. */
+  public boolean hasErrors() {
+    return false;
+  }
+
+  /** Creates the runner that performs a single request of a persistent worker. */
+  protected interface WorkerRunnerFactory {
+    AbstractCommandLineRunner<?, ?> create(
+        String[] args, InputStream in, PrintStream out, PrintStream err);
+  }
+
+  /**
+   * Runs the compiler as a persistent worker, which serves compile requests until {@code in} is
+   * closed. This saves build systems that invoke the compiler many times the JVM startup and JIT
+   * warmup, as well as reading and parsing the builtin externs on every invocation.
+   *
+   * <p>Each request and response is a UTF-8 JSON object preceded by its length in bytes, encoded as
+   * a varint. A request looks like
+   *
+   * <pre>
+   * {"requestId": 1,
+   *  "arguments": ["--js", "a.js", "--js_output_file", "out.js"],
+   *  "inputs": [{"path": "a.js", "digest": "..."}]}
+   * </pre>
+   *
+   * where the optional inputs list the files of the compile and a digest of their contents, used to
+   * tell which cached inputs are still valid. The response carries the exit code of the compile,
+   * everything it printed and how long it took:
+   *
+   * <pre>
+   * {"requestId": 1, "exitCode": 0, "output": "...", "elapsedMillis": 120, "cpuMillis": 110}
+   * </pre>
+   *
+   * Requests are performed one at a time. Since stdin carries the requests, a compile request
+   * cannot read its inputs from stdin.
+   */
+  protected static void runPersistentWorker(
+      InputStream in, OutputStream out, WorkerRunnerFactory factory) throws IOException {
+    WorkerState state = new WorkerState();
+    Gson gson = new Gson();
+    CodedOutputStream output = CodedOutputStream.newInstance(out);
+    for (int firstByte = in.read(); firstByte != -1; firstByte = in.read()) {
+      byte[] message = new byte[CodedInputStream.readRawVarint32(firstByte, in)];
+      ByteStreams.readFully(in, message);
+      WorkRequest request = gson.fromJson(new String(message, UTF_8), WorkRequest.class);
+
+      WorkResponse response = state.perform(request, factory);
+
+      byte[] responseBytes = gson.toJson(response).getBytes(UTF_8);
+      output.writeUInt32NoTag(responseBytes.length);
+      output.writeRawBytes(responseBytes);
+      output.flush();
+    }
+  }
+
+  /** A compile request of a persistent worker. */
+  static final class WorkRequest {
+    int requestId;
+    List<String> arguments = new ArrayList<>();
+    List<WorkInput> inputs = new ArrayList<>();
+  }
+
+  /** An input file of a compile request and the digest of its contents. */
+  static final class WorkInput {
+    String path;
+    String digest;
+  }
+
+  /** The result of a compile request of a persistent worker. */
+  static final class WorkResponse {
+    int requestId;
+    int exitCode;
+    String output;
+    long elapsedMillis;
+    /** The CPU time used by the worker for the request, or -1 if the JVM cannot measure it. */
+    long cpuMillis;
+  }
+
+  /** The state a persistent worker keeps between its compile requests. */
+  static final class WorkerState {
+    private static final InputStream NO_INPUT = new ByteArrayInputStream(new byte[0]);
+
+    private final PersistentInputStore inputStore = new PersistentInputStore();
+
+    WorkResponse perform(WorkRequest request, WorkerRunnerFactory factory) {
+      long startNanos = System.nanoTime();
+      // The compile runs on the compiler thread and on the thread pools of the parallel passes,
+      // so the CPU time of the whole process is measured. Requests are performed one at a time.
+      long startCpuNanos = JvmMetrics.getProcessCpuTime();
+
+      for (WorkInput input : request.inputs) {
+        inputStore.addInput(input.path, input.digest);
+      }
+
+      final WorkResponse response = new WorkResponse();
+      response.requestId = request.requestId;
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      try (PrintStream printStream = new PrintStream(buffer, true, UTF_8.name())) {
+        AbstractCommandLineRunner<?, ?> runner =
+            factory.create(
+                request.arguments.toArray(new String[0]), NO_INPUT, printStream, printStream);
+        runner.workerState = this;
+        runner.setExitCodeReceiver(
+            new Function<Integer, Void>() {
+              @Override
+              public Void apply(Integer exitCode) {
+                response.exitCode = exitCode;
+                return null;
+              }
+            });
+        try {
+          if (runner.shouldRunCompiler()) {
+            runner.run();
+          }
+          if (runner.hasErrors()) {
+            response.exitCode = -1;
+          }
+        } finally {
+          if (runner.getCompiler() != null && runner.getCompiler().getModules() != null) {
+            runner.getCompiler().resetCompilerInput();
+          }
+        }
+      } catch (UnsupportedEncodingException e) {
+        throw new AssertionError(e);
+      }
+
+      response.output = new String(buffer.toByteArray(), UTF_8);
+      response.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      long endCpuNanos = JvmMetrics.getProcessCpuTime();
+      response.cpuMillis =
+          startCpuNanos < 0 || endCpuNanos < 0
+              ? -1
+              : TimeUnit.NANOSECONDS.toMillis(endCpuNanos - startCpuNanos);
+      return response;
+    }
+  }
+
   /**
    * Returns the PrintStream for writing errors associated with this
    * AbstractCommandLineRunner.
@@ -935,13 +1110,26 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
         "%s", null);
   }
 
+  /**
+   * Writes the code of a module printed by {@link ParallelModulePrinter},
+   * adjusting the module's own source map to the module wrapper.
+   */
+  private void writeModuleOutput(Appendable out, ParallelModulePrinter.ModuleOutput output)
+      throws IOException {
+    String fileName = getModuleOutputFileName(output.module);
+    String baseName = new File(fileName).getName();
+    writeOutput(out, output.sourceMap, output.code,
+        parsedModuleWrappers.get(output.module.getName()).replace("%basename%", baseName),
+        "%s", null);
+  }
+
   /**
    * Writes code to an output stream, optionally wrapping it in an arbitrary
    * wrapper that contains a placeholder where the code should be inserted.
    * @param module Which module to write. If this is null, write the entire AST.
    */
-  static void writeOutput(Appendable out, Compiler compiler, @Nullable JSModule module,
-      String wrapper, String codePlaceholder,
+  static void writeOutput(Appendable out, final Compiler compiler,
+      @Nullable final JSModule module, String wrapper, String codePlaceholder,
       @Nullable Function<String, String> escaper)
       throws IOException {
     if (compiler.getOptions().outputJs == OutputJs.SENTINEL) {
@@ -950,8 +1138,25 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
     }
     checkState(compiler.getOptions().outputJs == OutputJs.NORMAL);
 
-    String code = module == null ? compiler.toSource() : compiler.toSource(module);
-    writeOutput(out, compiler, code, wrapper, codePlaceholder, escaper);
+    if (escaper != null) {
+      String code = module == null ? compiler.toSource() : compiler.toSource(module);
+      writeOutput(out, compiler, code, wrapper, codePlaceholder, escaper);
+      return;
+    }
+
+    // Without an escaper, the code can be written out as it is generated,
+    // instead of being kept in memory as a whole.
+    writeWrappedCode(out, compiler.getSourceMap(), wrapper, codePlaceholder,
+        new CodeWriter() {
+          @Override
+          public void writeCode(Appendable codeOut) throws IOException {
+            if (module == null) {
+              compiler.toSource(codeOut);
+            } else {
+              compiler.toSource(module, codeOut);
+            }
+          }
+        });
   }
 
   /**
@@ -962,34 +1167,58 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
       String wrapper, String codePlaceholder,
       @Nullable Function<String, String> escaper)
       throws IOException {
-    int pos = wrapper.indexOf(codePlaceholder);
-    if (pos != -1) {
-      String prefix = "";
+    writeOutput(out, compiler != null ? compiler.getSourceMap() : null, code,
+        wrapper, codePlaceholder, escaper);
+  }
 
-      if (pos > 0) {
-        prefix = wrapper.substring(0, pos);
-        out.append(prefix);
+  private static void writeOutput(Appendable out, @Nullable SourceMap sourceMap, String code,
+      String wrapper, String codePlaceholder,
+      @Nullable Function<String, String> escaper)
+      throws IOException {
+    final String escapedCode = escaper == null ? code : escaper.apply(code);
+    writeWrappedCode(out, sourceMap, wrapper, codePlaceholder, new CodeWriter() {
+      @Override
+      public void writeCode(Appendable codeOut) throws IOException {
+        codeOut.append(escapedCode);
       }
+    });
+  }
 
-      out.append(escaper == null ? code : escaper.apply(code));
+  /** Writes the code of a compilation to an output stream. */
+  private interface CodeWriter {
+    void writeCode(Appendable out) throws IOException;
+  }
 
-      int suffixStart = pos + codePlaceholder.length();
-      if (suffixStart != wrapper.length()) {
-        // Something after placeholder?
-        out.append(wrapper.substring(suffixStart));
-      }
-      // Make sure we always end output with a line feed.
+  /**
+   * Writes code within the wrapper if it contains the placeholder, and on its
+   * own otherwise, always ending with a line feed.
+   */
+  private static void writeWrappedCode(Appendable out, @Nullable SourceMap sourceMap,
+      String wrapper, String codePlaceholder, CodeWriter codeWriter)
+      throws IOException {
+    int pos = wrapper.indexOf(codePlaceholder);
+    if (pos == -1) {
+      codeWriter.writeCode(out);
       out.append('\n');
+      return;
+    }
 
-      // If we have a source map, adjust its offsets to match
-      // the code WITHIN the wrapper.
-      if (compiler != null && compiler.getSourceMap() != null) {
-        compiler.getSourceMap().setWrapperPrefix(prefix);
-      }
+    String prefix = wrapper.substring(0, pos);
+    out.append(prefix);
+    codeWriter.writeCode(out);
 
-    } else {
-      out.append(code);
-      out.append('\n');
+    int suffixStart = pos + codePlaceholder.length();
+    if (suffixStart != wrapper.length()) {
+      // Something after placeholder?
+      out.append(wrapper.substring(suffixStart));
+    }
+    // Make sure we always end output with a line feed.
+    out.append('\n');
+
+    // If we have a source map, adjust its offsets to match
+    // the code WITHIN the wrapper.
+    if (sourceMap != null) {
+      sourceMap.setWrapperPrefix(prefix);
     }
   }
 
@@ -1036,6 +1265,9 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
     Compiler.setLoggingLevel(Level.parse(config.loggingLevel));
 
     compiler = createCompiler();
+    if (workerState != null) {
+      compiler.setPersistentInputStore(workerState.inputStore);
+    }
     B options = createOptions();
 
     List<SourceFile> externs = createExterns(options);
@@ -1140,6 +1372,8 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
       }
     }
 
+    outputTracerJsonReport();
+
     for (String outputFileName : outputFileNames) {
       if (compiler.getSourceFileByName(outputFileName) != null) {
         compiler.report(
@@ -1410,6 +1644,11 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
       return INVALID_MODULE_SOURCEMAP_PATTERN;
     }
 
+    if (options.numParallelThreads > 1 && options.outputJs == OutputJs.NORMAL) {
+      outputModulesInParallel(modules, options);
+      return null;
+    }
+
     for (JSModule m : modules) {
       if (isOutputInJson()) {
         this.filesToStreamOut.add(createJsonFileFromModule(m));
@@ -1442,6 +1681,45 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
     return null;
   }
 
+  /**
+   * Prints the modules on several threads, and writes them and their source
+   * maps in module order as they become available.
+   */
+  private void outputModulesInParallel(List<JSModule> modules, final B options)
+      throws IOException {
+    new ParallelModulePrinter(compiler, options.numParallelThreads).print(
+        modules,
+        new ParallelModulePrinter.Callback() {
+          @Override
+          public void moduleOutput(ParallelModulePrinter.ModuleOutput output)
+              throws IOException {
+            JSModule m = output.module;
+            String moduleFilename = getModuleOutputFileName(m);
+            if (isOutputInJson()) {
+              StringBuilder code = new StringBuilder();
+              writeModuleOutput(code, output);
+              JsonFileSpec jsonFile = new JsonFileSpec(code.toString(), moduleFilename);
+              if (output.sourceMap != null) {
+                StringBuilder moduleSourceMap = new StringBuilder();
+                output.sourceMap.appendTo(moduleSourceMap, moduleFilename);
+                jsonFile.setSourceMap(moduleSourceMap.toString());
+              }
+              filesToStreamOut.add(jsonFile);
+              return;
+            }
+
+            try (Writer writer = fileNameToLegacyOutputWriter(moduleFilename)) {
+              writeModuleOutput(writer, output);
+            }
+            if (output.sourceMap != null) {
+              try (Writer mapFileOut = fileNameToOutputWriter2(expandSourceMapPath(options, m))) {
+                output.sourceMap.appendTo(mapFileOut, moduleFilename);
+              }
+            }
+          }
+        });
+  }
+
   /** Given an output module, convert it to a JSONFileSpec with associated sourcemap */
   private JsonFileSpec createJsonFileFromModule(JSModule module) throws IOException {
     compiler.getSourceMap().reset();
@@ -1947,6 +2225,20 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
     }
   }
 
+  /**
+   * Writes the per-pass performance data as JSON if the compiler was tracing
+   * and a report file was requested.
+   */
+  private void outputTracerJsonReport() throws IOException {
+    if (config.tracerJsonOutput != null
+        && !config.tracerJsonOutput.isEmpty()
+        && compiler.tracker != null) {
+      try (Writer out = fileNameToOutputWriter2(config.tracerJsonOutput)) {
+        compiler.tracker.outputJsonReport(out);
+      }
+    }
+  }
+
   /**
    * Prints the current module graph as JSON.
    */
@@ -2561,6 +2853,17 @@ public abstract class AbstractCommandLineRunner<A extends Compiler,
       return this;
     }
 
+    private String tracerJsonOutput = null;
+
+    /**
+     * Sets the file to which the per-pass performance data is written as JSON
+     * when a tracer mode is on.
+     */
+    public CommandLineConfig setTracerJsonOutput(String tracerJsonOutput) {
+      this.tracerJsonOutput = tracerJsonOutput;
+      return this;
+    }
+
     private List<String> outputBundles = ImmutableList.of();
 
     /**
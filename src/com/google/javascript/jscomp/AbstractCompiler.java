@@ -18,10 +18,12 @@ package com.google.javascript.jscomp;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import com.google.common.annotations.GwtIncompatible;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.javascript.jscomp.deps.ModuleLoader;
 import com.google.javascript.jscomp.parsing.Config;
 import com.google.javascript.jscomp.parsing.parser.FeatureSet;
@@ -427,6 +429,37 @@ public abstract class AbstractCompiler implements SourceExcerptProvider {
    */
   public abstract ErrorManager getErrorManager();
 
+  /**
+   * Makes errors reported on the current thread, either through {@link #report} or directly to the
+   * {@link #getErrorManager error manager}, go to {@code deferred} until this is called again with
+   * {@code null}. Used by work that runs on several threads at once.
+   */
+  abstract void setDeferredErrorManagerForCurrentThread(@Nullable DeferredErrorManager deferred);
+
+  /**
+   * Makes the changes reported on the current thread through {@link #reportChangeToEnclosingScope},
+   * {@link #reportChangeToChangeScope} and {@link #reportFunctionDeleted} go to {@code deferred}
+   * until this is called again with {@code null}. Used by work that runs on several threads at
+   * once.
+   */
+  abstract void setDeferredChangeReportsForCurrentThread(@Nullable DeferredChangeReports deferred);
+
+  /**
+   * Returns the pool of worker threads shared by the passes of this compiler, sized by {@link
+   * CompilerOptions#numParallelThreads}.
+   */
+  @GwtIncompatible("java.util.concurrent.ThreadPoolExecutor")
+  abstract ListeningExecutorService getThreadPool();
+
+  /**
+   * Returns the cache of control flow graphs shared by passes, or {@code null} when graphs
+   * shouldn't be shared. See {@link ControlFlowAnalysis#getSharedCfg}.
+   */
+  @Nullable
+  abstract ControlFlowGraphCache getControlFlowGraphCache();
+
+  abstract void setControlFlowGraphCache(@Nullable ControlFlowGraphCache cache);
+
   /**
    * Set the current life-cycle state.
    */
@@ -649,4 +682,10 @@ public abstract class AbstractCompiler implements SourceExcerptProvider {
   PersistentInputStore getPersistentInputStore() {
     return persistentInputStore;
   }
+
+  /** Returns the on-disk cache of parse results to consult before parsing, if any. */
+  @Nullable
+  PersistentParseCache getPersistentParseCache() {
+    return persistentInputStore != null ? persistentInputStore.getParseCache() : null;
+  }
 }
@@ -36,9 +36,11 @@ import com.google.javascript.jscomp.graph.UndiGraph;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -68,8 +70,17 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
   private final Deque<GraphColoring<Var, Void>> colorings;
   private final Deque<LiveVariablesAnalysisEs6> liveAnalyses;
   private final boolean usePseudoNames;
+  private final int numParallelThreads;
   private LiveVariablesAnalysisEs6 liveness;
 
+  // The functions whose variables are coalesced on several threads after the traversal, with
+  // their function scopes.
+  private final Map<Node, Scope> deferredFunctions = new LinkedHashMap<>();
+
+  // The deferred function the traversal is in, if any. Its names are left to the thread
+  // coalescing it.
+  private Node currentDeferredFunction = null;
+
   private final Comparator<Var> coloringTieBreaker =
       new Comparator<Var>() {
         @Override
@@ -83,6 +94,11 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
    * to foo, rename both variable to foo_bar.
    */
   CoalesceVariableNames(AbstractCompiler compiler, boolean usePseudoNames) {
+    this(compiler, usePseudoNames, compiler.getOptions().numParallelThreads);
+  }
+
+  private CoalesceVariableNames(
+      AbstractCompiler compiler, boolean usePseudoNames, int numParallelThreads) {
     // The code is normalized at this point in the compilation process. This allows us to use the
     // fact that all variables have been given unique names. We can hoist coalesced variables to
     // VARS because we know that shadowing can't occur.
@@ -92,6 +108,7 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
     colorings = new LinkedList<>();
     liveAnalyses = new LinkedList<>();
     this.usePseudoNames = usePseudoNames;
+    this.numParallelThreads = numParallelThreads;
   }
 
   @Override
@@ -99,9 +116,35 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
     checkNotNull(externs);
     checkNotNull(root);
     NodeTraversal.traverseEs6(compiler, root, this);
+    coalesceDeferredFunctions();
     compiler.setLifeCycleStage(LifeCycleStage.RAW);
   }
 
+  /**
+   * Coalesces the variables of the functions collected during the traversal on several threads.
+   * The functions don't contain inner functions, so each one is only read and rewritten by the
+   * thread coalescing it.
+   */
+  private void coalesceDeferredFunctions() {
+    if (deferredFunctions.isEmpty()) {
+      return;
+    }
+    new ParallelFunctionProcessor(compiler, numParallelThreads)
+        .process(
+            new ArrayList<>(deferredFunctions.keySet()),
+            new ParallelFunctionProcessor.FunctionCallback() {
+              @Override
+              public void processFunction(Node function) {
+                // Each function gets an instance of its own, as the analysis state is per pass.
+                CoalesceVariableNames pass =
+                    new CoalesceVariableNames(compiler, usePseudoNames, 1);
+                new NodeTraversal(compiler, pass, new Es6SyntacticScopeCreator(compiler))
+                    .traverseAtScope(deferredFunctions.get(function));
+              }
+            });
+    deferredFunctions.clear();
+  }
+
   private static boolean shouldOptimizeScope(NodeTraversal t) {
     // TODO(user): We CAN do this in the global scope, just need to be
     // careful when something is exported. Liveness uses bit-vector for live
@@ -129,6 +172,12 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
 
     checkState(scope.isFunctionScope(), scope);
 
+    if (numParallelThreads > 1 && ParallelFunctionProcessor.isLeafFunction(scope.getRootNode())) {
+      deferredFunctions.put(scope.getRootNode(), scope);
+      currentDeferredFunction = scope.getRootNode();
+      return;
+    }
+
     // live variables analysis is based off of the control flow graph
     ControlFlowGraph<Node> cfg = t.getControlFlowGraph();
 
@@ -166,6 +215,10 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
 
   @Override
   public void exitScope(NodeTraversal t) {
+    if (t.getScopeRoot() == currentDeferredFunction) {
+      currentDeferredFunction = null;
+      return;
+    }
     if (!shouldOptimizeScope(t)) {
       return;
     }
@@ -176,7 +229,8 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
 
   @Override
   public void visit(NodeTraversal t, Node n, Node parent) {
-    if (colorings.isEmpty() || !n.isName() || parent.isFunction()) {
+    if (currentDeferredFunction != null
+        || colorings.isEmpty() || !n.isName() || parent.isFunction()) {
       // Don't rename named functions.
       return;
     }
@@ -16,10 +16,10 @@
 
 package com.google.javascript.jscomp;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.base.CharMatcher;
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.debugging.sourcemap.FilePosition;
 import com.google.javascript.jscomp.CodePrinter.Builder.CodeGeneratorFactory;
@@ -29,9 +29,8 @@ import com.google.javascript.rhino.StaticSourceFile;
 import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.TypeIRegistry;
 import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -48,11 +47,45 @@ public final class CodePrinter {
   // version.
 
   private abstract static class MappedCodePrinter extends CodeConsumer {
-    private final Deque<Mapping> mappings;
-    private final List<Mapping> allMappings;
+    // In streaming mode, the buffered code is written out once it is at least
+    // this long and can't change anymore.
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    // The fields of a source mapping in mappingPositions.
+    private static final int START_LINE = 0;
+    private static final int START_COLUMN = 1;
+    private static final int END_LINE = 2;
+    private static final int END_COLUMN = 3;
+    private static final int MAPPING_SIZE = 4;
+    // The end line of a mapping that wasn't closed yet.
+    private static final int OPEN = -1;
+
+    /**
+     * Maintains a mapping from a given node to the position in the source code
+     * at which its generated form was placed. The positions are relative only
+     * to the current run of the CodeConsumer and will be normalized later on
+     * by the SourceMap. The positions of the mapping of mappedNodes.get(i)
+     * are stored at i * MAPPING_SIZE in mappingPositions, to avoid allocating
+     * objects for each mapped node.
+     *
+     * @see SourceMap
+     */
+    private final List<Node> mappedNodes;
+    private int[] mappingPositions;
+    // The indices of the mappings that are still open, innermost last.
+    private int[] openMappings;
+    private int openMappingCount = 0;
     private final boolean createSrcMap;
     private final SourceMap.DetailLevel sourceMapDetailLevel;
-    protected final StringBuilder code = new StringBuilder(1024);
+    // The code that wasn't written to out yet. Positions in the code (as
+    // opposed to indices in this buffer) count the written characters too.
+    private final StringBuilder code = new StringBuilder(1024);
+    // Where to write the code in streaming mode, null otherwise.
+    private final Appendable out;
+    private int flushedLength = 0;
+    private char lastFlushedChar = '\0';
+    // The lengths of the lines already written out, for the source map.
+    private final List<Integer> flushedLineLengths = new ArrayList<>();
     protected final int lineLengthThreshold;
     protected int lineLength = 0;
     protected int lineIndex = 0;
@@ -60,35 +93,17 @@ public final class CodePrinter {
     MappedCodePrinter(
         int lineLengthThreshold,
         boolean createSrcMap,
-        SourceMap.DetailLevel sourceMapDetailLevel) {
+        SourceMap.DetailLevel sourceMapDetailLevel,
+        Appendable out) {
       checkState(sourceMapDetailLevel != null);
       this.lineLengthThreshold = lineLengthThreshold <= 0 ? Integer.MAX_VALUE :
         lineLengthThreshold;
       this.createSrcMap = createSrcMap;
       this.sourceMapDetailLevel = sourceMapDetailLevel;
-      this.mappings = createSrcMap ? new ArrayDeque<Mapping>() : null;
-      this.allMappings = createSrcMap ? new ArrayList<Mapping>() : null;
-    }
-
-    /**
-     * Maintains a mapping from a given node to the position
-     * in the source code at which its generated form was
-     * placed. This position is relative only to the current
-     * run of the CodeConsumer and will be normalized
-     * later on by the SourceMap.
-     *
-     * @see SourceMap
-     */
-    private static class Mapping {
-      Node node;
-      FilePosition start;
-      FilePosition end;
-
-      @Override
-      public String toString() {
-        // This toString() representation is used for debugging purposes only.
-        return "Mapping: start " + start + ", end " + end + ", node " + node;
-      }
+      this.mappedNodes = createSrcMap ? new ArrayList<Node>() : null;
+      this.mappingPositions = createSrcMap ? new int[64 * MAPPING_SIZE] : null;
+      this.openMappings = createSrcMap ? new int[16] : null;
+      this.out = out;
     }
 
     /**
@@ -106,11 +121,19 @@ public final class CodePrinter {
         int line = getCurrentLineIndex();
         int index = getCurrentCharIndex();
         checkState(line >= 0);
-        Mapping mapping = new Mapping();
-        mapping.node = node;
-        mapping.start = new FilePosition(line, index);
-        mappings.push(mapping);
-        allMappings.add(mapping);
+        int mapping = mappedNodes.size();
+        int start = mapping * MAPPING_SIZE;
+        if (start == mappingPositions.length) {
+          mappingPositions = Arrays.copyOf(mappingPositions, start * 2);
+        }
+        mappedNodes.add(node);
+        mappingPositions[start + START_LINE] = line;
+        mappingPositions[start + START_COLUMN] = index;
+        mappingPositions[start + END_LINE] = OPEN;
+        if (openMappingCount == openMappings.length) {
+          openMappings = Arrays.copyOf(openMappings, openMappingCount * 2);
+        }
+        openMappings[openMappingCount++] = mapping;
       }
     }
 
@@ -120,12 +143,15 @@ public final class CodePrinter {
      */
     @Override
     void endSourceMapping(Node node) {
-      if (createSrcMap && !mappings.isEmpty() && mappings.peek().node == node) {
-        Mapping mapping = mappings.pop();
+      if (createSrcMap
+          && openMappingCount > 0
+          && mappedNodes.get(openMappings[openMappingCount - 1]) == node) {
+        int mapping = openMappings[--openMappingCount];
         int line = getCurrentLineIndex();
         int index = getCurrentCharIndex();
         checkState(line >= 0);
-        mapping.end = new FilePosition(line, index);
+        mappingPositions[mapping * MAPPING_SIZE + END_LINE] = line;
+        mappingPositions[mapping * MAPPING_SIZE + END_COLUMN] = index;
       }
     }
 
@@ -134,12 +160,22 @@ public final class CodePrinter {
      * appending the information it saved to the SourceMap
      * object given.
      */
-    void generateSourceMap(String code, SourceMap map) {
+    void generateSourceMap(SourceMap map) {
       if (createSrcMap) {
-        List<Integer> lineLengths = computeLineLengths(code);
-        for (Mapping mapping : allMappings) {
+        List<Integer> lineLengths = ImmutableList.<Integer>builder()
+            .addAll(flushedLineLengths)
+            .addAll(computeLineLengths(code))
+            .build();
+        for (int i = 0; i < mappedNodes.size(); i++) {
+          int start = i * MAPPING_SIZE;
           map.addMapping(
-              mapping.node, mapping.start, adjustEndPosition(lineLengths, mapping.end));
+              mappedNodes.get(i),
+              new FilePosition(
+                  mappingPositions[start + START_LINE], mappingPositions[start + START_COLUMN]),
+              adjustEndPosition(
+                  lineLengths,
+                  mappingPositions[start + END_LINE],
+                  mappingPositions[start + END_COLUMN]));
         }
       }
     }
@@ -153,13 +189,11 @@ public final class CodePrinter {
      */
     void reportLineCut(int lineIndex, int charIndex, boolean insertion) {
       if (createSrcMap) {
-        for (Mapping mapping : allMappings) {
-          mapping.start = convertPosition(mapping.start, lineIndex, charIndex,
-              insertion);
-
-          if (mapping.end != null) {
-            mapping.end = convertPosition(mapping.end, lineIndex, charIndex,
-                insertion);
+        for (int i = 0; i < mappedNodes.size(); i++) {
+          int start = i * MAPPING_SIZE;
+          convertPosition(start + START_LINE, lineIndex, charIndex, insertion);
+          if (mappingPositions[start + END_LINE] != OPEN) {
+            convertPosition(start + END_LINE, lineIndex, charIndex, insertion);
           }
         }
       }
@@ -169,53 +203,123 @@ public final class CodePrinter {
      * Converts the given position by normalizing it against the insertion
      * or removal of a newline at the given line and character position.
      *
-     * @param position The existing position before the newline was inserted.
+     * @param position The offset of the position's line in mappingPositions,
+     *     followed by its column. The position is updated in place.
      * @param lineIndex The index of the line at which the newline was inserted.
      * @param characterPosition The position on the line at which the newline
      *     was inserted.
      * @param insertion True if a newline was inserted, false if a newline was
      *     removed.
      *
-     * @return The normalized position.
      * @throws IllegalStateException if an attempt to reverse a line cut is
      *     made on a previous line rather than the current line.
      */
-    private static FilePosition convertPosition(FilePosition position, int lineIndex,
-                                                int characterPosition, boolean insertion) {
-      int originalLine = position.getLine();
-      int originalChar = position.getColumn();
+    private void convertPosition(int position, int lineIndex,
+                                 int characterPosition, boolean insertion) {
+      int originalLine = mappingPositions[position];
+      int originalChar = mappingPositions[position + 1];
       if (insertion) {
         if (originalLine == lineIndex && originalChar >= characterPosition) {
           // If the position falls on the line itself, then normalize it
           // if it falls at or after the place the newline was inserted.
-          return new FilePosition(
-              originalLine + 1, originalChar - characterPosition);
-        } else {
-          return position;
+          mappingPositions[position] = originalLine + 1;
+          mappingPositions[position + 1] = originalChar - characterPosition;
         }
       } else {
         if (originalLine == lineIndex) {
-          return new FilePosition(
-              originalLine - 1, originalChar + characterPosition);
+          mappingPositions[position] = originalLine - 1;
+          mappingPositions[position + 1] = originalChar + characterPosition;
         } else if (originalLine > lineIndex) {
             // Not supported, can only undo a cut on the most recent line. To
             // do this on a previous lines would require reevaluating the cut
             // positions on all subsequent lines.
             throw new IllegalStateException(
                 "Cannot undo line cut on a previous line.");
-        } else {
-          return position;
         }
       }
     }
 
     public String getCode() {
+      checkState(out == null, "The code was written out");
       return code.toString();
     }
 
     @Override
     char getLastChar() {
-      return (code.length() > 0) ? code.charAt(code.length() - 1) : '\0';
+      return (code.length() > 0) ? code.charAt(code.length() - 1) : lastFlushedChar;
+    }
+
+    /** Returns the number of characters printed so far, including those written out. */
+    protected final int getCodeLength() {
+      return flushedLength + code.length();
+    }
+
+    protected final void appendCode(String str) {
+      code.append(str);
+    }
+
+    protected final void appendCode(char c) {
+      code.append(c);
+    }
+
+    protected final char charAt(int position) {
+      return code.charAt(position - flushedLength);
+    }
+
+    protected final void setCharAt(int position, char c) {
+      code.setCharAt(position - flushedLength, c);
+    }
+
+    protected final void insert(int position, char c) {
+      code.insert(position - flushedLength, c);
+    }
+
+    /**
+     * Returns the position of the first character that may still be changed.
+     * Only the lines before it can be written out in streaming mode.
+     */
+    int getFirstChangeablePosition() {
+      return getCodeLength();
+    }
+
+    /**
+     * In streaming mode, writes out the complete lines that can't be changed
+     * anymore, if there are enough of them.
+     */
+    protected final void maybeFlush() {
+      if (out == null) {
+        return;
+      }
+      int limit = getFirstChangeablePosition() - flushedLength;
+      if (limit < FLUSH_THRESHOLD) {
+        return;
+      }
+      int end = code.lastIndexOf("\n", limit - 1) + 1;
+      if (end > 0) {
+        flush(end);
+      }
+    }
+
+    /** In streaming mode, writes out the rest of the code. */
+    void flushAll() {
+      if (out != null && code.length() > 0) {
+        flush(code.length());
+      }
+    }
+
+    private void flush(int end) {
+      String chunk = code.substring(0, end);
+      try {
+        out.append(chunk);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      if (createSrcMap) {
+        flushedLineLengths.addAll(computeLineLengths(chunk));
+      }
+      lastFlushedChar = chunk.charAt(end - 1);
+      code.delete(0, end);
+      flushedLength += end;
     }
 
     protected final int getCurrentCharIndex() {
@@ -227,15 +331,15 @@ public final class CodePrinter {
     }
 
     /** Calculates length of each line in compiled code. */
-    private static List<Integer> computeLineLengths(String code) {
+    private static List<Integer> computeLineLengths(CharSequence code) {
       ImmutableList.Builder<Integer> builder = ImmutableList.<Integer>builder();
       int lineStartPos = 0;
-      int lineEndPos = code.indexOf('\n');
-      while (lineEndPos > -1) {
-        builder.add(lineEndPos - lineStartPos);
-        // Next line starts where current line ends + 1 to skip "\n" character.
-        lineStartPos = lineEndPos + 1;
-        lineEndPos = code.indexOf('\n', lineStartPos);
+      for (int i = 0; i < code.length(); i++) {
+        if (code.charAt(i) == '\n') {
+          builder.add(i - lineStartPos);
+          // Next line starts where current line ends + 1 to skip "\n" character.
+          lineStartPos = i + 1;
+        }
       }
       return builder.build();
     }
@@ -252,28 +356,30 @@ public final class CodePrinter {
      * at the end of line - it is changed to point to the first character on the next line.
      *
      * @param lineLengths List of all line lengths in compiled code.
-     * @param endPosition End position of a mapping.
+     * @param line The line of the end position of a mapping.
+     * @param column The column of the end position of a mapping.
      */
     private static FilePosition adjustEndPosition(
-        List<Integer> lineLengths, FilePosition endPosition) {
-      int line = endPosition.getLine();
+        List<Integer> lineLengths, int line, int column) {
+      checkState(line != OPEN, "A source mapping was not closed");
       // if position points to non-existing line, return it unmodified
       if (line >= lineLengths.size()) {
-        return endPosition;
+        return new FilePosition(line, column);
       }
 
-      Preconditions.checkState(
-          endPosition.getColumn() <= lineLengths.get(line),
-          "End position %s points to a column larger than line length %s",
-          endPosition,
-          lineLengths.get(line));
+      int lineLength = lineLengths.get(line);
+      if (column > lineLength) {
+        throw new IllegalStateException(
+            "End position " + new FilePosition(line, column)
+            + " points to a column larger than line length " + lineLength);
+      }
 
       // if end position points to the column just after the last character on the line -
       // change it to point the first character on the next line
-      if (endPosition.getColumn() == lineLengths.get(line)) {
+      if (column == lineLength) {
         return new FilePosition(line + 1, 0);
       }
-      return endPosition;
+      return new FilePosition(line, column);
     }
   }
 
@@ -292,8 +398,9 @@ public final class CodePrinter {
     private PrettyCodePrinter(
         int lineLengthThreshold,
         boolean createSourceMap,
-        SourceMap.DetailLevel sourceMapDetailLevel) {
-      super(lineLengthThreshold, createSourceMap, sourceMapDetailLevel);
+        SourceMap.DetailLevel sourceMapDetailLevel,
+        Appendable out) {
+      super(lineLengthThreshold, createSourceMap, sourceMapDetailLevel, out);
     }
 
     /**
@@ -304,11 +411,11 @@ public final class CodePrinter {
       // For pretty printing: indent at the beginning of the line
       if (lineLength == 0) {
         for (int i = 0; i < indent; i++) {
-          code.append(INDENT);
+          appendCode(INDENT);
           lineLength += INDENT.length();
         }
       }
-      code.append(str);
+      appendCode(str);
       lineLength += str.length();
       // Correct lineIndex and lineLength if there were newlines in the string.
       int newlines = CharMatcher.is('\n').countIn(str);
@@ -365,9 +472,10 @@ public final class CodePrinter {
     @Override
     void startNewLine() {
       if (lineLength > 0) {
-        code.append('\n');
+        appendCode('\n');
         lineIndex++;
         lineLength = 0;
+        maybeFlush();
       }
     }
 
@@ -580,8 +688,9 @@ public final class CodePrinter {
    */
     private CompactCodePrinter(boolean lineBreak,
         boolean preferLineBreakAtEndOfFile, int lineLengthThreshold,
-        boolean createSrcMap, SourceMap.DetailLevel sourceMapDetailLevel) {
-      super(lineLengthThreshold, createSrcMap, sourceMapDetailLevel);
+        boolean createSrcMap, SourceMap.DetailLevel sourceMapDetailLevel,
+        Appendable out) {
+      super(lineLengthThreshold, createSrcMap, sourceMapDetailLevel, out);
       this.lineBreak = lineBreak;
       this.preferLineBreakAtEndOfFile = preferLineBreakAtEndOfFile;
     }
@@ -591,7 +700,7 @@ public final class CodePrinter {
      */
     @Override
     void append(String str) {
-      code.append(str);
+      appendCode(str);
       lineLength += str.length();
       // Correct lineIndex and lineLength if there were newlines in the string.
       int newlines = CharMatcher.is('\n').countIn(str);
@@ -607,15 +716,23 @@ public final class CodePrinter {
     @Override
     void startNewLine() {
       if (lineLength > 0) {
-        prevCutPosition = code.length();
+        prevCutPosition = getCodeLength();
         prevLineStartPosition = lineStartPosition;
-        code.append('\n');
+        appendCode('\n');
         lineLength = 0;
         lineIndex++;
-        lineStartPosition = code.length();
+        lineStartPosition = getCodeLength();
+        maybeFlush();
       }
     }
 
+    @Override
+    int getFirstChangeablePosition() {
+      // endFile may undo the last line cut, which joins the previous line
+      // with the current one.
+      return prevLineStartPosition;
+    }
+
     @Override
     void maybeLineBreak() {
       if (lineBreak) {
@@ -628,9 +745,9 @@ public final class CodePrinter {
       // Since we are at a legal line break, can we upgrade the
       // preferred break position?  We prefer to break after a
       // semicolon rather than before it.
-      int len = code.length();
+      int len = getCodeLength();
       if (preferredBreakPosition == len - 1) {
-        char ch = code.charAt(len - 1);
+        char ch = charAt(len - 1);
         if (ch == ';') {
           preferredBreakPosition = len;
         }
@@ -649,13 +766,14 @@ public final class CodePrinter {
         if (preferredBreakPosition > lineStartPosition &&
             preferredBreakPosition < lineStartPosition + lineLength) {
           int position = preferredBreakPosition;
-          code.insert(position, '\n');
+          insert(position, '\n');
           prevCutPosition = position;
           reportLineCut(lineIndex, position - lineStartPosition, true);
           lineIndex++;
           lineLength -= (position - lineStartPosition);
           prevLineStartPosition = lineStartPosition;
           lineStartPosition = position + 1;
+          maybeFlush();
         } else {
           startNewLine();
         }
@@ -664,7 +782,7 @@ public final class CodePrinter {
 
     @Override
     void notePreferredLineBreak() {
-      preferredBreakPosition = code.length();
+      preferredBreakPosition = getCodeLength();
     }
 
     @Override
@@ -681,9 +799,9 @@ public final class CodePrinter {
         // Shift the previous break to end of file by replacing it with a
         // <space> and adding a new break at end of file. Adding the space
         // handles cases like instanceof\nfoo. (it would be nice to avoid this)
-        code.setCharAt(prevCutPosition, ' ');
+        setCharAt(prevCutPosition, ' ');
         lineStartPosition = prevLineStartPosition;
-        lineLength = code.length() - lineStartPosition;
+        lineLength = getCodeLength() - lineStartPosition;
         // We need +1 to account for the space added few lines above.
         int prevLineEndPosition = prevCutPosition - prevLineStartPosition + 1;
         reportLineCut(lineIndex, prevLineEndPosition, false);
@@ -820,6 +938,27 @@ public final class CodePrinter {
      * Generates the source code and returns it.
      */
     public String build() {
+      return print(null).getCode();
+    }
+
+    /**
+     * Generates the source code and writes it to {@code out} as it goes,
+     * instead of keeping all of it in memory. The source map, if any, is
+     * complete when this returns.
+     */
+    public void writeTo(Appendable out) throws IOException {
+      checkNotNull(out);
+      try {
+        print(out).flushAll();
+      } catch (RuntimeException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw e;
+      }
+    }
+
+    private MappedCodePrinter print(Appendable out) {
       if (root == null) {
         throw new IllegalStateException(
             "Cannot build without root node being specified");
@@ -834,7 +973,8 @@ public final class CodePrinter {
           tagAsExterns,
           tagAsStrict,
           lineBreak,
-          codeGeneratorFactory);
+          codeGeneratorFactory,
+          out);
     }
   }
 
@@ -857,8 +997,12 @@ public final class CodePrinter {
     }
   }
 
-  /** Converts a tree to JS code */
-  private static String toSource(
+  /**
+   * Converts a tree to JS code. If out is null, the code is kept by the
+   * returned printer, otherwise it is written to out, except for the last
+   * lines which are written by {@link MappedCodePrinter#flushAll}.
+   */
+  private static MappedCodePrinter toSource(
       Node root,
       Format outputFormat,
       CompilerOptions options,
@@ -867,7 +1011,8 @@ public final class CodePrinter {
       boolean tagAsExterns,
       boolean tagAsStrict,
       boolean lineBreak,
-      CodeGeneratorFactory codeGeneratorFactory) {
+      CodeGeneratorFactory codeGeneratorFactory,
+      Appendable out) {
     checkState(options.sourceMapDetailLevel != null);
 
     boolean createSourceMap = (sourceMap != null);
@@ -878,11 +1023,13 @@ public final class CodePrinter {
             options.preferLineBreakAtEndOfFile,
             options.lineLengthThreshold,
             createSourceMap,
-            options.sourceMapDetailLevel)
+            options.sourceMapDetailLevel,
+            out)
         : new PrettyCodePrinter(
             options.lineLengthThreshold,
             createSourceMap,
-            options.sourceMapDetailLevel);
+            options.sourceMapDetailLevel,
+            out);
     CodeGenerator cg = codeGeneratorFactory.getCodeGenerator(outputFormat, mcp);
 
     if (tagAsExterns) {
@@ -898,12 +1045,10 @@ public final class CodePrinter {
     cg.add(root);
     mcp.endFile();
 
-    String code = mcp.getCode();
-
     if (createSourceMap) {
-      mcp.generateSourceMap(code, sourceMap);
+      mcp.generateSourceMap(sourceMap);
     }
 
-    return code;
+    return mcp;
   }
 }
@@ -51,6 +51,7 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -120,6 +121,10 @@ public class CommandLineRunner extends
   public static final String OUTPUT_MARKER =
       AbstractCommandLineRunner.OUTPUT_MARKER;
 
+  // Passed by build systems to start the compiler as a persistent worker, see
+  // AbstractCommandLineRunner#runPersistentWorker.
+  private static final String PERSISTENT_WORKER_FLAG = "--persistent_worker";
+
   // UTF-8 BOM is 0xEF, 0xBB, 0xBF, of which character code is 65279.
   public static final int UTF8_BOM_CODE = 65279;
 
@@ -332,7 +337,8 @@ public class CommandLineRunner extends
     @Option(name = "--source_map_format",
         hidden = true,
         usage = "The source map format to produce. "
-        + "Options are V3 and DEFAULT, which are equivalent.")
+        + "Options are V3 and DEFAULT, which are equivalent, and V3_COMPACT, "
+        + "which produces the same source maps using less memory.")
     private SourceMap.Format sourceMapFormat = SourceMap.Format.DEFAULT;
 
     @Option(name = "--source_map_location_mapping",
@@ -661,6 +667,12 @@ public class CommandLineRunner extends
     private CompilerOptions.TracerMode tracerMode =
         CompilerOptions.TracerMode.OFF;
 
+    @Option(name = "--tracer_json_output",
+        hidden = true,
+        usage = "File where the per-pass runtime, allocation, CPU and GC data "
+        + "collected by --tracer_mode is written as JSON.")
+    private String tracerJsonOutput = "";
+
     @Option(name = "--new_type_inf",
         handler = BooleanOptionHandler.class,
         usage = "Checks for type errors using the new type inference algorithm.")
@@ -1581,6 +1593,7 @@ public class CommandLineRunner extends
           .setEntryPoints(entryPoints)
           .setOutputManifest(ImmutableList.of(flags.outputManifest))
           .setOutputModuleDependencies(flags.outputModuleDependencies)
+          .setTracerJsonOutput(flags.tracerJsonOutput)
           .setProcessCommonJSModules(flags.processCommonJsModules)
           .setModuleRoots(moduleRoots)
           .setTransformAMDToCJSModules(flags.transformAmdModules)
@@ -1938,6 +1951,7 @@ public class CommandLineRunner extends
    * @return Whether the configuration is valid and specifies to run the
    *         compiler.
    */
+  @Override
   public boolean shouldRunCompiler() {
     return this.runCompiler;
   }
@@ -1945,6 +1959,7 @@ public class CommandLineRunner extends
   /**
    * @return Whether the configuration has errors.
    */
+  @Override
   public boolean hasErrors() {
     return this.errors;
   }
@@ -1953,6 +1968,25 @@ public class CommandLineRunner extends
    * Runs the Compiler. Exits cleanly in the event of an error.
    */
   public static void main(String[] args) {
+    if (Arrays.asList(args).contains(PERSISTENT_WORKER_FLAG)) {
+      try {
+        runPersistentWorker(
+            System.in,
+            System.out,
+            new WorkerRunnerFactory() {
+              @Override
+              public CommandLineRunner create(
+                  String[] requestArgs, InputStream in, PrintStream out, PrintStream err) {
+                return new CommandLineRunner(requestArgs, in, out, err);
+              }
+            });
+      } catch (IOException e) {
+        e.printStackTrace();
+        System.exit(-2);
+      }
+      return;
+    }
+
     CommandLineRunner runner = new CommandLineRunner(args);
     if (runner.shouldRunCompiler()) {
       runner.run();
@@ -23,9 +23,11 @@ import com.google.common.annotations.GwtIncompatible;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.debugging.sourcemap.SourceMapConsumerV3;
 import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
 import com.google.javascript.jscomp.CompilerOptions.DevMode;
@@ -45,15 +47,19 @@ import com.google.javascript.jscomp.type.ChainableReverseAbstractInterpreter;
 import com.google.javascript.jscomp.type.ClosureReverseAbstractInterpreter;
 import com.google.javascript.jscomp.type.ReverseAbstractInterpreter;
 import com.google.javascript.jscomp.type.SemanticReverseAbstractInterpreter;
+import com.google.javascript.rhino.CompactAstReader;
+import com.google.javascript.rhino.CompactAstWriter;
 import com.google.javascript.rhino.ErrorReporter;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.InputId;
 import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.JSDocInfoBuilder;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.ThreadLocalValue;
 import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.TypeIRegistry;
 import com.google.javascript.rhino.jstype.JSTypeRegistry;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -144,6 +150,19 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
   // error manager to which error management is delegated
   private ErrorManager errorManager;
 
+  // Collects the errors reported on a worker thread of a parallel phase, until they are replayed
+  // on the compiler thread. Unset when not running on such a worker.
+  private final ThreadLocalValue<DeferredErrorManager> deferredErrorManager =
+      new ThreadLocalValue<>();
+
+  // Collects the change scopes reported on a worker thread of a parallel phase, until they are
+  // replayed on the compiler thread. Unset when not running on such a worker.
+  private final ThreadLocalValue<DeferredChangeReports> deferredChangeReports =
+      new ThreadLocalValue<>();
+
+  // Control flow graphs shared by passes, only set during the optimization loops.
+  private ControlFlowGraphCache cfgCache = null;
+
   // Warnings guard for filtering warnings.
   private WarningsGuard warningsGuard;
 
@@ -550,18 +569,40 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     inputSourceMaps.putAll(options.inputSourceMaps);
     // Create the source map if necessary.
     if (options.sourceMapOutputPath != null) {
-      sourceMap = options.sourceMapFormat.getInstance();
-      sourceMap.setPrefixMappings(options.sourceMapLocationMappings);
-      if (options.applyInputSourceMaps) {
-        sourceMap.setSourceFileMapping(this);
-      }
+      sourceMap = createSourceMap();
+    }
+  }
+
+  /**
+   * Creates a source map set up like the compiler's own source map.
+   */
+  SourceMap createSourceMap() {
+    SourceMap newSourceMap = options.sourceMapFormat.getInstance();
+    newSourceMap.setPrefixMappings(options.sourceMapLocationMappings);
+    if (options.applyInputSourceMaps) {
+      newSourceMap.setSourceFileMapping(this);
     }
+    return newSourceMap;
   }
 
   private <T extends SourceFile> List<CompilerInput> makeExternInputs(List<T> externSources) {
     List<CompilerInput> inputs = new ArrayList<>(externSources.size());
+    PersistentInputStore store = getPersistentInputStore();
+    // Comments are recorded on the compiler while parsing, so they would be missing from copies.
+    boolean reuseAsts = !options.preservesDetailedSourceInfo();
+    String parserConfigKey = null;
     for (SourceFile file : externSources) {
-      inputs.add(new CompilerInput(file, /* extern= */ true));
+      CompilerInput input = null;
+      if (reuseAsts && (store != null || SharedExterns.isShared(file))) {
+        if (parserConfigKey == null) {
+          parserConfigKey = getParserConfig(ConfigContext.EXTERNS).toCacheKey();
+        }
+        input = SharedExterns.getExternInput(file, parserConfigKey);
+        if (input == null && store != null) {
+          input = store.getCachedExternInput(file, parserConfigKey);
+        }
+      }
+      inputs.add(input != null ? input : new CompilerInput(file, /* extern= */ true));
     }
     return inputs;
   }
@@ -1279,7 +1320,7 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
   /**
    * Creates a new id for making unique names.
    */
-  private int nextUniqueNameId() {
+  private synchronized int nextUniqueNameId() {
     return uniqueNameId++;
   }
 
@@ -1756,6 +1797,9 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
 
         // Modules inferred in ProcessCommonJS pass.
         if (options.transformAMDToCJSModules || options.processCommonJSModules) {
+          if (options.numParallelThreads > 1) {
+            new PrebuildAst(this, options.numParallelThreads).prebuild(inputs);
+          }
           processAMDAndCommonJSModules();
         }
 
@@ -1790,6 +1834,9 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
         this.moduleLoader = ModuleLoader.EMPTY;
       }
 
+      if (options.numParallelThreads > 1) {
+        prebuildForOrdering();
+      }
       orderInputs();
 
       // If in IDE mode, we ignore the error and keep going.
@@ -1843,6 +1890,29 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     }
   }
 
+  /**
+   * Does the work {@link #orderInputs} needs from each input ahead of time, on several threads.
+   * With dependency management, only the dependency info is needed to sort and prune the inputs, so
+   * only the inputs that might be hoisted as externs are parsed. Without it every input is checked
+   * for an @externs annotation, which requires parsing all of them.
+   */
+  private void prebuildForOrdering() {
+    PrebuildAst prebuildAst = new PrebuildAst(this, options.numParallelThreads);
+    if (!options.dependencyOptions.needsManagement()) {
+      prebuildAst.prebuild(inputs);
+      return;
+    }
+
+    prebuildAst.prebuildDependencyInfo(inputs);
+    List<CompilerInput> maybeExterns = new ArrayList<>();
+    for (CompilerInput input : inputs) {
+      if (input.getProvides().isEmpty() && input.getRequires().isEmpty()) {
+        maybeExterns.add(input);
+      }
+    }
+    prebuildAst.prebuild(maybeExterns);
+  }
+
   void orderInputsWithLargeStack() {
     runInCompilerThread(new Callable<Void>() {
       @Override
@@ -2042,7 +2112,9 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
       }
     }
     if (options.numParallelThreads > 1) {
-      new PrebuildAst(this, options.numParallelThreads).prebuild(filteredInputs);
+      PrebuildAst prebuildAst = new PrebuildAst(this, options.numParallelThreads);
+      prebuildAst.prebuild(filteredInputs);
+      prebuildAst.prebuildDependencyInfo(filteredInputs);
     }
     for (CompilerInput input : filteredInputs) {
       input.setCompiler(this);
@@ -2140,13 +2212,31 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
    */
   @Override
   public String toSource() {
-    return runInCompilerThread(
-        new Callable<String>() {
+    CodeBuilder cb = new CodeBuilder();
+    toSource(cb);
+    return cb.toString();
+  }
+
+  /**
+   * Writes the JS code of the main parse tree to {@code out} as it is
+   * generated, instead of building all of it in memory first.
+   */
+  public void toSource(Appendable out) throws IOException {
+    try {
+      toSource(new CodeBuilder(out));
+    } catch (RuntimeException e) {
+      throwIfIOException(e);
+      throw e;
+    }
+  }
+
+  private void toSource(final CodeBuilder cb) {
+    runInCompilerThread(
+        new Callable<Void>() {
           @Override
-          public String call() throws Exception {
+          public Void call() throws Exception {
             Tracer tracer = newTracer("toSource");
             try {
-              CodeBuilder cb = new CodeBuilder();
               if (jsRoot != null) {
                 int i = 0;
                 if (options.shouldPrintExterns()) {
@@ -2162,7 +2252,7 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
                   toSource(cb, i++, scriptNode);
                 }
               }
-              return cb.toString();
+              return null;
             } finally {
               stopTracer(tracer, "toSource");
             }
@@ -2170,6 +2260,13 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
         });
   }
 
+  /** Rethrows the I/O error of a CodeBuilder writing to an Appendable, if that's the cause. */
+  private static void throwIfIOException(RuntimeException e) throws IOException {
+    if (e.getCause() instanceof IOException) {
+      throw (IOException) e.getCause();
+    }
+  }
+
   /**
    * Converts the parse tree for each input back to JS code.
    */
@@ -2200,28 +2297,61 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
    * Converts the parse tree for a module back to JS code.
    */
   public String toSource(final JSModule module) {
-    return runInCompilerThread(new Callable<String>() {
+    CodeBuilder cb = new CodeBuilder();
+    toSource(module, cb);
+    return cb.toString();
+  }
+
+  /**
+   * Writes the JS code of a module to {@code out} as it is generated, instead
+   * of building all of it in memory first.
+   */
+  public void toSource(JSModule module, Appendable out) throws IOException {
+    try {
+      toSource(module, new CodeBuilder(out));
+    } catch (RuntimeException e) {
+      throwIfIOException(e);
+      throw e;
+    }
+  }
+
+  private void toSource(final JSModule module, final CodeBuilder cb) {
+    runInCompilerThread(new Callable<Void>() {
       @Override
-      public String call() throws Exception {
-        List<CompilerInput> inputs = module.getInputs();
-        int numInputs = inputs.size();
-        if (numInputs == 0) {
-          return "";
-        }
-        CodeBuilder cb = new CodeBuilder();
-        for (int i = 0; i < numInputs; i++) {
-          Node scriptNode = inputs.get(i).getAstRoot(Compiler.this);
-          if (scriptNode == null) {
-            throw new IllegalArgumentException(
-                "Bad module: " + module.getName());
-          }
-          toSource(cb, i, scriptNode);
-        }
-        return cb.toString();
+      public Void call() throws Exception {
+        printModule(module, cb, sourceMap);
+        return null;
       }
     });
   }
 
+  /**
+   * Converts the parse tree for a module back to JS code, recording its
+   * mappings in the given source map instead of the compiler's.
+   *
+   * <p>Unlike the other toSource methods, this runs on the calling thread, so
+   * that {@link ParallelModulePrinter} can print several modules at once. The
+   * caller must make sure the thread has a large enough stack.
+   */
+  String toSource(JSModule module, @Nullable SourceMap moduleSourceMap) {
+    CodeBuilder cb = new CodeBuilder();
+    printModule(module, cb, moduleSourceMap);
+    return cb.toString();
+  }
+
+  private void printModule(JSModule module, CodeBuilder cb, @Nullable SourceMap moduleSourceMap) {
+    List<CompilerInput> inputs = module.getInputs();
+    int numInputs = inputs.size();
+    for (int i = 0; i < numInputs; i++) {
+      Node scriptNode = inputs.get(i).getAstRoot(this);
+      if (scriptNode == null) {
+        throw new IllegalArgumentException(
+            "Bad module: " + module.getName());
+      }
+      printInput(cb, i, scriptNode, moduleSourceMap);
+    }
+  }
+
 
   /**
    * Converts the parse tree for each input in a module back to JS code.
@@ -2268,60 +2398,68 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
         new Callable<Void>() {
           @Override
           public Void call() throws Exception {
-            if (options.printInputDelimiter) {
-              if ((cb.getLength() > 0) && !cb.endsWith("\n")) {
-                cb.append("\n"); // Make sure that the label starts on a new line
-              }
-              checkState(root.isScript());
+            printInput(cb, inputSeqNum, root, sourceMap);
+            return null;
+          }
+        });
+  }
 
-              String delimiter = options.inputDelimiter;
+  private void printInput(
+      CodeBuilder cb, int inputSeqNum, Node root, @Nullable SourceMap outputSourceMap) {
+    if (options.printInputDelimiter) {
+      if ((cb.getLength() > 0) && cb.getLastChar() != '\n') {
+        cb.append("\n"); // Make sure that the label starts on a new line
+      }
+      checkState(root.isScript());
 
-              String inputName = root.getInputId().getIdName();
-              String sourceName = root.getSourceFileName();
-              checkState(sourceName != null);
-              checkState(!sourceName.isEmpty());
+      String delimiter = options.inputDelimiter;
 
-              delimiter =
-                  delimiter
-                      .replace("%name%", Matcher.quoteReplacement(inputName))
-                      .replace("%num%", String.valueOf(inputSeqNum))
-                      .replace("%n%", "\n");
+      String inputName = root.getInputId().getIdName();
+      String sourceName = root.getSourceFileName();
+      checkState(sourceName != null);
+      checkState(!sourceName.isEmpty());
 
-              cb.append(delimiter).append("\n");
-            }
-            if (root.getJSDocInfo() != null) {
-              String license = root.getJSDocInfo().getLicense();
-              if (license != null && cb.addLicense(license)) {
-                cb.append("/*\n").append(license).append("*/\n");
-              }
-            }
+      delimiter =
+          delimiter
+              .replace("%name%", Matcher.quoteReplacement(inputName))
+              .replace("%num%", String.valueOf(inputSeqNum))
+              .replace("%n%", "\n");
 
-            // If there is a valid source map, then indicate to it that the current
-            // root node's mappings are offset by the given string builder buffer.
-            if (options.sourceMapOutputPath != null) {
-              sourceMap.setStartingPosition(cb.getLineIndex(), cb.getColumnIndex());
-            }
+      cb.append(delimiter).append("\n");
+    }
+    if (root.getJSDocInfo() != null) {
+      String license = root.getJSDocInfo().getLicense();
+      if (license != null && cb.addLicense(license)) {
+        cb.append("/*\n").append(license).append("*/\n");
+      }
+    }
 
-            // if LanguageMode is strict, only print 'use strict'
-            // for the first input file
-            String code = toSource(root, sourceMap, inputSeqNum == 0);
-            if (!code.isEmpty()) {
-              cb.append(code);
-
-              // In order to avoid parse ambiguity when files are concatenated
-              // together, all files should end in a semi-colon. Do a quick
-              // heuristic check if there's an obvious semi-colon already there.
-              int length = code.length();
-              char lastChar = code.charAt(length - 1);
-              char secondLastChar = length >= 2 ? code.charAt(length - 2) : '\0';
-              boolean hasSemiColon = lastChar == ';' || (lastChar == '\n' && secondLastChar == ';');
-              if (!hasSemiColon) {
-                cb.append(";");
-              }
-            }
-            return null;
-          }
-        });
+    // If there is a valid source map, then indicate to it that the current
+    // root node's mappings are offset by the given string builder buffer.
+    if (outputSourceMap != null) {
+      outputSourceMap.setStartingPosition(cb.getLineIndex(), cb.getColumnIndex());
+    }
+
+    // if LanguageMode is strict, only print 'use strict'
+    // for the first input file
+    int startLength = cb.getLength();
+    try {
+      createCodePrinter(root, outputSourceMap, inputSeqNum == 0).writeTo(cb);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    int length = cb.getLength() - startLength;
+    if (length > 0) {
+      // In order to avoid parse ambiguity when files are concatenated
+      // together, all files should end in a semi-colon. Do a quick
+      // heuristic check if there's an obvious semi-colon already there.
+      char lastChar = cb.getLastChar();
+      char secondLastChar = length >= 2 ? cb.getSecondLastChar() : '\0';
+      boolean hasSemiColon = lastChar == ';' || (lastChar == '\n' && secondLastChar == ';');
+      if (!hasSemiColon) {
+        cb.append(";");
+      }
+    }
   }
 
   /**
@@ -2331,13 +2469,14 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
   @Override
   public String toSource(Node n) {
     initCompilerOptionsIfTesting();
-    return toSource(n, null, true);
+    return createCodePrinter(n, null, true).build();
   }
 
   /**
-   * Generates JavaScript source code for an AST.
+   * Creates a printer of JavaScript source code for an AST.
    */
-  private String toSource(Node n, SourceMap sourceMap, boolean firstOutput) {
+  private CodePrinter.Builder createCodePrinter(
+      Node n, SourceMap sourceMap, boolean firstOutput) {
     CodePrinter.Builder builder = new CodePrinter.Builder(n);
     builder.setTypeRegistry(getTypeIRegistry());
     builder.setCompilerOptions(options);
@@ -2345,27 +2484,62 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     builder.setTagAsExterns(n.isFromExterns());
     builder.setTagAsTypeSummary(options.shouldGenerateTypedExterns());
     builder.setTagAsStrict(firstOutput && options.shouldEmitUseStrict());
-    return builder.build();
+    return builder;
   }
 
   /**
    * Stores a buffer of text to which more can be appended.  This is just like a
    * StringBuilder except that we also track the number of lines.
    */
-  public static class CodeBuilder {
-    private final StringBuilder sb = new StringBuilder();
+  public static class CodeBuilder implements Appendable {
+    // Null when the text is written to an Appendable given by the caller.
+    private final StringBuilder sb;
+    private final Appendable out;
+    private int length = 0;
+    private char lastChar = '\0';
+    private char secondLastChar = '\0';
     private int lineCount = 0;
     private int colCount = 0;
     private final Set<String> uniqueLicenses = new HashSet<>();
 
+    public CodeBuilder() {
+      this.sb = new StringBuilder();
+      this.out = sb;
+    }
+
+    /**
+     * Creates a builder that writes the text to {@code out} instead of keeping
+     * it. I/O errors are rethrown wrapped in a RuntimeException.
+     */
+    public CodeBuilder(Appendable out) {
+      this.sb = null;
+      this.out = checkNotNull(out);
+    }
+
     /** Removes all text, but leaves the line count unchanged. */
     void reset() {
+      checkState(sb != null, "Can't reset text that was written out");
       sb.setLength(0);
+      length = 0;
+      lastChar = '\0';
+      secondLastChar = '\0';
     }
 
     /** Appends the given string to the text buffer. */
     CodeBuilder append(String str) {
-      sb.append(str);
+      try {
+        out.append(str);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      length += str.length();
+      if (str.length() >= 2) {
+        secondLastChar = str.charAt(str.length() - 2);
+        lastChar = str.charAt(str.length() - 1);
+      } else if (str.length() == 1) {
+        secondLastChar = lastChar;
+        lastChar = str.charAt(0);
+      }
 
       // Adjust the line and column information for the new text.
       int index = -1;
@@ -2385,15 +2559,31 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
       return this;
     }
 
+    @Override
+    public CodeBuilder append(CharSequence csq) {
+      return append(String.valueOf(csq));
+    }
+
+    @Override
+    public CodeBuilder append(CharSequence csq, int start, int end) {
+      return append(String.valueOf(csq).substring(start, end));
+    }
+
+    @Override
+    public CodeBuilder append(char c) {
+      return append(String.valueOf(c));
+    }
+
     /** Returns all text in the text buffer. */
     @Override
     public String toString() {
+      checkState(sb != null, "The text was written out");
       return sb.toString();
     }
 
     /** Returns the length of the text buffer. */
     public int getLength() {
-      return sb.length();
+      return length;
     }
 
     /** Returns the (zero-based) index of the last line in the text buffer. */
@@ -2406,10 +2596,14 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
       return colCount;
     }
 
-    /** Determines whether the text ends with the given suffix. */
-    boolean endsWith(String suffix) {
-      return (sb.length() > suffix.length())
-          && suffix.equals(sb.substring(sb.length() - suffix.length()));
+    /** Returns the last character of the text, or \0 if it's empty. */
+    char getLastChar() {
+      return lastChar;
+    }
+
+    /** Returns the character before the last one, or \0 if there's none. */
+    char getSecondLastChar() {
+      return secondLastChar;
     }
 
     /** Adds a license and returns whether it is unique (has yet to be encountered). */
@@ -2564,6 +2758,11 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
 
   @Override
   void setChangeScope(Node newChangeScopeRoot) {
+    DeferredChangeReports deferred = deferredChangeReports.get();
+    if (deferred != null) {
+      deferred.setChangeScope(newChangeScopeRoot);
+      return;
+    }
     currentChangeScope = newChangeScopeRoot;
   }
 
@@ -2618,12 +2817,23 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
   @Deprecated
   @Override
   public void reportCodeChange() {
+    DeferredChangeReports deferred = deferredChangeReports.get();
+    if (deferred != null) {
+      checkState(
+          deferred.getChangeScope() != null,
+          "Passes that run on several threads must report changes to a specific scope");
+      deferred.recordChange(deferred.getChangeScope());
+      return;
+    }
     // TODO(johnlenz): if this is called with a null scope we need to invalidate everything
     // but this isn't done, so we need to make this illegal or record this as having
     // invalidated everything.
     if (currentChangeScope != null) {
       checkState(currentChangeScope.isScript() || currentChangeScope.isFunction());
       recordChange(currentChangeScope);
+    } else if (cfgCache != null) {
+      // We don't know which scope changed, so no cached graph can be trusted.
+      cfgCache.clear();
     }
     notifyChangeHandlers();
   }
@@ -2631,6 +2841,11 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
   @Override
   public void reportChangeToChangeScope(Node changeScopeRoot) {
     checkState(changeScopeRoot.isScript() || changeScopeRoot.isFunction());
+    DeferredChangeReports deferred = deferredChangeReports.get();
+    if (deferred != null) {
+      deferred.recordChange(changeScopeRoot);
+      return;
+    }
     recordChange(changeScopeRoot);
     notifyChangeHandlers();
   }
@@ -2639,13 +2854,24 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
   public void reportFunctionDeleted(Node n) {
     checkState(n.isFunction());
     n.setDeleted(true);
+    DeferredChangeReports deferred = deferredChangeReports.get();
+    if (deferred != null) {
+      deferred.recordFunctionDeleted(n);
+      return;
+    }
     changeTimeline.remove(n);
     deleteTimeline.add(n);
   }
 
   @Override
   public void reportChangeToEnclosingScope(Node n) {
-    recordChange(getChangeScopeForNode(n));
+    Node changeScopeRoot = getChangeScopeForNode(n);
+    DeferredChangeReports deferred = deferredChangeReports.get();
+    if (deferred != null) {
+      deferred.recordChange(changeScopeRoot);
+      return;
+    }
+    recordChange(changeScopeRoot);
     notifyChangeHandlers();
   }
 
@@ -2739,6 +2965,12 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
 
   @Override
   public void report(JSError error) {
+    DeferredErrorManager deferred = deferredErrorManager.get();
+    if (deferred != null) {
+      deferred.deferCompilerReport(error);
+      return;
+    }
+
     CheckLevel level = error.getDefaultLevel();
     if (warningsGuard != null) {
       CheckLevel newLevel = warningsGuard.level(error);
@@ -2860,6 +3092,31 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
   @Override
   @Nullable
   public OriginalMapping getSourceMapping(String sourceName, int lineNumber, int columnNumber) {
+    // The sources of an input source map can have source maps of their own
+    // (e.g. TypeScript compiled by Babel), so follow the chain to the end, but
+    // no further than the number of source maps in case they map to each other.
+    OriginalMapping result = null;
+    for (int i = 0; i < inputSourceMaps.size(); i++) {
+      OriginalMapping mapping = getInputSourceMapping(sourceName, lineNumber, columnNumber);
+      if (mapping == null) {
+        break;
+      }
+      if (result != null
+          && Strings.isNullOrEmpty(mapping.getIdentifier())
+          && !Strings.isNullOrEmpty(result.getIdentifier())) {
+        mapping = mapping.toBuilder().setIdentifier(result.getIdentifier()).build();
+      }
+      result = mapping;
+      sourceName = mapping.getOriginalFile();
+      lineNumber = mapping.getLineNumber();
+      columnNumber = mapping.getColumnPosition();
+    }
+    return result;
+  }
+
+  @Nullable
+  private OriginalMapping getInputSourceMapping(
+      String sourceName, int lineNumber, int columnNumber) {
     if (sourceName == null) {
       return null;
     }
@@ -2881,8 +3138,7 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
 
     // The sourcemap will return a path relative to the sourcemap's file.
     // Translate it to one relative to our base directory.
-    SourceFile source =
-        SourceMapResolver.getRelativePath(sourceMap.getOriginalPath(), result.getOriginalFile());
+    SourceFile source = sourceMap.getOriginalSource(result.getOriginalFile());
     if (source == null) {
       return null;
     }
@@ -3081,7 +3337,34 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     if (options == null) {
       initOptions(new CompilerOptions());
     }
-    return errorManager;
+    DeferredErrorManager deferred = deferredErrorManager.get();
+    return deferred != null ? deferred : errorManager;
+  }
+
+  @Override
+  void setDeferredErrorManagerForCurrentThread(@Nullable DeferredErrorManager deferred) {
+    deferredErrorManager.set(deferred);
+  }
+
+  @Override
+  void setDeferredChangeReportsForCurrentThread(@Nullable DeferredChangeReports deferred) {
+    deferredChangeReports.set(deferred);
+  }
+
+  @Override
+  @GwtIncompatible("java.util.concurrent.ThreadPoolExecutor")
+  ListeningExecutorService getThreadPool() {
+    return compilerExecutor.getThreadPool(options.numParallelThreads);
+  }
+
+  @Override
+  ControlFlowGraphCache getControlFlowGraphCache() {
+    return cfgCache;
+  }
+
+  @Override
+  void setControlFlowGraphCache(@Nullable ControlFlowGraphCache cache) {
+    this.cfgCache = cache;
   }
 
   @Override
@@ -3515,34 +3798,117 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     }
   }
 
+  /**
+   * An {@link ObjectOutputStream} for the part of the compiler state that follows the compact AST:
+   * the types and the rest of the state. It writes each distinct string only once, and writes the
+   * nodes and JSDoc of the compact AST as handles.
+   *
+   * <p>Java serialization only shares objects that are identical, but the same names and property
+   * strings show up as distinct instances all over the types and the type registry. Replacing
+   * every string with a canonical instance turns all but the first occurrence into a back
+   * reference, which in effect gives the serialized state a string table. The strings read back
+   * are shared as well.
+   *
+   * <p>The stream already keeps every object it writes, and every object it replaced, until it is
+   * closed, so the table only adds an entry per distinct string. It stops growing at {@link
+   * #MAX_CANONICAL_STRINGS} entries; later new strings are written as they are.
+   */
+  @GwtIncompatible("ObjectOutputStream")
+  @VisibleForTesting
+  static final class CompilerObjectOutputStream extends ObjectOutputStream {
+    // Far more than the distinct names and JSDoc strings of a large program.
+    @VisibleForTesting static final int MAX_CANONICAL_STRINGS = 1 << 20;
+
+    private final Map<String, String> strings = new HashMap<>();
+    @Nullable private final CompactAstWriter astWriter;
+
+    CompilerObjectOutputStream(OutputStream out) throws IOException {
+      this(out, null);
+    }
+
+    CompilerObjectOutputStream(OutputStream out, @Nullable CompactAstWriter astWriter)
+        throws IOException {
+      super(out);
+      this.astWriter = astWriter;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      if (obj instanceof String) {
+        String str = (String) obj;
+        String canonical = strings.get(str);
+        if (canonical == null) {
+          if (strings.size() < MAX_CANONICAL_STRINGS) {
+            strings.put(str, str);
+          }
+          return str;
+        }
+        return canonical;
+      }
+      return astWriter == null ? obj : astWriter.replaceObject(obj);
+    }
+
+    /** Returns the number of distinct strings written so far, up to the bound. */
+    @VisibleForTesting
+    int getCanonicalStringCount() {
+      return strings.size();
+    }
+  }
+
+  /**
+   * Writes the state of the compiler, so that another compiler can pick up the compilation with
+   * {@link #restoreState}.
+   *
+   * <p>The AST and its JSDoc are written in the compact format of {@link CompactAstWriter}. The
+   * types and the rest of the state follow with Java serialization, and refer to the nodes and
+   * JSDoc of the AST by handle.
+   */
   @GwtIncompatible("ObjectOutputStream")
   public void saveState(OutputStream outputStream) throws IOException {
     // Do not close the outputstream, caller is responsible for closing it.
-    final ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
+    final OutputStream out = new BufferedOutputStream(outputStream);
     runInCompilerThread(new Callable<Void>() {
       @Override
       public Void call() throws Exception {
         Tracer tracer = newTracer("serializeCompilerState");
+        CompactAstWriter astWriter = new CompactAstWriter(out);
+        astWriter.writeTree(externAndJsRoot);
+        ObjectOutputStream objectOutputStream = new CompilerObjectOutputStream(out, astWriter);
+        objectOutputStream.writeObject(astWriter.getObjectTable());
         objectOutputStream.writeObject(new CompilerState(Compiler.this));
         if (typeRegistry != null) {
           typeRegistry.saveContents(objectOutputStream);
         }
+        objectOutputStream.flush();
         stopTracer(tracer, "serializeCompilerState");
         return null;
       }
     });
   }
 
+  /** Restores the state written by {@link #saveState}. */
   @GwtIncompatible("ObjectInputStream")
-  public void restoreState(InputStream inputStream) throws IOException, ClassNotFoundException  {
+  public void restoreState(final InputStream inputStream)
+      throws IOException, ClassNotFoundException {
     initWarningsGuard(options.getWarningsGuard());
     maybeSetTracker();
 
     List<JSModule> newModules = modules;
 
     class CompilerObjectInputStream extends ObjectInputStream implements HasCompiler {
-      public CompilerObjectInputStream(InputStream in) throws IOException {
+      private final CompactAstReader astReader;
+
+      public CompilerObjectInputStream(InputStream in, CompactAstReader astReader)
+          throws IOException {
         super(in);
+        this.astReader = astReader;
+        enableResolveObject(true);
+      }
+
+      @Override
+      protected Object resolveObject(Object obj) {
+        return astReader.resolveObject(obj);
       }
 
       @Override
@@ -3552,13 +3918,18 @@ public class Compiler extends AbstractCompiler implements ErrorHandler, SourceFi
     }
 
     // Do not close the input stream, caller is responsible for closing it.
-    final ObjectInputStream objectInputStream = new CompilerObjectInputStream(inputStream);
     CompilerState compilerState =
         runInCompilerThread(
             new Callable<CompilerState>() {
               @Override
               public CompilerState call() throws Exception {
                 Tracer tracer = newTracer(PassNames.DESERIALIZE_COMPILER_STATE);
+                CompactAstReader astReader = new CompactAstReader(inputStream);
+                // The state refers to the AST by handle, so the root is not needed here.
+                astReader.readTree();
+                ObjectInputStream objectInputStream =
+                    new CompilerObjectInputStream(inputStream, astReader);
+                astReader.setObjectTable((Object[]) objectInputStream.readObject());
                 CompilerState compilerState = (CompilerState) objectInputStream.readObject();
                 if (compilerState.typeRegistry != null) {
                   compilerState.typeRegistry.restoreContents(objectInputStream);
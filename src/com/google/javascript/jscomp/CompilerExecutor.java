@@ -20,12 +20,16 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Throwables.throwIfUnchecked;
 
 import com.google.common.annotations.GwtIncompatible;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -35,6 +39,9 @@ class CompilerExecutor {
   // of the tree.
   static final long COMPILER_STACK_SIZE = (1 << 25); // About 32MB
 
+  // How long an idle worker thread of a parallel phase is kept around.
+  private static final long WORKER_KEEP_ALIVE_SECONDS = 60;
+
   /**
    * Use a dedicated compiler thread per Compiler instance.
    */
@@ -45,6 +52,11 @@ class CompilerExecutor {
 
   private int timeout = 0;
 
+  /** The worker threads shared by the passes of this compiler, created when first needed. */
+  private ListeningExecutorService threadPool = null;
+
+  private int threadPoolSize = 0;
+
   /**
    * Under JRE 1.6, the JS Compiler overflows the stack when running on some
    * large or complex JS code. When threads are available, we run all compile
@@ -69,6 +81,49 @@ class CompilerExecutor {
     });
   }
 
+  /**
+   * Creates a pool of {@code numThreads} worker threads with the stack size of the compiler
+   * thread. The threads are daemons and stop once idle for a while, so the pool need not be shut
+   * down.
+   */
+  @GwtIncompatible("java.util.concurrent.ThreadPoolExecutor")
+  static ListeningExecutorService newThreadPool(final String name, int numThreads) {
+    ThreadFactory threadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(null, r, name, COMPILER_STACK_SIZE);
+          t.setDaemon(true);  // Do not prevent the JVM from exiting.
+          return t;
+        }
+    };
+    ThreadPoolExecutor poolExecutor = new ThreadPoolExecutor(
+        numThreads,
+        numThreads,
+        WORKER_KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        threadFactory);
+    poolExecutor.allowCoreThreadTimeOut(true);
+    return MoreExecutors.listeningDecorator(poolExecutor);
+  }
+
+  /**
+   * Returns the pool of worker threads shared by the passes of this compiler, for work that is
+   * started many times per compilation, such as on every iteration of the optimization loop. Work
+   * running on the pool must not wait on other work submitted to it.
+   */
+  @GwtIncompatible("java.util.concurrent.ThreadPoolExecutor")
+  synchronized ListeningExecutorService getThreadPool(int numThreads) {
+    if (threadPool == null || threadPoolSize != numThreads) {
+      if (threadPool != null) {
+        threadPool.shutdown();
+      }
+      threadPool = newThreadPool("jscompiler-worker", numThreads);
+      threadPoolSize = numThreads;
+    }
+    return threadPool;
+  }
+
   void disableThreads() {
     useThreads = false;
   }
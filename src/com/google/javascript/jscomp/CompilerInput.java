@@ -239,10 +239,21 @@ public class CompilerInput implements SourceAst, DependencyInfo {
       // this to generate deps files. (We're only using it for
       // symbol dependencies.)
       try {
+        String code = getCode();
+        PersistentParseCache parseCache = compiler.getPersistentParseCache();
         DependencyInfo info =
-            (new JsFileParser(compiler.getErrorManager()))
-            .setIncludeGoogBase(true)
-            .parseFile(getName(), getName(), getCode());
+            parseCache != null ? parseCache.getDependencyInfo(getName(), code) : null;
+        if (info == null) {
+          DeferredErrorManager errorManager = new DeferredErrorManager(compiler);
+          info =
+              (new JsFileParser(errorManager))
+              .setIncludeGoogBase(true)
+              .parseFile(getName(), getName(), code);
+          if (parseCache != null && errorManager.isEmpty()) {
+            parseCache.putDependencyInfo(getName(), code, info);
+          }
+          errorManager.replay(compiler);
+        }
         return new LazyParsedDependencyInfo(info, (JsAst) ast, compiler);
       } catch (IOException e) {
         compiler.getErrorManager().report(CheckLevel.ERROR,
@@ -478,10 +489,11 @@ public class CompilerInput implements SourceAst, DependencyInfo {
   }
 
   /**
-   * Resets the compiler input for reuse in another compile. TODO(tdeegan): Consider clearing the
-   * JsAst here in the future.
+   * Resets the compiler input for reuse in another compile. The AST is dropped because the previous
+   * compile has modified it; the dependency information is kept.
    */
   public void reset() {
     this.module = null;
+    ast.clearAst();
   }
 }
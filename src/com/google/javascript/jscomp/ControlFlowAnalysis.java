@@ -148,6 +148,23 @@ public final class ControlFlowAnalysis implements Callback, CompilerPass {
     return cfa.getCfg();
   }
 
+  /**
+   * Returns the control flow graph of cfgRoot, without traversing inner
+   * functions. While the compiler has a {@link ControlFlowGraphCache}, the
+   * graph is shared with other passes until a change to cfgRoot is reported,
+   * so callers may annotate its nodes but must not modify the graph.
+   */
+  static ControlFlowGraph<Node> getSharedCfg(
+      AbstractCompiler compiler, Node cfgRoot, boolean edgeAnnotations) {
+    ControlFlowGraphCache cache = compiler.getControlFlowGraphCache();
+    if (cache != null && NodeUtil.isChangeScopeRoot(cfgRoot)) {
+      return cache.getCfg(cfgRoot, edgeAnnotations);
+    }
+    ControlFlowAnalysis cfa = new ControlFlowAnalysis(compiler, false, edgeAnnotations);
+    cfa.process(null, cfgRoot);
+    return cfa.getCfg();
+  }
+
   ControlFlowGraph<Node> getCfg() {
     return cfg;
   }
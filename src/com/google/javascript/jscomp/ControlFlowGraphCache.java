@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.javascript.rhino.Node;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the control flow graphs of change scopes (see
+ * {@link NodeUtil#isChangeScopeRoot}) while the scopes don't change, so that
+ * the passes of the optimization loop don't rebuild the same graphs in every
+ * iteration.
+ *
+ * <p>A graph is reused as long as its root has the change time
+ * ({@link Node#getChangeTime}) it had when the graph was built; the compiler
+ * updates it whenever a change to the scope is reported. The graphs don't
+ * include inner functions, so changing an inner function doesn't invalidate
+ * the graph of the enclosing scope.
+ *
+ * <p>Graphs can be requested from several threads at once, as long as no two
+ * threads use the graph of the same scope.
+ */
+final class ControlFlowGraphCache {
+  private final AbstractCompiler compiler;
+  private final ConcurrentMap<Node, CachedCfg> cfgs = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Node, CachedCfg> cfgsWithEdgeAnnotations =
+      new ConcurrentHashMap<>();
+
+  ControlFlowGraphCache(AbstractCompiler compiler) {
+    this.compiler = compiler;
+  }
+
+  /**
+   * Returns the control flow graph of root, which doesn't traverse inner
+   * functions, building it if root changed since it was last built.
+   */
+  ControlFlowGraph<Node> getCfg(Node root, boolean edgeAnnotations) {
+    checkArgument(NodeUtil.isChangeScopeRoot(root), root);
+    ConcurrentMap<Node, CachedCfg> cache = edgeAnnotations ? cfgsWithEdgeAnnotations : cfgs;
+    int changeTime = root.getChangeTime();
+    CachedCfg cached = cache.get(root);
+    if (cached != null && cached.changeTime == changeTime) {
+      return cached.cfg;
+    }
+    ControlFlowAnalysis cfa = new ControlFlowAnalysis(compiler, false, edgeAnnotations);
+    cfa.process(null, root);
+    ControlFlowGraph<Node> cfg = cfa.getCfg();
+    cache.put(root, new CachedCfg(changeTime, cfg));
+    return cfg;
+  }
+
+  /** Drops all the graphs, e.g. after a change that wasn't reported to a specific scope. */
+  void clear() {
+    cfgs.clear();
+    cfgsWithEdgeAnnotations.clear();
+  }
+
+  private static final class CachedCfg {
+    final int changeTime;
+    final ControlFlowGraph<Node> cfg;
+
+    CachedCfg(int changeTime, ControlFlowGraph<Node> cfg) {
+      this.changeTime = changeTime;
+      this.cfg = cfg;
+    }
+  }
+}
@@ -21,23 +21,29 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
+import com.google.javascript.jscomp.JoinOp.InPlaceJoinOp;
 import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
 import com.google.javascript.jscomp.graph.Annotation;
 import com.google.javascript.jscomp.graph.DiGraph.DiGraphNode;
 import com.google.javascript.jscomp.graph.LatticeElement;
 import com.google.javascript.jscomp.parsing.parser.util.format.SimpleFormat;
 import com.google.javascript.rhino.Node;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * A framework to help writing static program analysis. A subclass of
@@ -71,7 +77,8 @@ import java.util.TreeSet;
  * <li>Flow Direction: Implement {@link #isForward()}.
  * <li>Lattice Elements: Implement {@link LatticeElement}.
  * <li>JOIN Operation: Implement
- *    {@link JoinOp#apply}.
+ *    {@link JoinOp#apply}. If the lattice elements are mutable, also implement
+ *    {@link JoinOp.InPlaceJoinOp} so that joins reuse the node's lattice.
  * <li>Flow Equations: Implement
  * {@link #flowThrough(Object, LatticeElement)}.
  * <li>Initial Entry Value: Implement {@link #createEntryLattice()}.
@@ -91,7 +98,9 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
 
   private final ControlFlowGraph<N> cfg;
   final JoinOp<L> joinOp;
-  protected final Set<DiGraphNode<N, Branch>> orderedWorkSet;
+  // The same object as joinOp if it can join in place, null otherwise.
+  private final InPlaceJoinOp<L> inPlaceJoinOp;
+  protected final OrderedWorkSet<N> orderedWorkSet;
 
   /*
    * Feel free to increase this to a reasonable number if you are finding that
@@ -122,15 +131,12 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
    *
    * @see #analyze()
    */
+  @SuppressWarnings("unchecked")
   DataFlowAnalysis(ControlFlowGraph<N> targetCfg, JoinOp<L> joinOp) {
     this.cfg = targetCfg;
     this.joinOp = joinOp;
-    Comparator<DiGraphNode<N, Branch>> nodeComparator = cfg.getOptionalNodeComparator(isForward());
-    if (nodeComparator != null) {
-      this.orderedWorkSet = new TreeSet<>(nodeComparator);
-    } else {
-      this.orderedWorkSet = new LinkedHashSet<>();
-    }
+    this.inPlaceJoinOp = joinOp instanceof InPlaceJoinOp ? (InPlaceJoinOp<L>) joinOp : null;
+    this.orderedWorkSet = new OrderedWorkSet<>();
   }
 
   /**
@@ -203,6 +209,7 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
    *        analysis from going into a infinite loop.
    */
   final void analyze(int maxSteps) {
+    orderedWorkSet.reset(computeFlowOrder());
     initialize();
     int step = 0;
     while (!orderedWorkSet.isEmpty()) {
@@ -210,8 +217,7 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
         throw new MaxIterationsExceededException(
             "Analysis did not terminate after " + maxSteps + " iterations");
       }
-      DiGraphNode<N, Branch> curNode = orderedWorkSet.iterator().next();
-      orderedWorkSet.remove(curNode);
+      DiGraphNode<N, Branch> curNode = orderedWorkSet.removeFirst();
       joinInputs(curNode);
       if (flow(curNode)) {
         // If there is a change in the current node, we want to grab the list
@@ -232,6 +238,69 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
     }
   }
 
+  /**
+   * Returns the nodes of the control flow graph in the order the work set
+   * should hand them out: the order of the graph's node comparator if it has
+   * one, and otherwise reverse postorder in the direction of the flow, so that
+   * a node is usually visited after all the nodes flowing into it.
+   */
+  private List<DiGraphNode<N, Branch>> computeFlowOrder() {
+    List<DiGraphNode<N, Branch>> nodes = new ArrayList<>();
+    Comparator<DiGraphNode<N, Branch>> nodeComparator = cfg.getOptionalNodeComparator(isForward());
+    if (nodeComparator != null) {
+      for (DiGraphNode<N, Branch> node : cfg.getDirectedGraphNodes()) {
+        nodes.add(node);
+      }
+      Collections.sort(nodes, nodeComparator);
+      return nodes;
+    }
+
+    Set<DiGraphNode<N, Branch>> visited = new HashSet<>();
+    addReversePostOrder(isForward() ? cfg.getEntry() : cfg.getImplicitReturn(), visited, nodes);
+    // Nodes that can't be reached in the direction of the flow go last.
+    for (DiGraphNode<N, Branch> node : cfg.getDirectedGraphNodes()) {
+      if (!visited.contains(node)) {
+        addReversePostOrder(node, visited, nodes);
+      }
+    }
+    return nodes;
+  }
+
+  /**
+   * Appends the reverse postorder of the nodes reachable from root that aren't
+   * visited yet. The depth-first search is iterative, as generated code can
+   * have functions with tens of thousands of statements.
+   */
+  private void addReversePostOrder(
+      DiGraphNode<N, Branch> root,
+      Set<DiGraphNode<N, Branch>> visited,
+      List<DiGraphNode<N, Branch>> result) {
+    List<DiGraphNode<N, Branch>> postOrder = new ArrayList<>();
+    Deque<DiGraphNode<N, Branch>> stack = new ArrayDeque<>();
+    Deque<Iterator<DiGraphNode<N, Branch>>> nextNodes = new ArrayDeque<>();
+    visited.add(root);
+    stack.push(root);
+    nextNodes.push(getFlowSuccessors(root).iterator());
+    while (!stack.isEmpty()) {
+      Iterator<DiGraphNode<N, Branch>> iter = nextNodes.peek();
+      if (iter.hasNext()) {
+        DiGraphNode<N, Branch> next = iter.next();
+        if (visited.add(next)) {
+          stack.push(next);
+          nextNodes.push(getFlowSuccessors(next).iterator());
+        }
+      } else {
+        nextNodes.pop();
+        postOrder.add(stack.pop());
+      }
+    }
+    result.addAll(Lists.reverse(postOrder));
+  }
+
+  private List<DiGraphNode<N, Branch>> getFlowSuccessors(DiGraphNode<N, Branch> node) {
+    return isForward() ? cfg.getDirectedSuccNodes(node) : cfg.getDirectedPredNodes(node);
+  }
+
   /**
    * Gets the state of the initial estimation at each node.
    *
@@ -250,9 +319,6 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
    * Initializes the work list and the control flow graph.
    */
   protected void initialize() {
-    // TODO(user): Calling clear doesn't deallocate the memory in a
-    // LinkedHashSet. Consider creating a new work set if we plan to repeatedly
-    // call analyze.
     orderedWorkSet.clear();
     for (DiGraphNode<N, Branch> node : cfg.getDirectedGraphNodes()) {
       node.setAnnotation(new FlowState<>(createInitialEstimateLattice(),
@@ -297,6 +363,10 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
         if (inNodes.size() == 1) {
           FlowState<L> inNodeState = inNodes.get(0).getAnnotation();
           state.setIn(inNodeState.getOut());
+        } else if (inNodes.size() > 1 && inPlaceJoinOp != null) {
+          // The node owns its input lattice, since it has more than one
+          // predecessor, so it can be overwritten.
+          joinInPlace(state.getIn(), inNodes);
         } else if (inNodes.size() > 1) {
           List<L> values = new ArrayList<>(inNodes.size());
           for (DiGraphNode<N, Branch> currentNode : inNodes) {
@@ -316,6 +386,8 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
           FlowState<L> inNodeState = inNode.getAnnotation();
           state.setOut(inNodeState.getIn());
         }
+      } else if (inNodes.size() > 1 && inPlaceJoinOp != null) {
+        joinInPlace(state.getOut(), inNodes);
       } else if (inNodes.size() > 1) {
         List<L> values = new ArrayList<>(inNodes.size());
         for (DiGraphNode<N, Branch> currentNode : inNodes) {
@@ -327,6 +399,78 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
     }
   }
 
+  /**
+   * Overwrites target with the join of the output (input) lattices of the
+   * given predecessors (successors), without allocating a new lattice.
+   */
+  private void joinInPlace(L target, List<DiGraphNode<N, Branch>> inNodes) {
+    boolean first = true;
+    for (DiGraphNode<N, Branch> inNode : inNodes) {
+      FlowState<L> inNodeState = inNode.getAnnotation();
+      L value = isForward() ? inNodeState.getOut() : inNodeState.getIn();
+      if (first) {
+        inPlaceJoinOp.copyInto(target, value);
+        first = false;
+      } else {
+        inPlaceJoinOp.joinInto(target, value);
+      }
+    }
+  }
+
+  /**
+   * The nodes waiting to be flowed through. They are handed out in the order
+   * given to {@link #reset}, lowest position first.
+   *
+   * <p>The nodes are numbered once per analysis, so that adding and removing
+   * a node costs a hash lookup and a bit flip, instead of a balanced tree
+   * operation with a comparator call at each level.
+   *
+   * @param <N> The control flow graph's node value type.
+   */
+  static final class OrderedWorkSet<N> {
+    private final Map<DiGraphNode<N, Branch>, Integer> positions = new HashMap<>();
+    private final List<DiGraphNode<N, Branch>> nodes = new ArrayList<>();
+    private final BitSet pending = new BitSet();
+    // No pending node has a position lower than this.
+    private int lowestPending = 0;
+
+    /** Empties the set and sets the order of the given nodes. */
+    void reset(List<DiGraphNode<N, Branch>> orderedNodes) {
+      positions.clear();
+      nodes.clear();
+      nodes.addAll(orderedNodes);
+      for (int i = 0; i < nodes.size(); i++) {
+        positions.put(nodes.get(i), i);
+      }
+      clear();
+    }
+
+    void clear() {
+      pending.clear();
+      lowestPending = 0;
+    }
+
+    boolean isEmpty() {
+      return pending.isEmpty();
+    }
+
+    void add(DiGraphNode<N, Branch> node) {
+      Integer position = positions.get(node);
+      checkNotNull(position, "Node not in the control flow graph: %s", node);
+      pending.set(position);
+      lowestPending = Math.min(lowestPending, position);
+    }
+
+    /** Removes and returns the pending node with the lowest position. */
+    DiGraphNode<N, Branch> removeFirst() {
+      int position = pending.nextSetBit(lowestPending);
+      checkState(position >= 0, "The work set is empty");
+      pending.clear(position);
+      lowestPending = position + 1;
+      return nodes.get(position);
+    }
+  }
+
   /**
    * The in and out states of a node.
    *
@@ -28,7 +28,10 @@ import com.google.javascript.jscomp.graph.DiGraph.DiGraphNode;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -38,12 +41,18 @@ import java.util.Map;
  * assignment is useless.
  *
  */
-class DeadAssignmentsElimination extends AbstractScopedCallback implements CompilerPass {
+class DeadAssignmentsElimination extends AbstractScopedCallback
+    implements ScopeLocalCompilerPass {
 
   private final AbstractCompiler compiler;
+  private final int numParallelThreads;
   private LiveVariablesAnalysisEs6 liveness;
   private final Deque<BailoutInformation> functionStack;
 
+  // Functions to analyze once the traversal is done, with their function block scope. Only used
+  // when analyzing several functions at once.
+  private final Map<Node, Scope> deferredFunctions = new LinkedHashMap<>();
+
   private static final class BailoutInformation {
     boolean containsFunction;
     boolean containsRemovableAssign;
@@ -51,6 +60,7 @@ class DeadAssignmentsElimination extends AbstractScopedCallback implements Compi
 
   public DeadAssignmentsElimination(AbstractCompiler compiler) {
     this.compiler = compiler;
+    this.numParallelThreads = compiler.getOptions().numParallelThreads;
     this.functionStack = new ArrayDeque<>();
   }
 
@@ -60,6 +70,47 @@ class DeadAssignmentsElimination extends AbstractScopedCallback implements Compi
     checkNotNull(root);
     checkState(compiler.getLifeCycleStage().isNormalized());
     NodeTraversal.traverseEs6(compiler, root, this);
+    eliminateDeferredFunctions();
+  }
+
+  @Override
+  public void processChangeScopes(Node externs, Node root, List<Node> changeScopeRoots) {
+    checkState(compiler.getLifeCycleStage().isNormalized());
+    // Only function bodies are analyzed, so changes to global code don't need
+    // any work. Nested functions are traversed because an inner function makes
+    // the outer one bail out; the unchanged ones are skipped by
+    // eliminateDeadAssignments.
+    List<Node> changedFunctions = new ArrayList<>();
+    for (Node scopeRoot : changeScopeRoots) {
+      if (scopeRoot.isFunction()) {
+        changedFunctions.add(scopeRoot);
+      }
+    }
+    NodeTraversal.traverseEs6ScopeRoots(
+        compiler, root, NodeUtil.removeNestedChangeScopeNodes(changedFunctions), this, true);
+    eliminateDeferredFunctions();
+  }
+
+  /**
+   * Analyzes the functions collected during the traversal on several threads. The functions don't
+   * contain inner functions, so each one is only read and rewritten by the thread analyzing it.
+   */
+  private void eliminateDeferredFunctions() {
+    if (deferredFunctions.isEmpty()) {
+      return;
+    }
+    new ParallelFunctionProcessor(compiler, numParallelThreads)
+        .process(
+            new ArrayList<>(deferredFunctions.keySet()),
+            new ParallelFunctionProcessor.FunctionCallback() {
+              @Override
+              public void processFunction(Node function) {
+                // Each function gets an instance of its own, as the analysis state is per pass.
+                new DeadAssignmentsElimination(compiler)
+                    .eliminateDeadAssignments(function, deferredFunctions.get(function));
+              }
+            });
+    deferredFunctions.clear();
   }
 
   @Override
@@ -119,14 +170,27 @@ class DeadAssignmentsElimination extends AbstractScopedCallback implements Compi
       return;
     }
 
+    Node function = t.getScopeRoot().getParent();
+    if (numParallelThreads > 1) {
+      deferredFunctions.put(function, blockScope);
+    } else {
+      eliminateDeadAssignments(function, blockScope);
+    }
+  }
+
+  private void eliminateDeadAssignments(Node function, Scope blockScope) {
     // Computes liveness information first.
-    ControlFlowGraph<Node> cfg = t.getControlFlowGraph();
+    ControlFlowGraph<Node> cfg = ControlFlowAnalysis.getSharedCfg(compiler, function, true);
     liveness =
         new LiveVariablesAnalysisEs6(
-            cfg, functionScope, blockScope, compiler, new Es6SyntacticScopeCreator(compiler));
+            cfg,
+            blockScope.getParent(),
+            blockScope,
+            compiler,
+            new Es6SyntacticScopeCreator(compiler));
     liveness.analyze();
     Map<String, Var> allVarsInFn = liveness.getAllVariables();
-    tryRemoveDeadAssignments(t, cfg, allVarsInFn);
+    tryRemoveDeadAssignments(blockScope, cfg, allVarsInFn);
   }
 
 
@@ -142,11 +206,11 @@ class DeadAssignmentsElimination extends AbstractScopedCallback implements Compi
    * Try to remove useless assignments from a control flow graph that has been
    * annotated with liveness information.
    *
-   * @param t The node traversal.
+   * @param scope The function block scope.
    * @param cfg The control flow graph of the program annotated with liveness
    *        information.
    */
-  private void tryRemoveDeadAssignments(NodeTraversal t,
+  private void tryRemoveDeadAssignments(Scope scope,
       ControlFlowGraph<Node> cfg,
       Map<String, Var> allVarsInFn) {
     Iterable<DiGraphNode<Node, Branch>> nodes = cfg.getDirectedGraphNodes();
@@ -162,20 +226,20 @@ class DeadAssignmentsElimination extends AbstractScopedCallback implements Compi
         case IF:
         case WHILE:
         case DO:
-          tryRemoveAssignment(t, NodeUtil.getConditionExpression(n), state, allVarsInFn);
+          tryRemoveAssignment(scope, NodeUtil.getConditionExpression(n), state, allVarsInFn);
           continue;
         case FOR:
         case FOR_IN:
         case FOR_OF:
           if (n.isVanillaFor()) {
-            tryRemoveAssignment(t, NodeUtil.getConditionExpression(n), state, allVarsInFn);
+            tryRemoveAssignment(scope, NodeUtil.getConditionExpression(n), state, allVarsInFn);
           }
           continue;
         case SWITCH:
         case CASE:
         case RETURN:
           if (n.hasChildren()) {
-            tryRemoveAssignment(t, n.getFirstChild(), state, allVarsInFn);
+            tryRemoveAssignment(scope, n.getFirstChild(), state, allVarsInFn);
           }
           continue;
           // TODO(user): case VAR: Remove var a=1;a=2;.....
@@ -183,13 +247,13 @@ class DeadAssignmentsElimination extends AbstractScopedCallback implements Compi
           break;
       }
 
-      tryRemoveAssignment(t, n, state, allVarsInFn);
+      tryRemoveAssignment(scope, n, state, allVarsInFn);
     }
   }
 
-  private void tryRemoveAssignment(NodeTraversal t, Node n,
+  private void tryRemoveAssignment(Scope scope, Node n,
       FlowState<LiveVariableLattice> state, Map<String, Var> allVarsInFn) {
-    tryRemoveAssignment(t, n, n, state, allVarsInFn);
+    tryRemoveAssignment(scope, n, n, state, allVarsInFn);
   }
 
   /**
@@ -202,7 +266,7 @@ class DeadAssignmentsElimination extends AbstractScopedCallback implements Compi
    *     still correct.
    * @param state The liveness information at {@code n}.
    */
-  private void tryRemoveAssignment(NodeTraversal t, Node n, Node exprRoot,
+  private void tryRemoveAssignment(Scope scope, Node n, Node exprRoot,
       FlowState<LiveVariableLattice> state, Map<String, Var> allVarsInFn) {
 
     Node parent = n.getParent();
@@ -216,14 +280,14 @@ class DeadAssignmentsElimination extends AbstractScopedCallback implements Compi
       // Recurse first. Example: dead_x = dead_y = 1; We try to clean up dead_y
       // first.
       if (rhs != null) {
-        tryRemoveAssignment(t, rhs, exprRoot, state, allVarsInFn);
+        tryRemoveAssignment(scope, rhs, exprRoot, state, allVarsInFn);
         rhs = NodeUtil.getRValueOfLValue(lhs);
       }
 
       // Multiple declarations should be processed from right-to-left to ensure side-effects
       // are run in the correct order.
       if (isDeclarationNode && lhs.getNext() != null) {
-        tryRemoveAssignment(t, lhs.getNext(), exprRoot, state, allVarsInFn);
+        tryRemoveAssignment(scope, lhs.getNext(), exprRoot, state, allVarsInFn);
       }
 
       // Ignore declarations that don't initialize a value. Dead code removal will kill those nodes.
@@ -237,7 +301,6 @@ class DeadAssignmentsElimination extends AbstractScopedCallback implements Compi
         return; // Not a local variable assignment.
       }
       String name = lhs.getString();
-      Scope scope = t.getScope();
       checkState(scope.isFunctionBlockScope() || scope.isBlockScope());
       if (!allVarsInFn.containsKey(name)) {
         return;
@@ -316,7 +379,7 @@ class DeadAssignmentsElimination extends AbstractScopedCallback implements Compi
       for (Node c = n.getFirstChild(); c != null;) {
         Node next = c.getNext();
         if (!ControlFlowGraph.isEnteringNewCfgNode(c)) {
-          tryRemoveAssignment(t, c, exprRoot, state, allVarsInFn);
+          tryRemoveAssignment(scope, c, exprRoot, state, allVarsInFn);
         }
         c = next;
       }
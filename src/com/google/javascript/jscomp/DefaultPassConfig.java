@@ -38,6 +38,7 @@ import com.google.javascript.jscomp.CoverageInstrumentationPass.InstrumentOption
 import com.google.javascript.jscomp.ExtractPrototypeMemberDeclarations.Pattern;
 import com.google.javascript.jscomp.NodeTraversal.Callback;
 import com.google.javascript.jscomp.PassFactory.HotSwapPassFactory;
+import com.google.javascript.jscomp.PassFactory.ScriptCheckPassFactory;
 import com.google.javascript.jscomp.lint.CheckArrayWithGoogObject;
 import com.google.javascript.jscomp.lint.CheckDuplicateCase;
 import com.google.javascript.jscomp.lint.CheckEmptyStatements;
@@ -1071,7 +1072,7 @@ public final class DefaultPassConfig extends PassConfig {
 
   /** Checks for code that is probably wrong (such as stray expressions). */
   private final HotSwapPassFactory suspiciousCode =
-      new HotSwapPassFactory("suspiciousCode", true) {
+      new ScriptCheckPassFactory("suspiciousCode") {
         @Override
         protected HotSwapCompilerPass create(final AbstractCompiler compiler) {
           List<Callback> sharedCallbacks = new ArrayList<>();
@@ -1244,7 +1245,7 @@ public final class DefaultPassConfig extends PassConfig {
 
   /** Verifies JSDoc annotations are used properly and checks for ES6 modules. */
   private final HotSwapPassFactory checkJsDocAndEs6Modules =
-      new HotSwapPassFactory("checkJsDocAndEs6Modules", true) {
+      new ScriptCheckPassFactory("checkJsDocAndEs6Modules") {
         @Override
         protected HotSwapCompilerPass create(AbstractCompiler compiler) {
           ImmutableList.Builder<Callback> callbacks =
@@ -2026,7 +2027,7 @@ public final class DefaultPassConfig extends PassConfig {
   };
 
   private final HotSwapPassFactory lintChecks =
-      new HotSwapPassFactory(PassNames.LINT_CHECKS, true) {
+      new ScriptCheckPassFactory(PassNames.LINT_CHECKS) {
         @Override
         protected HotSwapCompilerPass create(AbstractCompiler compiler) {
           ImmutableList.Builder<Callback> callbacks =
@@ -2069,7 +2070,7 @@ public final class DefaultPassConfig extends PassConfig {
       };
 
   private final HotSwapPassFactory checkRequiresAndProvidesSorted =
-      new HotSwapPassFactory("checkRequiresAndProvidesSorted", true) {
+      new ScriptCheckPassFactory("checkRequiresAndProvidesSorted") {
         @Override
         protected HotSwapCompilerPass create(AbstractCompiler compiler) {
           return new CheckRequiresAndProvidesSorted(compiler);
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.javascript.rhino.Node;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Holds on to the change scopes reported as changed or deleted while running a unit of work on a
+ * worker thread, so they can be replayed on the compiler thread in a deterministic order.
+ *
+ * <p>The compiler's change timelines and change handlers are not thread-safe, and the order in
+ * which scopes are reported determines the order in which later passes visit them. Deferring the
+ * reports keeps both independent of thread scheduling. See
+ * {@link AbstractCompiler#setDeferredChangeReportsForCurrentThread}.
+ */
+final class DeferredChangeReports {
+  private final Set<Node> changedScopeRoots = new LinkedHashSet<>();
+  private final List<Node> deletedFunctions = new ArrayList<>();
+
+  // The change scope of the traversal running on the worker thread, which the compiler keeps for
+  // the compiler thread only.
+  private Node currentChangeScope = null;
+
+  void setChangeScope(Node changeScopeRoot) {
+    currentChangeScope = changeScopeRoot;
+  }
+
+  Node getChangeScope() {
+    return currentChangeScope;
+  }
+
+  void recordChange(Node changeScopeRoot) {
+    changedScopeRoots.add(changeScopeRoot);
+  }
+
+  void recordFunctionDeleted(Node function) {
+    deletedFunctions.add(function);
+  }
+
+  /** Reports all recorded changes to the given compiler, in the order they were recorded. */
+  void replay(AbstractCompiler compiler) {
+    // Changes to functions that were later deleted are ignored by the compiler, so report the
+    // deletions last.
+    for (Node changeScopeRoot : changedScopeRoots) {
+      compiler.reportChangeToChangeScope(changeScopeRoot);
+    }
+    for (Node function : deletedFunctions) {
+      compiler.reportFunctionDeleted(function);
+    }
+    changedScopeRoots.clear();
+    deletedFunctions.clear();
+  }
+}
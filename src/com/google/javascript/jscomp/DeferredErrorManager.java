@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * An {@link ErrorManager} that holds on to the errors reported while processing a single input, so
+ * they can be replayed later in a deterministic order.
+ *
+ * <p>Used for work that runs on several threads at once, such as {@link PrebuildAst}: each unit of
+ * work records its errors here, and the results are replayed in input order once all work is done,
+ * so the order in which errors reach the real error manager doesn't depend on thread scheduling.
+ *
+ * <p>Queries are answered by the delegate, so they do not include errors that have not been
+ * replayed yet. {@link #generateReport} reports the errors that are still recorded to the delegate
+ * before its report is generated.
+ */
+final class DeferredErrorManager implements ErrorManager {
+  private final AbstractCompiler compiler;
+  private final ErrorManager delegate;
+  private final List<DeferredError> errors = new ArrayList<>();
+
+  /** Creates a manager that defers the errors meant for the compiler's current error manager. */
+  DeferredErrorManager(AbstractCompiler compiler) {
+    this.compiler = compiler;
+    this.delegate = compiler.getErrorManager();
+  }
+
+  /** Records an error reported directly to this error manager, at a known level. */
+  @Override
+  public void report(CheckLevel level, JSError error) {
+    errors.add(new DeferredError(level, error));
+  }
+
+  /**
+   * Records an error reported through {@link AbstractCompiler#report}. Its level is determined by
+   * the compiler's warnings guards when it is replayed.
+   */
+  void deferCompilerReport(JSError error) {
+    errors.add(new DeferredError(null, error));
+  }
+
+  /** Whether nothing has been recorded since the last {@link #replay}. */
+  boolean isEmpty() {
+    return errors.isEmpty();
+  }
+
+  /** Reports all recorded errors to the given compiler, in the order they were recorded. */
+  void replay(AbstractCompiler compiler) {
+    for (DeferredError e : errors) {
+      if (e.level == null) {
+        compiler.report(e.error);
+      } else {
+        compiler.getErrorManager().report(e.level, e.error);
+      }
+    }
+    errors.clear();
+  }
+
+  /**
+   * Reports the recorded errors to the wrapped error manager and lets it generate its report. The
+   * errors reported through the compiler get the level its warnings guards give them, as they
+   * would in {@link #replay}.
+   */
+  @Override
+  public void generateReport() {
+    for (DeferredError e : errors) {
+      CheckLevel level = e.level;
+      if (level == null) {
+        level = compiler.getErrorLevel(e.error);
+        if (level == null) {
+          level = e.error.getDefaultLevel();
+        }
+      }
+      if (level.isOn()) {
+        delegate.report(level, e.error);
+      }
+    }
+    errors.clear();
+    delegate.generateReport();
+  }
+
+  @Override
+  public int getErrorCount() {
+    return delegate.getErrorCount();
+  }
+
+  @Override
+  public int getWarningCount() {
+    return delegate.getWarningCount();
+  }
+
+  @Override
+  public JSError[] getErrors() {
+    return delegate.getErrors();
+  }
+
+  @Override
+  public JSError[] getWarnings() {
+    return delegate.getWarnings();
+  }
+
+  @Override
+  public void setTypedPercent(double typedPercent) {
+    delegate.setTypedPercent(typedPercent);
+  }
+
+  @Override
+  public double getTypedPercent() {
+    return delegate.getTypedPercent();
+  }
+
+  private static final class DeferredError {
+    @Nullable final CheckLevel level;
+    final JSError error;
+
+    DeferredError(@Nullable CheckLevel level, JSError error) {
+      this.level = level;
+      this.error = error;
+    }
+  }
+}
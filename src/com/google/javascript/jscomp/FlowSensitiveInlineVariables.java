@@ -30,9 +30,12 @@ import com.google.javascript.jscomp.graph.DiGraph.DiGraphEdge;
 import com.google.javascript.jscomp.graph.DiGraph.DiGraphNode;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -77,6 +80,11 @@ class FlowSensitiveInlineVariables implements CompilerPass, ScopedCallback {
   private MustBeReachingVariableDef reachingDef;
   private MaybeReachingVariableUse reachingUses;
 
+  private final int numParallelThreads;
+
+  // The function blocks whose variables are inlined on several threads after the traversal.
+  private final Map<Node, Scope> deferredFunctions = new LinkedHashMap<>();
+
   private static final Predicate<Node> SIDE_EFFECT_PREDICATE =
       new Predicate<Node>() {
         @Override
@@ -113,6 +121,7 @@ class FlowSensitiveInlineVariables implements CompilerPass, ScopedCallback {
 
   public FlowSensitiveInlineVariables(AbstractCompiler compiler) {
     this.compiler = compiler;
+    this.numParallelThreads = compiler.getOptions().numParallelThreads;
   }
 
   @Override
@@ -141,28 +150,40 @@ class FlowSensitiveInlineVariables implements CompilerPass, ScopedCallback {
       return;
     }
 
-    Es6SyntacticScopeCreator scopeCreator = (Es6SyntacticScopeCreator) t.getScopeCreator();
+    if (numParallelThreads > 1 && ParallelFunctionProcessor.isLeafFunction(functionScopeRoot)) {
+      // Functions without inner functions are inlined on several threads once the traversal is
+      // done, see inlineDeferredFunctions.
+      deferredFunctions.put(functionScopeRoot, t.getScope());
+      return;
+    }
 
-    // Compute the forward reaching definition.
-    ControlFlowAnalysis cfa = new ControlFlowAnalysis(compiler, false, true);
+    inlineVariables(
+        functionScopeRoot, t.getScope(), (Es6SyntacticScopeCreator) t.getScopeCreator());
+  }
 
-    // Process the body of the function.
-    cfa.process(null, functionScopeRoot);
-    cfg = cfa.getCfg();
+  /**
+   * Inlines the variables of a function.
+   *
+   * @param blockScope The scope of the function body.
+   */
+  private void inlineVariables(
+      Node function, Scope blockScope, Es6SyntacticScopeCreator scopeCreator) {
+    // Compute the forward reaching definition.
+    cfg = ControlFlowAnalysis.getSharedCfg(compiler, function, true);
 
-    reachingDef = new MustBeReachingVariableDef(cfg, t.getScope(), compiler, scopeCreator);
+    reachingDef = new MustBeReachingVariableDef(cfg, blockScope, compiler, scopeCreator);
     reachingDef.analyze();
     candidates = new LinkedHashSet<>();
 
     // Using the forward reaching definition search to find all the inline
     // candidates
-    NodeTraversal.traverseEs6(compiler, t.getScopeRoot(), new GatherCandidates());
+    NodeTraversal.traverseEs6(compiler, blockScope.getRootNode(), new GatherCandidates());
     // Compute the backward reaching use. The CFG can be reused.
-    reachingUses = new MaybeReachingVariableUse(cfg, t.getScope(), compiler, scopeCreator);
+    reachingUses = new MaybeReachingVariableUse(cfg, blockScope, compiler, scopeCreator);
     reachingUses.analyze();
     while (!candidates.isEmpty()) {
       Candidate c = candidates.iterator().next();
-      if (c.canInline(t.getScope())) {
+      if (c.canInline(blockScope)) {
         c.inlineVariable();
         candidates.remove(c);
 
@@ -175,7 +196,7 @@ class FlowSensitiveInlineVariables implements CompilerPass, ScopedCallback {
         if (!c.defMetadata.depends.isEmpty()) {
           for (Iterator<Candidate> it = candidates.iterator(); it.hasNext();) {
             Candidate other = it.next();
-            if (other.defMetadata.depends.contains(t.getScope().getVar(c.varName))
+            if (other.defMetadata.depends.contains(blockScope.getVar(c.varName))
                 && !other.defMetadata.depends.containsAll(c.defMetadata.depends)) {
               it.remove();
             }
@@ -228,6 +249,33 @@ class FlowSensitiveInlineVariables implements CompilerPass, ScopedCallback {
   public void process(Node externs, Node root) {
     (new NodeTraversal(compiler, this,  new Es6SyntacticScopeCreator(compiler)))
         .traverseRoots(externs, root);
+    inlineDeferredFunctions();
+  }
+
+  /**
+   * Inlines the variables of the functions collected during the traversal on several threads. The
+   * functions don't contain inner functions, so each one is only read and rewritten by the thread
+   * inlining it.
+   */
+  private void inlineDeferredFunctions() {
+    if (deferredFunctions.isEmpty()) {
+      return;
+    }
+    new ParallelFunctionProcessor(compiler, numParallelThreads)
+        .process(
+            new ArrayList<>(deferredFunctions.keySet()),
+            new ParallelFunctionProcessor.FunctionCallback() {
+              @Override
+              public void processFunction(Node function) {
+                // Each function gets an instance of its own, as the analysis state is per pass.
+                new FlowSensitiveInlineVariables(compiler)
+                    .inlineVariables(
+                        function,
+                        deferredFunctions.get(function),
+                        new Es6SyntacticScopeCreator(compiler));
+              }
+            });
+    deferredFunctions.clear();
   }
 
   @Override
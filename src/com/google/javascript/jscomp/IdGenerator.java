@@ -34,14 +34,14 @@ class IdGenerator implements Serializable {
   /**
    * Returns whether we've generated any new ids.
    */
-  boolean hasGeneratedAnyIds() {
+  synchronized boolean hasGeneratedAnyIds() {
     return currentId != 0;
   }
 
   /**
    * Creates a new id for stubbing a method.
    */
-  int newId() {
+  synchronized int newId() {
     return currentId++;
   }
 }
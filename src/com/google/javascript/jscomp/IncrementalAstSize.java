@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.javascript.rhino.Node;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the number of nodes of an AST up to date without walking the whole
+ * tree after every change.
+ *
+ * <p>The size is stored per change scope (SCRIPT and FUNCTION nodes, see
+ * {@link NodeUtil#isChangeScopeRoot}), where the size of a scope doesn't include
+ * the nodes of the change scopes nested in it. Because passes report every
+ * modification to the enclosing change scope, and report new and deleted
+ * functions, an update only needs to recount the scopes changed or deleted
+ * since the previous update.
+ */
+final class IncrementalAstSize {
+  // Used as the "pass name" for our marks in the compiler's change timelines.
+  private static final String TIMELINE_NAME = "IncrementalAstSize";
+
+  private final AbstractCompiler compiler;
+  private final Map<Node, Integer> sizeByScopeRoot = new HashMap<>();
+  private int size = 0;
+
+  IncrementalAstSize(AbstractCompiler compiler) {
+    this.compiler = compiler;
+  }
+
+  /**
+   * Counts all nodes under root and starts tracking changes from this point.
+   *
+   * @return the number of nodes in the tree, the same as
+   *     {@link NodeUtil#countAstSize}
+   */
+  int reset(Node root) {
+    // Mark the change timelines first, so that previous changes aren't
+    // counted twice by the next update.
+    compiler.getChangedScopeNodesForPass(TIMELINE_NAME);
+    compiler.getDeletedScopeNodesForPass(TIMELINE_NAME);
+
+    sizeByScopeRoot.clear();
+    size = 0;
+    Deque<Node> worklist = new ArrayDeque<>();
+    worklist.push(root);
+    while (!worklist.isEmpty()) {
+      Node scopeRoot = worklist.pop();
+      int scopeSize = countScopeNodes(scopeRoot, worklist);
+      sizeByScopeRoot.put(scopeRoot, scopeSize);
+      size += scopeSize;
+    }
+    return size;
+  }
+
+  /**
+   * Recounts the scopes changed or deleted since the last call to this method
+   * or {@link #reset}.
+   *
+   * @return the current number of nodes in the tree
+   */
+  int update() {
+    List<Node> deletedScopeRoots = compiler.getDeletedScopeNodesForPass(TIMELINE_NAME);
+    if (deletedScopeRoots != null) {
+      for (Node scopeRoot : deletedScopeRoots) {
+        Integer oldSize = sizeByScopeRoot.remove(scopeRoot);
+        if (oldSize != null) {
+          size -= oldSize;
+        }
+      }
+    }
+
+    List<Node> changedScopeRoots = compiler.getChangedScopeNodesForPass(TIMELINE_NAME);
+    if (changedScopeRoots != null) {
+      for (Node scopeRoot : changedScopeRoots) {
+        int newSize = countScopeNodes(scopeRoot, null);
+        Integer oldSize = sizeByScopeRoot.put(scopeRoot, newSize);
+        size += newSize - (oldSize == null ? 0 : oldSize);
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Counts the nodes of the subtree rooted at n that don't belong to a nested
+   * change scope. The nested change scope roots are added to nestedScopeRoots
+   * if it's not null.
+   */
+  private static int countScopeNodes(Node n, Deque<Node> nestedScopeRoots) {
+    int count = 1;
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      if (NodeUtil.isChangeScopeRoot(c)) {
+        if (nestedScopeRoots != null) {
+          nestedScopeRoots.push(c);
+        }
+      } else {
+        count += countScopeNodes(c, nestedScopeRoots);
+      }
+    }
+    return count;
+  }
+}
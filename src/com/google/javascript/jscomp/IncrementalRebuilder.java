@@ -0,0 +1,427 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.javascript.rhino.InputId;
+import com.google.javascript.rhino.JSDocInfo;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a checks-only compilation alive between edits and rechecks only the files an edit can
+ * affect, for use by development servers.
+ *
+ * <p>After the initial full {@link #build}, every input is indexed with the names it declares at
+ * the top level, the names and types it references, and what it provides and requires.
+ * {@link #rebuild} then replaces each changed file through the hot-swap passes of
+ * {@link Compiler#replaceScript} and does the same for the files that depend on it: files that
+ * reference a name it declares (or declared before the edit), or that require something it
+ * provides. Rechecking a dependent can change the inferred types of the names it declares, so
+ * the dependents of the rechecked files are rechecked in turn. Warnings and errors of all other
+ * files are kept from the previous build.
+ *
+ * <p>Edits that change the shape of the compilation, such as adding or removing provides or
+ * requires, or files that are not part of it yet, fall back to a full build. So does any edit when
+ * the options do not allow hot-swapping. Note that a rebuild only reruns the checks that implement
+ * {@link HotSwapCompilerPass}.
+ */
+@GwtIncompatible("com.google.common.hash")
+public final class IncrementalRebuilder {
+  private static final Logger logger = Logger.getLogger(IncrementalRebuilder.class.getName());
+
+  private final CompilerOptions options;
+  private final ImmutableList<SourceFile> externs;
+  private final Map<String, SourceFile> inputs = new LinkedHashMap<>();
+  private final Map<String, FileInfo> fileInfos = new LinkedHashMap<>();
+
+  private Compiler compiler;
+
+  /** Warnings and errors of the last build, by the source file they are reported in. */
+  private final ListMultimap<String, ReportedError> errorsBySource = ArrayListMultimap.create();
+  /** Warnings and errors without a source file, of the last full build. */
+  private final Set<ReportedError> buildSourcelessErrors = new LinkedHashSet<>();
+  /** Warnings and errors without a source file, of the last rebuild. */
+  private final Set<ReportedError> rebuildSourcelessErrors = new LinkedHashSet<>();
+
+  private ImmutableSet<String> lastRebuiltFiles = ImmutableSet.of();
+
+  public IncrementalRebuilder(
+      CompilerOptions options, List<SourceFile> externs, List<SourceFile> inputs) {
+    checkArgument(options.checksOnly, "Incremental rebuilds only run checks");
+    this.options = options;
+    this.externs = ImmutableList.copyOf(externs);
+    for (SourceFile input : inputs) {
+      this.inputs.put(input.getName(), input);
+    }
+  }
+
+  /** Compiles everything from scratch. */
+  public Result build() {
+    compiler = new Compiler();
+    CollectingErrorManager errorManager = new CollectingErrorManager();
+    compiler.setErrorManager(errorManager);
+    compiler.compile(externs, ImmutableList.copyOf(inputs.values()), options);
+
+    fileInfos.clear();
+    for (SourceFile input : inputs.values()) {
+      index(input);
+    }
+    errorsBySource.clear();
+    buildSourcelessErrors.clear();
+    rebuildSourcelessErrors.clear();
+    recordErrors(errorManager, inputs.keySet(), buildSourcelessErrors);
+    lastRebuiltFiles = ImmutableSet.copyOf(inputs.keySet());
+    return compiler.getResult();
+  }
+
+  /**
+   * Replaces the given files, which must be new versions of inputs of this compilation, and
+   * rechecks them along with the files that depend on them, directly or through other rechecked
+   * files.
+   */
+  public Result rebuild(List<SourceFile> changedFiles) {
+    checkState(compiler != null, "build() must be called first");
+
+    Map<String, SourceFile> changed = new LinkedHashMap<>();
+    for (SourceFile file : changedFiles) {
+      FileInfo info = fileInfos.get(file.getName());
+      if (info == null || !info.digest.equals(digest(file))) {
+        changed.put(file.getName(), file);
+      }
+    }
+    if (changed.isEmpty()) {
+      lastRebuiltFiles = ImmutableSet.of();
+      return compiler.getResult();
+    }
+    inputs.putAll(changed);
+    if (!canRebuildIncrementally(changed.values())) {
+      return build();
+    }
+
+    // Collect the dependents against both the old and the new declarations of the changed files,
+    // so that files referencing a name that was just removed are rechecked too.
+    Set<String> affected = new LinkedHashSet<>(changed.keySet());
+    List<FileInfo> changedInfos = new ArrayList<>();
+    for (SourceFile file : changed.values()) {
+      changedInfos.add(fileInfos.get(file.getName()));
+    }
+
+    CollectingErrorManager errorManager = new CollectingErrorManager();
+    compiler.setErrorManager(errorManager);
+    for (SourceFile file : changed.values()) {
+      compiler.replaceScript(new JsAst(file));
+      changedInfos.add(index(file));
+    }
+    // Every recheck can change what the rechecked file exports, so the files are visited as a
+    // worklist until no more dependents are found.
+    List<FileInfo> pending = changedInfos;
+    for (int i = 0; i < pending.size(); i++) {
+      FileInfo dependency = pending.get(i);
+      for (FileInfo candidate : fileInfos.values()) {
+        if (!affected.contains(candidate.name) && dependsOn(candidate, dependency)) {
+          affected.add(candidate.name);
+          compiler.replaceScript(new JsAst(inputs.get(candidate.name)));
+          pending.add(candidate);
+        }
+      }
+    }
+    if (logger.isLoggable(Level.FINE)) {
+      logger.fine("Rechecked " + affected.size() + " of " + inputs.size() + " files: " + affected);
+    }
+
+    rebuildSourcelessErrors.clear();
+    recordErrors(errorManager, affected, rebuildSourcelessErrors);
+    lastRebuiltFiles = ImmutableSet.copyOf(affected);
+
+    // Report everything known, so the result covers the whole compilation.
+    CollectingErrorManager combined = new CollectingErrorManager();
+    for (ReportedError error : errorsBySource.values()) {
+      combined.report(error.level, error.error);
+    }
+    for (ReportedError error : buildSourcelessErrors) {
+      combined.report(error.level, error.error);
+    }
+    for (ReportedError error : rebuildSourcelessErrors) {
+      combined.report(error.level, error.error);
+    }
+    compiler.setErrorManager(combined);
+    return compiler.getResult();
+  }
+
+  /** Returns the compiler holding the state of the last build. */
+  public Compiler getCompiler() {
+    return compiler;
+  }
+
+  /** Returns the names of the files checked by the last build or rebuild. */
+  @VisibleForTesting
+  ImmutableSet<String> getLastRebuiltFiles() {
+    return lastRebuiltFiles;
+  }
+
+  private boolean canRebuildIncrementally(Iterable<SourceFile> changed) {
+    if (!options.allowsHotswapReplaceScript() || compiler.hasHaltingErrors()) {
+      return false;
+    }
+    for (SourceFile file : changed) {
+      FileInfo info = fileInfos.get(file.getName());
+      if (info == null) {
+        return false;
+      }
+      CompilerInput input = new CompilerInput(file);
+      input.setCompiler(compiler);
+      if (!info.provides.equals(ImmutableSet.copyOf(input.getProvides()))
+          || !info.requires.equals(ImmutableSet.copyOf(input.getRequires()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Moves the errors reported for the given files into the error cache, and the errors without a
+   * source file into {@code sourcelessErrors}.
+   */
+  private void recordErrors(
+      CollectingErrorManager errorManager, Set<String> files, Set<ReportedError> sourcelessErrors) {
+    for (String file : files) {
+      errorsBySource.removeAll(file);
+    }
+    for (ReportedError error : errorManager.reported) {
+      String source = error.error.sourceName;
+      if (source == null) {
+        sourcelessErrors.add(error);
+      } else if (files.contains(source)) {
+        errorsBySource.put(source, error);
+      }
+    }
+  }
+
+  private FileInfo index(SourceFile file) {
+    CompilerInput input = compiler.getInput(new InputId(file.getName()));
+    checkNotNull(input, "Not an input of this compilation: %s", file.getName());
+    FileInfo info =
+        new FileInfo(
+            file.getName(),
+            digest(file),
+            ImmutableSet.copyOf(input.getProvides()),
+            ImmutableSet.copyOf(input.getRequires()));
+    indexNames(input.getAstRoot(compiler), info);
+    fileInfos.put(info.name, info);
+    return info;
+  }
+
+  private static void indexNames(Node script, final FileInfo info) {
+    for (Node statement : script.children()) {
+      switch (statement.getToken()) {
+        case VAR:
+        case LET:
+        case CONST:
+          for (Node name : statement.children()) {
+            if (name.isName()) {
+              info.declared.add(name.getString());
+            }
+          }
+          break;
+        case FUNCTION:
+        case CLASS:
+          if (!statement.getFirstChild().isEmpty()) {
+            info.declared.add(statement.getFirstChild().getString());
+          }
+          break;
+        case EXPR_RESULT:
+          Node expr = statement.getFirstChild();
+          if (expr.isAssign() && expr.getFirstChild().isQualifiedName()) {
+            info.declared.add(expr.getFirstChild().getQualifiedName());
+          } else if (expr.isQualifiedName()) {
+            // A stub declaration such as "/** @type {number} */ ns.x;".
+            info.declared.add(expr.getQualifiedName());
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    info.declared.addAll(info.provides);
+
+    NodeUtil.visitPreOrder(
+        script,
+        new NodeUtil.Visitor() {
+          @Override
+          public void visit(Node n) {
+            if ((n.isName() || n.isGetProp())
+                && !n.getParent().isGetProp()
+                && n.isQualifiedName()) {
+              info.addReference(n.getQualifiedName());
+            }
+            JSDocInfo jsdoc = n.getJSDocInfo();
+            if (jsdoc != null) {
+              for (Node typeRoot : jsdoc.getTypeNodes()) {
+                NodeUtil.visitPreOrder(
+                    typeRoot,
+                    new NodeUtil.Visitor() {
+                      @Override
+                      public void visit(Node typeNode) {
+                        if (typeNode.getToken() == Token.STRING) {
+                          info.addReference(typeNode.getString());
+                        }
+                      }
+                    });
+              }
+            }
+          }
+        });
+  }
+
+  private static boolean dependsOn(FileInfo candidate, FileInfo dependency) {
+    for (String required : candidate.requires) {
+      if (dependency.provides.contains(required)) {
+        return true;
+      }
+    }
+    for (String declared : dependency.declared) {
+      if (candidate.references(declared)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static HashCode digest(SourceFile file) {
+    try {
+      return Hashing.sha256().hashString(file.getCode(), UTF_8);
+    } catch (IOException e) {
+      // Unreadable files are never considered unchanged; the rebuild will report the error.
+      return HashCode.fromInt(Objects.hashCode(e));
+    }
+  }
+
+  /** What a single input declares and depends on. */
+  private static final class FileInfo {
+    final String name;
+    final HashCode digest;
+    final ImmutableSet<String> provides;
+    final ImmutableSet<String> requires;
+
+    /** Names declared at the top level, including qualified names assigned there. */
+    final Set<String> declared = new HashSet<>();
+    /** The maximal qualified names referenced, in code or in JSDoc types. */
+    final Set<String> referenced = new HashSet<>();
+    /** The proper prefixes of the names in {@link #referenced}. */
+    final Set<String> referencedPrefixes = new HashSet<>();
+
+    FileInfo(
+        String name,
+        HashCode digest,
+        ImmutableSet<String> provides,
+        ImmutableSet<String> requires) {
+      this.name = name;
+      this.digest = digest;
+      this.provides = provides;
+      this.requires = requires;
+    }
+
+    void addReference(String name) {
+      if (referenced.add(name)) {
+        for (int i = name.lastIndexOf('.'); i > 0; i = name.lastIndexOf('.', i - 1)) {
+          referencedPrefixes.add(name.substring(0, i));
+        }
+      }
+    }
+
+    /**
+     * Whether a change to the given declared name can affect this file: the file uses the name
+     * itself, something nested in it, or a namespace the name is nested in.
+     */
+    boolean references(String declared) {
+      if (referenced.contains(declared) || referencedPrefixes.contains(declared)) {
+        return true;
+      }
+      for (int i = declared.lastIndexOf('.'); i > 0; i = declared.lastIndexOf('.', i - 1)) {
+        if (referenced.contains(declared.substring(0, i))) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class ReportedError {
+    final CheckLevel level;
+    final JSError error;
+
+    ReportedError(CheckLevel level, JSError error) {
+      this.level = level;
+      this.error = error;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ReportedError
+          && ((ReportedError) o).level == level
+          && ((ReportedError) o).error.equals(error);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(level, error);
+    }
+  }
+
+  /** Keeps the warnings and errors reported, in order, without printing them. */
+  private static final class CollectingErrorManager extends BasicErrorManager {
+    final Set<ReportedError> reported = new LinkedHashSet<>();
+
+    @Override
+    public void report(CheckLevel level, JSError error) {
+      super.report(level, error);
+      if (level != CheckLevel.OFF) {
+        reported.add(new ReportedError(level, error));
+      }
+    }
+
+    @Override
+    public void println(CheckLevel level, JSError error) {}
+
+    @Override
+    protected void printSummary() {}
+  }
+}
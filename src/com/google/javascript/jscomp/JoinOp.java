@@ -28,6 +28,24 @@ import java.util.List;
  */
 interface JoinOp<L extends LatticeElement> extends Function<List<L>, L> {
 
+  /**
+   * A {@code JoinOp} over mutable lattice elements, which can write a join
+   * into an existing element. {@link DataFlowAnalysis} then keeps a single
+   * join result per CFG node instead of allocating a new element every time
+   * the node's inputs change.
+   *
+   * <p>An analysis using it must not return the input of
+   * {@link DataFlowAnalysis#flowThrough} as the output, since the input can be
+   * overwritten by a later join.
+   */
+  interface InPlaceJoinOp<L extends LatticeElement> extends JoinOp<L> {
+    /** Makes {@code target} equal to {@code value}. */
+    void copyInto(L target, L value);
+
+    /** Replaces {@code target} with the join of {@code target} and {@code value}. */
+    void joinInto(L target, L value);
+  }
+
   /**
    * An implementation of {@code JoinOp} that makes it easy to join to
    * lattice elements at a time.
@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.annotations.GwtIncompatible;
 import com.google.common.collect.ImmutableList;
+import com.google.javascript.jscomp.parsing.Config;
 import com.google.javascript.jscomp.parsing.ParserRunner;
 import com.google.javascript.jscomp.parsing.parser.FeatureSet;
 import com.google.javascript.rhino.ErrorReporter;
@@ -147,18 +148,33 @@ public class JsAst implements SourceAst {
   private void parse(AbstractCompiler compiler) {
     RecordingReporterProxy reporter = new RecordingReporterProxy(
         compiler.getDefaultErrorReporter());
+    Config config = compiler.getParserConfig(sourceFile.isExtern()
+        ? AbstractCompiler.ConfigContext.EXTERNS
+        : AbstractCompiler.ConfigContext.DEFAULT);
+    PersistentParseCache parseCache = compiler.getPersistentParseCache();
 
     try {
-      ParserRunner.ParseResult result = ParserRunner.parse(
-          sourceFile,
-          sourceFile.getCode(),
-          compiler.getParserConfig(sourceFile.isExtern()
-              ? AbstractCompiler.ConfigContext.EXTERNS
-              : AbstractCompiler.ConfigContext.DEFAULT),
-          reporter);
+      String code = sourceFile.getCode();
+      if (parseCache != null && parseFromCache(compiler, parseCache, code, config)) {
+        return;
+      }
+
+      ParserRunner.ParseResult result = ParserRunner.parse(sourceFile, code, config, reporter);
       root = result.ast;
       features = result.features;
 
+      // Comments and input source maps are recorded on the compiler rather than in the AST, and
+      // errors would have to be reported again, so only cache ASTs that carry no such baggage.
+      if (parseCache != null
+          && root != null
+          && reporter.errors.isEmpty()
+          && reporter.warnings.isEmpty()
+          && result.sourceMapURL == null
+          && !compiler.getOptions().preservesDetailedSourceInfo()) {
+        root.setStaticSourceFile(sourceFile);
+        parseCache.putAst(sourceFile, code, config, root, features);
+      }
+
       if (compiler.getOptions().preservesDetailedSourceInfo()) {
         compiler.addComments(sourceFile.getName(), result.comments);
       }
@@ -193,6 +209,22 @@ public class JsAst implements SourceAst {
     root.setStaticSourceFile(sourceFile);
   }
 
+  /** Reads the AST from the persistent cache. Returns whether it was found. */
+  private boolean parseFromCache(
+      AbstractCompiler compiler, PersistentParseCache parseCache, String code, Config config) {
+    if (compiler.getOptions().preservesDetailedSourceInfo()) {
+      return false;
+    }
+    PersistentParseCache.CachedAst cached = parseCache.getAst(sourceFile, code, config);
+    if (cached == null) {
+      return false;
+    }
+    root = cached.root;
+    features = cached.features;
+    compiler.prepareAst(root);
+    return true;
+  }
+
   @GwtIncompatible("ObjectinputStream")
   private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
     AbstractCompiler compiler = ((HasCompiler) in).getCompiler();
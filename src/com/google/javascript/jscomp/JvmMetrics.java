@@ -25,6 +25,8 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.lang.management.MemoryPoolMXBean;
 import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
 import java.util.List;
 import java.util.StringTokenizer;
 
@@ -79,6 +81,65 @@ class JvmMetrics {
     }
   }
 
+  /**
+   * Returns the number of bytes allocated so far by the current thread, or -1
+   * if the JVM doesn't support per-thread allocation accounting.
+   */
+  public static long getCurrentThreadAllocatedBytes() {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunThreadBean =
+          (com.sun.management.ThreadMXBean) threadBean;
+      if (sunThreadBean.isThreadAllocatedMemorySupported()
+          && sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+        return sunThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the CPU time used so far by the current thread in nanoseconds, or
+   * -1 if the JVM doesn't support thread CPU time measurement.
+   */
+  public static long getCurrentThreadCpuTime() {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (threadBean.isCurrentThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled()) {
+      return threadBean.getCurrentThreadCpuTime();
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the CPU time used so far by all threads of the JVM in nanoseconds,
+   * or -1 if the JVM doesn't support process CPU time measurement.
+   */
+  public static long getProcessCpuTime() {
+    OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+      return ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuTime();
+    }
+    return -1;
+  }
+
+  /** Returns the number of garbage collections so far, aggregated over all collectors. */
+  public static long getGarbageCollectionCount() {
+    long collectionCount = 0;
+    for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      collectionCount += Math.max(0, gcBean.getCollectionCount());
+    }
+    return collectionCount;
+  }
+
+  /** Returns the time spent in garbage collection so far in milliseconds. */
+  public static long getGarbageCollectionTime() {
+    long collectionTime = 0;
+    for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      collectionTime += Math.max(0, gcBean.getCollectionTime());
+    }
+    return collectionTime;
+  }
+
   private static void writeMetrics(
       PrintStream out, String type, boolean verbose, boolean pretty) {
 
@@ -55,7 +55,7 @@ class LiveVariablesAnalysis extends
   public static final String ARGUMENT_ARRAY_ALIAS = "arguments";
 
   private static class LiveVariableJoinOp
-      implements JoinOp<LiveVariableLattice> {
+      implements JoinOp.InPlaceJoinOp<LiveVariableLattice> {
     @Override
     public LiveVariableLattice apply(List<LiveVariableLattice> in) {
       LiveVariableLattice result = new LiveVariableLattice(in.get(0));
@@ -64,6 +64,17 @@ class LiveVariablesAnalysis extends
       }
       return result;
     }
+
+    @Override
+    public void copyInto(LiveVariableLattice target, LiveVariableLattice value) {
+      target.liveSet.clear();
+      target.liveSet.or(value.liveSet);
+    }
+
+    @Override
+    public void joinInto(LiveVariableLattice target, LiveVariableLattice value) {
+      target.liveSet.or(value.liveSet);
+    }
   }
 
   /**
@@ -117,6 +128,10 @@ class LiveVariablesAnalysis extends
   private final Scope jsScope;
   private final Set<Var> escaped;
 
+  // Scratch sets for flowThrough, reused to avoid allocating two sets per step.
+  private final BitSet gen = new BitSet();
+  private final BitSet kill = new BitSet();
+
   LiveVariablesAnalysis(
       ControlFlowGraph<Node> cfg,
       Scope jsScope,
@@ -153,8 +168,8 @@ class LiveVariablesAnalysis extends
 
   @Override
   LiveVariableLattice flowThrough(Node node, LiveVariableLattice input) {
-    final BitSet gen = new BitSet(input.liveSet.size());
-    final BitSet kill = new BitSet(input.liveSet.size());
+    gen.clear();
+    kill.clear();
 
     // Make kills conditional if the node can end abruptly by an exception.
     boolean conditional = false;
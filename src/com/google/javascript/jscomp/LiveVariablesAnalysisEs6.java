@@ -52,7 +52,8 @@ class LiveVariablesAnalysisEs6
 
   public static final String ARGUMENT_ARRAY_ALIAS = "arguments";
 
-  private static class LiveVariableJoinOp implements JoinOp<LiveVariableLattice> {
+  private static class LiveVariableJoinOp
+      implements JoinOp.InPlaceJoinOp<LiveVariableLattice> {
     @Override
     public LiveVariableLattice apply(List<LiveVariableLattice> in) {
       LiveVariableLattice result = new LiveVariableLattice(in.get(0));
@@ -61,6 +62,17 @@ class LiveVariablesAnalysisEs6
       }
       return result;
     }
+
+    @Override
+    public void copyInto(LiveVariableLattice target, LiveVariableLattice value) {
+      target.liveSet.clear();
+      target.liveSet.or(value.liveSet);
+    }
+
+    @Override
+    public void joinInto(LiveVariableLattice target, LiveVariableLattice value) {
+      target.liveSet.or(value.liveSet);
+    }
   }
 
   /**
@@ -113,6 +125,10 @@ class LiveVariablesAnalysisEs6
   private final Scope jsScopeChild;
   private final Set<Var> escaped;
 
+  // Scratch sets for flowThrough, reused to avoid allocating two sets per step.
+  private final BitSet gen = new BitSet();
+  private final BitSet kill = new BitSet();
+
   // Maps the variable name to it's position
   // in this jsScope were we to combine the function and function body scopes. The Integer
   // represents the equivalent of the variable index property within a scope
@@ -207,8 +223,8 @@ class LiveVariablesAnalysisEs6
 
   @Override
   LiveVariableLattice flowThrough(Node node, LiveVariableLattice input) {
-    final BitSet gen = new BitSet(input.liveSet.size());
-    final BitSet kill = new BitSet(input.liveSet.size());
+    gen.clear();
+    kill.clear();
 
     // Make kills conditional if the node can end abruptly by an exception.
     boolean conditional = false;
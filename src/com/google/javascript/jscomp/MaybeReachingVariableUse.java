@@ -127,7 +127,7 @@ class MaybeReachingVariableUse extends
    *
    * The read of A "may be" exposed to A = 1 in the beginning.
    */
-  private static class ReachingUsesJoinOp implements JoinOp<ReachingUses> {
+  private static class ReachingUsesJoinOp implements JoinOp.InPlaceJoinOp<ReachingUses> {
     @Override
     public ReachingUses apply(List<ReachingUses> from) {
       ReachingUses result = new ReachingUses();
@@ -136,6 +136,17 @@ class MaybeReachingVariableUse extends
       }
       return result;
     }
+
+    @Override
+    public void copyInto(ReachingUses target, ReachingUses value) {
+      target.mayUseMap.clear();
+      target.mayUseMap.putAll(value.mayUseMap);
+    }
+
+    @Override
+    public void joinInto(ReachingUses target, ReachingUses value) {
+      target.mayUseMap.putAll(value.mayUseMap);
+    }
   }
 
   @Override
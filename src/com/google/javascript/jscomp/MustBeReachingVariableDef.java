@@ -162,47 +162,41 @@ final class MustBeReachingVariableDef extends
     }
   }
 
-  private static class MustDefJoin extends JoinOp.BinaryJoinOp<MustDef> {
+  private static class MustDefJoin extends JoinOp.BinaryJoinOp<MustDef>
+      implements JoinOp.InPlaceJoinOp<MustDef> {
     @Override
     public MustDef apply(MustDef a, MustDef b) {
-      MustDef result = new MustDef();
-      Map<Var, Definition> resultMap = result.reachingDef;
-
-      // Take the join of all variables that are not TOP in this.
-      for (Map.Entry<Var, Definition> varEntry : a.reachingDef.entrySet()) {
-        Var var = varEntry.getKey();
-        Definition aDef = varEntry.getValue();
-
-        if (aDef == null) {
-          // "a" is BOTTOM implies that the variable has more than one possible
-          // definition. We set the join of this to be BOTTOM regardless of what
-          // "b" might be.
-          resultMap.put(var, null);
-          continue;
-        }
+      MustDef result = new MustDef(a);
+      joinInto(result, b);
+      return result;
+    }
 
-        if (b.reachingDef.containsKey(var)) {
-          Definition bDef = b.reachingDef.get(var);
+    @Override
+    public void copyInto(MustDef target, MustDef value) {
+      target.reachingDef.clear();
+      target.reachingDef.putAll(value.reachingDef);
+    }
 
-          if (aDef.equals(bDef)) {
-            resultMap.put(var, aDef);
-          } else {
-            resultMap.put(var, null);
-          }
-        } else {
-          resultMap.put(var, aDef);
+    @Override
+    public void joinInto(MustDef target, MustDef value) {
+      // Take the join of all variables that are not TOP in target. If the
+      // definition in target is BOTTOM, it has more than one possible
+      // definition and the join stays BOTTOM regardless of the value.
+      for (Map.Entry<Var, Definition> varEntry : target.reachingDef.entrySet()) {
+        Definition targetDef = varEntry.getValue();
+        if (targetDef != null && value.reachingDef.containsKey(varEntry.getKey())
+            && !targetDef.equals(value.reachingDef.get(varEntry.getKey()))) {
+          varEntry.setValue(null);
         }
       }
 
-      // Take the join of all variables that are not TOP in other but it is TOP
-      // in this.
-      for (Map.Entry<Var, Definition> entry : b.reachingDef.entrySet()) {
-        Var var = entry.getKey();
-        if (!a.reachingDef.containsKey(var)) {
-          resultMap.put(var, entry.getValue());
+      // Take the join of all variables that are not TOP in value but are TOP
+      // in target.
+      for (Map.Entry<Var, Definition> entry : value.reachingDef.entrySet()) {
+        if (!target.reachingDef.containsKey(entry.getKey())) {
+          target.reachingDef.put(entry.getKey(), entry.getValue());
         }
       }
-      return result;
     }
   }
 
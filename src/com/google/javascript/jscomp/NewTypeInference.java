@@ -50,12 +50,15 @@ import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.TypeI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * New type inference algorithm.
@@ -457,6 +460,7 @@ final class NewTypeInference implements CompilerPass {
   private final boolean joinTypesWhenInstantiatingGenerics;
   private final boolean allowPropertyOnSubtypes;
   private final boolean areTypeVariablesUnknown;
+  private final int numParallelThreads;
 
   // Used only for development
   private static boolean showDebuggingPrints = false;
@@ -500,7 +504,11 @@ final class NewTypeInference implements CompilerPass {
     this.compiler = compiler;
     this.convention = compiler.getCodingConvention();
     this.envs = new LinkedHashMap<>();
-    this.summaries = new LinkedHashMap<>();
+    this.numParallelThreads = compiler.getOptions().numParallelThreads;
+    // The summaries are shared by the functions analyzed in parallel.
+    this.summaries = numParallelThreads > 1
+        ? new ConcurrentHashMap<NTIScope, JSType>()
+        : new LinkedHashMap<NTIScope, JSType>();
     this.deferredChecks = new LinkedHashMap<>();
     this.ABSTRACT_METHOD_NAME = convention.getAbstractMethodName();
     this.reportUnknownTypes =
@@ -520,6 +528,32 @@ final class NewTypeInference implements CompilerPass {
     this.areTypeVariablesUnknown = inCompatibilityMode;
   }
 
+  /**
+   * Creates an analysis of single functions for {@link #analyzeFunctionsInParallel}.
+   * It shares the global type information and the summaries of {@code parent},
+   * and keeps its own type environments, deferred checks and type mismatches.
+   */
+  private NewTypeInference(NewTypeInference parent) {
+    this.warnings = new WarningReporter(parent.compiler);
+    this.compiler = parent.compiler;
+    this.convention = parent.convention;
+    this.envs = new LinkedHashMap<>();
+    this.numParallelThreads = 1;
+    this.summaries = parent.summaries;
+    this.deferredChecks = new LinkedHashMap<>();
+    this.ABSTRACT_METHOD_NAME = parent.ABSTRACT_METHOD_NAME;
+    this.reportUnknownTypes = parent.reportUnknownTypes;
+    this.reportNullDeref = parent.reportNullDeref;
+    this.assertionFunctionsMap = parent.assertionFunctionsMap;
+    this.joinTypesWhenInstantiatingGenerics = parent.joinTypesWhenInstantiatingGenerics;
+    this.allowPropertyOnSubtypes = parent.allowPropertyOnSubtypes;
+    this.areTypeVariablesUnknown = parent.areTypeVariablesUnknown;
+    this.ttlObj = parent.ttlObj;
+    this.mismatches = new ArrayList<>();
+    this.implicitInterfaceUses = new ArrayList<>();
+    initCommonTypes(parent.symbolTable);
+  }
+
   @VisibleForTesting // Only used from tests
   public NTIScope processForTesting(Node externs, Node root) {
     process(externs, root);
@@ -529,31 +563,18 @@ final class NewTypeInference implements CompilerPass {
   @Override
   public void process(Node externs, Node root) {
     try {
-      this.symbolTable = (GlobalTypeInfo) compiler.getGlobalTypeInfo();
-      this.commonTypes = this.symbolTable.getCommonTypes();
+      initCommonTypes((GlobalTypeInfo) compiler.getGlobalTypeInfo());
       this.ttlObj = new TypeTransformation(compiler, this.symbolTable.getGlobalScope());
       this.mismatches = symbolTable.getMismatches();
       this.implicitInterfaceUses = symbolTable.getImplicitInterfaceUses();
 
-      this.BOOLEAN = this.commonTypes.BOOLEAN;
-      this.BOTTOM = this.commonTypes.BOTTOM;
-      this.FALSE_TYPE = this.commonTypes.FALSE_TYPE;
-      this.FALSY = this.commonTypes.FALSY;
-      this.NULL = this.commonTypes.NULL;
-      this.NULL_OR_UNDEFINED = this.commonTypes.NULL_OR_UNDEFINED;
-      this.NUMBER = this.commonTypes.NUMBER;
-      this.NUMBER_OR_STRING = this.commonTypes.NUMBER_OR_STRING;
-      this.STRING = this.commonTypes.STRING;
-      this.TOP = this.commonTypes.TOP;
-      this.TOP_OBJECT = this.commonTypes.getTopObject();
-      this.TRUE_TYPE = this.commonTypes.TRUE_TYPE;
-      this.TRUTHY = this.commonTypes.TRUTHY;
-      this.UNDEFINED = this.commonTypes.UNDEFINED;
-      this.UNKNOWN = this.commonTypes.UNKNOWN;
-
-      for (NTIScope scope : symbolTable.getScopes()) {
-        analyzeFunction(scope);
-        envs.clear();
+      if (numParallelThreads > 1) {
+        analyzeFunctionsInParallel();
+      } else {
+        for (NTIScope scope : symbolTable.getScopes()) {
+          analyzeFunction(scope);
+          envs.clear();
+        }
       }
       for (DeferredCheck check : deferredChecks.values()) {
         check.runCheck(summaries, warnings);
@@ -570,6 +591,101 @@ final class NewTypeInference implements CompilerPass {
     }
   }
 
+  private void initCommonTypes(GlobalTypeInfo symbolTable) {
+    this.symbolTable = symbolTable;
+    this.commonTypes = symbolTable.getCommonTypes();
+    this.BOOLEAN = this.commonTypes.BOOLEAN;
+    this.BOTTOM = this.commonTypes.BOTTOM;
+    this.FALSE_TYPE = this.commonTypes.FALSE_TYPE;
+    this.FALSY = this.commonTypes.FALSY;
+    this.NULL = this.commonTypes.NULL;
+    this.NULL_OR_UNDEFINED = this.commonTypes.NULL_OR_UNDEFINED;
+    this.NUMBER = this.commonTypes.NUMBER;
+    this.NUMBER_OR_STRING = this.commonTypes.NUMBER_OR_STRING;
+    this.STRING = this.commonTypes.STRING;
+    this.TOP = this.commonTypes.TOP;
+    this.TOP_OBJECT = this.commonTypes.getTopObject();
+    this.TRUE_TYPE = this.commonTypes.TRUE_TYPE;
+    this.TRUTHY = this.commonTypes.TRUTHY;
+    this.UNDEFINED = this.commonTypes.UNDEFINED;
+    this.UNKNOWN = this.commonTypes.UNKNOWN;
+  }
+
+  /**
+   * Analyzes the scopes on a thread pool, one nesting level at a time, from the
+   * innermost functions to the global scope.
+   *
+   * <p>A scope only reads the summaries of the functions defined directly in it,
+   * so the scopes at the same level do not depend on one another, and the
+   * summaries they need are computed at the level below. Each scope is analyzed
+   * by its own {@link NewTypeInference}. The warnings, type mismatches and
+   * deferred checks of the scopes are merged in the order of
+   * {@link GlobalTypeInfo#getScopes}, so the result is the same as when the
+   * scopes are analyzed one after the other.
+   */
+  private void analyzeFunctionsInParallel() {
+    List<NTIScope> scopes = symbolTable.getScopes();
+    List<List<NTIScope>> levels = new ArrayList<>();
+    for (NTIScope scope : scopes) {
+      int depth = 0;
+      for (NTIScope s = scope.getParent(); s != null; s = s.getParent()) {
+        depth++;
+      }
+      while (levels.size() <= depth) {
+        levels.add(new ArrayList<NTIScope>());
+      }
+      levels.get(depth).add(scope);
+    }
+
+    Map<NTIScope, FunctionAnalysis> analyses = new IdentityHashMap<>();
+    for (int depth = levels.size() - 1; depth >= 0; depth--) {
+      List<Callable<FunctionAnalysis>> tasks = new ArrayList<>();
+      for (final NTIScope scope : levels.get(depth)) {
+        tasks.add(new Callable<FunctionAnalysis>() {
+          @Override
+          public FunctionAnalysis call() {
+            FunctionAnalysis analysis = new FunctionAnalysis(NewTypeInference.this, scope);
+            compiler.setDeferredErrorManagerForCurrentThread(analysis.errors);
+            try {
+              analysis.worker.analyzeFunction(scope);
+            } finally {
+              compiler.setDeferredErrorManagerForCurrentThread(null);
+            }
+            return analysis;
+          }
+        });
+      }
+      for (FunctionAnalysis analysis : ParallelTasks.runAll(compiler, tasks)) {
+        analyses.put(analysis.scope, analysis);
+      }
+    }
+
+    for (NTIScope scope : scopes) {
+      FunctionAnalysis analysis = analyses.get(scope);
+      NewTypeInference worker = analysis.worker;
+      analysis.errors.replay(compiler);
+      this.mismatches.addAll(worker.mismatches);
+      this.implicitInterfaceUses.addAll(worker.implicitInterfaceUses);
+      this.deferredChecks.putAll(worker.deferredChecks);
+      // The deferred checks of the worker record their mismatches through it.
+      worker.mismatches = this.mismatches;
+      worker.implicitInterfaceUses = this.implicitInterfaceUses;
+    }
+  }
+
+  /** The analysis of a single scope by {@link #analyzeFunctionsInParallel}. */
+  private static final class FunctionAnalysis {
+    final NTIScope scope;
+    final NewTypeInference worker;
+    final DeferredErrorManager errors;
+
+    FunctionAnalysis(NewTypeInference parent, NTIScope scope) {
+      this.scope = scope;
+      this.worker = new NewTypeInference(parent);
+      this.errors = new DeferredErrorManager(parent.compiler);
+    }
+  }
+
   static void updatePeakMem() {
     Runtime rt = Runtime.getRuntime();
     long currentUsedMem = (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024);
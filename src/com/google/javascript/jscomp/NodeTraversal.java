@@ -936,9 +936,7 @@ public class NodeTraversal {
     Object o = cfgs.peek();
     if (o instanceof Node) {
       Node cfgRoot = (Node) o;
-      ControlFlowAnalysis cfa = new ControlFlowAnalysis(compiler, false, true);
-      cfa.process(null, cfgRoot);
-      result = cfa.getCfg();
+      result = ControlFlowAnalysis.getSharedCfg(compiler, cfgRoot, true);
       cfgs.pop();
       cfgs.push(result);
     } else {
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.javascript.rhino.Node;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs function-local work on several functions at once.
+ *
+ * <p>The work done on a function must only read and modify the subtree of that function, and the
+ * functions given to {@link #process} must not be nested in one another. Changes and errors
+ * reported by the work are held back and replayed in the order of the functions, so the result
+ * does not depend on how the work was scheduled.
+ */
+class ParallelFunctionProcessor {
+  /** The work to do on a single function. */
+  interface FunctionCallback {
+    void processFunction(Node function);
+  }
+
+  // Splitting the functions into a few more batches than threads evens out the load without
+  // creating a task per function.
+  private static final int BATCHES_PER_THREAD = 4;
+
+  private final AbstractCompiler compiler;
+  private final int numParallelThreads;
+
+  ParallelFunctionProcessor(AbstractCompiler compiler, int numParallelThreads) {
+    this.compiler = compiler;
+    this.numParallelThreads = numParallelThreads;
+  }
+
+  /** Whether the function contains no other function, in its parameters or its body. */
+  static boolean isLeafFunction(Node function) {
+    return !NodeUtil.containsFunction(function.getSecondChild())
+        && !NodeUtil.containsFunction(function.getLastChild());
+  }
+
+  void process(List<Node> functions, final FunctionCallback callback) {
+    if (functions.isEmpty()) {
+      return;
+    }
+    // The pool is shared with the other passes and the other iterations of the optimization loop,
+    // so running the work does not start new threads every time.
+    ListeningExecutorService executorService = compiler.getThreadPool();
+
+    int numBatches = numParallelThreads * BATCHES_PER_THREAD;
+    int batchSize = (functions.size() + numBatches - 1) / numBatches;
+    List<ListenableFuture<Reports>> futureList = new ArrayList<>();
+    for (final List<Node> batch : Lists.partition(functions, batchSize)) {
+      futureList.add(executorService.submit(new Callable<Reports>() {
+        @Override
+        public Reports call() {
+          Reports reports = new Reports(compiler);
+          compiler.setDeferredErrorManagerForCurrentThread(reports.errors);
+          compiler.setDeferredChangeReportsForCurrentThread(reports.changes);
+          try {
+            for (Node function : batch) {
+              callback.processFunction(function);
+            }
+          } finally {
+            compiler.setDeferredErrorManagerForCurrentThread(null);
+            compiler.setDeferredChangeReportsForCurrentThread(null);
+          }
+          return reports;
+        }
+      }));
+    }
+
+    List<Reports> reportsPerBatch;
+    try {
+      reportsPerBatch = Futures.allAsList(futureList).get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    }
+    for (Reports reports : reportsPerBatch) {
+      reports.changes.replay(compiler);
+      reports.errors.replay(compiler);
+    }
+  }
+
+  private static final class Reports {
+    final DeferredErrorManager errors;
+    final DeferredChangeReports changes = new DeferredChangeReports();
+
+    Reports(AbstractCompiler compiler) {
+      this.errors = new DeferredErrorManager(compiler);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
+
+/**
+ * Prints the JS code of several modules at once.
+ *
+ * <p>Printing only reads the AST, so every module can be printed on its own thread, into its
+ * own buffer and with its own source map. The outputs are handed to the callback in the order of
+ * the modules, on the calling thread, so the written files and source maps don't depend on how
+ * the work was scheduled and are the same as when the modules are printed one after the other.
+ */
+@GwtIncompatible("Unnecessary")
+class ParallelModulePrinter {
+  /** The code of a module, and its source map if source maps are generated. */
+  static final class ModuleOutput {
+    final JSModule module;
+    final String code;
+    @Nullable final SourceMap sourceMap;
+
+    ModuleOutput(JSModule module, String code, @Nullable SourceMap sourceMap) {
+      this.module = module;
+      this.code = code;
+      this.sourceMap = sourceMap;
+    }
+  }
+
+  /** Receives the printed modules, in module order. */
+  interface Callback {
+    void moduleOutput(ModuleOutput output) throws IOException;
+  }
+
+  private final Compiler compiler;
+  private final int numParallelThreads;
+
+  ParallelModulePrinter(Compiler compiler, int numParallelThreads) {
+    this.compiler = compiler;
+    this.numParallelThreads = numParallelThreads;
+  }
+
+  void print(List<JSModule> modules, Callback callback) throws IOException {
+    if (modules.isEmpty()) {
+      return;
+    }
+    // The printers ask for the type registry, which is created lazily and
+    // must not be created by several threads at once.
+    compiler.getTypeIRegistry();
+    final boolean generateSourceMaps = compiler.getOptions().sourceMapOutputPath != null;
+
+    ListeningExecutorService executorService =
+        CompilerExecutor.newThreadPool("jscompiler-ParallelModulePrinter", numParallelThreads);
+
+    List<ListenableFuture<ModuleOutput>> futureList = new ArrayList<>(modules.size());
+    for (final JSModule module : modules) {
+      futureList.add(executorService.submit(new Callable<ModuleOutput>() {
+        @Override
+        public ModuleOutput call() {
+          SourceMap sourceMap = generateSourceMaps ? compiler.createSourceMap() : null;
+          return new ModuleOutput(module, compiler.toSource(module, sourceMap), sourceMap);
+        }
+      }));
+    }
+    executorService.shutdown();
+
+    try {
+      // Hand out each module as soon as it and the modules before it are
+      // printed, so the output of the first modules can be written while
+      // the later ones are still being printed.
+      for (int i = 0; i < futureList.size(); i++) {
+        ModuleOutput output;
+        try {
+          output = futureList.get(i).get();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+          throwIfUnchecked(e.getCause());
+          throw new RuntimeException(e.getCause());
+        }
+        // Don't keep the code of modules already written.
+        futureList.set(i, null);
+        callback.moduleOutput(output);
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.javascript.jscomp.PassFactory.ScriptCheckPassFactory;
+import com.google.javascript.rhino.Node;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs checks created by {@link ScriptCheckPassFactory} on several scripts at once. Each script is
+ * checked by all the checks, in order, on a single thread and with pass instances of its own.
+ *
+ * <p>Errors are held back per script and reported in script order once all scripts are checked,
+ * so the result does not depend on how the work was scheduled.
+ */
+class ParallelScriptChecks {
+  private final AbstractCompiler compiler;
+  private final int numParallelThreads;
+
+  ParallelScriptChecks(AbstractCompiler compiler, int numParallelThreads) {
+    this.compiler = compiler;
+    this.numParallelThreads = numParallelThreads;
+  }
+
+  void process(final List<ScriptCheckPassFactory> checks, Node root) {
+    ListeningExecutorService executorService =
+        CompilerExecutor.newThreadPool("jscompiler-ParallelScriptChecks", numParallelThreads);
+    List<ListenableFuture<DeferredErrorManager>> futureList = new ArrayList<>();
+    for (final Node script : root.children()) {
+      futureList.add(executorService.submit(new Callable<DeferredErrorManager>() {
+        @Override
+        public DeferredErrorManager call() {
+          DeferredErrorManager errors = new DeferredErrorManager(compiler);
+          compiler.setDeferredErrorManagerForCurrentThread(errors);
+          try {
+            for (ScriptCheckPassFactory check : checks) {
+              check.create(compiler).hotSwapScript(script, null);
+            }
+          } finally {
+            compiler.setDeferredErrorManagerForCurrentThread(null);
+          }
+          return errors;
+        }
+      }));
+    }
+
+    executorService.shutdown();
+    List<DeferredErrorManager> errorsPerScript;
+    try {
+      errorsPerScript = Futures.allAsList(futureList).get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    }
+    for (DeferredErrorManager errors : errorsPerScript) {
+      errors.replay(compiler);
+    }
+  }
+}
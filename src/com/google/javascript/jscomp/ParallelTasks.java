@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs independent tasks on the worker threads of the compiler, for passes that split their work
+ * into tasks that each compute a result to be applied on the compiler thread.
+ *
+ * <p>The tasks must not wait on each other or submit more work to the compiler's thread pool.
+ */
+@GwtIncompatible("java.util.concurrent")
+final class ParallelTasks {
+  private ParallelTasks() {}
+
+  /** Runs the tasks and returns their results, in the order of the tasks. */
+  static <T> List<T> runAll(AbstractCompiler compiler, List<? extends Callable<T>> tasks) {
+    ListeningExecutorService executorService = compiler.getThreadPool();
+    List<ListenableFuture<T>> futureList = new ArrayList<>(tasks.size());
+    for (Callable<T> task : tasks) {
+      futureList.add(executorService.submit(task));
+    }
+    try {
+      return Futures.allAsList(futureList).get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
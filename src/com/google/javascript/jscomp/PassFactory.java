@@ -127,4 +127,17 @@ public abstract class PassFactory {
       return this.create(compiler);
     }
   }
+
+  /**
+   * A pass-factory for one-time checks that only read the AST and report errors, and that look at
+   * each script on its own, so that checking a script with {@link HotSwapCompilerPass#hotSwapScript}
+   * gives the same errors as checking the whole program. Consecutive checks of this kind do not
+   * depend on each other, and {@link PhaseOptimizer} may check different scripts concurrently.
+   */
+  public abstract static class ScriptCheckPassFactory extends HotSwapPassFactory {
+
+    ScriptCheckPassFactory(String name) {
+      super(name, true);
+    }
+  }
 }
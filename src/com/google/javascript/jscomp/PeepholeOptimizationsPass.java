@@ -17,8 +17,10 @@
 package com.google.javascript.jscomp;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
 import com.google.javascript.rhino.Node;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -32,6 +34,7 @@ class PeepholeOptimizationsPass implements CompilerPass {
   private final AbstractCompiler compiler;
   private final String passName;
   private final AbstractPeepholeOptimization[] peepholeOptimizations;
+  private final int numParallelThreads;
   private boolean retraverseOnChange;
 
   /** Creates a peephole optimization pass that runs the given optimizations. */
@@ -40,6 +43,7 @@ class PeepholeOptimizationsPass implements CompilerPass {
     this.compiler = compiler;
     this.passName = passName;
     this.peepholeOptimizations = optimizations;
+    this.numParallelThreads = compiler.getOptions().numParallelThreads;
     this.retraverseOnChange = true;
   }
 
@@ -56,6 +60,9 @@ class PeepholeOptimizationsPass implements CompilerPass {
     for (List<Node> changedScopeNodes = compiler.getChangedScopeNodesForPass(passName);
         changedScopeNodes == null || !changedScopeNodes.isEmpty();
         changedScopeNodes = compiler.getChangedScopeNodesForPass(passName)) {
+      if (changedScopeNodes != null && numParallelThreads > 1) {
+        changedScopeNodes = optimizeLeafFunctionsInParallel(changedScopeNodes);
+      }
       NodeTraversal.traverseEs6ScopeRoots(
           compiler, root, changedScopeNodes, new PeepCallback(), false);
 
@@ -66,15 +73,67 @@ class PeepholeOptimizationsPass implements CompilerPass {
     }
   }
 
+  /**
+   * Optimizes the changed functions that contain no other function on several threads. Each
+   * thread only optimizes the nodes inside the functions it is given. The function nodes
+   * themselves are optimized afterwards on the compiler thread, as that may change their parents.
+   *
+   * @return The changed scope nodes that are still to be optimized.
+   */
+  private List<Node> optimizeLeafFunctionsInParallel(List<Node> changedScopeNodes) {
+    List<Node> leafFunctions = new ArrayList<>();
+    List<Node> otherScopeNodes = new ArrayList<>();
+    for (Node scopeNode : changedScopeNodes) {
+      if (scopeNode.isFunction() && ParallelFunctionProcessor.isLeafFunction(scopeNode)) {
+        leafFunctions.add(scopeNode);
+      } else {
+        otherScopeNodes.add(scopeNode);
+      }
+    }
+    if (leafFunctions.size() < 2) {
+      return changedScopeNodes;
+    }
+
+    new ParallelFunctionProcessor(compiler, numParallelThreads)
+        .process(
+            leafFunctions,
+            new ParallelFunctionProcessor.FunctionCallback() {
+              @Override
+              public void processFunction(final Node function) {
+                NodeTraversal.traverseEs6ScopeRoots(
+                    compiler,
+                    null,
+                    ImmutableList.of(function),
+                    new PeepCallback() {
+                      @Override
+                      public void visit(NodeTraversal t, Node n, Node parent) {
+                        if (n != function) {
+                          super.visit(t, n, parent);
+                        }
+                      }
+                    },
+                    false);
+              }
+            });
+    for (Node function : leafFunctions) {
+      optimize(function);
+    }
+    return otherScopeNodes;
+  }
+
   private class PeepCallback extends AbstractPostOrderCallback {
     @Override
     public void visit(NodeTraversal t, Node n, Node parent) {
-      Node currentNode = n;
-      for (AbstractPeepholeOptimization optim : peepholeOptimizations) {
-        currentNode = optim.optimizeSubtree(currentNode);
-        if (currentNode == null) {
-          return;
-        }
+      optimize(n);
+    }
+  }
+
+  private void optimize(Node n) {
+    Node currentNode = n;
+    for (AbstractPeepholeOptimization optim : peepholeOptimizations) {
+      currentNode = optim.optimizeSubtree(currentNode);
+      if (currentNode == null) {
+        return;
       }
     }
   }
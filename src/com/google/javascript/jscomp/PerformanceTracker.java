@@ -42,6 +42,12 @@ import java.util.Map.Entry;
  * A PerformanceTracker collects statistics about the runtime of each pass, and
  * how much a pass impacts the size of the compiled output, before and after
  * gzip.
+ *
+ * <p>When the JVM supports it, the tracker also records for every pass run the
+ * bytes allocated and the CPU time used by the compiler thread, and the number
+ * and duration of the garbage collections that happened while the pass ran.
+ * Work that a pass hands off to other threads is not included in the allocation
+ * and CPU numbers.
  */
 public final class PerformanceTracker {
   private static final int DEFAULT_WHEN_SIZE_UNTRACKED = -1;
@@ -70,6 +76,14 @@ public final class PerformanceTracker {
   private int changes = 0;
   private int loopRuns = 0;
   private int loopChanges = 0;
+  private long allocBytes = 0;
+  private long cpuTime = 0;
+  private long gcCount = 0;
+  private long gcTime = 0;
+
+  // The iteration of the optimization loop that is currently running, or 0
+  // when no loop is running.
+  private int loopIteration = 0;
 
   private int jsLines = 0;
   private int jsSources = 0;
@@ -109,7 +123,13 @@ public final class PerformanceTracker {
   }
 
   void recordPassStart(String passName, boolean isOneTime) {
-    this.currentPass.push(new Stats(passName, isOneTime));
+    Stats logStats = new Stats(passName, isOneTime);
+    logStats.loopIteration = this.loopIteration;
+    logStats.startAllocBytes = JvmMetrics.getCurrentThreadAllocatedBytes();
+    logStats.startCpuTime = JvmMetrics.getCurrentThreadCpuTime();
+    logStats.startGcCount = JvmMetrics.getGarbageCollectionCount();
+    logStats.startGcTime = JvmMetrics.getGarbageCollectionTime();
+    this.currentPass.push(logStats);
     // In Compiler, toSource may be called after every pass X. We don't want it
     // to reset the handler, because recordPassStop for pass X has not been
     // called, so we are falsely logging that pass X didn't make changes.
@@ -118,6 +138,16 @@ public final class PerformanceTracker {
     }
   }
 
+  /**
+   * Records that the optimization loop started the given iteration. Passes that
+   * run until the next call are logged as part of that iteration.
+   *
+   * @param iteration the 1-based iteration number, or 0 when the loop finished
+   */
+  void recordLoopIteration(int iteration) {
+    this.loopIteration = iteration;
+  }
+
   /**
    * Updates the saved jsRoot and resets the size tracking fields accordingly.
    * @param jsRoot
@@ -149,6 +179,10 @@ public final class PerformanceTracker {
    */
   void recordPassStop(String passName, long runtime) {
     int allocMem = getAllocatedMegabytes();
+    long allocBytes = JvmMetrics.getCurrentThreadAllocatedBytes();
+    long cpuTime = JvmMetrics.getCurrentThreadCpuTime();
+    long gcCount = JvmMetrics.getGarbageCollectionCount();
+    long gcTime = JvmMetrics.getGarbageCollectionTime();
     Stats logStats = this.currentPass.pop();
     checkState(passName.equals(logStats.pass));
     this.log.add(logStats);
@@ -156,6 +190,10 @@ public final class PerformanceTracker {
     // Update fields that aren't related to code size
     logStats.runtime = runtime;
     logStats.allocMem = allocMem;
+    logStats.allocBytes = measuredDelta(logStats.startAllocBytes, allocBytes);
+    logStats.cpuTime = nanosToMillis(measuredDelta(logStats.startCpuTime, cpuTime));
+    logStats.gcCount = gcCount - logStats.startGcCount;
+    logStats.gcTime = gcTime - logStats.startGcTime;
     logStats.runs = 1;
     if (this.codeChange.hasCodeChanged()) {
       logStats.changes = 1;
@@ -228,6 +266,20 @@ public final class PerformanceTracker {
     return (int) (bytes / (1024 * 1024));
   }
 
+  /** Returns end - start, or -1 if either sample is unavailable. */
+  private static long measuredDelta(long start, long end) {
+    return start < 0 || end < 0 ? -1 : end - start;
+  }
+
+  /** Adds a measurement to a total, keeping -1 if any measurement was unavailable. */
+  private static long addMeasured(long total, long value) {
+    return total < 0 || value < 0 ? -1 : total + value;
+  }
+
+  private static long nanosToMillis(long nanos) {
+    return nanos < 0 ? -1 : nanos / 1000000;
+  }
+
   private int getAllocatedMegabytes() {
     Runtime javaRuntime = Runtime.getRuntime();
     return bytesToMB(javaRuntime.totalMemory() - javaRuntime.freeMemory());
@@ -289,6 +341,16 @@ public final class PerformanceTracker {
     return this.loopRuns;
   }
 
+  public long getAllocatedBytes() {
+    calcTotalStats();
+    return this.allocBytes;
+  }
+
+  public long getCpuTime() {
+    calcTotalStats();
+    return this.cpuTime;
+  }
+
   public ImmutableMap<String, Stats> getStats() {
     calcTotalStats();
     return this.summary;
@@ -309,6 +371,10 @@ public final class PerformanceTracker {
       this.maxMem = Math.max(this.maxMem, stats.allocMem);
       this.runs += stats.runs;
       this.changes += stats.changes;
+      this.allocBytes = addMeasured(this.allocBytes, stats.allocBytes);
+      this.cpuTime = addMeasured(this.cpuTime, stats.cpuTime);
+      this.gcCount += stats.gcCount;
+      this.gcTime += stats.gcTime;
       if (!stats.isOneTime) {
         this.loopRuns += stats.runs;
         this.loopChanges += stats.changes;
@@ -336,6 +402,10 @@ public final class PerformanceTracker {
       entry.allocMem = Math.max(entry.allocMem, logStat.allocMem);
       entry.runs++;
       entry.changes += logStat.changes;
+      entry.allocBytes = addMeasured(entry.allocBytes, logStat.allocBytes);
+      entry.cpuTime = addMeasured(entry.cpuTime, logStat.cpuTime);
+      entry.gcCount += logStat.gcCount;
+      entry.gcTime += logStat.gcTime;
       entry.astDiff += logStat.astDiff;
       entry.diff += logStat.diff;
       entry.gzDiff += logStat.gzDiff;
@@ -373,6 +443,10 @@ public final class PerformanceTracker {
         "Wall time(ms): " + (this.endTime - this.startTime),
         "Passes runtime(ms): " + this.passesRuntime,
         "Max mem usage (measured after each pass)(MB): " + this.maxMem,
+        "Passes allocated bytes: " + this.allocBytes,
+        "Passes CPU time(ms): " + this.cpuTime,
+        "#GCs during passes: " + this.gcCount,
+        "GC time during passes(ms): " + this.gcTime,
         "#Runs: " + this.runs,
         "#Changing runs: " + this.changes,
         "#Loopable runs: " + this.loopRuns,
@@ -392,22 +466,26 @@ public final class PerformanceTracker {
         "Extern sources: " + this.externSources + "\n\n"));
 
     this.output.print("Summary:\n"
-        + "pass,runtime,allocMem,runs,changingRuns,astReduction,reduction,gzReduction\n");
+        + "pass,runtime,allocMem,runs,changingRuns,astReduction,reduction,gzReduction,"
+        + "allocBytes,cpuTime,gcCount,gcTime\n");
     for (Entry<String, Stats> entry : statEntries) {
       String key = entry.getKey();
       Stats stats = entry.getValue();
-      this.output.print(SimpleFormat.format("%s,%d,%d,%d,%d,%d,%d,%d\n", key, stats.runtime,
-            stats.allocMem, stats.runs, stats.changes, stats.astDiff, stats.diff, stats.gzDiff));
+      this.output.print(SimpleFormat.format("%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d\n", key,
+            stats.runtime, stats.allocMem, stats.runs, stats.changes, stats.astDiff, stats.diff,
+            stats.gzDiff, stats.allocBytes, stats.cpuTime, stats.gcCount, stats.gcTime));
     }
     this.output.print("\n");
 
     this.output.print(Joiner.on("\n").join(
         "Log:",
-        "pass,runtime,allocMem,codeChanged,astReduction,reduction,gzReduction,astSize,size,gzSize\n"));
+        "pass,runtime,allocMem,codeChanged,astReduction,reduction,gzReduction,astSize,size,gzSize,"
+            + "allocBytes,cpuTime,gcCount,gcTime,loopIteration\n"));
     for (Stats stats : this.log) {
-      this.output.print(SimpleFormat.format("%s,%d,%d,%b,%d,%d,%d,%d,%d,%d\n",
+      this.output.print(SimpleFormat.format("%s,%d,%d,%b,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d\n",
           stats.pass, stats.runtime, stats.allocMem, stats.changes == 1,
-          stats.astDiff, stats.diff, stats.gzDiff, stats.astSize, stats.size, stats.gzSize));
+          stats.astDiff, stats.diff, stats.gzDiff, stats.astSize, stats.size, stats.gzSize,
+          stats.allocBytes, stats.cpuTime, stats.gcCount, stats.gcTime, stats.loopIteration));
     }
     this.output.print("\n");
     // this.output can be System.out, so don't close it to not lose subsequent
@@ -421,6 +499,73 @@ public final class PerformanceTracker {
     }
   }
 
+  /**
+   * Writes the totals, the summary and the log as a single JSON object, for
+   * tools that post-process the tracer data.
+   */
+  public void outputJsonReport(Appendable out) throws IOException {
+    calcTotalStats();
+    out.append("{\"total\":{")
+        .append("\"startTime\":").append(String.valueOf(this.startTime))
+        .append(",\"endTime\":").append(String.valueOf(this.endTime))
+        .append(",\"runtime\":").append(String.valueOf(this.passesRuntime))
+        .append(",\"maxMem\":").append(String.valueOf(this.maxMem))
+        .append(",\"allocBytes\":").append(String.valueOf(this.allocBytes))
+        .append(",\"cpuTime\":").append(String.valueOf(this.cpuTime))
+        .append(",\"gcCount\":").append(String.valueOf(this.gcCount))
+        .append(",\"gcTime\":").append(String.valueOf(this.gcTime))
+        .append(",\"runs\":").append(String.valueOf(this.runs))
+        .append(",\"changingRuns\":").append(String.valueOf(this.changes))
+        .append(",\"loopRuns\":").append(String.valueOf(this.loopRuns))
+        .append(",\"changingLoopRuns\":").append(String.valueOf(this.loopChanges))
+        .append(",\"astReduction\":").append(String.valueOf(this.astDiff))
+        .append(",\"reduction\":").append(String.valueOf(this.diff))
+        .append(",\"gzReduction\":").append(String.valueOf(this.gzDiff))
+        .append(",\"astSize\":").append(String.valueOf(this.astSize))
+        .append(",\"size\":").append(String.valueOf(this.codeSize))
+        .append(",\"gzSize\":").append(String.valueOf(this.gzCodeSize))
+        .append("},\"summary\":[");
+    String separator = "";
+    for (Stats stats : this.summary.values()) {
+      out.append(separator);
+      appendJsonStats(out, stats, false);
+      separator = ",";
+    }
+    out.append("],\"log\":[");
+    separator = "";
+    for (Stats stats : this.log) {
+      out.append(separator);
+      appendJsonStats(out, stats, true);
+      separator = ",";
+    }
+    out.append("]}");
+  }
+
+  private static void appendJsonStats(Appendable out, Stats stats, boolean isLogEntry)
+      throws IOException {
+    out.append("{\"pass\":\"")
+        .append(stats.pass.replace("\\", "\\\\").replace("\"", "\\\""))
+        .append("\",\"oneTime\":").append(String.valueOf(stats.isOneTime))
+        .append(",\"runtime\":").append(String.valueOf(stats.runtime))
+        .append(",\"allocMem\":").append(String.valueOf(stats.allocMem))
+        .append(",\"allocBytes\":").append(String.valueOf(stats.allocBytes))
+        .append(",\"cpuTime\":").append(String.valueOf(stats.cpuTime))
+        .append(",\"gcCount\":").append(String.valueOf(stats.gcCount))
+        .append(",\"gcTime\":").append(String.valueOf(stats.gcTime))
+        .append(",\"runs\":").append(String.valueOf(stats.runs))
+        .append(",\"changes\":").append(String.valueOf(stats.changes))
+        .append(",\"astReduction\":").append(String.valueOf(stats.astDiff))
+        .append(",\"reduction\":").append(String.valueOf(stats.diff))
+        .append(",\"gzReduction\":").append(String.valueOf(stats.gzDiff));
+    if (isLogEntry) {
+      out.append(",\"loopIteration\":").append(String.valueOf(stats.loopIteration))
+          .append(",\"astSize\":").append(String.valueOf(stats.astSize))
+          .append(",\"size\":").append(String.valueOf(stats.size))
+          .append(",\"gzSize\":").append(String.valueOf(stats.gzSize));
+    }
+    out.append("}");
+  }
+
   /**
    * A Stats object contains statistics about a pass run, such as running time,
    * size changes, etc
@@ -442,5 +587,19 @@ public final class PerformanceTracker {
     public int gzSize = 0;
     public int astDiff = 0;
     public int astSize = 0;
+    /** Bytes allocated by the compiler thread, or -1 if not measurable. */
+    public long allocBytes = 0;
+    /** CPU time of the compiler thread in milliseconds, or -1 if not measurable. */
+    public long cpuTime = 0;
+    public long gcCount = 0;
+    public long gcTime = 0;
+    /** The optimization loop iteration of this run, or 0 outside of loops. */
+    public int loopIteration = 0;
+
+    // Samples taken when the pass started; only used while the pass is running.
+    private long startAllocBytes;
+    private long startCpuTime;
+    private long startGcCount;
+    private long startGcTime;
   }
 }
@@ -17,6 +17,7 @@ package com.google.javascript.jscomp;
 
 import java.util.HashMap;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * A persistent store that keeps around dependency information between compiles. See
@@ -32,10 +33,28 @@ import java.util.Map;
  * <p>This class assumes that there may not be perfect mappings from blaze inputs to compiler inputs
  * and tries to gracefully fallback to correct behavior if something doesn't match up.
  *
+ * <p>The store also keeps the ASTs of the externs, which rarely change between compiles. Each
+ * compile gets a copy of the stored tree so that it does not have to parse them again.
+ *
+ * <p>The store only lives as long as the worker process. It can be backed by a {@link
+ * PersistentParseCache}, which the inputs of a compilation using this store consult before parsing,
+ * so that a fresh process does not have to parse unchanged files again.
+ *
  * @author tdeegan@google.com
  */
 public class PersistentInputStore {
   Map<String, CacheEntry> store = new HashMap<>();
+  private final Map<String, ExternEntry> externs = new HashMap<>();
+
+  @Nullable private final PersistentParseCache parseCache;
+
+  public PersistentInputStore() {
+    this(null);
+  }
+
+  public PersistentInputStore(@Nullable PersistentParseCache parseCache) {
+    this.parseCache = parseCache;
+  }
 
   private static class CacheEntry {
     String digest;
@@ -46,6 +65,28 @@ public class PersistentInputStore {
     }
   }
 
+  private static class ExternEntry {
+    final SourceFile source;
+    @Nullable final String digest;
+    final String parserConfigKey;
+    // Never handed to a compile directly; compiles only see copies of its tree.
+    final JsAst ast;
+
+    ExternEntry(SourceFile source, @Nullable String digest, String parserConfigKey) {
+      this.source = source;
+      this.digest = digest;
+      this.parserConfigKey = parserConfigKey;
+      this.ast = new JsAst(source);
+    }
+
+    boolean matches(SourceFile source, @Nullable String digest, String parserConfigKey) {
+      if (!this.parserConfigKey.equals(parserConfigKey)) {
+        return false;
+      }
+      return this.source == source || (digest != null && digest.equals(this.digest));
+    }
+  }
+
   /**
    * Used by the worker to populate the blaze inputs for which the compiler can associate
    * CompilerInput objects with.
@@ -81,4 +122,27 @@ public class PersistentInputStore {
     // We may want to make this an error in the future if we want to be more strict.
     return new CompilerInput(source);
   }
+
+  /**
+   * Returns an extern input whose AST is a copy of the one parsed by a previous compile, if the
+   * extern is the same file or a blaze input with an unchanged digest, and was parsed with the same
+   * parser configuration.
+   */
+  CompilerInput getCachedExternInput(SourceFile source, String parserConfigKey) {
+    String path = source.getOriginalPath();
+    CacheEntry inputEntry = store.get(path);
+    String digest = inputEntry != null ? inputEntry.digest : null;
+    ExternEntry entry = externs.get(path);
+    if (entry == null || !entry.matches(source, digest, parserConfigKey)) {
+      entry = new ExternEntry(source, digest, parserConfigKey);
+      externs.put(path, entry);
+    }
+    return new CompilerInput(new RecoverableJsAst(entry.ast, true), /* isExtern= */ true);
+  }
+
+  /** Returns the on-disk cache of parse results backing this store, if any. */
+  @Nullable
+  PersistentParseCache getParseCache() {
+    return parseCache;
+  }
 }
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.javascript.jscomp.deps.DependencyInfo;
+import com.google.javascript.jscomp.parsing.Config;
+import com.google.javascript.jscomp.parsing.parser.FeatureSet;
+import com.google.javascript.rhino.Node;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.MissingResourceException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * An on-disk cache of parse results, shared between compiler processes.
+ *
+ * <p>Entries are keyed on a hash of the source text, the source name, the parser configuration and
+ * the compiler version, so an entry can never be returned for a source it was not created from. A
+ * cache directory can therefore be shared by any number of compilations, including concurrent
+ * ones: entries are written to a temporary file and atomically moved into place, and an entry that
+ * cannot be read is treated as a miss.
+ *
+ * <p>Two kinds of entries are stored: the AST of a script, including its JSDoc and the set of
+ * language features it uses, and the provides/requires computed by
+ * {@link com.google.javascript.jscomp.deps.JsFileParser}. Only sources that parse without any
+ * errors or warnings are cached, since those would have to be reported again.
+ *
+ * <p>The cache is bounded in size. When it grows past its limit, the least recently used entries
+ * are deleted; reading an entry marks it as used by updating its modification time.
+ */
+@GwtIncompatible("java.nio.file")
+public final class PersistentParseCache {
+  private static final Logger logger = Logger.getLogger(PersistentParseCache.class.getName());
+
+  private static final String AST_SUFFIX = ".ast";
+  private static final String DEPS_SUFFIX = ".deps";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  /** When evicting, shrink to this fraction of the limit so that eviction does not run often. */
+  private static final double EVICTION_TARGET = 0.8;
+
+  // Computed once per process, since it may have to read all the compiler's classes.
+  private static final Supplier<String> COMPILER_VERSION =
+      Suppliers.memoize(new Supplier<String>() {
+        @Override
+        public String get() {
+          return computeCompilerVersion();
+        }
+      });
+
+  private final Path directory;
+  private final long maxSizeInBytes;
+  // Null if the version can't be determined, in which case nothing is cached.
+  @Nullable private final String compilerVersion;
+
+  // An estimate; other processes sharing the directory may add or remove entries.
+  private long sizeInBytes;
+
+  /**
+   * @param directory the directory to store entries in; created if it does not exist
+   * @param maxSizeInBytes the size the cache may grow to before entries are evicted
+   */
+  public PersistentParseCache(Path directory, long maxSizeInBytes) throws IOException {
+    checkArgument(maxSizeInBytes > 0, "maxSizeInBytes must be positive: %s", maxSizeInBytes);
+    this.directory = directory;
+    this.maxSizeInBytes = maxSizeInBytes;
+    this.compilerVersion = getCompilerVersion();
+    if (compilerVersion == null) {
+      logger.warning("Unable to determine the compiler version, the parse cache is disabled");
+    }
+    Files.createDirectories(directory);
+    for (Path entry : listEntries()) {
+      sizeInBytes += Files.size(entry);
+    }
+  }
+
+  /** The parts of a parse result that are stored in the cache. */
+  static final class CachedAst {
+    final Node root;
+    final FeatureSet features;
+
+    CachedAst(Node root, FeatureSet features) {
+      this.root = root;
+      this.features = features;
+    }
+  }
+
+  /**
+   * Returns the AST previously stored for this source and parser config, or null if there is none.
+   * Nodes that pointed to the source file when the entry was stored point to {@code sourceFile}.
+   */
+  @Nullable
+  CachedAst getAst(SourceFile sourceFile, String code, Config config) {
+    if (compilerVersion == null) {
+      return null;
+    }
+    Path entry = entryPath(key(sourceFile.getName(), code, config.toCacheKey()), AST_SUFFIX);
+    try (ObjectInputStream in = new SourceFileResolvingInputStream(
+        new BufferedInputStream(Files.newInputStream(entry)), sourceFile)) {
+      Node root = (Node) in.readObject();
+      FeatureSet features = (FeatureSet) in.readObject();
+      markUsed(entry);
+      return new CachedAst(root, features);
+    } catch (IOException | ClassNotFoundException | RuntimeException e) {
+      maybeDeleteUnreadable(entry, e);
+      return null;
+    }
+  }
+
+  /** Stores the AST of a source that parsed without errors or warnings. */
+  void putAst(SourceFile sourceFile, String code, Config config, Node root, FeatureSet features) {
+    if (compilerVersion == null) {
+      return;
+    }
+    Path entry = entryPath(key(sourceFile.getName(), code, config.toCacheKey()), AST_SUFFIX);
+    try {
+      Path temp = Files.createTempFile(directory, entry.getFileName().toString(), TEMP_SUFFIX);
+      try (ObjectOutputStream out = new SourceFileReplacingOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(temp)), sourceFile)) {
+        out.writeObject(root);
+        out.writeObject(features);
+      }
+      commit(temp, entry);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Unable to write parse cache entry " + entry, e);
+    }
+  }
+
+  /** Returns the dependency info previously stored for this source, or null if there is none. */
+  @Nullable
+  DependencyInfo getDependencyInfo(String name, String code) {
+    if (compilerVersion == null) {
+      return null;
+    }
+    Path entry = entryPath(key(name, code, ""), DEPS_SUFFIX);
+    try (ObjectInputStream in =
+        new ObjectInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+      DependencyInfo info = (DependencyInfo) in.readObject();
+      markUsed(entry);
+      return info;
+    } catch (IOException | ClassNotFoundException | RuntimeException e) {
+      maybeDeleteUnreadable(entry, e);
+      return null;
+    }
+  }
+
+  void putDependencyInfo(String name, String code, DependencyInfo info) {
+    if (compilerVersion == null) {
+      return;
+    }
+    Path entry = entryPath(key(name, code, ""), DEPS_SUFFIX);
+    try {
+      Path temp = Files.createTempFile(directory, entry.getFileName().toString(), TEMP_SUFFIX);
+      try (ObjectOutputStream out =
+          new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeObject(info);
+      }
+      commit(temp, entry);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Unable to write parse cache entry " + entry, e);
+    }
+  }
+
+  @VisibleForTesting
+  synchronized long getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  private String key(String name, String code, String config) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(compilerVersion, UTF_8).putByte((byte) 0);
+    hasher.putString(config, UTF_8).putByte((byte) 0);
+    hasher.putString(name, UTF_8).putByte((byte) 0);
+    hasher.putString(code, UTF_8);
+    return hasher.hash().toString();
+  }
+
+  private Path entryPath(String key, String suffix) {
+    return directory.resolve(key + suffix);
+  }
+
+  private void commit(Path temp, Path entry) throws IOException {
+    long size = Files.size(temp);
+    try {
+      Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+    synchronized (this) {
+      sizeInBytes += size;
+      if (sizeInBytes > maxSizeInBytes) {
+        evict();
+      }
+    }
+  }
+
+  private static void markUsed(Path entry) {
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // The entry was evicted by someone else in the meantime. That's fine, we already read it.
+    }
+  }
+
+  private static void maybeDeleteUnreadable(Path entry, Exception e) {
+    if (e instanceof NoSuchFileException) {
+      return; // A plain cache miss.
+    }
+    logger.log(Level.WARNING, "Discarding unreadable parse cache entry " + entry, e);
+    try {
+      Files.deleteIfExists(entry);
+    } catch (IOException ignored) {
+      // Another process got to it first.
+    }
+  }
+
+  /** Deletes least recently used entries until the cache is comfortably below its size limit. */
+  private void evict() throws IOException {
+    List<Path> entries = listEntries();
+    final List<FileTime> times = new ArrayList<>(entries.size());
+    List<Integer> order = new ArrayList<>(entries.size());
+    long size = 0;
+    for (int i = 0; i < entries.size(); i++) {
+      Path entry = entries.get(i);
+      times.add(Files.getLastModifiedTime(entry));
+      order.add(i);
+      size += Files.size(entry);
+    }
+    Collections.sort(
+        order,
+        new Comparator<Integer>() {
+          @Override
+          public int compare(Integer a, Integer b) {
+            return times.get(a).compareTo(times.get(b));
+          }
+        });
+
+    long target = (long) (maxSizeInBytes * EVICTION_TARGET);
+    for (int i = 0; i < order.size() && size > target; i++) {
+      Path entry = entries.get(order.get(i));
+      long entrySize = Files.size(entry);
+      if (Files.deleteIfExists(entry)) {
+        size -= entrySize;
+      }
+    }
+    sizeInBytes = size;
+  }
+
+  private List<Path> listEntries() throws IOException {
+    List<Path> entries = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path entry : stream) {
+        String name = entry.getFileName().toString();
+        if (name.endsWith(AST_SUFFIX) || name.endsWith(DEPS_SUFFIX)) {
+          entries.add(entry);
+        }
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Returns what distinguishes the ASTs of this compiler from those of other compilers, or null
+   * if that can't be determined.
+   */
+  @VisibleForTesting
+  @Nullable
+  static String getCompilerVersion() {
+    return COMPILER_VERSION.get();
+  }
+
+  private static String computeCompilerVersion() {
+    String version;
+    try {
+      version = Compiler.getReleaseVersion() + "@" + Compiler.getReleaseDate();
+    } catch (MissingResourceException e) {
+      version = null;
+    }
+    if (version != null && !version.contains("${")) {
+      return version;
+    }
+    // Running from a build that doesn't bake in a version, or that left the placeholders of
+    // ParserConfig.properties unsubstituted, such as a development build. Builds like that can
+    // only be told apart by their classes.
+    try {
+      String hash = hashCompilerClasses();
+      return hash == null ? null : "unversioned-" + hash;
+    } catch (IOException | SecurityException e) {
+      logger.log(Level.WARNING, "Unable to hash the compiler classes", e);
+      return null;
+    }
+  }
+
+  /** Hashes the jar or the class directory that the compiler was loaded from. */
+  @Nullable
+  private static String hashCompilerClasses() throws IOException {
+    CodeSource codeSource = Compiler.class.getProtectionDomain().getCodeSource();
+    if (codeSource == null || codeSource.getLocation() == null) {
+      return null;
+    }
+    Path location;
+    try {
+      location = Paths.get(codeSource.getLocation().toURI());
+    } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+      return null;
+    }
+    final List<Path> files = new ArrayList<>();
+    if (Files.isDirectory(location)) {
+      Files.walkFileTree(location, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          if (file.toString().endsWith(".class")) {
+            files.add(file);
+          }
+          return FileVisitResult.CONTINUE;
+        }
+      });
+      Collections.sort(files);
+    } else {
+      files.add(location);
+    }
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (Path file : files) {
+      hasher.putString(location.relativize(file).toString(), UTF_8).putByte((byte) 0);
+      try (InputStream in = Files.newInputStream(file)) {
+        ByteStreams.copy(in, Funnels.asOutputStream(hasher));
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Stands in for the source file in serialized ASTs. Every node points to its source file, which
+   * must not be serialized along with the tree, as it is the live one the AST is read for.
+   */
+  private enum SourceFilePlaceholder {
+    INSTANCE
+  }
+
+  private static final class SourceFileReplacingOutputStream extends ObjectOutputStream {
+    private final SourceFile sourceFile;
+
+    SourceFileReplacingOutputStream(OutputStream out, SourceFile sourceFile) throws IOException {
+      super(out);
+      this.sourceFile = sourceFile;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      return obj == sourceFile ? SourceFilePlaceholder.INSTANCE : obj;
+    }
+  }
+
+  private static final class SourceFileResolvingInputStream extends ObjectInputStream {
+    private final SourceFile sourceFile;
+
+    SourceFileResolvingInputStream(InputStream in, SourceFile sourceFile) throws IOException {
+      super(in);
+      this.sourceFile = sourceFile;
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) {
+      return obj == SourceFilePlaceholder.INSTANCE ? sourceFile : obj;
+    }
+  }
+}
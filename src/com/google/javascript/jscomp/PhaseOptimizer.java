@@ -21,6 +21,8 @@ import static com.google.common.base.Preconditions.checkState;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.javascript.jscomp.PassFactory.ScriptCheckPassFactory;
+import com.google.javascript.jscomp.parsing.parser.FeatureSet;
 import com.google.javascript.rhino.Node;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -149,8 +151,10 @@ class PhaseOptimizer implements CompilerPass {
    * passes in a fixed-point loop.
    */
   void consume(List<PassFactory> factories) {
+    boolean checkScriptsInParallel = compiler.getOptions().numParallelThreads > 1;
     Loop currentLoop = new Loop();
     boolean isCurrentLoopPopulated = false;
+    List<ScriptCheckPassFactory> currentScriptChecks = new ArrayList<>();
     for (PassFactory factory : factories) {
       if (factory.isOneTimePass()) {
         if (isCurrentLoopPopulated) {
@@ -158,18 +162,36 @@ class PhaseOptimizer implements CompilerPass {
           currentLoop = new Loop();
           isCurrentLoopPopulated = false;
         }
-        addOneTimePass(factory);
+        if (checkScriptsInParallel && factory instanceof ScriptCheckPassFactory) {
+          currentScriptChecks.add((ScriptCheckPassFactory) factory);
+        } else {
+          addScriptChecks(currentScriptChecks);
+          addOneTimePass(factory);
+        }
       } else {
+        addScriptChecks(currentScriptChecks);
         currentLoop.addLoopedPass(factory);
         isCurrentLoopPopulated = true;
       }
     }
 
+    addScriptChecks(currentScriptChecks);
     if (isCurrentLoopPopulated) {
       passes.add(currentLoop);
     }
   }
 
+  /**
+   * Adds consecutive {@link ScriptCheckPassFactory} checks as a single pass that checks several
+   * scripts at once, and clears the given list.
+   */
+  private void addScriptChecks(List<ScriptCheckPassFactory> checks) {
+    if (!checks.isEmpty()) {
+      passes.add(new NamedPass(new ParallelScriptChecksFactory(ImmutableList.copyOf(checks))));
+      checks.clear();
+    }
+  }
+
   /**
    * Add the pass generated by the given factory to the compile sequence.
    * This pass will be run once.
@@ -301,7 +323,12 @@ class PhaseOptimizer implements CompilerPass {
       // Delay the creation of the actual pass until *after* all previous passes
       // have been processed.
       // Some precondition checks rely on this, eg, in CoalesceVariableNames.
-      factory.create(compiler).process(externs, root);
+      CompilerPass pass = factory.create(compiler);
+      if (pass instanceof ScopeLocalCompilerPass) {
+        processChangedScopes((ScopeLocalCompilerPass) pass, externs, root);
+      } else {
+        pass.process(externs, root);
+      }
 
       compiler.afterPass(name);
 
@@ -328,12 +355,65 @@ class PhaseOptimizer implements CompilerPass {
       }
     }
 
+    /**
+     * Runs a scope-local pass. Inside a loop, only the change scopes changed
+     * since the previous run of the pass are processed.
+     */
+    private void processChangedScopes(ScopeLocalCompilerPass pass, Node externs, Node root) {
+      // Query even when we don't use the result, so that the mark of this pass
+      // in the change timeline moves forward.
+      List<Node> changedScopeRoots = compiler.getChangedScopeNodesForPass(name);
+      if (!inLoop || changedScopeRoots == null) {
+        pass.process(externs, root);
+      } else if (!changedScopeRoots.isEmpty()) {
+        pass.processChangeScopes(externs, root, changedScopeRoots);
+      }
+    }
+
     @Override
     public String toString() {
       return "pass: " + name;
     }
   }
 
+  /** Runs the given checks with {@link ParallelScriptChecks}. */
+  private static class ParallelScriptChecksFactory extends PassFactory {
+    private final ImmutableList<ScriptCheckPassFactory> checks;
+
+    ParallelScriptChecksFactory(ImmutableList<ScriptCheckPassFactory> checks) {
+      super("parallelScriptChecks" + checks, true);
+      this.checks = checks;
+    }
+
+    @Override
+    protected CompilerPass create(final AbstractCompiler compiler) {
+      return new CompilerPass() {
+        @Override
+        public void process(Node externs, Node root) {
+          ImmutableList.Builder<ScriptCheckPassFactory> supportedChecks = ImmutableList.builder();
+          for (ScriptCheckPassFactory check : checks) {
+            if (check.featureSet().contains(compiler.getFeatureSet())) {
+              supportedChecks.add(check);
+            } else {
+              logger.warning(
+                  "Skipping pass " + check.getName()
+                      + "\nfactory features:  " + check.featureSet()
+                      + "\ncompiler features: " + compiler.getFeatureSet());
+            }
+          }
+          new ParallelScriptChecks(compiler, compiler.getOptions().numParallelThreads)
+              .process(supportedChecks.build(), root);
+        }
+      };
+    }
+
+    @Override
+    protected FeatureSet featureSet() {
+      // Each check is skipped on its own if it does not support the features in use.
+      return FeatureSet.latest();
+    }
+  }
+
   boolean hasScopeChanged(Node n) {
     // Outside loops we don't track changed scopes, so we visit them all.
     if (!inLoop) {
@@ -402,6 +482,8 @@ class PhaseOptimizer implements CompilerPass {
       // Set up function-change tracking
       scopeHandler = new ScopedChangeHandler();
       compiler.addChangeHandler(scopeHandler);
+      // Passes looking at the same unchanged function share its CFG.
+      compiler.setControlFlowGraphCache(new ControlFlowGraphCache(compiler));
 
       compiler.setChangeScope(null);
 
@@ -418,7 +500,13 @@ class PhaseOptimizer implements CompilerPass {
       State state = State.RUN_PASSES_NOT_RUN_IN_PREV_ITER;
       boolean lastIterMadeChanges;
       int count = 1;
-      int astSize = NodeUtil.countAstSize(root);
+      // The size is only consulted by the stopping heuristic, so don't count
+      // nodes when the heuristic is off.
+      IncrementalAstSize astSizeCounter =
+          useSizeHeuristicToStopOptimizationLoop && this.isCodeRemovalLoop
+              ? new IncrementalAstSize(compiler)
+              : null;
+      int astSize = astSizeCounter == null ? 0 : astSizeCounter.reset(root);
       int previousAstSize = astSize;
 
       // The loop starts at state RUN_PASSES_NOT_RUN_IN_PREV_ITER and runs all passes.
@@ -439,6 +527,9 @@ class PhaseOptimizer implements CompilerPass {
           if (count > MAX_LOOPS) {
             compiler.throwInternalError(OPTIMIZE_LOOP_ERROR, null);
           }
+          if (tracker != null) {
+            tracker.recordLoopIteration(count);
+          }
           count++;
           lastIterMadeChanges = false;
           for (NamedPass pass : myPasses) {
@@ -465,7 +556,7 @@ class PhaseOptimizer implements CompilerPass {
           }
 
           previousAstSize = astSize;
-          astSize = NodeUtil.countAstSize(root);
+          astSize = astSizeCounter == null ? 0 : astSizeCounter.update();
           if (state == State.RUN_PASSES_NOT_RUN_IN_PREV_ITER) {
             if (lastIterMadeChanges && isAstSufficientlyChanging(previousAstSize, astSize)) {
               state = State.RUN_PASSES_THAT_CHANGED_STH_IN_PREV_ITER;
@@ -482,6 +573,10 @@ class PhaseOptimizer implements CompilerPass {
       } finally {
         inLoop = false;
         compiler.removeChangeHandler(scopeHandler);
+        compiler.setControlFlowGraphCache(null);
+        if (tracker != null) {
+          tracker.recordLoopIteration(0);
+        }
       }
     }
 
@@ -19,64 +19,79 @@ package com.google.javascript.jscomp;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 /**
  * A helper class to prebuild ASTs from a list of {@link CompilerInput}. Inputs are parsed into ASTs
  * the first time we try to get them. Get them all now using multiple threads, so they'll be parsed
  * in parallel and already available during the rest of the compilation.
+ *
+ * <p>Errors reported while an input is processed are held back and reported in input order once
+ * all inputs are done, so the result does not depend on how the work was scheduled.
  */
 class PrebuildAst {
-  private final AbstractCompiler compiler;
+  private final Compiler compiler;
   private final int numParallelThreads;
 
-  PrebuildAst(AbstractCompiler compiler, int numParalleThreads) {
+  PrebuildAst(Compiler compiler, int numParalleThreads) {
     this.compiler = compiler;
     this.numParallelThreads = numParalleThreads;
   }
 
   void prebuild(List<CompilerInput> inputList) {
-    ThreadFactory threadFactory = new ThreadFactory() {
-        @Override
-        public Thread newThread(Runnable r) {
-          Thread t =
-              new Thread(null, r, "jscompiler-PrebuildAst", CompilerExecutor.COMPILER_STACK_SIZE);
-          t.setDaemon(true);  // Do not prevent the JVM from exiting.
-          return t;
-        }
-    };
-    ThreadPoolExecutor poolExecutor = new ThreadPoolExecutor(
-        numParallelThreads,
-        numParallelThreads,
-        Integer.MAX_VALUE,
-        TimeUnit.SECONDS,
-        new LinkedBlockingQueue<Runnable>(),
-        threadFactory);
-    ListeningExecutorService executorService = MoreExecutors.listeningDecorator(poolExecutor);
-    List<ListenableFuture<?>> futureList = new ArrayList<>(inputList.size());
+    run(inputList, false);
+  }
+
+  /**
+   * Computes the provides and requires of each input, as used for dependency management and module
+   * detection. This uses {@link com.google.javascript.jscomp.deps.JsFileParser} when possible, so
+   * it does not necessarily parse the inputs.
+   */
+  void prebuildDependencyInfo(List<CompilerInput> inputList) {
+    run(inputList, true);
+  }
+
+  private void run(List<CompilerInput> inputList, final boolean dependencyInfoOnly) {
+    // All threads take their next input from the one shared queue, so a thread that finishes a
+    // small file early moves on to the next one instead of waiting on a fixed partition.
+    ListeningExecutorService executorService =
+        CompilerExecutor.newThreadPool("jscompiler-PrebuildAst", numParallelThreads);
+    List<ListenableFuture<DeferredErrorManager>> futureList = new ArrayList<>(inputList.size());
     // TODO(moz): Support canceling all parsing on the first halting error
     for (final CompilerInput input : inputList) {
-      futureList.add(executorService.submit(new Runnable() {
+      futureList.add(executorService.submit(new Callable<DeferredErrorManager>() {
         @Override
-        public void run() {
-          input.getAstRoot(compiler);
+        public DeferredErrorManager call() {
+          DeferredErrorManager errors = new DeferredErrorManager(compiler);
+          compiler.setDeferredErrorManagerForCurrentThread(errors);
+          try {
+            if (dependencyInfoOnly) {
+              input.setCompiler(compiler);
+              input.getRequires();
+            } else {
+              input.getAstRoot(compiler);
+            }
+          } finally {
+            compiler.setDeferredErrorManagerForCurrentThread(null);
+          }
+          return errors;
         }
       }));
     }
 
-    poolExecutor.shutdown();
+    executorService.shutdown();
+    List<DeferredErrorManager> errorsPerInput;
     try {
-      Futures.allAsList(futureList).get();
+      errorsPerInput = Futures.allAsList(futureList).get();
     } catch (InterruptedException | ExecutionException e) {
       throw new RuntimeException(e);
     }
+    for (DeferredErrorManager errors : errorsPerInput) {
+      errors.replay(compiler);
+    }
   }
 
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.javascript.rhino.Node;
+import java.util.List;
+
+/**
+ * Interface for loopable passes whose analysis and rewrites are confined to a
+ * single change scope (a SCRIPT or FUNCTION, not counting the functions nested
+ * in it).
+ * <p>
+ * Running such a pass over a scope that hasn't changed since the pass last saw
+ * it can't find anything new, so inside an optimization loop the
+ * {@link PhaseOptimizer} calls {@code processChangeScopes} with only the scopes
+ * changed since the previous run of the pass. The first run, and runs outside
+ * of loops, still go through {@code process} and see the whole program.
+ * <p>
+ * Passes that look across scopes, like function or variable inlining, must not
+ * implement this interface.
+ */
+interface ScopeLocalCompilerPass extends CompilerPass {
+
+  /**
+   * Process the given change scopes of the JS with root node root.
+   *
+   * @param changeScopeRoots SCRIPT and FUNCTION nodes that changed since the
+   *        previous run of this pass. Scopes nested in them may or may not be
+   *        in the list; a pass should process each root without descending
+   *        into the nested scopes.
+   */
+  void processChangeScopes(Node externs, Node root, List<Node> changeScopeRoots);
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Parsed externs that are shared by all compiles of the process, such as the externs bundled with
+ * the compiler (see {@link CommandLineRunner#getBuiltinExterns}).
+ *
+ * <p>A shared extern file is parsed once for each parser configuration it is used with, by the
+ * first compile that needs it. That tree is never modified: every compile works on a copy of it,
+ * made through a {@link RecoverableJsAst}.
+ *
+ * <p>Only files that were explicitly shared are kept, and they are kept for the lifetime of the
+ * process. Externs that are only read for a single compile are parsed as usual.
+ */
+public final class SharedExterns {
+  private SharedExterns() {}
+
+  // SourceFile does not override equals, so a file is identified by its instance. For each file,
+  // maps the cache key of a parser configuration to the AST parsed with it.
+  private static final Map<SourceFile, Map<String, JsAst>> asts = new HashMap<>();
+
+  /** Shares the given extern files with all later compiles of the process. */
+  public static synchronized void share(Iterable<? extends SourceFile> files) {
+    for (SourceFile file : files) {
+      if (!asts.containsKey(file)) {
+        asts.put(file, new HashMap<String, JsAst>());
+      }
+    }
+  }
+
+  /** Returns whether the given file was shared. */
+  static synchronized boolean isShared(SourceFile file) {
+    return asts.containsKey(file);
+  }
+
+  /**
+   * Returns an extern input that copies the shared AST of the given file, or null if the file was
+   * not shared.
+   */
+  @Nullable
+  static synchronized CompilerInput getExternInput(SourceFile file, String parserConfigKey) {
+    Map<String, JsAst> astsByConfig = asts.get(file);
+    if (astsByConfig == null) {
+      return null;
+    }
+    JsAst ast = astsByConfig.get(parserConfigKey);
+    if (ast == null) {
+      ast = new JsAst(file);
+      astsByConfig.put(parserConfigKey, ast);
+    }
+    return new CompilerInput(new RecoverableJsAst(ast, true), /* isExtern= */ true);
+  }
+}
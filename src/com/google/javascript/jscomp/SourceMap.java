@@ -63,6 +63,12 @@ public final class SourceMap {
          return new SourceMap(
            SourceMapGeneratorFactory.getInstance(SourceMapFormat.V3));
         }
+     },
+     V3_COMPACT {
+       @Override SourceMap getInstance() {
+         return new SourceMap(
+           SourceMapGeneratorFactory.getInstance(SourceMapFormat.V3_COMPACT));
+        }
      };
      abstract SourceMap getInstance();
   }
@@ -139,6 +145,13 @@ public final class SourceMap {
   @Nullable
   private SourceFileMapping mapping;
 
+  // The last lookup in the mapping. A node usually starts at the same position
+  // as its first child, which is mapped right after it.
+  @Nullable private String lastSourceFile;
+  private int lastLineNo;
+  private int lastCharNo;
+  @Nullable private OriginalMapping lastSourceMapping;
+
   private SourceMap(SourceMapGenerator generator) {
     this.generator = generator;
   }
@@ -161,7 +174,7 @@ public final class SourceMap {
     String originalName = node.getOriginalName();
 
     if (mapping != null) {
-      OriginalMapping sourceMapping = mapping.getSourceMapping(sourceFile, lineNo, charNo);
+      OriginalMapping sourceMapping = getSourceMapping(sourceFile, lineNo, charNo);
       if (sourceMapping != null) {
         sourceFile = sourceMapping.getOriginalFile();
         lineNo = sourceMapping.getLineNumber();
@@ -182,6 +195,17 @@ public final class SourceMap {
         outputStartPosition, outputEndPosition);
   }
 
+  @Nullable
+  private OriginalMapping getSourceMapping(String sourceFile, int lineNo, int charNo) {
+    if (!sourceFile.equals(lastSourceFile) || lineNo != lastLineNo || charNo != lastCharNo) {
+      lastSourceFile = sourceFile;
+      lastLineNo = lineNo;
+      lastCharNo = charNo;
+      lastSourceMapping = mapping.getSourceMapping(sourceFile, lineNo, charNo);
+    }
+    return lastSourceMapping;
+  }
+
   public void addSourceFile(SourceFile sourceFile) {
     try {
       generator.addSourcesContent(fixupSourceLocation(sourceFile.getName()), sourceFile.getCode());
@@ -252,5 +276,6 @@ public final class SourceMap {
 
   public void setSourceFileMapping(SourceFileMapping mapping) {
     this.mapping = mapping;
+    this.lastSourceFile = null;
   }
 }
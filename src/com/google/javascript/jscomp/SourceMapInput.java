@@ -20,6 +20,7 @@ import com.google.debugging.sourcemap.SourceMapConsumerV3;
 import com.google.debugging.sourcemap.SourceMapParseException;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
 
 /**
@@ -31,6 +32,8 @@ public final class SourceMapInput implements Serializable {
   // have cached = false.
   private transient volatile SourceMapConsumerV3 parsedSourceMap = null;
   private transient volatile boolean cached = false;
+  // Resolving a path is slow, and the same few sources are resolved for every mapping.
+  private transient volatile ConcurrentHashMap<String, SourceFile> originalSources = null;
 
   static final DiagnosticType SOURCEMAP_RESOLVE_FAILED =
       DiagnosticType.warning("SOURCEMAP_RESOLVE_FAILED", "Failed to resolve sourcemap: {0}");
@@ -67,6 +70,34 @@ public final class SourceMapInput implements Serializable {
     return parsedSourceMap;
   }
 
+  /**
+   * Gets a source of this sourcemap, resolved relative to this sourcemap's location.
+   */
+  @Nullable
+  SourceFile getOriginalSource(String sourceName) {
+    ConcurrentHashMap<String, SourceFile> sources = originalSources;
+    if (sources == null) {
+      synchronized (this) {
+        if (originalSources == null) {
+          originalSources = new ConcurrentHashMap<>();
+        }
+        sources = originalSources;
+      }
+    }
+    SourceFile source = sources.get(sourceName);
+    if (source == null) {
+      source = SourceMapResolver.getRelativePath(getOriginalPath(), sourceName);
+      if (source == null) {
+        return null;
+      }
+      SourceFile existing = sources.putIfAbsent(sourceName, source);
+      if (existing != null) {
+        source = existing;
+      }
+    }
+    return source;
+  }
+
   /**
    * Gets the original location of this sourcemap file on disk.
    */
@@ -89,6 +89,14 @@ class TypeInference
   // For convenience
   private final ObjectType unknownType;
 
+  // When not negative, the changes to the types of variables of scopes less
+  // deep than this, and of objects that may be visible outside of the scopes,
+  // are rejected or recorded. See #restrictToLocalChanges.
+  private int minLocalScopeDepth = -1;
+  // The names of the variables and properties whose types were changed
+  // outside of the local scopes, or null to reject such changes.
+  private Set<String> nonLocalChanges;
+
   TypeInference(AbstractCompiler compiler, ControlFlowGraph<Node> cfg,
                 ReverseAbstractInterpreter reverseInterpreter,
                 TypedScope functionScope,
@@ -120,6 +128,59 @@ class TypeInference
         TypedScope.createLatticeBottom(functionScope.getRootNode()));
   }
 
+  /**
+   * Confines the inference to changing the types that belong to the scopes at
+   * least as deep as {@code minScopeDepth}, which must be the depth of an
+   * enclosing function scope. Before the inference would change the type of
+   * an outer variable or of an object that may be visible outside of these
+   * scopes, it throws a {@link NonLocalTypeChangeException}, so that no other
+   * function can observe the inference while it runs.
+   */
+  void restrictToLocalChanges(int minScopeDepth) {
+    checkArgument(minScopeDepth <= syntacticScope.getDepth());
+    this.minLocalScopeDepth = minScopeDepth;
+    this.nonLocalChanges = null;
+  }
+
+  /**
+   * Lets the inference change any type, but adds the names of the variables
+   * and properties whose types it changes outside of the scopes at least as
+   * deep as {@code minScopeDepth} to {@code changedNames}. Qualified names
+   * are recorded by their last component.
+   */
+  void recordNonLocalChanges(int minScopeDepth, Set<String> changedNames) {
+    checkArgument(minScopeDepth <= syntacticScope.getDepth());
+    this.minLocalScopeDepth = minScopeDepth;
+    this.nonLocalChanges = checkNotNull(changedNames);
+  }
+
+  /**
+   * Thrown by an inference restricted by {@link #restrictToLocalChanges}
+   * instead of changing a type that does not belong to its scopes.
+   */
+  static class NonLocalTypeChangeException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    NonLocalTypeChangeException(String msg) {
+      super(msg);
+    }
+  }
+
+  private void checkLocalChange(boolean isLocal, String name, Node n) {
+    if (minLocalScopeDepth < 0 || isLocal) {
+      return;
+    }
+    if (nonLocalChanges == null) {
+      throw new NonLocalTypeChangeException(
+          "Type of " + name + " changed outside of the inferred scopes at " + n);
+    }
+    nonLocalChanges.add(name.substring(name.lastIndexOf('.') + 1));
+  }
+
+  private boolean isLocalVar(TypedVar var) {
+    return var.getScope().getDepth() >= minLocalScopeDepth;
+  }
+
   /**
    * Infers all of a function's arguments if their types aren't declared.
    */
@@ -511,6 +572,7 @@ class TypeInference
       if (type != null) {
         FunctionType fnType = type.toMaybeFunctionType();
         if (fnType != null) {
+          checkConstraintMatchIsLocal(retValue, fnType.getReturnType());
           inferPropertyTypesToMatchConstraint(
               retValue.getJSType(), fnType.getReturnType());
         }
@@ -616,6 +678,7 @@ class TypeInference
         left.setJSType(resultType);
 
         if (var != null && var.isTypeInferred()) {
+          checkLocalChange(isLocalVar(var), varName, left);
           JSType oldType = var.getType();
           var.setType(oldType == null ?
              resultType : oldType.getLeastSupertype(resultType));
@@ -623,6 +686,7 @@ class TypeInference
           // /** @const */ var x = y;
           // should be redeclared, so that the type of y
           // gets propagated to inner scopes.
+          checkLocalChange(isLocalVar(var), varName, left);
           var.setType(resultType);
         }
         break;
@@ -664,6 +728,7 @@ class TypeInference
         getJSType(syntacticScope.getRootNode()).isConstructor();
 
     if (objectType == null) {
+      checkLocalChange(false, propName, getprop);
       registry.registerPropertyOnType(propName, nodeType);
     } else {
       if (nodeType.isStruct() && !objectType.hasProperty(propName)) {
@@ -709,6 +774,7 @@ class TypeInference
         // 4) If this is a stub, define it.
         // 5) Otherwise, do not define the type, but declare it in the registry
         //    so that we can use it for missing property checks.
+        checkLocalChange(false, propName, getprop);
         if (objectType.hasProperty(propName) || !objectType.isInstanceType()) {
           if ("prototype".equals(propName)) {
             objectType.defineDeclaredProperty(propName, rightType, getprop);
@@ -756,6 +822,7 @@ class TypeInference
             (!objectType.hasOwnProperty(propName) &&
              (!objectType.isInstanceType() ||
                  (var.isExtern() && !objectType.isNativeObjectType())))) {
+          checkLocalChange(false, propName, getprop);
           return objectType.defineDeclaredProperty(
               propName, var.getType(), getprop);
         }
@@ -844,12 +911,26 @@ class TypeInference
       return scope;
     }
 
-    String qObjName = NodeUtil.getBestLValueName(
-        NodeUtil.getBestLValue(n));
+    Node lValue = NodeUtil.getBestLValue(n);
+    // The type of a literal that initializes a qualified name or an outer
+    // variable may have been given to that name by the scope creator, and a
+    // literal with @lends has the type of the object it is lent to.
+    boolean isLocalLiteral = true;
+    if (minLocalScopeDepth >= 0) {
+      JSDocInfo info = n.getJSDocInfo();
+      if (info != null && info.getLendsName() != null) {
+        isLocalLiteral = false;
+      } else if (lValue != null) {
+        TypedVar lVar = lValue.isName() ? syntacticScope.getVar(lValue.getString()) : null;
+        isLocalLiteral = lVar != null && isLocalVar(lVar);
+      }
+    }
+    String qObjName = NodeUtil.getBestLValueName(lValue);
     for (Node name = n.getFirstChild(); name != null;
          name = name.getNext()) {
       String memberName = NodeUtil.getObjectLitKeyName(name);
       if (memberName != null) {
+        checkLocalChange(isLocalLiteral, memberName, name);
         JSType rawValueType =  name.getFirstChild().getJSType();
         JSType valueType =
             TypeCheck.getObjectLitKeyTypeFromValueType(name, rawValueType);
@@ -864,6 +945,7 @@ class TypeInference
           TypedVar var = syntacticScope.getVar(qKeyName);
           JSType oldType = var == null ? null : var.getType();
           if (var != null && var.isTypeInferred()) {
+            checkLocalChange(isLocalVar(var), qKeyName, name);
             var.setType(oldType == null ?
                 valueType : oldType.getLeastSupertype(oldType));
           }
@@ -1120,6 +1202,7 @@ class TypeInference
       JSType iArgumentType = getJSType(iArgument);
 
       JSType iParameterType = getJSType(iParameter);
+      checkConstraintMatchIsLocal(iArgument, iParameterType);
       inferPropertyTypesToMatchConstraint(iArgumentType, iParameterType);
 
       // If the parameter to the call is a function expression, propagate the
@@ -1543,6 +1626,27 @@ class TypeInference
     type.matchConstraint(constraint);
   }
 
+  /**
+   * Matching a record constraint defines properties on the anonymous object
+   * types of the value, which only belong to this inference if the value is
+   * an object literal.
+   */
+  private void checkConstraintMatchIsLocal(Node value, JSType constraint) {
+    if (minLocalScopeDepth < 0 || constraint == null || value.isObjectLit()) {
+      return;
+    }
+    Iterable<JSType> alternates = constraint.isUnionType()
+        ? constraint.toMaybeUnionType().getAlternates()
+        : ImmutableList.of(constraint);
+    for (JSType alt : alternates) {
+      if (alt.isRecordType()) {
+        for (String propName : alt.toObjectType().getOwnPropertyNames()) {
+          checkLocalChange(false, propName, value);
+        }
+      }
+    }
+  }
+
   /**
    * If we access a property of a symbol, then that symbol is not
    * null or undefined.
@@ -20,10 +20,21 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.javascript.jscomp.CodingConvention.AssertionFunctionSpec;
 import com.google.javascript.jscomp.NodeTraversal.AbstractScopedCallback;
+import com.google.javascript.jscomp.TypeInference.NonLocalTypeChangeException;
 import com.google.javascript.jscomp.type.ReverseAbstractInterpreter;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.jstype.JSType;
+import com.google.javascript.rhino.jstype.JSTypeRegistry;
+import com.google.javascript.rhino.jstype.ObjectType;
+import com.google.javascript.rhino.jstype.Property;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * A compiler pass to run the type inference analysis.
@@ -40,6 +51,7 @@ class TypeInferencePass implements CompilerPass {
   private final TypedScope topScope;
   private final MemoizedTypedScopeCreator scopeCreator;
   private final Map<String, AssertionFunctionSpec> assertionFunctionsMap;
+  private final int numParallelThreads;
 
   TypeInferencePass(AbstractCompiler compiler,
       ReverseAbstractInterpreter reverseInterpreter,
@@ -48,6 +60,7 @@ class TypeInferencePass implements CompilerPass {
     this.reverseInterpreter = reverseInterpreter;
     this.topScope = topScope;
     this.scopeCreator = scopeCreator;
+    this.numParallelThreads = compiler.getOptions().numParallelThreads;
 
     assertionFunctionsMap = new HashMap<>();
     for (AssertionFunctionSpec assertionFunction :
@@ -105,16 +118,119 @@ class TypeInferencePass implements CompilerPass {
       s.resolveTypes();
     }
 
+    if (numParallelThreads > 1) {
+      inferAllScopesInParallel(node);
+      return;
+    }
+
     (new NodeTraversal(
         compiler, new SecondScopeBuildingCallback(), scopeCreator))
         .traverseWithScope(node, topScope);
   }
 
+  /**
+   * Infers the scope of the traversal root first, and then the functions
+   * directly inside it, each together with the functions nested in it.
+   *
+   * <p>The functions are first inferred on a thread pool, each as if it were
+   * the next one to be inferred. Such an inference may only change the types
+   * of its own scopes, so the functions inferred at the same time cannot
+   * observe each other. It is abandoned and undone as soon as it would change
+   * the type of an outer variable or of a shared object, as in
+   * {@code ns.x = 1} or {@code this.x = 1}, or as soon as it would lazily
+   * complete a shared type, as when it first reads {@code f.prototype} or
+   * {@code f.call}.
+   *
+   * <p>The results are then committed in source order. An abandoned function
+   * is inferred again, and the names whose types it changes are recorded. A
+   * function that mentions any of the recorded names may have seen types that
+   * are now out of date, so it is undone and inferred again as well. Undoing
+   * a function restores the types of its nodes and variables and the
+   * properties of its object literals, and drops the properties it registered
+   * with the type registry, which are held back until it is committed. The
+   * result does not depend on how the work was scheduled.
+   */
+  private void inferAllScopesInParallel(Node node) {
+    FunctionCollector collector = new FunctionCollector();
+    (new NodeTraversal(compiler, collector, scopeCreator))
+        .traverseWithScope(node, topScope);
+    if (collector.functions.isEmpty()) {
+      return;
+    }
+
+    List<Callable<SpeculativeInference>> tasks = new ArrayList<>();
+    for (final FunctionScopes function : collector.functions) {
+      tasks.add(new Callable<SpeculativeInference>() {
+        @Override
+        public SpeculativeInference call() {
+          SpeculativeInference inference = new SpeculativeInference(function);
+          compiler.setDeferredErrorManagerForCurrentThread(inference.errors);
+          compiler.getTypeRegistry().setSpeculativeChangesForCurrentThread(inference);
+          try {
+            inference.completed = inferLocally(function);
+          } finally {
+            compiler.setDeferredErrorManagerForCurrentThread(null);
+            compiler.getTypeRegistry().setSpeculativeChangesForCurrentThread(null);
+          }
+          return inference;
+        }
+      });
+    }
+    List<SpeculativeInference> inferences = ParallelTasks.runAll(compiler, tasks);
+
+    Set<String> changedNames = new HashSet<>();
+    for (SpeculativeInference inference : inferences) {
+      if (inference.completed
+          && Collections.disjoint(inference.localTypes.mentionedNames, changedNames)) {
+        inference.errors.replay(compiler);
+        inference.commitPropertyRegistrations(changedNames);
+        continue;
+      }
+      inference.localTypes.restore();
+      FunctionScopes function = inference.function;
+      int minScopeDepth = function.scopes.get(0).getDepth();
+      for (int i = 0; i < function.roots.size(); i++) {
+        TypeInference typeInference =
+            createTypeInference(function.roots.get(i), function.scopes.get(i));
+        typeInference.recordNonLocalChanges(minScopeDepth, changedNames);
+        runTypeInference(typeInference, function.roots.get(i), function.scopes.get(i));
+      }
+    }
+  }
+
+  /**
+   * Infers the scopes of the function with {@link
+   * TypeInference#restrictToLocalChanges}.
+   *
+   * @return Whether the inference completed, rather than being abandoned
+   *     because of a change outside of the function.
+   */
+  private boolean inferLocally(FunctionScopes function) {
+    int minScopeDepth = function.scopes.get(0).getDepth();
+    try {
+      for (int i = 0; i < function.roots.size(); i++) {
+        TypeInference typeInference =
+            createTypeInference(function.roots.get(i), function.scopes.get(i));
+        typeInference.restrictToLocalChanges(minScopeDepth);
+        runTypeInference(typeInference, function.roots.get(i), function.scopes.get(i));
+      }
+      return true;
+    } catch (NonLocalTypeChangeException e) {
+      return false;
+    }
+  }
+
   void inferScope(Node n, TypedScope scope) {
-    TypeInference typeInference =
-        new TypeInference(
-            compiler, computeCfg(n), reverseInterpreter, scope,
-            assertionFunctionsMap);
+    runTypeInference(createTypeInference(n, scope), n, scope);
+  }
+
+  private TypeInference createTypeInference(Node n, TypedScope scope) {
+    return new TypeInference(
+        compiler, computeCfg(n), reverseInterpreter, scope,
+        assertionFunctionsMap);
+  }
+
+  private void runTypeInference(TypeInference typeInference, Node n, TypedScope scope) {
     try {
       typeInference.analyze();
 
@@ -153,6 +269,133 @@ class TypeInferencePass implements CompilerPass {
     }
   }
 
+  /** The scopes of a function and of the functions nested in it, in pre-order. */
+  private static class FunctionScopes {
+    final List<Node> roots = new ArrayList<>();
+    final List<TypedScope> scopes = new ArrayList<>();
+  }
+
+  /**
+   * Infers the scope of the traversal root right away, and collects the
+   * scopes inside it for {@link #inferAllScopesInParallel}.
+   */
+  private class FunctionCollector extends AbstractScopedCallback {
+    final List<FunctionScopes> functions = new ArrayList<>();
+    private FunctionScopes current;
+    private int currentDepth;
+
+    @Override
+    public void enterScope(NodeTraversal t) {
+      TypedScope scope = t.getTypedScope();
+      if (t.getScopeDepth() == 0) {
+        inferScope(t.getCurrentNode(), scope);
+        return;
+      }
+      if (current == null || scope.getDepth() <= currentDepth) {
+        current = new FunctionScopes();
+        currentDepth = scope.getDepth();
+        functions.add(current);
+      }
+      current.roots.add(t.getCurrentNode());
+      current.scopes.add(scope);
+    }
+
+    @Override
+    public void visit(NodeTraversal t, Node n, Node parent) {
+      // Do nothing
+    }
+  }
+
+  /** The speculative inference of a function on the thread pool. */
+  private class SpeculativeInference implements JSTypeRegistry.SpeculativeChanges {
+    final FunctionScopes function;
+    final LocalTypes localTypes;
+    final DeferredErrorManager errors = new DeferredErrorManager(compiler);
+    private final List<String> registeredPropertyNames = new ArrayList<>();
+    private final List<JSType> registeredPropertyTypes = new ArrayList<>();
+    boolean completed;
+
+    SpeculativeInference(FunctionScopes function) {
+      this.function = function;
+      this.localTypes = new LocalTypes(function);
+    }
+
+    @Override
+    public void registerPropertyOnType(String propertyName, JSType type) {
+      registeredPropertyNames.add(propertyName);
+      registeredPropertyTypes.add(type);
+    }
+
+    @Override
+    public void beforeSharedTypeChange() {
+      throw new NonLocalTypeChangeException("Shared type changed lazily");
+    }
+
+    /**
+     * Applies the held back property registrations, and adds the names of the
+     * properties to {@code changedNames}, as the functions inferred later may
+     * have looked them up in the registry, as when narrowing a record type.
+     */
+    void commitPropertyRegistrations(Set<String> changedNames) {
+      for (int i = 0; i < registeredPropertyNames.size(); i++) {
+        compiler.getTypeRegistry().registerPropertyOnType(
+            registeredPropertyNames.get(i), registeredPropertyTypes.get(i));
+      }
+      changedNames.addAll(registeredPropertyNames);
+    }
+  }
+
+  /**
+   * The types that an inference of a function may change, and the names of
+   * the variables and properties that the function mentions.
+   */
+  private static class LocalTypes {
+    final Set<String> mentionedNames = new HashSet<>();
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<JSType> nodeTypes = new ArrayList<>();
+    private final List<TypedVar> vars = new ArrayList<>();
+    private final List<JSType> varTypes = new ArrayList<>();
+    private final List<ObjectType> literalTypes = new ArrayList<>();
+    private final List<Map<String, Property>> literalProperties = new ArrayList<>();
+
+    LocalTypes(FunctionScopes function) {
+      NodeUtil.visitPreOrder(function.roots.get(0), new NodeUtil.Visitor() {
+        @Override
+        public void visit(Node n) {
+          nodes.add(n);
+          nodeTypes.add(n.getJSType());
+          ObjectType literalType = n.isObjectLit() ? ObjectType.cast(n.getJSType()) : null;
+          if (literalType != null) {
+            literalTypes.add(literalType);
+            literalProperties.add(literalType.getOwnPropertiesSnapshot());
+          }
+          if (n.isName() || n.isStringKey()
+              || (n.isString() && (n.getParent().isGetProp() || n.getParent().isGetElem()))) {
+            mentionedNames.add(n.getString());
+          }
+        }
+      });
+      for (TypedScope scope : function.scopes) {
+        for (TypedVar var : scope.getVarIterable()) {
+          vars.add(var);
+          varTypes.add(var.getType());
+        }
+      }
+    }
+
+    void restore() {
+      for (int i = 0; i < nodes.size(); i++) {
+        nodes.get(i).setJSType(nodeTypes.get(i));
+      }
+      for (int i = 0; i < vars.size(); i++) {
+        vars.get(i).setType(varTypes.get(i));
+      }
+      for (int i = 0; i < literalTypes.size(); i++) {
+        literalTypes.get(i).restoreOwnProperties(literalProperties.get(i));
+      }
+    }
+  }
+
   private ControlFlowGraph<Node> computeCfg(Node n) {
     ControlFlowAnalysis cfa = new ControlFlowAnalysis(compiler, false, false);
     cfa.process(null, n);
@@ -47,7 +47,7 @@ import java.util.logging.Logger;
 // These things don't require reachability info, consider making them their own
 // pass or putting them in some other, more related pass.
 
-class UnreachableCodeElimination implements CompilerPass {
+class UnreachableCodeElimination implements ScopeLocalCompilerPass {
   private static final Logger logger =
     Logger.getLogger(UnreachableCodeElimination.class.getName());
   private final AbstractCompiler compiler;
@@ -62,24 +62,32 @@ class UnreachableCodeElimination implements CompilerPass {
     NodeTraversal.traverseChangedFunctions(compiler, new ChangeScopeRootCallback() {
         @Override
         public void enterChangeScopeRoot(AbstractCompiler compiler, Node root) {
-          // Computes the control flow graph.
-          ControlFlowAnalysis cfa =
-              new ControlFlowAnalysis(compiler, false, false);
-          cfa.process(null, root);
-          ControlFlowGraph<Node> cfg = cfa.getCfg();
-          new GraphReachability<>(cfg)
-              .compute(cfg.getEntry().getValue());
-          if (root.isFunction()) {
-            root = root.getLastChild();
-          }
-          do {
-            codeChanged = false;
-            NodeTraversal.traverseEs6(compiler, root, new EliminationPass(cfg));
-          } while (codeChanged);
+          eliminateUnreachableCode(root);
         }
       });
   }
 
+  @Override
+  public void processChangeScopes(Node externs, Node toplevel, List<Node> changeScopeRoots) {
+    for (Node root : changeScopeRoots) {
+      eliminateUnreachableCode(root);
+    }
+  }
+
+  private void eliminateUnreachableCode(Node root) {
+    // Computes the control flow graph.
+    ControlFlowGraph<Node> cfg = ControlFlowAnalysis.getSharedCfg(compiler, root, false);
+    new GraphReachability<>(cfg)
+        .compute(cfg.getEntry().getValue());
+    if (root.isFunction()) {
+      root = root.getLastChild();
+    }
+    do {
+      codeChanged = false;
+      NodeTraversal.traverseEs6(compiler, root, new EliminationPass(cfg));
+    } while (codeChanged);
+  }
+
   private class EliminationPass extends AbstractShallowCallback {
     private final ControlFlowGraph<Node> cfg;
     private EliminationPass(ControlFlowGraph<Node> cfg) {
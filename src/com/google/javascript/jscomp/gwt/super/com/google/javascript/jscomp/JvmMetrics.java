@@ -22,4 +22,24 @@ import java.io.PrintStream;
 class JvmMetrics {
   public static void maybeWriteJvmMetrics(PrintStream out, String options) {
   }
+
+  public static long getCurrentThreadAllocatedBytes() {
+    return -1;
+  }
+
+  public static long getCurrentThreadCpuTime() {
+    return -1;
+  }
+
+  public static long getProcessCpuTime() {
+    return -1;
+  }
+
+  public static long getGarbageCollectionCount() {
+    return 0;
+  }
+
+  public static long getGarbageCollectionTime() {
+    return 0;
+  }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.javascript.rhino.Node;
+import java.util.List;
+
+/**
+ * GWT compatible version of {@code ParallelFunctionProcessor}, which processes one function at a
+ * time.
+ */
+class ParallelFunctionProcessor {
+  /** The work to do on a single function. */
+  interface FunctionCallback {
+    void processFunction(Node function);
+  }
+
+  ParallelFunctionProcessor(AbstractCompiler compiler, int numParallelThreads) {}
+
+  static boolean isLeafFunction(Node function) {
+    return !NodeUtil.containsFunction(function.getSecondChild())
+        && !NodeUtil.containsFunction(function.getLastChild());
+  }
+
+  void process(List<Node> functions, FunctionCallback callback) {
+    for (Node function : functions) {
+      callback.processFunction(function);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.javascript.jscomp;
+
+import com.google.javascript.jscomp.deps.DependencyInfo;
+import com.google.javascript.jscomp.parsing.Config;
+import com.google.javascript.jscomp.parsing.parser.FeatureSet;
+import com.google.javascript.rhino.Node;
+
+/** GWT/J2CL replacement of PersistentParseCache. There is no file system, so nothing is cached. */
+public final class PersistentParseCache {
+  private PersistentParseCache() {}
+
+  static final class CachedAst {
+    final Node root;
+    final FeatureSet features;
+
+    CachedAst(Node root, FeatureSet features) {
+      this.root = root;
+      this.features = features;
+    }
+  }
+
+  CachedAst getAst(SourceFile sourceFile, String code, Config config) {
+    return null;
+  }
+
+  void putAst(SourceFile sourceFile, String code, Config config, Node root, FeatureSet features) {}
+
+  DependencyInfo getDependencyInfo(String name, String code) {
+    return null;
+  }
+
+  void putDependencyInfo(String name, String code, DependencyInfo info) {}
+}
@@ -26,4 +26,6 @@ class PrebuildAst {
   }
 
   void prebuild(List<CompilerInput> inputList) {}
+
+  void prebuildDependencyInfo(List<CompilerInput> inputList) {}
 }
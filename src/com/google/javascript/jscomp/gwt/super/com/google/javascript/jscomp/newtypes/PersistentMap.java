@@ -31,6 +31,10 @@ abstract class PersistentMap<K, V> extends AbstractMap<K, V> {
     return EMPTY;
   }
 
+  static <K, V> PersistentMap<K, V> createForTypeEnv() {
+    return create();
+  }
+
   public static <K, V> PersistentMap<K, V> of(K key, V value) {
     return PersistentMap.<K, V>create().with(key, value);
   }
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.newtypes;
+
+import com.google.common.annotations.GwtIncompatible;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A persistent map whose keys are interned to small int indices. Lookups compare ints instead of
+ * calling equals on the keys.
+ *
+ * <p>The indices are shared by all the maps derived from the same {@link #create()}, and are
+ * dropped together with the last of them. {@link TypeEnv} starts from an empty map for each
+ * function it analyzes, so the indices only ever cover the variables of a function.
+ *
+ * <p>Maps with at most {@link #SMALL_MAP_SIZE} entries keep them in an array sorted by index.
+ * Larger maps use a hash array mapped trie over the bits of the indices. Since no two keys have
+ * the same index, the trie needs no collision nodes.
+ */
+@GwtIncompatible("java.util.concurrent")
+final class IndexedPersistentMap<K, V> extends PersistentMap<K, V> {
+  // Most type environments are small, and a linear scan of a few ints beats the trie.
+  private static final int SMALL_MAP_SIZE = 8;
+  private static final int BITS = 5;
+  // Indices are non-negative, so a trie has at most this many levels.
+  private static final int MAX_DEPTH = 7;
+
+  private static final Object[] NO_ENTRIES = new Object[0];
+  private static final Trie EMPTY_TRIE = new Trie(0, NO_ENTRIES);
+
+  private final KeyIndices keyIndices;
+  // Either the entries of a small map, sorted by index, or the root of a trie.
+  private final Object root;
+  private final int size;
+
+  private IndexedPersistentMap(KeyIndices keyIndices, Object root, int size) {
+    this.keyIndices = keyIndices;
+    this.root = root;
+    this.size = size;
+  }
+
+  /** Returns an empty map with indices of its own. */
+  public static <K, V> PersistentMap<K, V> create() {
+    return new IndexedPersistentMap<>(new KeyIndices(), NO_ENTRIES, 0);
+  }
+
+  @Override
+  public PersistentMap<K, V> with(K key, V value) {
+    Entry<K, V> entry = new Entry<>(keyIndices.indexOf(key), key, value);
+    Entry<?, ?> oldEntry = find(entry.index);
+    if (oldEntry != null && oldEntry.getValue() == value) {
+      return this;
+    }
+    int newSize = oldEntry == null ? size + 1 : size;
+    if (root instanceof Trie) {
+      return new IndexedPersistentMap<>(keyIndices, ((Trie) root).with(entry, 0), newSize);
+    }
+    Object[] entries = (Object[]) root;
+    if (newSize > SMALL_MAP_SIZE) {
+      Trie trie = EMPTY_TRIE;
+      for (Object e : entries) {
+        trie = trie.with((Entry<?, ?>) e, 0);
+      }
+      return new IndexedPersistentMap<>(keyIndices, trie.with(entry, 0), newSize);
+    }
+    int pos = 0;
+    while (pos < entries.length && indexAt(entries, pos) < entry.index) {
+      pos++;
+    }
+    Object[] newEntries;
+    if (oldEntry != null) {
+      newEntries = entries.clone();
+    } else {
+      newEntries = new Object[entries.length + 1];
+      System.arraycopy(entries, 0, newEntries, 0, pos);
+      System.arraycopy(entries, pos, newEntries, pos + 1, entries.length - pos);
+    }
+    newEntries[pos] = entry;
+    return new IndexedPersistentMap<>(keyIndices, newEntries, newSize);
+  }
+
+  @Override
+  public PersistentMap<K, V> without(K key) {
+    Integer index = keyIndices.get(key);
+    if (index == null || find(index) == null) {
+      return this;
+    }
+    if (root instanceof Trie) {
+      Object newRoot = ((Trie) root).without(index, 0);
+      if (newRoot == null) {
+        return new IndexedPersistentMap<>(keyIndices, NO_ENTRIES, 0);
+      } else if (newRoot instanceof Entry) {
+        return new IndexedPersistentMap<>(keyIndices, new Object[] {newRoot}, 1);
+      }
+      return new IndexedPersistentMap<>(keyIndices, newRoot, size - 1);
+    }
+    Object[] entries = (Object[]) root;
+    Object[] newEntries = new Object[entries.length - 1];
+    int j = 0;
+    for (Object e : entries) {
+      if (((Entry<?, ?>) e).index != index) {
+        newEntries[j++] = e;
+      }
+    }
+    return new IndexedPersistentMap<>(keyIndices, newEntries, size - 1);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(Object key) {
+    Integer index = keyIndices.get(key);
+    if (index == null) {
+      return null;
+    }
+    Entry<?, ?> entry = find(index);
+    return entry == null ? null : (V) entry.getValue();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    Integer index = keyIndices.get(key);
+    return index != null && find(index) != null;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    return new AbstractSet<Map.Entry<K, V>>() {
+      @Override
+      public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator<>(
+            root instanceof Trie ? ((Trie) root).children : (Object[]) root);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  private static int indexAt(Object[] entries, int pos) {
+    return ((Entry<?, ?>) entries[pos]).index;
+  }
+
+  private Entry<?, ?> find(int index) {
+    if (root instanceof Trie) {
+      return ((Trie) root).find(index, 0);
+    }
+    for (Object e : (Object[]) root) {
+      Entry<?, ?> entry = (Entry<?, ?>) e;
+      if (entry.index >= index) {
+        return entry.index == index ? entry : null;
+      }
+    }
+    return null;
+  }
+
+  /** Numbers keys in the order in which they are first added to a map. */
+  private static final class KeyIndices {
+    private final ConcurrentHashMap<Object, Integer> indices = new ConcurrentHashMap<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    /** Returns the index of the key, or null if it has none yet. */
+    Integer get(Object key) {
+      return key == null ? null : indices.get(key);
+    }
+
+    int indexOf(Object key) {
+      Integer index = indices.get(key);
+      if (index == null) {
+        Integer newIndex = nextIndex.getAndIncrement();
+        index = indices.putIfAbsent(key, newIndex);
+        if (index == null) {
+          index = newIndex;
+        }
+      }
+      return index;
+    }
+  }
+
+  private static final class Entry<K, V> extends AbstractMap.SimpleImmutableEntry<K, V> {
+    final int index;
+
+    Entry(int index, K key, V value) {
+      super(key, value);
+      this.index = index;
+    }
+  }
+
+  /**
+   * A node of the trie. Each child is an entry or another node, and the bitmap tells which of
+   * the 32 values of the next {@link #BITS} bits of an index have a child.
+   */
+  private static final class Trie {
+    final int bitmap;
+    final Object[] children;
+
+    Trie(int bitmap, Object[] children) {
+      this.bitmap = bitmap;
+      this.children = children;
+    }
+
+    private static int bit(int index, int shift) {
+      return 1 << ((index >>> shift) & 31);
+    }
+
+    Entry<?, ?> find(int index, int shift) {
+      Trie trie = this;
+      while (true) {
+        int bit = bit(index, shift);
+        if ((trie.bitmap & bit) == 0) {
+          return null;
+        }
+        Object child = trie.children[Integer.bitCount(trie.bitmap & (bit - 1))];
+        if (child instanceof Entry) {
+          Entry<?, ?> entry = (Entry<?, ?>) child;
+          return entry.index == index ? entry : null;
+        }
+        trie = (Trie) child;
+        shift += BITS;
+      }
+    }
+
+    Trie with(Entry<?, ?> entry, int shift) {
+      int bit = bit(entry.index, shift);
+      int pos = Integer.bitCount(bitmap & (bit - 1));
+      if ((bitmap & bit) == 0) {
+        Object[] newChildren = new Object[children.length + 1];
+        System.arraycopy(children, 0, newChildren, 0, pos);
+        newChildren[pos] = entry;
+        System.arraycopy(children, pos, newChildren, pos + 1, children.length - pos);
+        return new Trie(bitmap | bit, newChildren);
+      }
+      Object child = children[pos];
+      Object newChild;
+      if (child instanceof Trie) {
+        newChild = ((Trie) child).with(entry, shift + BITS);
+      } else if (((Entry<?, ?>) child).index == entry.index) {
+        newChild = entry;
+      } else {
+        newChild = EMPTY_TRIE.with((Entry<?, ?>) child, shift + BITS).with(entry, shift + BITS);
+      }
+      Object[] newChildren = children.clone();
+      newChildren[pos] = newChild;
+      return new Trie(bitmap, newChildren);
+    }
+
+    /**
+     * Returns this node without the given index. The result is null when nothing is left, and
+     * a single entry when that entry can take the place of the node in its parent.
+     */
+    Object without(int index, int shift) {
+      int bit = bit(index, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int pos = Integer.bitCount(bitmap & (bit - 1));
+      Object child = children[pos];
+      Object newChild;
+      if (child instanceof Trie) {
+        newChild = ((Trie) child).without(index, shift + BITS);
+        if (newChild == child) {
+          return this;
+        }
+      } else if (((Entry<?, ?>) child).index == index) {
+        newChild = null;
+      } else {
+        return this;
+      }
+      if (newChild != null) {
+        Object[] newChildren = children.clone();
+        newChildren[pos] = newChild;
+        return new Trie(bitmap, newChildren);
+      }
+      if (children.length == 1) {
+        return null;
+      }
+      if (children.length == 2 && children[1 - pos] instanceof Entry) {
+        return children[1 - pos];
+      }
+      Object[] newChildren = new Object[children.length - 1];
+      System.arraycopy(children, 0, newChildren, 0, pos);
+      System.arraycopy(children, pos + 1, newChildren, pos, children.length - pos - 1);
+      return new Trie(bitmap & ~bit, newChildren);
+    }
+  }
+
+  /** Visits the entries of a small map, or of a trie depth first. */
+  private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+    private final Object[][] path = new Object[MAX_DEPTH][];
+    private final int[] positions = new int[MAX_DEPTH];
+    private int depth = 0;
+    private Entry<K, V> next;
+
+    EntryIterator(Object[] children) {
+      path[0] = children;
+      advance();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void advance() {
+      while (depth >= 0) {
+        Object[] children = path[depth];
+        if (positions[depth] == children.length) {
+          depth--;
+          continue;
+        }
+        Object child = children[positions[depth]++];
+        if (child instanceof Trie) {
+          depth++;
+          path[depth] = ((Trie) child).children;
+          positions[depth] = 0;
+        } else {
+          next = (Entry<K, V>) child;
+          return;
+        }
+      }
+      next = null;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Map.Entry<K, V> next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      Entry<K, V> result = next;
+      advance();
+      return result;
+    }
+  }
+}
@@ -25,13 +25,21 @@ import java.util.Map;
 /** A persistent map with non-destructive additions and removals  */
 abstract class PersistentMap<K, V> extends AbstractMap<K, V> {
 
+  /**
+   * The system property that selects the maps used by {@link TypeEnv}, for comparing the
+   * implementations; see {@link #create(String)}.
+   */
+  static final String TYPE_ENV_MAP_PROPERTY = "jscomp.newtypes.typeEnvMap";
+
+  private static PersistentMap CLOJURE_EMPTY;
   private static PersistentMap EMPTY;
   static {
     try {
       @SuppressWarnings("unchecked")
       Class<? extends Map> c =
           (Class<? extends Map>) Class.forName("clojure.lang.PersistentHashMap");
-      EMPTY = ClojurePersistentHashMap.create(c);
+      CLOJURE_EMPTY = ClojurePersistentHashMap.create(c);
+      EMPTY = CLOJURE_EMPTY;
     } catch (ClassNotFoundException e) {
       EMPTY = NaivePersistentMap.create();
     }
@@ -46,6 +54,35 @@ abstract class PersistentMap<K, V> extends AbstractMap<K, V> {
     return EMPTY;
   }
 
+  /**
+   * Returns an empty map of the given implementation: "clojure", "naive" or "indexed".
+   * Any other name, such as "default", gives the map returned by {@link #create()}.
+   */
+  @SuppressWarnings("unchecked")
+  static <K, V> PersistentMap<K, V> create(String implementation) {
+    switch (implementation) {
+      case "clojure":
+        if (CLOJURE_EMPTY == null) {
+          throw new IllegalStateException("Clojure is not on the classpath");
+        }
+        return CLOJURE_EMPTY;
+      case "naive":
+        return NaivePersistentMap.create();
+      case "indexed":
+        return IndexedPersistentMap.create();
+      default:
+        return EMPTY;
+    }
+  }
+
+  /**
+   * Returns an empty map of the implementation selected by {@link #TYPE_ENV_MAP_PROPERTY}. The
+   * property is read on every call, so that tests can switch implementations.
+   */
+  static <K, V> PersistentMap<K, V> createForTypeEnv() {
+    return create(System.getProperty(TYPE_ENV_MAP_PROPERTY, "default"));
+  }
+
   public static <K, V> PersistentMap<K, V> of(K key, V value) {
     return PersistentMap.<K, V>create().with(key, value);
   }
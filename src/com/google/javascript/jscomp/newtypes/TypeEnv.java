@@ -41,7 +41,7 @@ public final class TypeEnv {
   private PersistentSet<String> changedVars = null;
 
   public TypeEnv() {
-    this.typeMap = PersistentMap.create();
+    this.typeMap = PersistentMap.createForTypeEnv();
   }
 
   private TypeEnv(PersistentMap<String, JSType> typeMap) {
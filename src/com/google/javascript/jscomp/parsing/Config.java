@@ -16,8 +16,10 @@
 
 package com.google.javascript.jscomp.parsing;
 
+import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.javascript.jscomp.parsing.parser.FeatureSet;
 import java.util.Set;
 
@@ -180,4 +182,19 @@ public final class Config {
     }
     return annotationBuilder.build();
   }
+
+  /**
+   * Returns a string that is the same for two configs only if they parse any given source into the
+   * same AST. Used to key caches of parse results.
+   */
+  public String toCacheKey() {
+    return Joiner.on(';').join(
+        languageMode,
+        strictMode,
+        parseJsDocDocumentation,
+        keepGoing,
+        parseInlineSourceMaps,
+        ImmutableSortedSet.copyOf(annotationNames.keySet()),
+        ImmutableSortedSet.copyOf(suppressionNames));
+  }
 }
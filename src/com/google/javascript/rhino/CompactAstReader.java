@@ -0,0 +1,425 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package com.google.javascript.rhino;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.io.ByteStreams;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Reads ASTs written by a {@link CompactAstWriter}.
+ *
+ * <p>The types and other objects that the trees refer to by handle are only
+ * known once the caller has read the object table that follows the trees, and
+ * passed it to {@link #setObjectTable}. Until then, nodes have no types and
+ * those properties have null values.
+ */
+@GwtIncompatible("java.io")
+public final class CompactAstReader {
+  private final InputStream in;
+  private final byte[] buffer = new byte[CompactAstWriter.BUFFER_SIZE];
+  private int pos = 0;
+  private int limit = 0;
+
+  private final List<String> strings = new ArrayList<>();
+  private final List<Node> nodes = new ArrayList<>();
+  private final List<Node.PropertyMap> propertyMaps = new ArrayList<>();
+  private final List<JSDocInfo> jsDocs = new ArrayList<>();
+
+  // The nodes with types, and the handles of their types.
+  private Node[] typedNodes = new Node[64];
+  private int[] typeHandles = new int[64];
+  private int typedNodeCount = 0;
+
+  // The object properties whose values are in the object table: the value arrays of their maps,
+  // the indices of the values, and their handles.
+  private Object[][] objectValueArrays = new Object[64][];
+  private int[] objectValueIndices = new int[64];
+  private int[] objectValueHandles = new int[64];
+  private int objectValueCount = 0;
+
+  public CompactAstReader(InputStream in) throws IOException {
+    this.in = in;
+    int magic = 0;
+    for (int i = 0; i < 4; i++) {
+      magic = (magic << 8) | readRawByte();
+    }
+    if (magic != CompactAstWriter.MAGIC) {
+      throw new StreamCorruptedException("Not a compact AST");
+    }
+    int version = readInt();
+    if (version != CompactAstWriter.VERSION) {
+      throw new StreamCorruptedException("Unsupported compact AST version " + version);
+    }
+  }
+
+  /** Reads the next tree. */
+  public Node readTree() throws IOException {
+    Node root = readNode();
+    if (pos != limit || readRawVarint() != 0) {
+      throw new StreamCorruptedException("Expected the end of a tree");
+    }
+    return root;
+  }
+
+  /**
+   * Gives the trees the types and other objects they refer to by handle.
+   *
+   * @param objects the table returned by {@link CompactAstWriter#getObjectTable}
+   */
+  public void setObjectTable(Object[] objects) {
+    for (int i = 0; i < typedNodeCount; i++) {
+      typedNodes[i].setTypeI((TypeI) objects[typeHandles[i] - 1]);
+    }
+    for (int i = 0; i < objectValueCount; i++) {
+      objectValueArrays[i][objectValueIndices[i]] = objects[objectValueHandles[i] - 1];
+    }
+    typedNodes = null;
+    typeHandles = null;
+    objectValueArrays = null;
+    objectValueIndices = null;
+    objectValueHandles = null;
+  }
+
+  /**
+   * Resolves the handles that {@link CompactAstWriter#replaceObject} put in
+   * place of nodes and JSDoc, for use in {@link
+   * java.io.ObjectInputStream#resolveObject}.
+   */
+  public Object resolveObject(Object obj) {
+    if (obj instanceof CompactAstWriter.NodeHandle) {
+      return nodes.get(((CompactAstWriter.NodeHandle) obj).id);
+    } else if (obj instanceof CompactAstWriter.JSDocHandle) {
+      return jsDocs.get(((CompactAstWriter.JSDocHandle) obj).id);
+    }
+    return obj;
+  }
+
+  int readInt() throws IOException {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = readByte();
+      value |= (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  boolean readBoolean() throws IOException {
+    return readInt() != 0;
+  }
+
+  @Nullable
+  String readString() throws IOException {
+    int header = readInt();
+    if (header == 0) {
+      return null;
+    } else if (header > 1) {
+      return strings.get(header - 2);
+    }
+    int length = readInt();
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) readInt();
+    }
+    String str = new String(chars);
+    strings.add(str);
+    return str;
+  }
+
+  @Nullable
+  JSTypeExpression readTypeExpression() throws IOException {
+    Node root = readNode();
+    return root == null ? null : new JSTypeExpression(root, readString());
+  }
+
+  @Nullable
+  JSDocInfo readJSDocInfo() throws IOException {
+    int header = readInt();
+    if (header == 0) {
+      return null;
+    } else if (header > 1) {
+      return jsDocs.get(header - 2);
+    }
+    // Take the id before reading the contents, as the writer did.
+    int id = jsDocs.size();
+    jsDocs.add(null);
+    JSDocInfo info = JSDocInfo.readCompact(this);
+    jsDocs.set(id, info);
+    return info;
+  }
+
+  /** Reads a tree written by {@link CompactAstWriter#writeNode}. */
+  @Nullable
+  Node readNode() throws IOException {
+    int header = readInt();
+    if (header == 0) {
+      return null;
+    } else if (header == 1) {
+      return nodes.get(readInt());
+    }
+    Node root = readNodeFields(header - 2);
+    int childCount = readInt();
+    if (childCount == 0) {
+      return root;
+    }
+    // The parents whose children are being read, and how many children each has left.
+    Node[] parents = new Node[16];
+    int[] remaining = new int[16];
+    parents[0] = root;
+    remaining[0] = childCount;
+    int depth = 1;
+    while (depth > 0) {
+      if (remaining[depth - 1] == 0) {
+        depth--;
+        continue;
+      }
+      remaining[depth - 1]--;
+      header = readInt();
+      if (header < 2) {
+        throw new StreamCorruptedException("Expected a child node");
+      }
+      Node child = readNodeFields(header - 2);
+      appendChild(parents[depth - 1], child);
+      childCount = readInt();
+      if (childCount > 0) {
+        if (depth == parents.length) {
+          parents = Arrays.copyOf(parents, depth * 2);
+          remaining = Arrays.copyOf(remaining, depth * 2);
+        }
+        parents[depth] = child;
+        remaining[depth] = childCount;
+        depth++;
+      }
+    }
+    return root;
+  }
+
+  private static void appendChild(Node parent, Node child) {
+    child.parent = parent;
+    Node first = parent.first;
+    if (first == null) {
+      parent.first = child;
+      // The first child's previous is the last child.
+      child.previous = child;
+    } else {
+      Node last = first.previous;
+      last.next = child;
+      child.previous = last;
+      first.previous = child;
+    }
+  }
+
+  private Node readNodeFields(int header) throws IOException {
+    Token token = Token.values()[header >>> 2];
+    int sourcePosition = readInt() - 1;
+    int length = readInt();
+    Node n;
+    switch (header & 3) {
+      case CompactAstWriter.KIND_STRING:
+        n = Node.newString(token, readString());
+        break;
+      case CompactAstWriter.KIND_NUMBER:
+        n = Node.newNumber(readNumber());
+        break;
+      case CompactAstWriter.KIND_TYPE_DECLARATION:
+        n = new Node.TypeDeclarationNode(token, readString());
+        break;
+      default:
+        n = new Node(token);
+        break;
+    }
+    n.token = token;
+    n.setSourceEncodedPosition(sourcePosition);
+    n.setLength(length);
+    // Take the id before reading the properties, which may hold other trees.
+    nodes.add(n);
+    n.props = readPropertyMap();
+    int typeHandle = readInt();
+    if (typeHandle != 0) {
+      if (typedNodeCount == typedNodes.length) {
+        typedNodes = Arrays.copyOf(typedNodes, typedNodeCount * 2);
+        typeHandles = Arrays.copyOf(typeHandles, typedNodeCount * 2);
+      }
+      typedNodes[typedNodeCount] = n;
+      typeHandles[typedNodeCount] = typeHandle;
+      typedNodeCount++;
+    }
+    return n;
+  }
+
+  private double readNumber() throws IOException {
+    int header = readInt();
+    if (header != 1) {
+      return header >>> 1;
+    }
+    long bits = 0;
+    for (int i = 0; i < 8; i++) {
+      bits = (bits << 8) | readByte();
+    }
+    return Double.longBitsToDouble(bits);
+  }
+
+  @Nullable
+  private Node.PropertyMap readPropertyMap() throws IOException {
+    int header = readInt();
+    if (header == 0) {
+      return null;
+    } else if (header > 1) {
+      return propertyMaps.get(header - 2);
+    }
+    int id = propertyMaps.size();
+    propertyMaps.add(null);
+
+    long intKeysLow = 0;
+    long intKeysHigh = 0;
+    int intCount = readInt();
+    int[] ints = intCount == 0 ? Node.PropertyMap.NO_INTS : new int[intCount];
+    for (int i = 0; i < ints.length; i++) {
+      byte key = (byte) readInt();
+      if (key < 64) {
+        intKeysLow |= 1L << key;
+      } else {
+        intKeysHigh |= 1L << key;
+      }
+      ints[i] = readInt();
+    }
+    long objectKeysLow = 0;
+    long objectKeysHigh = 0;
+    int objectCount = readInt();
+    Object[] objects = objectCount == 0 ? Node.PropertyMap.NO_OBJECTS : new Object[objectCount];
+    for (int i = 0; i < objects.length; i++) {
+      byte key = (byte) readInt();
+      if (key < 64) {
+        objectKeysLow |= 1L << key;
+      } else {
+        objectKeysHigh |= 1L << key;
+      }
+      objects[i] = readValue(objects, i);
+    }
+    // Keys were written in increasing order, so the values are already packed in key order.
+    Node.PropertyMap props =
+        new Node.PropertyMap(intKeysLow, intKeysHigh, ints, objectKeysLow, objectKeysHigh, objects);
+    propertyMaps.set(id, props);
+    return props;
+  }
+
+  /**
+   * Reads the value of an object property. Values in the object table are
+   * filled in by {@link #setObjectTable}.
+   */
+  @Nullable
+  private Object readValue(Object[] values, int index) throws IOException {
+    switch (readInt()) {
+      case CompactAstWriter.VALUE_STRING:
+        return readString();
+      case CompactAstWriter.VALUE_NODE:
+        return readNode();
+      case CompactAstWriter.VALUE_JSDOC:
+        return readJSDocInfo();
+      case CompactAstWriter.VALUE_OBJECT:
+        int handle = readInt();
+        checkState(handle != 0);
+        if (objectValueCount == objectValueArrays.length) {
+          objectValueArrays = Arrays.copyOf(objectValueArrays, objectValueCount * 2);
+          objectValueIndices = Arrays.copyOf(objectValueIndices, objectValueCount * 2);
+          objectValueHandles = Arrays.copyOf(objectValueHandles, objectValueCount * 2);
+        }
+        objectValueArrays[objectValueCount] = values;
+        objectValueIndices[objectValueCount] = index;
+        objectValueHandles[objectValueCount] = handle;
+        objectValueCount++;
+        return null;
+      default:
+        throw new StreamCorruptedException("Unknown property value kind");
+    }
+  }
+
+  private int readByte() throws IOException {
+    if (pos == limit) {
+      readChunk();
+    }
+    return buffer[pos++] & 0xff;
+  }
+
+  /**
+   * Reads the next chunk into the buffer. Chunks are read whole, and nothing
+   * after them, so the input can be read further once the trees are read.
+   */
+  private void readChunk() throws IOException {
+    int length = readRawVarint();
+    if (length == 0 || length > buffer.length) {
+      throw new StreamCorruptedException("Unexpected end of a tree");
+    }
+    ByteStreams.readFully(in, buffer, 0, length);
+    pos = 0;
+    limit = length;
+  }
+
+  private int readRawByte() throws IOException {
+    int b = in.read();
+    if (b == -1) {
+      throw new EOFException();
+    }
+    return b;
+  }
+
+  private int readRawVarint() throws IOException {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = readRawByte();
+      value |= (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+}
@@ -0,0 +1,461 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package com.google.javascript.rhino;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.GwtIncompatible;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Writes ASTs in a compact binary format, for handing a compilation from one
+ * process to another. {@link CompactAstReader} reads them back.
+ *
+ * <p>Nodes are written in pre-order, each as its token and kind, its source
+ * position and length, its string or number, its properties and its type,
+ * followed by the number of its children. All of those are varints. Strings
+ * are written the first time they are used and referred to by their index
+ * afterwards, and so are property maps, which the nodes of a file share, and
+ * JSDoc. Nodes and JSDoc that are referred to again, such as the type
+ * expressions of the JSDoc markers, are written as back references.
+ *
+ * <p>Types, source files and other property values that are not strings,
+ * nodes or JSDoc are only written as handles into a table of objects. The
+ * caller writes that table with Java serialization once all trees are
+ * written, replacing the nodes and JSDoc it refers to through {@link
+ * #replaceObject}, so that they come back as the same instances.
+ *
+ * <p>Output is written in chunks that are each preceded by their length, so
+ * that the reader never reads past the trees into data that follows them.
+ */
+@GwtIncompatible("java.io")
+public final class CompactAstWriter {
+  static final int MAGIC = 0x4a534153; // "JSAS"
+  static final int VERSION = 1;
+
+  static final int KIND_NODE = 0;
+  static final int KIND_STRING = 1;
+  static final int KIND_NUMBER = 2;
+  static final int KIND_TYPE_DECLARATION = 3;
+
+  // The values of object properties are tagged with their kind.
+  static final int VALUE_STRING = 0;
+  static final int VALUE_NODE = 1;
+  static final int VALUE_JSDOC = 2;
+  static final int VALUE_OBJECT = 3;
+
+  static final int BUFFER_SIZE = 1 << 16;
+
+  private final OutputStream out;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int pos = 0;
+
+  private final Map<String, Integer> stringIds = new HashMap<>();
+  private final IdentityIntMap nodeIds = new IdentityIntMap();
+  private final IdentityIntMap propertyMapIds = new IdentityIntMap();
+  private final IdentityIntMap jsDocIds = new IdentityIntMap();
+  private final IdentityIntMap objectIds = new IdentityIntMap();
+  private final List<Object> objects = new ArrayList<>();
+
+  public CompactAstWriter(OutputStream out) throws IOException {
+    this.out = out;
+    writeRawInt(MAGIC);
+    writeInt(VERSION);
+  }
+
+  /**
+   * Writes the tree under the given node. Nodes that were already written as
+   * part of an earlier tree are written as back references.
+   */
+  public void writeTree(Node root) throws IOException {
+    writeNode(root);
+    flushChunk();
+    // An empty chunk marks the end of the tree.
+    writeRawVarint(out, 0);
+  }
+
+  /**
+   * Returns the objects that the trees refer to by handle, in handle order.
+   * They must be written after the trees, with Java serialization.
+   */
+  public Object[] getObjectTable() {
+    return objects.toArray();
+  }
+
+  /**
+   * Replaces the nodes and JSDoc that were written as part of a tree with
+   * handles, for use in {@link java.io.ObjectOutputStream#replaceObject}.
+   */
+  public Object replaceObject(Object obj) {
+    if (obj instanceof Node) {
+      int id = nodeIds.get(obj);
+      if (id != -1) {
+        return new NodeHandle(id);
+      }
+    } else if (obj instanceof JSDocInfo) {
+      int id = jsDocIds.get(obj);
+      if (id != -1) {
+        return new JSDocHandle(id);
+      }
+    }
+    return obj;
+  }
+
+  void writeInt(int value) throws IOException {
+    ensureCapacity(5);
+    while ((value & ~0x7f) != 0) {
+      buffer[pos++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    buffer[pos++] = (byte) value;
+  }
+
+  void writeBoolean(boolean value) throws IOException {
+    writeInt(value ? 1 : 0);
+  }
+
+  /**
+   * Writes the index of a string written before, or the string itself. The
+   * chars are written one by one, since JavaScript strings need not be valid
+   * UTF-16.
+   */
+  void writeString(@Nullable String str) throws IOException {
+    if (str == null) {
+      writeInt(0);
+      return;
+    }
+    Integer id = stringIds.get(str);
+    if (id != null) {
+      writeInt(id + 2);
+      return;
+    }
+    stringIds.put(str, stringIds.size());
+    writeInt(1);
+    writeInt(str.length());
+    for (int i = 0; i < str.length(); i++) {
+      writeInt(str.charAt(i));
+    }
+  }
+
+  void writeTypeExpression(@Nullable JSTypeExpression expr) throws IOException {
+    if (expr == null) {
+      writeNode(null);
+      return;
+    }
+    writeNode(expr.getRoot());
+    writeString(expr.getSourceName());
+  }
+
+  void writeJSDocInfo(@Nullable JSDocInfo info) throws IOException {
+    if (info == null) {
+      writeInt(0);
+      return;
+    }
+    int id = jsDocIds.get(info);
+    if (id != -1) {
+      writeInt(id + 2);
+      return;
+    }
+    jsDocIds.put(info, jsDocIds.size());
+    writeInt(1);
+    info.writeCompact(this);
+  }
+
+  /**
+   * Writes a tree, or a back reference to a node written before. The tree is
+   * walked with an explicit stack, since ASTs can be deeper than the stack.
+   */
+  void writeNode(@Nullable Node root) throws IOException {
+    if (root == null) {
+      writeInt(0);
+      return;
+    }
+    int rootId = nodeIds.get(root);
+    if (rootId != -1) {
+      writeInt(1);
+      writeInt(rootId);
+      return;
+    }
+    List<Node> stack = new ArrayList<>();
+    stack.add(root);
+    while (!stack.isEmpty()) {
+      Node n = stack.remove(stack.size() - 1);
+      checkState(nodeIds.get(n) == -1, "Node is part of two trees: %s", n);
+      nodeIds.put(n, nodeIds.size());
+      writeNodeFields(n);
+      int childCount = 0;
+      for (Node child = n.first; child != null; child = child.next) {
+        childCount++;
+      }
+      writeInt(childCount);
+      // Push the children last to first, so that they are popped in order.
+      for (Node child = n.getLastChild(); child != null; child = child.getPrevious()) {
+        stack.add(child);
+      }
+    }
+  }
+
+  private void writeNodeFields(Node n) throws IOException {
+    int kind;
+    if (n instanceof Node.StringNode) {
+      kind = KIND_STRING;
+    } else if (n instanceof Node.NumberNode) {
+      kind = KIND_NUMBER;
+    } else if (n instanceof Node.TypeDeclarationNode) {
+      kind = KIND_TYPE_DECLARATION;
+    } else {
+      checkState(n.getClass() == Node.class, "Unexpected node class: %s", n.getClass());
+      kind = KIND_NODE;
+    }
+    // 0 and 1 mark null and back references.
+    writeInt(((n.token.ordinal() << 2) | kind) + 2);
+    // Positions are -1 when unknown, which would take five bytes as is.
+    writeInt(n.getSourcePosition() + 1);
+    writeInt(n.getLength());
+    switch (kind) {
+      case KIND_STRING:
+      case KIND_TYPE_DECLARATION:
+        writeString(n.getString());
+        break;
+      case KIND_NUMBER:
+        writeNumber(n.getDouble());
+        break;
+      default:
+        break;
+    }
+    writePropertyMap(n.props);
+    writeObject(n.getTypeI());
+  }
+
+  /** Writes small non-negative integers as varints, and other numbers in full. */
+  private void writeNumber(double value) throws IOException {
+    int intValue = (int) value;
+    if (intValue == value && intValue >= 0 && intValue < (1 << 30)
+        && !(value == 0 && 1 / value < 0)) {
+      writeInt(intValue << 1);
+    } else {
+      writeInt(1);
+      long bits = Double.doubleToRawLongBits(value);
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        buffer[pos++] = (byte) (bits >>> shift);
+      }
+    }
+  }
+
+  private void writePropertyMap(@Nullable Node.PropertyMap props) throws IOException {
+    if (props == null) {
+      writeInt(0);
+      return;
+    }
+    int id = propertyMapIds.get(props);
+    if (id != -1) {
+      writeInt(id + 2);
+      return;
+    }
+    propertyMapIds.put(props, propertyMapIds.size());
+    writeInt(1);
+    byte[] keys = props.keys();
+    writeInt(props.ints.length);
+    for (byte key : keys) {
+      if (props.hasInt(key)) {
+        writeInt(key);
+        writeInt(props.getInt(key));
+      }
+    }
+    writeInt(props.objects.length);
+    for (byte key : keys) {
+      if (props.hasObject(key)) {
+        writeInt(key);
+        writeValue(props.getObject(key));
+      }
+    }
+  }
+
+  private void writeValue(Object value) throws IOException {
+    if (value instanceof String) {
+      writeInt(VALUE_STRING);
+      writeString((String) value);
+    } else if (value instanceof Node
+        && (nodeIds.get(value) != -1 || ((Node) value).getParent() == null)) {
+      writeInt(VALUE_NODE);
+      writeNode((Node) value);
+    } else if (value instanceof JSDocInfo) {
+      writeInt(VALUE_JSDOC);
+      writeJSDocInfo((JSDocInfo) value);
+    } else {
+      // This includes nodes of a tree that are not written yet, which the
+      // object table refers to by handle once they are.
+      writeInt(VALUE_OBJECT);
+      writeObject(value);
+    }
+  }
+
+  /** Writes the handle of an object in the object table, adding it if it is new. */
+  private void writeObject(@Nullable Object obj) throws IOException {
+    if (obj == null) {
+      writeInt(0);
+      return;
+    }
+    int id = objectIds.get(obj);
+    if (id == -1) {
+      id = objects.size();
+      objectIds.put(obj, id);
+      objects.add(obj);
+    }
+    writeInt(id + 1);
+  }
+
+  private void ensureCapacity(int size) throws IOException {
+    if (pos + size > buffer.length) {
+      flushChunk();
+    }
+  }
+
+  private void flushChunk() throws IOException {
+    if (pos > 0) {
+      writeRawVarint(out, pos);
+      out.write(buffer, 0, pos);
+      pos = 0;
+    }
+  }
+
+  private void writeRawInt(int value) throws IOException {
+    out.write(value >>> 24);
+    out.write(value >>> 16);
+    out.write(value >>> 8);
+    out.write(value);
+  }
+
+  private static void writeRawVarint(OutputStream out, int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+      out.write((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  /** Stands in for a node of a tree in the serialized object table. */
+  static final class NodeHandle implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final int id;
+
+    NodeHandle(int id) {
+      this.id = id;
+    }
+  }
+
+  /** Stands in for JSDoc of a tree in the serialized object table. */
+  static final class JSDocHandle implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final int id;
+
+    JSDocHandle(int id) {
+      this.id = id;
+    }
+  }
+
+  /**
+   * A map from objects, compared by identity, to non-negative ints. Unlike an
+   * IdentityHashMap it doesn't box its values, which matters with an entry per
+   * node of a large program.
+   */
+  private static final class IdentityIntMap {
+    private Object[] keys = new Object[64];
+    private int[] values = new int[64];
+    private int size = 0;
+
+    int size() {
+      return size;
+    }
+
+    /** Returns the value of the key, or -1 if it has none. */
+    int get(Object key) {
+      int mask = keys.length - 1;
+      for (int i = hash(key) & mask; keys[i] != null; i = (i + 1) & mask) {
+        if (keys[i] == key) {
+          return values[i];
+        }
+      }
+      return -1;
+    }
+
+    /** Adds a key that is not in the map yet. */
+    void put(Object key, int value) {
+      if (2 * (size + 1) > keys.length) {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new Object[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+          if (oldKeys[i] != null) {
+            insert(oldKeys[i], oldValues[i]);
+          }
+        }
+      }
+      insert(key, value);
+      size++;
+    }
+
+    private void insert(Object key, int value) {
+      int mask = keys.length - 1;
+      int i = hash(key) & mask;
+      while (keys[i] != null) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      values[i] = value;
+    }
+
+    private static int hash(Object key) {
+      // Spread the bits, since linear probing is sensitive to clustering.
+      int h = System.identityHashCode(key) * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+  }
+}
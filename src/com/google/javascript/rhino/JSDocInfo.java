@@ -41,12 +41,14 @@ package com.google.javascript.rhino;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import com.google.common.annotations.GwtIncompatible;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -55,9 +57,11 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * <p>JSDoc information describing JavaScript code. JSDoc is represented as a
@@ -2158,4 +2162,308 @@ public class JSDocInfo implements Serializable {
     // this should simply be a check for "arguments".
     return (modifies.size() > 1 || (modifies.size() == 1 && !modifies.contains("this")));
   }
+
+  /**
+   * Writes all fields of this JSDoc for {@link CompactAstWriter}, with the
+   * type expressions as trees of the compact AST.
+   */
+  @GwtIncompatible("CompactAstWriter")
+  void writeCompact(CompactAstWriter out) throws IOException {
+    out.writeInt(bitset);
+    out.writeInt(visibility == null ? 0 : visibility.ordinal() + 1);
+    out.writeTypeExpression(type);
+    out.writeTypeExpression(thisType);
+    out.writeBoolean(inlineType);
+    out.writeBoolean(includeDocumentation);
+    out.writeInt(originalCommentPosition);
+
+    out.writeBoolean(info != null);
+    if (info != null) {
+      out.writeTypeExpression(info.baseType);
+      writeTypeExpressions(out, info.extendedInterfaces);
+      writeTypeExpressions(out, info.implementedInterfaces);
+      writeSize(out, info.parameters);
+      if (info.parameters != null) {
+        for (Entry<String, JSTypeExpression> entry : info.parameters.entrySet()) {
+          out.writeString(entry.getKey());
+          out.writeTypeExpression(entry.getValue());
+        }
+      }
+      writeTypeExpressions(out, info.thrownTypes);
+      writeStrings(out, info.templateTypeNames);
+      writeStrings(out, info.disposedParameters);
+      writeSize(out, info.typeTransformations);
+      if (info.typeTransformations != null) {
+        for (Entry<String, Node> entry : info.typeTransformations.entrySet()) {
+          out.writeString(entry.getKey());
+          out.writeNode(entry.getValue());
+        }
+      }
+      out.writeString(info.description);
+      out.writeString(info.meaning);
+      out.writeString(info.deprecated);
+      out.writeString(info.license);
+      writeStrings(out, info.suppressions);
+      writeStrings(out, info.modifies);
+      out.writeString(info.lendsName);
+      out.writeInt(info.propertyBitField);
+    }
+
+    out.writeBoolean(documentation != null);
+    if (documentation != null) {
+      out.writeString(documentation.sourceComment);
+      writeSize(out, documentation.markers);
+      if (documentation.markers != null) {
+        for (Marker marker : documentation.markers) {
+          writeStringPosition(out, marker.annotation);
+          writePosition(out, marker.nameNode);
+          if (marker.nameNode != null) {
+            out.writeNode(marker.nameNode.getItem());
+          }
+          writeStringPosition(out, marker.description);
+          writePosition(out, marker.type);
+          if (marker.type != null) {
+            out.writeNode(marker.type.getItem());
+            out.writeBoolean(marker.type.hasBrackets());
+          }
+        }
+      }
+      writeSize(out, documentation.parameters);
+      if (documentation.parameters != null) {
+        for (Entry<String, String> entry : documentation.parameters.entrySet()) {
+          out.writeString(entry.getKey());
+          out.writeString(entry.getValue());
+        }
+      }
+      writeSize(out, documentation.throwsDescriptions);
+      if (documentation.throwsDescriptions != null) {
+        for (Entry<JSTypeExpression, String> entry
+            : documentation.throwsDescriptions.entrySet()) {
+          out.writeTypeExpression(entry.getKey());
+          out.writeString(entry.getValue());
+        }
+      }
+      out.writeString(documentation.blockDescription);
+      out.writeString(documentation.fileOverview);
+      out.writeString(documentation.returnDescription);
+      out.writeString(documentation.version);
+      writeStrings(out, documentation.authors);
+      writeStrings(out, documentation.sees);
+    }
+  }
+
+  /** Reads JSDoc written by {@link #writeCompact}. */
+  @GwtIncompatible("CompactAstReader")
+  static JSDocInfo readCompact(CompactAstReader in) throws IOException {
+    JSDocInfo jsDoc = new JSDocInfo();
+    jsDoc.bitset = in.readInt();
+    int visibility = in.readInt();
+    jsDoc.visibility = visibility == 0 ? null : Visibility.values()[visibility - 1];
+    jsDoc.type = in.readTypeExpression();
+    jsDoc.thisType = in.readTypeExpression();
+    jsDoc.inlineType = in.readBoolean();
+    jsDoc.includeDocumentation = in.readBoolean();
+    jsDoc.originalCommentPosition = in.readInt();
+
+    if (in.readBoolean()) {
+      LazilyInitializedInfo info = new LazilyInitializedInfo();
+      info.baseType = in.readTypeExpression();
+      info.extendedInterfaces = readTypeExpressions(in);
+      info.implementedInterfaces = readTypeExpressions(in);
+      int size = in.readInt() - 1;
+      if (size >= 0) {
+        info.parameters = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+          info.parameters.put(in.readString(), in.readTypeExpression());
+        }
+      }
+      info.thrownTypes = readTypeExpressions(in);
+      info.templateTypeNames = readStrings(in);
+      List<String> disposedParameters = readStrings(in);
+      info.disposedParameters =
+          disposedParameters == null ? null : new HashSet<>(disposedParameters);
+      size = in.readInt() - 1;
+      if (size >= 0) {
+        info.typeTransformations = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+          info.typeTransformations.put(in.readString(), in.readNode());
+        }
+      }
+      info.description = in.readString();
+      info.meaning = in.readString();
+      info.deprecated = in.readString();
+      info.license = in.readString();
+      List<String> suppressions = readStrings(in);
+      info.suppressions = suppressions == null ? null : ImmutableSet.copyOf(suppressions);
+      List<String> modifies = readStrings(in);
+      info.modifies = modifies == null ? null : ImmutableSet.copyOf(modifies);
+      info.lendsName = in.readString();
+      info.propertyBitField = in.readInt();
+      jsDoc.info = info;
+    }
+
+    if (in.readBoolean()) {
+      LazilyInitializedDocumentation documentation = new LazilyInitializedDocumentation();
+      documentation.sourceComment = in.readString();
+      int size = in.readInt() - 1;
+      if (size >= 0) {
+        documentation.markers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          Marker marker = new Marker();
+          marker.annotation = readStringPosition(in, new TrimmedStringPosition());
+          marker.nameNode = readPosition(in, new NamePosition());
+          if (marker.nameNode != null) {
+            marker.nameNode.setItem(in.readNode());
+          }
+          marker.description = readStringPosition(in, new StringPosition());
+          marker.type = readPosition(in, new TypePosition());
+          if (marker.type != null) {
+            marker.type.setItem(in.readNode());
+            marker.type.setHasBrackets(in.readBoolean());
+          }
+          documentation.markers.add(marker);
+        }
+      }
+      size = in.readInt() - 1;
+      if (size >= 0) {
+        documentation.parameters = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+          documentation.parameters.put(in.readString(), in.readString());
+        }
+      }
+      size = in.readInt() - 1;
+      if (size >= 0) {
+        documentation.throwsDescriptions = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+          documentation.throwsDescriptions.put(in.readTypeExpression(), in.readString());
+        }
+      }
+      documentation.blockDescription = in.readString();
+      documentation.fileOverview = in.readString();
+      documentation.returnDescription = in.readString();
+      documentation.version = in.readString();
+      documentation.authors = readStrings(in);
+      documentation.sees = readStrings(in);
+      jsDoc.documentation = documentation;
+    }
+    return jsDoc;
+  }
+
+  /** Writes the size of a collection plus one, or zero for null. */
+  @GwtIncompatible("CompactAstWriter")
+  private static void writeSize(CompactAstWriter out, @Nullable Object collection)
+      throws IOException {
+    if (collection == null) {
+      out.writeInt(0);
+    } else if (collection instanceof Collection) {
+      out.writeInt(((Collection<?>) collection).size() + 1);
+    } else {
+      out.writeInt(((Map<?, ?>) collection).size() + 1);
+    }
+  }
+
+  @GwtIncompatible("CompactAstWriter")
+  private static void writeTypeExpressions(
+      CompactAstWriter out, @Nullable List<JSTypeExpression> exprs) throws IOException {
+    writeSize(out, exprs);
+    if (exprs != null) {
+      for (JSTypeExpression expr : exprs) {
+        out.writeTypeExpression(expr);
+      }
+    }
+  }
+
+  @GwtIncompatible("CompactAstReader")
+  @Nullable
+  private static ArrayList<JSTypeExpression> readTypeExpressions(CompactAstReader in)
+      throws IOException {
+    int size = in.readInt() - 1;
+    if (size < 0) {
+      return null;
+    }
+    ArrayList<JSTypeExpression> exprs = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      exprs.add(in.readTypeExpression());
+    }
+    return exprs;
+  }
+
+  @GwtIncompatible("CompactAstWriter")
+  private static void writeStrings(CompactAstWriter out, @Nullable Collection<String> strings)
+      throws IOException {
+    writeSize(out, strings);
+    if (strings != null) {
+      for (String str : strings) {
+        out.writeString(str);
+      }
+    }
+  }
+
+  @GwtIncompatible("CompactAstReader")
+  @Nullable
+  private static ArrayList<String> readStrings(CompactAstReader in) throws IOException {
+    int size = in.readInt() - 1;
+    if (size < 0) {
+      return null;
+    }
+    ArrayList<String> strings = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      strings.add(in.readString());
+    }
+    return strings;
+  }
+
+  /** Writes whether there is a position, and its lines and columns. */
+  @GwtIncompatible("CompactAstWriter")
+  private static void writePosition(CompactAstWriter out, @Nullable SourcePosition<?> position)
+      throws IOException {
+    out.writeBoolean(position != null);
+    if (position != null) {
+      out.writeInt(position.getStartLine());
+      out.writeInt(position.getPositionOnStartLine());
+      out.writeInt(position.getEndLine());
+      out.writeInt(position.getPositionOnEndLine());
+    }
+  }
+
+  @GwtIncompatible("CompactAstReader")
+  @Nullable
+  private static <T extends SourcePosition<?>> T readPosition(CompactAstReader in, T position)
+      throws IOException {
+    if (!in.readBoolean()) {
+      return null;
+    }
+    int startLine = in.readInt();
+    int startChar = in.readInt();
+    int endLine = in.readInt();
+    int endChar = in.readInt();
+    // Positions that were never set are all zero, which setPositionInformation rejects.
+    if (startLine != 0 || startChar != 0 || endLine != 0 || endChar != 0) {
+      position.setPositionInformation(startLine, startChar, endLine, endChar);
+    }
+    return position;
+  }
+
+  @GwtIncompatible("CompactAstWriter")
+  private static void writeStringPosition(
+      CompactAstWriter out, @Nullable StringPosition position) throws IOException {
+    writePosition(out, position);
+    if (position != null) {
+      out.writeString(position.getItem());
+    }
+  }
+
+  @GwtIncompatible("CompactAstReader")
+  @Nullable
+  private static <T extends StringPosition> T readStringPosition(
+      CompactAstReader in, T position) throws IOException {
+    T result = readPosition(in, position);
+    if (result != null) {
+      String item = in.readString();
+      if (item != null) {
+        result.setItem(item);
+      }
+    }
+    return result;
+  }
 }
@@ -52,7 +52,6 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Serializable;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -263,7 +262,7 @@ public class Node implements Serializable {
     }
   }
 
-  private static final class NumberNode extends Node {
+  static final class NumberNode extends Node {
 
     private static final long serialVersionUID = 1L;
 
@@ -310,7 +309,7 @@ public class Node implements Serializable {
     }
   }
 
-  private static final class StringNode extends Node {
+  static final class StringNode extends Node {
 
     private static final long serialVersionUID = 1L;
 
@@ -387,77 +386,201 @@ public class Node implements Serializable {
     }
   }
 
-  private abstract static class PropListItem implements Serializable {
-    final @Nullable PropListItem next;
-    final byte propType;
+  /**
+   * The properties of a node, a map from prop key to either an int or an object value.
+   *
+   * <p>The keys present are recorded in two bitsets, one for int and one for object values, and
+   * the values are packed in key order into an int and an object array. A lookup is a bit test and
+   * a bit count rather than a walk down a list.
+   *
+   * <p>Maps are immutable, so nodes can share them: the parser clones the props of one template node
+   * into every node of a file, so they all share the map holding its source file. A map derived from another shares whichever of the two value
+   * arrays did not change.
+   */
+  static final class PropertyMap {
+    static final int[] NO_INTS = new int[0];
+    static final Object[] NO_OBJECTS = new Object[0];
+
+    // Bitsets of the keys present. Prop keys are non-negative bytes, so two longs hold them all:
+    // the first for keys 0-63 and the second for keys 64-127.
+    final long intKeysLow;
+    final long intKeysHigh;
+    final long objectKeysLow;
+    final long objectKeysHigh;
+    final int[] ints;
+    final Object[] objects;
 
-    PropListItem(byte propType, @Nullable PropListItem next) {
-      this.propType = propType;
-      this.next = next;
+    PropertyMap(
+        long intKeysLow, long intKeysHigh, int[] ints,
+        long objectKeysLow, long objectKeysHigh, Object[] objects) {
+      this.intKeysLow = intKeysLow;
+      this.intKeysHigh = intKeysHigh;
+      this.ints = ints;
+      this.objectKeysLow = objectKeysLow;
+      this.objectKeysHigh = objectKeysHigh;
+      this.objects = objects;
     }
 
-    public abstract int getIntValue();
-    public abstract Object getObjectValue();
-    public abstract PropListItem chain(@Nullable PropListItem next);
-  }
+    static PropertyMap ofInt(byte key, int value) {
+      return new PropertyMap(
+          key < 64 ? 1L << key : 0, key < 64 ? 0 : 1L << key, new int[] {value},
+          0, 0, NO_OBJECTS);
+    }
 
-  // A base class for Object storing props
-  private static final class ObjectPropListItem extends PropListItem {
-    private final Object objectValue;
+    static PropertyMap ofObject(byte key, Object value) {
+      return new PropertyMap(
+          0, 0, NO_INTS,
+          key < 64 ? 1L << key : 0, key < 64 ? 0 : 1L << key, new Object[] {value});
+    }
 
-    ObjectPropListItem(byte propType, Object objectValue, @Nullable PropListItem next) {
-      super(propType, next);
-      this.objectValue = objectValue;
+    private static boolean contains(long low, long high, byte key) {
+      // Shifts only use the low six bits of the distance, so 1L << key selects the right bit in
+      // either half.
+      return ((key < 64 ? low : high) & (1L << key)) != 0;
     }
 
-    @Override
-    public int getIntValue() {
-      throw new UnsupportedOperationException();
+    /** Returns the number of keys in the bitset smaller than the given key. */
+    private static int rank(long low, long high, byte key) {
+      long below = (1L << key) - 1;
+      return key < 64
+          ? Long.bitCount(low & below)
+          : Long.bitCount(low) + Long.bitCount(high & below);
     }
 
-    @Override
-    public Object getObjectValue() {
-      return objectValue;
+    boolean hasInt(byte key) {
+      return contains(intKeysLow, intKeysHigh, key);
     }
 
-    @Override
-    public String toString() {
-      return String.valueOf(objectValue);
+    boolean hasObject(byte key) {
+      return contains(objectKeysLow, objectKeysHigh, key);
     }
 
-    @Override
-    public PropListItem chain(@Nullable PropListItem next) {
-      return new ObjectPropListItem(propType, objectValue, next);
+    int getInt(byte key) {
+      return hasInt(key) ? ints[rank(intKeysLow, intKeysHigh, key)] : 0;
     }
-  }
 
-  // A base class for int storing props
-  private static final class IntPropListItem extends PropListItem {
-    final int intValue;
+    @Nullable
+    Object getObject(byte key) {
+      return hasObject(key) ? objects[rank(objectKeysLow, objectKeysHigh, key)] : null;
+    }
 
-    IntPropListItem(byte propType, int intValue, @Nullable PropListItem next) {
-      super(propType, next);
-      this.intValue = intValue;
+    int size() {
+      return ints.length + objects.length;
     }
 
-    @Override
-    public int getIntValue() {
-      return intValue;
+    boolean isSourceFileOnly() {
+      return ints.length == 0 && objects.length == 1 && hasObject(STATIC_SOURCE_FILE);
     }
 
-    @Override
-    public Object getObjectValue() {
-      throw new UnsupportedOperationException();
+    /** Returns the keys present, in increasing order. */
+    byte[] keys() {
+      byte[] keys = new byte[size()];
+      int i = 0;
+      for (long bits = intKeysLow | objectKeysLow; bits != 0; bits &= bits - 1) {
+        keys[i++] = (byte) Long.numberOfTrailingZeros(bits);
+      }
+      for (long bits = intKeysHigh | objectKeysHigh; bits != 0; bits &= bits - 1) {
+        keys[i++] = (byte) (64 + Long.numberOfTrailingZeros(bits));
+      }
+      return keys;
     }
 
-    @Override
-    public String toString() {
-      return String.valueOf(intValue);
+    PropertyMap withInt(byte key, int value) {
+      if (hasObject(key)) {
+        PropertyMap rest = without(key);
+        return rest == null ? ofInt(key, value) : rest.withInt(key, value);
+      }
+      int index = rank(intKeysLow, intKeysHigh, key);
+      int[] newInts;
+      if (hasInt(key)) {
+        if (ints[index] == value) {
+          return this;
+        }
+        newInts = ints.clone();
+      } else {
+        newInts = new int[ints.length + 1];
+        System.arraycopy(ints, 0, newInts, 0, index);
+        System.arraycopy(ints, index, newInts, index + 1, ints.length - index);
+      }
+      newInts[index] = value;
+      return new PropertyMap(
+          key < 64 ? intKeysLow | (1L << key) : intKeysLow,
+          key < 64 ? intKeysHigh : intKeysHigh | (1L << key),
+          newInts,
+          objectKeysLow, objectKeysHigh, objects);
+    }
+
+    PropertyMap withObject(byte key, Object value) {
+      if (hasInt(key)) {
+        PropertyMap rest = without(key);
+        return rest == null ? ofObject(key, value) : rest.withObject(key, value);
+      }
+      int index = rank(objectKeysLow, objectKeysHigh, key);
+      Object[] newObjects;
+      if (hasObject(key)) {
+        if (objects[index] == value) {
+          return this;
+        }
+        newObjects = objects.clone();
+      } else {
+        newObjects = new Object[objects.length + 1];
+        System.arraycopy(objects, 0, newObjects, 0, index);
+        System.arraycopy(objects, index, newObjects, index + 1, objects.length - index);
+      }
+      newObjects[index] = value;
+      return new PropertyMap(
+          intKeysLow, intKeysHigh, ints,
+          key < 64 ? objectKeysLow | (1L << key) : objectKeysLow,
+          key < 64 ? objectKeysHigh : objectKeysHigh | (1L << key),
+          newObjects);
+    }
+
+    /** Returns the map without the given key, or null if that leaves it empty. */
+    @Nullable
+    PropertyMap without(byte key) {
+      long mask = ~(1L << key);
+      if (hasInt(key)) {
+        if (size() == 1) {
+          return null;
+        }
+        int index = rank(intKeysLow, intKeysHigh, key);
+        return new PropertyMap(
+            key < 64 ? intKeysLow & mask : intKeysLow,
+            key < 64 ? intKeysHigh : intKeysHigh & mask,
+            remove(ints, index),
+            objectKeysLow, objectKeysHigh, objects);
+      } else if (hasObject(key)) {
+        if (size() == 1) {
+          return null;
+        }
+        int index = rank(objectKeysLow, objectKeysHigh, key);
+        return new PropertyMap(
+            intKeysLow, intKeysHigh, ints,
+            key < 64 ? objectKeysLow & mask : objectKeysLow,
+            key < 64 ? objectKeysHigh : objectKeysHigh & mask,
+            remove(objects, index));
+      }
+      return this;
     }
 
-    @Override
-    public PropListItem chain(@Nullable PropListItem next) {
-      return new IntPropListItem(propType, intValue, next);
+    private static int[] remove(int[] values, int index) {
+      if (values.length == 1) {
+        return NO_INTS;
+      }
+      int[] result = new int[values.length - 1];
+      System.arraycopy(values, 0, result, 0, index);
+      System.arraycopy(values, index + 1, result, index, result.length - index);
+      return result;
+    }
+
+    private static Object[] remove(Object[] values, int index) {
+      if (values.length == 1) {
+        return NO_OBJECTS;
+      }
+      Object[] result = new Object[values.length - 1];
+      System.arraycopy(values, 0, result, 0, index);
+      System.arraycopy(values, index + 1, result, index, result.length - index);
+      return result;
     }
   }
 
@@ -899,13 +1022,8 @@ public class Node implements Serializable {
   }
 
   @VisibleForTesting
-  @Nullable
-  final PropListItem lookupProperty(byte propType) {
-    PropListItem x = propListHead;
-    while (x != null && propType != x.propType) {
-      x = x.next;
-    }
-    return x;
+  final boolean hasProp(byte propType) {
+    return props != null && (props.hasInt(propType) || props.hasObject(propType));
   }
 
   /**
@@ -916,50 +1034,24 @@ public class Node implements Serializable {
    * @return this node.
    */
   public final Node clonePropsFrom(Node other) {
-    checkState(this.propListHead == null, "Node has existing properties.");
-    this.propListHead = other.propListHead;
+    checkState(this.props == null, "Node has existing properties.");
+    this.props = other.props;
     return this;
   }
 
   public final void removeProp(byte propType) {
-    PropListItem result = removeProp(propListHead, propType);
-    if (result != propListHead) {
-      propListHead = result;
+    if (props != null) {
+      props = props.without(propType);
     }
   }
 
   public final boolean hasProps() {
-    return propListHead != null;
-  }
-
-  /**
-   * @param item The item to inspect
-   * @param propType The property to look for
-   * @return The replacement list if the property was removed, or 'item' otherwise.
-   */
-  @Nullable
-  private final PropListItem removeProp(@Nullable PropListItem item, byte propType) {
-    if (item == null) {
-      return null;
-    } else if (item.propType == propType) {
-      return item.next;
-    } else {
-      PropListItem result = removeProp(item.next, propType);
-      if (result != item.next) {
-        return item.chain(result);
-      } else {
-        return item;
-      }
-    }
+    return props != null;
   }
 
   @Nullable
   public final Object getProp(byte propType) {
-    PropListItem item = lookupProperty(propType);
-    if (item == null) {
-      return null;
-    }
-    return item.getObjectValue();
+    return props != null ? props.getObject(propType) : null;
   }
 
   public final boolean getBooleanProp(byte propType) {
@@ -971,25 +1063,23 @@ public class Node implements Serializable {
    * is not defined.
    */
   public final int getIntProp(byte propType) {
-    PropListItem item = lookupProperty(propType);
-    if (item == null) {
-      return 0;
-    }
-    return item.getIntValue();
+    return props != null ? props.getInt(propType) : 0;
   }
 
   public final int getExistingIntProp(byte propType) {
-    PropListItem item = lookupProperty(propType);
-    if (item == null) {
+    if (props == null || !props.hasInt(propType)) {
       throw new IllegalStateException("missing prop: " + propType);
     }
-    return item.getIntValue();
+    return props.getInt(propType);
   }
 
   public final void putProp(byte propType, @Nullable Object value) {
-    removeProp(propType);
-    if (value != null) {
-      propListHead = createProp(propType, value, propListHead);
+    if (value == null) {
+      removeProp(propType);
+    } else {
+      props = props != null
+          ? props.withObject(propType, value)
+          : PropertyMap.ofObject(propType, value);
     }
   }
 
@@ -998,9 +1088,10 @@ public class Node implements Serializable {
   }
 
   public final void putIntProp(byte propType, int value) {
-    removeProp(propType);
-    if (value != 0) {
-      propListHead = createProp(propType, value, propListHead);
+    if (value == 0) {
+      removeProp(propType);
+    } else {
+      props = props != null ? props.withInt(propType, value) : PropertyMap.ofInt(propType, value);
     }
   }
 
@@ -1021,14 +1112,6 @@ public class Node implements Serializable {
     return (TypeDeclarationNode) getProp(DECLARED_TYPE_EXPR);
   }
 
-  final PropListItem createProp(byte propType, Object value, @Nullable PropListItem next) {
-    return new ObjectPropListItem(propType, value, next);
-  }
-
-  final PropListItem createProp(byte propType, int value, @Nullable PropListItem next) {
-    return new IntPropListItem(propType, value, next);
-  }
-
   /**
    * Returns the type of this node before casting. This annotation will only exist on the first
    * child of a CAST node after type checking.
@@ -1045,19 +1128,7 @@ public class Node implements Serializable {
 
   // Gets all the property types, in sorted order.
   private byte[] getSortedPropTypes() {
-    int count = 0;
-    for (PropListItem x = propListHead; x != null; x = x.next) {
-      count++;
-    }
-
-    byte[] keys = new byte[count];
-    for (PropListItem x = propListHead; x != null; x = x.next) {
-      count--;
-      keys[count] = x.propType;
-    }
-
-    Arrays.sort(keys);
-    return keys;
+    return props != null ? props.keys() : new byte[0];
   }
 
   /** Can only be called when <tt>getType() == TokenStream.NUMBER</tt> */
@@ -1162,11 +1233,10 @@ public class Node implements Serializable {
       byte[] keys = getSortedPropTypes();
       for (int i = 0; i < keys.length; i++) {
         byte type = keys[i];
-        PropListItem x = lookupProperty(type);
         sb.append(" [");
         sb.append(propToString(type));
         sb.append(": ");
-        sb.append(x);
+        sb.append(props.hasInt(type) ? props.getInt(type) : props.getObject(type));
         sb.append(']');
       }
     }
@@ -1217,12 +1287,8 @@ public class Node implements Serializable {
   @Nullable transient Node first; // first element of a linked list of children
   // We get the last child as first.previous. But last.next is null, not first.
 
-  /**
-   * Linked list of properties. Since vast majority of nodes would have no more than 2 properties,
-   * linked list saves memory and provides fast lookup. If this does not holds, propListHead can be
-   * replaced by UintMap.
-   */
-  @Nullable private transient PropListItem propListHead;
+  /** The properties of this node, or null if it has none. May be shared with other nodes. */
+  @Nullable transient PropertyMap props;
 
   /**
    * COLUMN_BITS represents how many of the lower-order bits of
@@ -1268,19 +1334,11 @@ public class Node implements Serializable {
 
   public final void setStaticSourceFileFrom(Node other) {
     // Make sure source file prop nodes are not duplicated.
-    if (other.propListHead != null
-        && (this.propListHead == null
-            || (this.propListHead.propType == STATIC_SOURCE_FILE
-               && this.propListHead.next == null))) {
-      // Either the node has only STATIC_SOURCE_FILE as a property or has not properties.
-      PropListItem tail = other.propListHead;
-      while (tail.next != null) {
-        tail = tail.next;
-      }
-      if (tail.propType == STATIC_SOURCE_FILE) {
-        propListHead = tail;
-        return;
-      }
+    if (other.props != null
+        && other.props.isSourceFileOnly()
+        && (this.props == null || this.props.isSourceFileOnly())) {
+      props = other.props;
+      return;
     }
     setStaticSourceFile(other.getStaticSourceFile());
   }
@@ -1529,12 +1587,12 @@ public class Node implements Serializable {
   // Accessors
 
   @Nullable
-  final PropListItem getPropListHeadForTesting() {
-    return propListHead;
+  final Object getPropertyMapForTesting() {
+    return props;
   }
 
-  final void setPropListHead(@Nullable PropListItem propListHead) {
-    this.propListHead = propListHead;
+  final void setPropertyMap(@Nullable PropertyMap props) {
+    this.props = props;
   }
 
   @Nullable
@@ -2194,7 +2252,7 @@ public class Node implements Serializable {
     dst.setSourceEncodedPosition(this.sourcePosition);
     dst.setLength(this.getLength());
     dst.setTypeI(this.typei);
-    dst.setPropListHead(this.propListHead);
+    dst.setPropertyMap(this.props);
 
     // TODO(johnlenz): Remove this once JSTypeExpression are immutable
     if (cloneTypeExprs) {
@@ -3258,7 +3316,74 @@ public class Node implements Serializable {
     // Null marks the end of the children.
     out.writeObject(null);
     out.writeObject(typei);
-    out.writeObject(propListHead);
+    writeProps(out);
+  }
+
+  /**
+   * Writes the properties inline, as a varint count of int properties followed by their keys and
+   * values, then a count of object properties followed by their keys and values, each in key order.
+   */
+  @GwtIncompatible("ObjectOutput")
+  private void writeProps(java.io.ObjectOutputStream out) throws IOException {
+    if (props == null) {
+      writeEncodedInt(out, 0);
+      writeEncodedInt(out, 0);
+      return;
+    }
+    writeEncodedInt(out, props.ints.length);
+    for (byte key : props.keys()) {
+      if (props.hasInt(key)) {
+        out.writeByte(key);
+        writeEncodedInt(out, props.getInt(key));
+      }
+    }
+    writeEncodedInt(out, props.objects.length);
+    for (byte key : props.keys()) {
+      if (props.hasObject(key)) {
+        out.writeByte(key);
+        out.writeObject(props.getObject(key));
+      }
+    }
+  }
+
+  @GwtIncompatible("ObjectInput")
+  private void readProps(java.io.ObjectInputStream in) throws Exception {
+    int[] ints = PropertyMap.NO_INTS;
+    long intKeysLow = 0;
+    long intKeysHigh = 0;
+    int intCount = readEncodedInt(in);
+    if (intCount > 0) {
+      ints = new int[intCount];
+      for (int i = 0; i < intCount; i++) {
+        byte key = in.readByte();
+        if (key < 64) {
+          intKeysLow |= 1L << key;
+        } else {
+          intKeysHigh |= 1L << key;
+        }
+        ints[i] = readEncodedInt(in);
+      }
+    }
+    Object[] objects = PropertyMap.NO_OBJECTS;
+    long objectKeysLow = 0;
+    long objectKeysHigh = 0;
+    int objectCount = readEncodedInt(in);
+    if (objectCount > 0) {
+      objects = new Object[objectCount];
+      for (int i = 0; i < objectCount; i++) {
+        byte key = in.readByte();
+        if (key < 64) {
+          objectKeysLow |= 1L << key;
+        } else {
+          objectKeysHigh |= 1L << key;
+        }
+        objects[i] = in.readObject();
+      }
+    }
+    // Keys were written in increasing order, so the values are already packed in key order.
+    props = intCount + objectCount == 0
+        ? null
+        : new PropertyMap(intKeysLow, intKeysHigh, ints, objectKeysLow, objectKeysHigh, objects);
   }
 
   @GwtIncompatible("ObjectInputStream")
@@ -3294,7 +3419,7 @@ public class Node implements Serializable {
       first.previous = lastChild;
     }
     typei = (TypeI) in.readObject();
-    propListHead = (PropListItem) in.readObject();
+    readProps(in);
   }
 
   /**
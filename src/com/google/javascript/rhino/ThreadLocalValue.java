@@ -0,0 +1,68 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package com.google.javascript.rhino;
+
+import javax.annotation.Nullable;
+
+/**
+ * A value that each thread sets for itself, for state that work running on
+ * several threads at once must not share.
+ *
+ * <p>Use this instead of {@link ThreadLocal}, which the GWT version of the
+ * compiler doesn't have. That version runs on a single thread, and replaces
+ * this class with one that holds a single value.
+ */
+public final class ThreadLocalValue<T> {
+  private final ThreadLocal<T> value = new ThreadLocal<>();
+
+  /** Returns the value of the current thread, or null if it has none. */
+  @Nullable
+  public T get() {
+    return value.get();
+  }
+
+  /** Sets the value of the current thread, or clears it if null. */
+  public void set(@Nullable T newValue) {
+    if (newValue == null) {
+      value.remove();
+    } else {
+      value.set(newValue);
+    }
+  }
+}
@@ -415,6 +415,7 @@ public class FunctionType extends PrototypeObjectType implements FunctionTypeI {
   public ObjectType getPrototype() {
     // lazy initialization of the prototype field
     if (prototypeSlot == null) {
+      registry.beforeSharedTypeChange();
       String refName = getReferenceName();
       if (refName == null) {
         // Someone is trying to access the prototype of a structural function.
@@ -516,6 +517,9 @@ public class FunctionType extends PrototypeObjectType implements FunctionTypeI {
       // we don't have to worry about two prototypes running around.
       oldPrototype.setOwnerFunction(null);
     }
+    if (replacedPrototype) {
+      registry.invalidateDerivedTypes();
+    }
 
     if (isConstructor() || isInterface()) {
       FunctionType superClass = getSuperClassConstructor();
@@ -641,6 +645,7 @@ public class FunctionType extends PrototypeObjectType implements FunctionTypeI {
         typeOfThis.extendTemplateTypeMap(type.getTemplateTypeMap());
       }
       this.implementedInterfaces = ImmutableList.copyOf(implementedInterfaces);
+      registry.invalidateDerivedTypes();
     } else {
       throw new UnsupportedOperationException(
           "An interface cannot implement other inferfaces");
@@ -678,6 +683,7 @@ public class FunctionType extends PrototypeObjectType implements FunctionTypeI {
         typeOfThis.extendTemplateTypeMap(
             extendedInterface.getTemplateTypeMap());
       }
+      registry.invalidateDerivedTypes();
     } else {
       throw new UnsupportedOperationException();
     }
@@ -689,6 +695,9 @@ public class FunctionType extends PrototypeObjectType implements FunctionTypeI {
       // Define the "call", "apply", and "bind" functions lazily.
       boolean isCall = "call".equals(name);
       boolean isBind = "bind".equals(name);
+      if (isCall || isBind || "apply".equals(name)) {
+        registry.beforeSharedTypeChange();
+      }
       if (isCall || isBind) {
         defineDeclaredProperty(name, getCallOrBindSignature(isCall), source);
       } else if ("apply".equals(name)) {
@@ -1025,42 +1034,43 @@ public class FunctionType extends PrototypeObjectType implements FunctionTypeI {
   @Override
   StringBuilder appendTo(StringBuilder sb, boolean forAnnotations) {
     if (!isPrettyPrint() ||
-        this == registry.getNativeType(JSTypeNative.FUNCTION_INSTANCE_TYPE)) {
+        this == registry.getNativeType(JSTypeNative.FUNCTION_INSTANCE_TYPE) ||
+        !PRETTY_PRINT_VISITS.enter(this)) {
       return sb.append("Function");
     }
 
-    setPrettyPrint(false);
-
-    sb.append("function(");
-    int paramNum = call.parameters.getChildCount();
-    boolean hasKnownTypeOfThis = !(typeOfThis instanceof UnknownType);
-    if (hasKnownTypeOfThis) {
-      if (isConstructor()) {
-        sb.append("new:");
-      } else {
-        sb.append("this:");
-      }
-      typeOfThis.appendTo(sb, forAnnotations);
-    }
-    if (paramNum > 0) {
+    try {
+      sb.append("function(");
+      int paramNum = call.parameters.getChildCount();
+      boolean hasKnownTypeOfThis = !(typeOfThis instanceof UnknownType);
       if (hasKnownTypeOfThis) {
-        sb.append(", ");
+        if (isConstructor()) {
+          sb.append("new:");
+        } else {
+          sb.append("this:");
+        }
+        typeOfThis.appendTo(sb, forAnnotations);
       }
-      Node p = call.parameters.getFirstChild();
-      appendArgString(sb, p, forAnnotations);
-
-      p = p.getNext();
-      while (p != null) {
-        sb.append(", ");
+      if (paramNum > 0) {
+        if (hasKnownTypeOfThis) {
+          sb.append(", ");
+        }
+        Node p = call.parameters.getFirstChild();
         appendArgString(sb, p, forAnnotations);
+
         p = p.getNext();
+        while (p != null) {
+          sb.append(", ");
+          appendArgString(sb, p, forAnnotations);
+          p = p.getNext();
+        }
       }
+      sb.append("): ");
+      call.returnType.appendAsNonNull(sb, forAnnotations);
+      return sb;
+    } finally {
+      PRETTY_PRINT_VISITS.exit(this);
     }
-    sb.append("): ");
-    call.returnType.appendAsNonNull(sb, forAnnotations);
-
-    setPrettyPrint(true);
-    return sb;
   }
 
   private void appendArgString(StringBuilder sb, Node p, boolean forAnnotations) {
@@ -1101,11 +1111,6 @@ public class FunctionType extends PrototypeObjectType implements FunctionTypeI {
    * subtyping and {@code this} is a subtype of {@code that} with regard to
    * the prototype chain.
    */
-  @Override
-  public boolean isSubtype(JSType that) {
-    return isSubtype(that, ImplCache.create(), SubtypingMode.NORMAL);
-  }
-
   @Override
   protected boolean isSubtype(JSType that,
       ImplCache implicitImplCache, SubtypingMode subtypingMode) {
@@ -1182,6 +1187,7 @@ public class FunctionType extends PrototypeObjectType implements FunctionTypeI {
    */
   void setInstanceType(ObjectType instanceType) {
     typeOfThis = instanceType;
+    registry.invalidateDerivedTypes();
   }
 
   /**
@@ -1436,6 +1442,7 @@ public class FunctionType extends PrototypeObjectType implements FunctionTypeI {
   public void setImplicitMatch(boolean flag) {
     checkState(isInterface());
     isStructuralInterface = flag;
+    registry.invalidateDerivedTypes();
   }
 
   @Override
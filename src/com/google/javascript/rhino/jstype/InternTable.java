@@ -0,0 +1,74 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package com.google.javascript.rhino.jstype;
+
+import com.google.common.collect.MapMaker;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * A table of the canonical instances of types, keyed by what they were built
+ * from.
+ *
+ * <p>The values are weak, so that a type that is no longer used is dropped
+ * together with its key rather than kept for the life of the registry. The GWT
+ * version of the compiler, which has no weak references, replaces this class
+ * with one that keeps every type.
+ */
+final class InternTable<K, V> {
+  private final ConcurrentMap<K, V> table = new MapMaker().weakValues().makeMap();
+
+  @Nullable
+  V get(K key) {
+    return table.get(key);
+  }
+
+  /**
+   * Makes the value the canonical instance for the key, unless another thread
+   * got there first. Returns the canonical instance.
+   */
+  V intern(K key, V value) {
+    V existing = table.putIfAbsent(key, value);
+    return existing == null ? value : existing;
+  }
+
+  void clear() {
+    table.clear();
+  }
+}
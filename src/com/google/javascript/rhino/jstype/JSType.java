@@ -70,11 +70,12 @@ import java.util.IdentityHashMap;
 public abstract class JSType implements TypeI {
   private static final long serialVersionUID = 1L;
 
-  private boolean resolved = false;
-  private JSType resolveResult = null;
+  // Written under the registry's lock, and read without it once set.
+  private volatile boolean resolved = false;
+  private volatile JSType resolveResult = null;
   protected TemplateTypeMap templateTypeMap;
 
-  private boolean inTemplatedCheckVisit = false;
+  private static final RecursionGuard TEMPLATED_CHECK_VISITS = new RecursionGuard();
   private static final CanCastToVisitor CAN_CAST_TO_VISITOR =
       new CanCastToVisitor();
 
@@ -541,11 +542,12 @@ public abstract class JSType implements TypeI {
   }
 
   public boolean hasAnyTemplateTypes() {
-    if (!this.inTemplatedCheckVisit) {
-      this.inTemplatedCheckVisit = true;
-      boolean result = hasAnyTemplateTypesInternal();
-      this.inTemplatedCheckVisit = false;
-      return result;
+    if (TEMPLATED_CHECK_VISITS.enter(this)) {
+      try {
+        return hasAnyTemplateTypesInternal();
+      } finally {
+        TEMPLATED_CHECK_VISITS.exit(this);
+      }
     } else {
       // prevent infinite recursion, this is "not yet".
       return false;
@@ -578,6 +580,7 @@ public abstract class JSType implements TypeI {
    */
   public void extendTemplateTypeMap(TemplateTypeMap otherMap) {
     templateTypeMap = templateTypeMap.extend(otherMap);
+    registry.invalidateDerivedTypes();
   }
 
   /**
@@ -678,10 +681,12 @@ public abstract class JSType implements TypeI {
   }
 
   public final boolean isEquivalentTo(TypeI that, boolean isStructural) {
-    EqCache eqCache = isStructural ? EqCache.create()
-        : EqCache.createWithoutStructuralTyping();
-    return checkEquivalenceHelper((JSType) that,
-        EquivalenceMethod.IDENTITY, eqCache);
+    if (!isStructural) {
+      return this == that
+          || registry.getTypeRelationCache().check(
+              this, (JSType) that, TypeRelationCache.EQUIVALENT_WITHOUT_STRUCTURAL_TYPING);
+    }
+    return checkEquivalenceHelper((JSType) that, EquivalenceMethod.IDENTITY);
   }
 
   /**
@@ -702,7 +707,21 @@ public abstract class JSType implements TypeI {
    */
   boolean checkEquivalenceHelper(
       final JSType that, EquivalenceMethod eqMethod) {
-    return checkEquivalenceHelper(that, eqMethod, EqCache.create());
+    if (this == that) {
+      return true;
+    }
+    // The answer only depends on the types when starting with an empty cache,
+    // so it can be memoized.
+    switch (eqMethod) {
+      case IDENTITY:
+        return registry.getTypeRelationCache().check(
+            this, that, TypeRelationCache.EQUIVALENT);
+      case DATA_FLOW:
+        return registry.getTypeRelationCache().check(
+            this, that, TypeRelationCache.DATA_FLOW_EQUIVALENT);
+      default:
+        return checkEquivalenceHelper(that, eqMethod, EqCache.create());
+    }
   }
 
   boolean checkEquivalenceHelper(final JSType that, EquivalenceMethod eqMethod,
@@ -1411,8 +1430,8 @@ public abstract class JSType implements TypeI {
    */
   @Override
   public boolean isSubtypeWithoutStructuralTyping(TypeI that) {
-    return isSubtype(
-        (JSType) that, ImplCache.createWithoutStructuralTyping(), SubtypingMode.NORMAL);
+    return registry.getTypeRelationCache().check(
+        this, (JSType) that, TypeRelationCache.SUBTYPE_WITHOUT_STRUCTURAL_TYPING);
   }
 
   /**
@@ -1444,9 +1463,8 @@ public abstract class JSType implements TypeI {
    *
    * @return <code>this &lt;: that</code>
    */
-  public boolean isSubtype(JSType that) {
-    return isSubtypeHelper(this, that,
-        ImplCache.create(), SubtypingMode.NORMAL);
+  public final boolean isSubtype(JSType that) {
+    return registry.getTypeRelationCache().check(this, that, TypeRelationCache.SUBTYPE);
   }
 
   /**
@@ -1457,8 +1475,13 @@ public abstract class JSType implements TypeI {
     IGNORE_NULL_UNDEFINED
   }
 
-  public boolean isSubtype(JSType that, SubtypingMode mode) {
-    return isSubtype(that, ImplCache.create(), mode);
+  public final boolean isSubtype(JSType that, SubtypingMode mode) {
+    return registry.getTypeRelationCache().check(
+        this,
+        that,
+        mode == SubtypingMode.NORMAL
+            ? TypeRelationCache.SUBTYPE
+            : TypeRelationCache.SUBTYPE_IGNORING_NULL_UNDEFINED);
   }
 
   /**
@@ -1594,18 +1617,36 @@ public abstract class JSType implements TypeI {
    * a generational flag instead of a boolean one.
    */
   public final JSType resolve(ErrorReporter t, StaticTypedScope<JSType> scope) {
-    if (resolved) {
-      // TODO(nicksantos): Check to see if resolve() looped back on itself.
-      // Preconditions.checkNotNull(resolveResult);
-      if (resolveResult == null) {
-        return registry.getNativeType(JSTypeNative.UNKNOWN_TYPE);
+    JSType result = resolveResult;
+    if (result != null) {
+      return result;
+    }
+    // Types can be resolved while functions are inferred in parallel. Only
+    // the thread that is resolving this type may see it half resolved.
+    synchronized (registry) {
+      if (resolved) {
+        // TODO(nicksantos): Check to see if resolve() looped back on itself.
+        // Preconditions.checkNotNull(resolveResult);
+        if (resolveResult == null) {
+          return registry.getNativeType(JSTypeNative.UNKNOWN_TYPE);
+        }
+        return resolveResult;
       }
-      return resolveResult;
+      resolved = true;
+      try {
+        result = resolveInternal(t, scope);
+      } catch (RuntimeException e) {
+        // A speculative inference gave up in the middle; let the next
+        // resolve start over.
+        resolved = false;
+        throw e;
+      } finally {
+        registry.invalidateDerivedTypes();
+      }
+      result.setResolvedTypeInternal(result);
+      resolveResult = result;
+      return result;
     }
-    resolved = true;
-    resolveResult = resolveInternal(t, scope);
-    resolveResult.setResolvedTypeInternal(resolveResult);
-    return resolveResult;
   }
 
   /**
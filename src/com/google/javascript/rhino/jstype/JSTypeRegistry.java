@@ -63,6 +63,7 @@ import com.google.javascript.rhino.JSTypeExpression;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.ObjectTypeI;
 import com.google.javascript.rhino.SimpleErrorReporter;
+import com.google.javascript.rhino.ThreadLocalValue;
 import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.TypeI;
 import com.google.javascript.rhino.TypeIEnv;
@@ -80,6 +81,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * The type registry is used to resolve named types.
@@ -154,6 +156,13 @@ public class JSTypeRegistry implements TypeIRegistry {
   // try to type-check them at all.
   private final transient Set<String> forwardDeclaredTypes;
 
+  // The property index and the named type tables below are guarded by the
+  // registry's lock, because type inference can run on several functions at
+  // once. The type tables are only changed by scope creation, which is done
+  // before inference starts. While a thread infers types speculatively, it
+  // hands its property registrations and lazy changes to shared types to its
+  // SpeculativeChanges instead.
+
   // A map of properties to the types on which those properties have been
   // declared.
   private final Map<String, UnionTypeBuilder> typesIndexedByProperty =
@@ -207,6 +216,41 @@ public class JSTypeRegistry implements TypeIRegistry {
   // there are no template types.
   private final TemplateTypeMap emptyTemplateTypeMap;
 
+  // The memoized subtype and equivalence relations between types.
+  private transient TypeRelationCache typeRelationCache = new TypeRelationCache();
+
+  // The canonical instance of each union and templatized type, keyed by the
+  // identities of the types they were built from, so that equal types are
+  // usually the same object and relation checks can stop at an identity test.
+  // Both kinds of types derive state from their components when they are
+  // created, so the tables are replaced whenever a component may have changed
+  // in a way that affects that state. See invalidateDerivedTypes.
+  private transient volatile InternTable<TypeListKey, UnionType> unionTypes =
+      new InternTable<>();
+  private transient volatile InternTable<TypeListKey, TemplatizedType> templatizedTypes =
+      new InternTable<>();
+
+  // The changes of the threads that infer types speculatively.
+  private transient ThreadLocalValue<SpeculativeChanges> speculativeChanges =
+      new ThreadLocalValue<>();
+
+  /**
+   * Receives the changes to shared type information that a thread makes while
+   * it infers types speculatively, so that they can be applied or dropped once
+   * the inference is committed or undone.
+   */
+  public interface SpeculativeChanges {
+    /** Records a call to {@link JSTypeRegistry#registerPropertyOnType}. */
+    void registerPropertyOnType(String propertyName, JSType type);
+
+    /**
+     * Called before a type that other threads can see is lazily completed,
+     * as when the prototype of a function type is first created. Such a
+     * change cannot be undone, so the inference must give up by throwing.
+     */
+    void beforeSharedTypeChange();
+  }
+
   public JSTypeRegistry(ErrorReporter reporter) {
     this(reporter, ImmutableSet.<String>of());
   }
@@ -288,6 +332,9 @@ public class JSTypeRegistry implements TypeIRegistry {
    * Reset to run the TypeCheck pass.
    */
   public void resetForTypeCheck() {
+    typeRelationCache.invalidate();
+    unionTypes.clear();
+    templatizedTypes.clear();
     typesIndexedByProperty.clear();
     eachRefTypeIndexedByProperty.clear();
     initializeBuiltInTypes();
@@ -295,6 +342,120 @@ public class JSTypeRegistry implements TypeIRegistry {
     initializeRegistry();
   }
 
+  TypeRelationCache getTypeRelationCache() {
+    return typeRelationCache;
+  }
+
+  /**
+   * Forgets the memoized relations between types, because a type has changed
+   * in a way that can change them.
+   */
+  void invalidateTypeRelations() {
+    typeRelationCache.invalidate();
+  }
+
+  /**
+   * Forgets the memoized relations between types and the canonical unions and
+   * templatized types, because a type has changed in a way that can change
+   * what those derive from it when they are created: what it resolves to, its
+   * template type map or its place in the type hierarchy. Changes to the
+   * properties of a type only go through {@link #invalidateTypeRelations},
+   * since they only matter to structural types, which are never interned.
+   */
+  void invalidateDerivedTypes() {
+    typeRelationCache.invalidate();
+    // Replace the tables rather than clear them, which would take time in
+    // proportion to their size on every change.
+    unionTypes = new InternTable<>();
+    templatizedTypes = new InternTable<>();
+  }
+
+  /**
+   * Returns how many subtype and equivalence checks were answered from the
+   * memoized results.
+   */
+  public long getTypeRelationCacheHits() {
+    return typeRelationCache.getHits();
+  }
+
+  /**
+   * Returns how many subtype and equivalence checks had to be computed because
+   * there was no memoized result.
+   */
+  public long getTypeRelationCacheMisses() {
+    return typeRelationCache.getMisses();
+  }
+
+  /**
+   * Returns the canonical union of the given alternates, creating it the first
+   * time it is asked for. The alternates must already be normalized by a
+   * {@link UnionTypeBuilder}.
+   */
+  UnionType createUnionType(ImmutableList<JSType> alternates) {
+    for (JSType alternate : alternates) {
+      if (alternate.isStructuralType()) {
+        // How the alternates collapse depends on their properties, which can
+        // change without invalidating the table.
+        return new UnionType(this, alternates);
+      }
+    }
+    InternTable<TypeListKey, UnionType> table = unionTypes;
+    TypeListKey key = new TypeListKey(null, alternates);
+    UnionType union = table.get(key);
+    if (union == null) {
+      union = table.intern(key, new UnionType(this, alternates));
+    }
+    return union;
+  }
+
+  /**
+   * A list of types compared by identity. Used as the key of the interning
+   * tables, because {@link JSType#equals} is structural and far too expensive
+   * (and too loose) to look up a canonical instance with.
+   */
+  private static final class TypeListKey {
+    private final JSType[] types;
+    private final int hash;
+
+    TypeListKey(JSType first, List<JSType> rest) {
+      int offset = first == null ? 0 : 1;
+      types = new JSType[rest.size() + offset];
+      if (first != null) {
+        types[0] = first;
+      }
+      int h = 1;
+      for (int i = 0; i < types.length; i++) {
+        if (i >= offset) {
+          types[i] = rest.get(i - offset);
+        }
+        h = 31 * h + System.identityHashCode(types[i]);
+      }
+      hash = h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof TypeListKey)) {
+        return false;
+      }
+      TypeListKey that = (TypeListKey) o;
+      if (hash != that.hash || types.length != that.types.length) {
+        return false;
+      }
+      for (int i = 0; i < types.length; i++) {
+        if (types[i] != that.types[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
   private void initializeBuiltInTypes() {
     // These locals shouldn't be all caps.
     BooleanType BOOLEAN_TYPE = new BooleanType(this);
@@ -748,7 +909,7 @@ public class JSTypeRegistry implements TypeIRegistry {
     return t.isRecordType() || t.isLiteralObject();
   }
 
-  void registerDroppedPropertiesInUnion(RecordType subtype, RecordType supertype) {
+  synchronized void registerDroppedPropertiesInUnion(RecordType subtype, RecordType supertype) {
     boolean foundDroppedProperty = false;
     for (String pname : subtype.getPropertyMap().getOwnPropertyNames()) {
       if (!supertype.hasProperty(pname)) {
@@ -773,7 +934,12 @@ public class JSTypeRegistry implements TypeIRegistry {
    * ("if this property is assigned anywhere in the program, it must
    * show up in the type registry").
    */
-  public void registerPropertyOnType(String propertyName, JSType type) {
+  public synchronized void registerPropertyOnType(String propertyName, JSType type) {
+    SpeculativeChanges changes = speculativeChanges.get();
+    if (changes != null) {
+      changes.registerPropertyOnType(propertyName, type);
+      return;
+    }
     UnionTypeBuilder typeSet = typesIndexedByProperty.get(propertyName);
     if (typeSet == null) {
       typeSet = new UnionTypeBuilder(this, PROPERTY_CHECKING_UNION_SIZE);
@@ -791,6 +957,25 @@ public class JSTypeRegistry implements TypeIRegistry {
     greatestSubtypeByProperty.remove(propertyName);
   }
 
+  /**
+   * Sets the receiver of the changes that the current thread makes to shared
+   * type information, or clears it if {@code changes} is null.
+   */
+  public void setSpeculativeChangesForCurrentThread(@Nullable SpeculativeChanges changes) {
+    speculativeChanges.set(changes);
+  }
+
+  /**
+   * Lets the speculative inference on the current thread, if any, give up
+   * before a shared type is lazily changed.
+   */
+  void beforeSharedTypeChange() {
+    SpeculativeChanges changes = speculativeChanges.get();
+    if (changes != null) {
+      changes.beforeSharedTypeChange();
+    }
+  }
+
   private void addReferenceTypeIndexedByProperty(
       String propertyName, JSType type) {
     if (type instanceof ObjectType && ((ObjectType) type).hasReferenceName()) {
@@ -820,7 +1005,7 @@ public class JSTypeRegistry implements TypeIRegistry {
    * @param propertyName the name of the property to unregister
    * @param type the type to unregister the property on.
    */
-  public void unregisterPropertyOnType(String propertyName, JSType type) {
+  public synchronized void unregisterPropertyOnType(String propertyName, JSType type) {
     // TODO(bashir): typesIndexedByProperty should also be updated!
     Map<String, ObjectType> typeSet =
         eachRefTypeIndexedByProperty.get(propertyName);
@@ -833,7 +1018,7 @@ public class JSTypeRegistry implements TypeIRegistry {
    * Gets the greatest subtype of the {@code type} that has a property
    * {@code propertyName} defined on it.
    */
-  public JSType getGreatestSubtypeWithProperty(
+  public synchronized JSType getGreatestSubtypeWithProperty(
       JSType type, String propertyName) {
     JSType withProperty = greatestSubtypeByProperty.get(propertyName);
     if (withProperty != null) {
@@ -851,7 +1036,7 @@ public class JSTypeRegistry implements TypeIRegistry {
   /**
    * Returns whether the given property can possibly be set on the given type.
    */
-  public boolean canPropertyBeDefined(JSType type, String propertyName) {
+  public synchronized boolean canPropertyBeDefined(JSType type, String propertyName) {
     if (type.isStruct()) {
       // We are stricter about "struct" types and only allow access to
       // properties that to the best of our knowledge are available at creation
@@ -903,7 +1088,7 @@ public class JSTypeRegistry implements TypeIRegistry {
    * {@code [Object, Array]}. It would not be correct to collapse them to
    * {@code [Object]}.
    */
-  public Iterable<ObjectType> getEachReferenceTypeWithProperty(
+  public synchronized Iterable<ObjectType> getEachReferenceTypeWithProperty(
       String propertyName) {
     if (eachRefTypeIndexedByProperty.containsKey(propertyName)) {
       return eachRefTypeIndexedByProperty.get(propertyName).values();
@@ -1211,7 +1396,9 @@ public class JSTypeRegistry implements TypeIRegistry {
       // interning.
       NamedType namedType = createNamedType(jsTypeName, sourceName, lineno, charno);
       if (recordUnresolvedTypes) {
-        unresolvedNamedTypes.put(scope, namedType);
+        synchronized (this) {
+          unresolvedNamedTypes.put(scope, namedType);
+        }
       }
       type = namedType;
     }
@@ -1223,7 +1410,7 @@ public class JSTypeRegistry implements TypeIRegistry {
    * the type registry.  This is intended to be used ONLY before a
    * compile is run.
    */
-  public void clearNamedTypes() {
+  public synchronized void clearNamedTypes() {
     resolvedNamedTypes.clear();
     unresolvedNamedTypes.clear();
   }
@@ -1231,7 +1418,7 @@ public class JSTypeRegistry implements TypeIRegistry {
   /**
    * Resolve all the unresolved types in the given scope.
    */
-  public void resolveTypesInScope(StaticTypedScope<JSType> scope) {
+  public synchronized void resolveTypesInScope(StaticTypedScope<JSType> scope) {
     for (NamedType type : unresolvedNamedTypes.get(scope)) {
       type.resolve(reporter, scope);
     }
@@ -1688,7 +1875,13 @@ public class JSTypeRegistry implements TypeIRegistry {
       ObjectType baseType, ImmutableList<JSType> templatizedTypes) {
     // Only ObjectTypes can currently be templatized; extend this logic when
     // more types can be templatized.
-    return new TemplatizedType(this, baseType, templatizedTypes);
+    InternTable<TypeListKey, TemplatizedType> table = this.templatizedTypes;
+    TypeListKey key = new TypeListKey(baseType, templatizedTypes);
+    TemplatizedType type = table.get(key);
+    if (type == null) {
+      type = table.intern(key, new TemplatizedType(this, baseType, templatizedTypes));
+    }
+    return type;
   }
 
   /**
@@ -2068,5 +2261,9 @@ public class JSTypeRegistry implements TypeIRegistry {
   public void restoreContents(ObjectInputStream in) throws IOException, ClassNotFoundException {
     eachRefTypeIndexedByProperty = (Map<String, Map<String, ObjectType>>) in.readObject();
     interfaceToImplementors = (Multimap<String, FunctionTypeI>) in.readObject();
+    typeRelationCache = new TypeRelationCache();
+    unionTypes = new InternTable<>();
+    templatizedTypes = new InternTable<>();
+    speculativeChanges = new ThreadLocalValue<>();
   }
 }
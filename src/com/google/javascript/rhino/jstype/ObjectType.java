@@ -114,6 +114,25 @@ public abstract class ObjectType
     return PropertyMap.immutableEmptyMap();
   }
 
+  /**
+   * Returns the properties defined on this object itself. Passing them to
+   * {@link #restoreOwnProperties} undoes any later definition or removal of a
+   * property, which lets type inference undo a speculative inference.
+   */
+  public Map<String, Property> getOwnPropertiesSnapshot() {
+    PropertyMap propertyMap = getPropertyMap();
+    return propertyMap == null
+        ? ImmutableMap.<String, Property>of() : propertyMap.getOwnPropertiesSnapshot();
+  }
+
+  /** Puts back the properties returned by {@link #getOwnPropertiesSnapshot}. */
+  public void restoreOwnProperties(Map<String, Property> snapshot) {
+    PropertyMap propertyMap = getPropertyMap();
+    if (propertyMap != null) {
+      propertyMap.restoreOwnProperties(snapshot);
+    }
+  }
+
   /**
    * Default getSlot implementation. This gets overridden by FunctionType
    * for lazily-resolved prototypes.
@@ -756,6 +775,7 @@ public abstract class ObjectType
    */
   public void clearCachedValues() {
     unknown = true;
+    registry.invalidateDerivedTypes();
   }
 
   /** Whether this is a built-in object. */
@@ -175,7 +175,9 @@ class PropertyMap implements Serializable {
 
 
   boolean removeProperty(String name) {
-    return properties.remove(name) != null;
+    boolean removed = properties.remove(name) != null;
+    invalidateTypeRelations();
+    return removed;
   }
 
   void putProperty(String name, Property newProp) {
@@ -186,6 +188,28 @@ class PropertyMap implements Serializable {
       newProp.setJSDocInfo(oldProp.getJSDocInfo());
     }
     properties.put(name, newProp);
+    invalidateTypeRelations();
+  }
+
+  /** Returns a copy of the own properties, which {@link #restoreOwnProperties} can put back. */
+  ImmutableMap<String, Property> getOwnPropertiesSnapshot() {
+    return ImmutableMap.copyOf(properties);
+  }
+
+  /** Replaces the own properties with a copy from {@link #getOwnPropertiesSnapshot}. */
+  void restoreOwnProperties(Map<String, Property> snapshot) {
+    if (properties.equals(snapshot)) {
+      return;
+    }
+    properties.clear();
+    properties.putAll(snapshot);
+    invalidateTypeRelations();
+  }
+
+  private void invalidateTypeRelations() {
+    if (parentSource != null) {
+      parentSource.registry.invalidateTypeRelations();
+    }
   }
 
   Iterable<Property> values() {
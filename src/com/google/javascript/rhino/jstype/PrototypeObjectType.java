@@ -87,6 +87,10 @@ public class PrototypeObjectType extends ObjectType {
   // by printing all properties.
   private boolean prettyPrint = false;
 
+  // The types whose toString representation is being pretty-printed by the
+  // current thread.
+  static final RecursionGuard PRETTY_PRINT_VISITS = new RecursionGuard();
+
   private static final int MAX_PRETTY_PRINTED_PROPERTIES = 10;
 
   /**
@@ -281,52 +285,52 @@ public class PrototypeObjectType extends ObjectType {
     if (hasReferenceName()) {
       return sb.append(getReferenceName());
     }
-    if (!prettyPrint) {
-      return sb.append(forAnnotations ? "?" : "{...}");
-    }
     // Don't pretty print recursively.
-    prettyPrint = false;
-
-    // Use a tree set so that the properties are sorted.
-    Set<String> propertyNames = new TreeSet<>();
-    for (ObjectType current = this;
-        current != null && !current.isNativeObjectType() &&
-            propertyNames.size() <= MAX_PRETTY_PRINTED_PROPERTIES;
-        current = current.getImplicitPrototype()) {
-      propertyNames.addAll(current.getOwnPropertyNames());
+    if (!prettyPrint || !PRETTY_PRINT_VISITS.enter(this)) {
+      return sb.append(forAnnotations ? "?" : "{...}");
     }
+    try {
+      // Use a tree set so that the properties are sorted.
+      Set<String> propertyNames = new TreeSet<>();
+      for (ObjectType current = this;
+          current != null && !current.isNativeObjectType() &&
+              propertyNames.size() <= MAX_PRETTY_PRINTED_PROPERTIES;
+          current = current.getImplicitPrototype()) {
+        propertyNames.addAll(current.getOwnPropertyNames());
+      }
+
+      sb.append("{");
+      boolean useNewlines = !forAnnotations && propertyNames.size() > 2;
+
+      int i = 0;
+      for (String property : propertyNames) {
+        if (i > 0) {
+          sb.append(",");
+        }
+        if (useNewlines) {
+          sb.append("\n  ");
+        } else if (i > 0) {
+          sb.append(" ");
+        }
 
-    sb.append("{");
-    boolean useNewlines = !forAnnotations && propertyNames.size() > 2;
+        sb.append(property).append(": ");
+        getPropertyType(property).appendAsNonNull(sb, forAnnotations);
 
-    int i = 0;
-    for (String property : propertyNames) {
-      if (i > 0) {
-        sb.append(",");
+        ++i;
+        if (!forAnnotations && i == MAX_PRETTY_PRINTED_PROPERTIES) {
+          sb.append(", ...");
+          break;
+        }
       }
       if (useNewlines) {
-        sb.append("\n  ");
-      } else if (i > 0) {
-        sb.append(" ");
+        sb.append("\n");
       }
 
-      sb.append(property).append(": ");
-      getPropertyType(property).appendAsNonNull(sb, forAnnotations);
-
-      ++i;
-      if (!forAnnotations && i == MAX_PRETTY_PRINTED_PROPERTIES) {
-        sb.append(", ...");
-        break;
-      }
+      sb.append("}");
+      return sb;
+    } finally {
+      PRETTY_PRINT_VISITS.exit(this);
     }
-    if (useNewlines) {
-      sb.append("\n");
-    }
-
-    sb.append("}");
-
-    prettyPrint = true;
-    return sb;
   }
 
   void setPrettyPrint(boolean prettyPrint) {
@@ -356,6 +360,7 @@ public class PrototypeObjectType extends ObjectType {
   final void setImplicitPrototype(ObjectType implicitPrototype) {
     checkState(!hasCachedValues());
     this.implicitPrototypeFallback = implicitPrototype;
+    registry.invalidateDerivedTypes();
   }
 
   @Override
@@ -378,11 +383,6 @@ public class PrototypeObjectType extends ObjectType {
     return anonymousType;
   }
 
-  @Override
-  public boolean isSubtype(JSType that) {
-    return isSubtype(that, ImplCache.create(), SubtypingMode.NORMAL);
-  }
-
   @Override
   protected boolean isSubtype(JSType that,
       ImplCache implicitImplCache, SubtypingMode subtypingMode) {
@@ -466,7 +466,9 @@ public class PrototypeObjectType extends ObjectType {
   @Override
   void setOwnerFunction(FunctionType type) {
     checkState(ownerFunction == null || type == null);
+    // The reference name of a prototype comes from its owner function.
     ownerFunction = type;
+    registry.invalidateDerivedTypes();
   }
 
   @Override
@@ -68,7 +68,8 @@ public class ProxyObjectType extends ObjectType {
   ProxyObjectType(JSTypeRegistry registry, JSType referencedType,
                   TemplateTypeMap templateTypeMap) {
     super(registry, templateTypeMap);
-    setReferencedType(checkNotNull(referencedType));
+    // A new type can't have changed any relations yet.
+    setReferencedTypeInternal(checkNotNull(referencedType));
   }
 
   @Override
@@ -86,6 +87,11 @@ public class ProxyObjectType extends ObjectType {
   }
 
   void setReferencedType(JSType referencedType) {
+    setReferencedTypeInternal(referencedType);
+    registry.invalidateDerivedTypes();
+  }
+
+  private void setReferencedTypeInternal(JSType referencedType) {
     this.referencedType = referencedType;
     if (referencedType instanceof ObjectType) {
       this.referencedObjType = (ObjectType) referencedType;
@@ -249,11 +255,6 @@ public class ProxyObjectType extends ObjectType {
     return referencedType.testForEquality(that);
   }
 
-  @Override
-  public boolean isSubtype(JSType that) {
-    return referencedType.isSubtype(that, ImplCache.create(), SubtypingMode.NORMAL);
-  }
-
   @Override
   protected boolean isSubtype(JSType that,
       ImplCache implicitImplCache, SubtypingMode subtypingMode) {
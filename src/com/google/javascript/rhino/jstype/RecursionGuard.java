@@ -0,0 +1,80 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+package com.google.javascript.rhino.jstype;
+
+import com.google.common.collect.Sets;
+import com.google.javascript.rhino.ThreadLocalValue;
+import java.util.Set;
+
+/**
+ * The objects that the current thread is in the middle of visiting, for the
+ * recursive walks over types that must stop when they come back to where
+ * they started.
+ *
+ * <p>Types are shared by the threads that infer types in parallel, so a walk
+ * cannot mark the type itself: another thread would see the mark and stop
+ * early, or clear it while the first thread still depends on it.
+ */
+final class RecursionGuard {
+  private final ThreadLocalValue<Set<Object>> visiting = new ThreadLocalValue<>();
+
+  /** Whether the current thread is visiting {@code o}. */
+  boolean isVisiting(Object o) {
+    Set<Object> objects = visiting.get();
+    return objects != null && objects.contains(o);
+  }
+
+  /**
+   * Marks {@code o} as visited by the current thread.
+   *
+   * @return Whether it was not already being visited.
+   */
+  boolean enter(Object o) {
+    Set<Object> objects = visiting.get();
+    if (objects == null) {
+      objects = Sets.newIdentityHashSet();
+      visiting.set(objects);
+    }
+    return objects.add(o);
+  }
+
+  /** Ends a visit started with {@link #enter}. */
+  void exit(Object o) {
+    visiting.get().remove(o);
+  }
+}
@@ -66,7 +66,7 @@ public class TemplateTypeMap implements Serializable {
   // instance. These fully-resolved values are necessary for determining the
   // equivalence of two TemplateTypeMap instances.
   private final JSType[] resolvedTemplateValues;
-  private boolean inRecursiveEquivalenceCheck = false;
+  private static final RecursionGuard EQUIVALENCE_CHECK_VISITS = new RecursionGuard();
   final JSTypeRegistry registry;
 
   TemplateTypeMap(JSTypeRegistry registry,
@@ -222,18 +222,18 @@ public class TemplateTypeMap implements Serializable {
 
   public boolean checkEquivalenceHelper(TemplateTypeMap that,
       EquivalenceMethod eqMethod, EqCache eqCache, SubtypingMode subtypingMode) {
-    boolean result = false;
-    if (!this.inRecursiveEquivalenceCheck && !that.inRecursiveEquivalenceCheck) {
-      this.inRecursiveEquivalenceCheck = true;
-      that.inRecursiveEquivalenceCheck = true;
-
-      result = checkEquivalenceHelper(eqMethod, this, that, eqCache, subtypingMode)
+    if (EQUIVALENCE_CHECK_VISITS.isVisiting(this) || EQUIVALENCE_CHECK_VISITS.isVisiting(that)) {
+      return false;
+    }
+    EQUIVALENCE_CHECK_VISITS.enter(this);
+    EQUIVALENCE_CHECK_VISITS.enter(that);
+    try {
+      return checkEquivalenceHelper(eqMethod, this, that, eqCache, subtypingMode)
           && checkEquivalenceHelper(eqMethod, that, this, eqCache, subtypingMode);
-
-      this.inRecursiveEquivalenceCheck = false;
-      that.inRecursiveEquivalenceCheck = false;
+    } finally {
+      EQUIVALENCE_CHECK_VISITS.exit(this);
+      EQUIVALENCE_CHECK_VISITS.exit(that);
     }
-    return result;
   }
 
   @SuppressWarnings("ReferenceEquality")
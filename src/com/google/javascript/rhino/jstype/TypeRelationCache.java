@@ -0,0 +1,185 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package com.google.javascript.rhino.jstype;
+
+import com.google.javascript.rhino.jstype.JSType.EqCache;
+import com.google.javascript.rhino.jstype.JSType.ImplCache;
+import com.google.javascript.rhino.jstype.JSType.SubtypingMode;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A memo table for the subtype and equivalence relations between the types of
+ * a registry.
+ *
+ * <p>The structural checks on record types, function types and templatized
+ * types are expensive, and the same pairs of types are compared over and over
+ * again. Only the results of complete queries are kept: the results that a
+ * query computes for nested pairs may depend on assumptions made about pairs
+ * that are still being checked.
+ *
+ * <p>Types change while they are being built and resolved. Every change that
+ * can affect a relation goes through {@link #invalidate}, which starts a new
+ * generation. A result is only reused in the generation in which it was
+ * computed, so a result is never used after a type it depends on has changed.
+ * Changes are frequent, so they only bump the generation: stale results are
+ * overwritten as the pairs are checked again, or dropped with the rest of the
+ * table once it is full.
+ */
+final class TypeRelationCache {
+  // The relations that are memoized.
+  static final int SUBTYPE = 0;
+  static final int SUBTYPE_IGNORING_NULL_UNDEFINED = 1;
+  static final int SUBTYPE_WITHOUT_STRUCTURAL_TYPING = 2;
+  static final int EQUIVALENT = 3;
+  static final int EQUIVALENT_WITHOUT_STRUCTURAL_TYPING = 4;
+  static final int DATA_FLOW_EQUIVALENT = 5;
+
+  // Start over with an empty table when it gets this large, to bound its memory.
+  private static final int MAX_SIZE = 1 << 17;
+
+  private final AtomicLong generation = new AtomicLong();
+  /** The generation the results were computed in, which is kept in the upper bits. */
+  private volatile ConcurrentHashMap<Key, Long> results = new ConcurrentHashMap<>();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /** Makes all results stale, because a type has changed. */
+  void invalidate() {
+    generation.incrementAndGet();
+  }
+
+  long getHits() {
+    return hits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  /** Whether {@code a} is in the given relation to {@code b}. */
+  boolean check(JSType a, JSType b, int relation) {
+    if (a == b) {
+      // Every relation is reflexive. Unions and templatized types are
+      // interned by the registry, so this also catches most equal pairs.
+      return true;
+    }
+    if (!isExpensive(a) && !isExpensive(b)) {
+      // Looking the result up would cost about as much as computing it.
+      return compute(a, b, relation);
+    }
+
+    // Stamp the result with the generation from before it is computed, so
+    // that a change while it is computed makes it stale.
+    long currentGeneration = generation.get();
+    ConcurrentHashMap<Key, Long> currentResults = results;
+    Key key = new Key(a, b, relation);
+    Long cached = currentResults.get(key);
+    if (cached != null && (cached >>> 1) == currentGeneration) {
+      hits.incrementAndGet();
+      return (cached & 1) != 0;
+    }
+    misses.incrementAndGet();
+
+    boolean result = compute(a, b, relation);
+    if (currentResults.size() >= MAX_SIZE) {
+      // Clearing the full table would take as long as filling it did.
+      currentResults = new ConcurrentHashMap<>();
+      results = currentResults;
+    }
+    currentResults.put(key, (currentGeneration << 1) | (result ? 1 : 0));
+    return result;
+  }
+
+  private static boolean isExpensive(JSType type) {
+    return type.isUnionType()
+        || type.isFunctionType()
+        || type.isTemplatizedType()
+        || type.isStructuralType();
+  }
+
+  private static boolean compute(JSType a, JSType b, int relation) {
+    switch (relation) {
+      case SUBTYPE:
+        return a.isSubtype(b, ImplCache.create(), SubtypingMode.NORMAL);
+      case SUBTYPE_IGNORING_NULL_UNDEFINED:
+        return a.isSubtype(b, ImplCache.create(), SubtypingMode.IGNORE_NULL_UNDEFINED);
+      case SUBTYPE_WITHOUT_STRUCTURAL_TYPING:
+        return a.isSubtype(
+            b, ImplCache.createWithoutStructuralTyping(), SubtypingMode.NORMAL);
+      case EQUIVALENT:
+        return a.checkEquivalenceHelper(b, EquivalenceMethod.IDENTITY, EqCache.create());
+      case EQUIVALENT_WITHOUT_STRUCTURAL_TYPING:
+        return a.checkEquivalenceHelper(
+            b, EquivalenceMethod.IDENTITY, EqCache.createWithoutStructuralTyping());
+      case DATA_FLOW_EQUIVALENT:
+        return a.checkEquivalenceHelper(b, EquivalenceMethod.DATA_FLOW, EqCache.create());
+      default:
+        throw new IllegalArgumentException("Unknown relation: " + relation);
+    }
+  }
+
+  /** A pair of types, compared by identity, and a relation. */
+  private static final class Key {
+    private final JSType a;
+    private final JSType b;
+    private final int relation;
+
+    Key(JSType a, JSType b, int relation) {
+      this.a = a;
+      this.b = b;
+      this.relation = relation;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return a == other.a && b == other.b && relation == other.relation;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * System.identityHashCode(a) + System.identityHashCode(b)) + relation;
+    }
+  }
+}
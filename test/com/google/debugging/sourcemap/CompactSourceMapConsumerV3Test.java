@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.debugging.sourcemap;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/** Tests for {@link CompactSourceMapConsumerV3}. */
+public final class CompactSourceMapConsumerV3Test extends TestCase {
+  private static final String SOURCE_MAP = "{\n"
+      + "\"version\":3,\n"
+      + "\"file\":\"testcode\",\n"
+      + "\"x_org_extension\":{\"mappings\":\"not these\"},\n"
+      + "\"mappings\":\"AAAAA,QAASA,UAAS,EAAG;;ACCZ,I;AAAA,CAAC,EAACA\",\n"
+      + "\"sources\":[\"testcode\",\"other\"],\n"
+      + "\"names\":[\"__BASIC__\"]\n"
+      + "}\n";
+
+  public void testSameMappingsAsV3() throws Exception {
+    CompactSourceMapConsumerV3 consumer = new CompactSourceMapConsumerV3();
+    consumer.parse(SOURCE_MAP);
+    assertSameMappingsAsV3(SOURCE_MAP, consumer);
+  }
+
+  public void testParseFile() throws Exception {
+    File file = File.createTempFile("testcode", ".map");
+    try {
+      Files.write(file.toPath(), SOURCE_MAP.getBytes(UTF_8));
+      CompactSourceMapConsumerV3 consumer = CompactSourceMapConsumerV3.parseFile(file);
+      assertSameMappingsAsV3(SOURCE_MAP, consumer);
+      assertThat(consumer.getOriginalSources()).containsExactly("testcode", "other").inOrder();
+      assertThat(consumer.getExtensions()).containsKey("x_org_extension");
+    } finally {
+      file.delete();
+    }
+  }
+
+  public void testEmptyLines() throws Exception {
+    String sourceMap = "{\n"
+        + "\"version\":3,\n"
+        + "\"file\":\"testcode\",\n"
+        + "\"mappings\":\";;AAAA;;;\",\n"
+        + "\"sources\":[\"testcode\"],\n"
+        + "\"names\":[]\n"
+        + "}\n";
+    CompactSourceMapConsumerV3 consumer = new CompactSourceMapConsumerV3();
+    consumer.parse(sourceMap);
+    assertThat(consumer.getMappingForLine(1, 1)).isNull();
+    assertThat(consumer.getMappingForLine(5, 1).getLineNumber()).isEqualTo(1);
+    assertThat(consumer.getMappingForLine(7, 1)).isNull();
+    assertSameMappingsAsV3(sourceMap, consumer);
+  }
+
+  public void testIndexMap() throws Exception {
+    String sourceMap = ""
+        + "{"
+        + "  \"version\": 3,"
+        + "  \"file\": \"testcode.js\","
+        + "  \"sections\": ["
+        + "    {"
+        + "      \"map\": {"
+        + "         \"version\": 3,"
+        + "         \"mappings\": \"AAAAA,QAASA,UAAS,EAAG;\","
+        + "         \"sources\": [\"testcode.js\"],"
+        + "         \"names\": [\"foo\"]"
+        + "      },"
+        + "      \"offset\": {"
+        + "        \"line\": 1,"
+        + "        \"column\": 1"
+        + "      }"
+        + "    }"
+        + "  ]"
+        + "}";
+    CompactSourceMapConsumerV3 consumer = new CompactSourceMapConsumerV3();
+    consumer.parse(sourceMap);
+    assertSameMappingsAsV3(sourceMap, consumer);
+  }
+
+  public void testTooManyValues() throws Exception {
+    String sourceMap = "{\n"
+        + "\"version\":3,\n"
+        + "\"file\":\"testcode\",\n"
+        + "\"mappings\":\"AAAAAA\",\n"
+        + "\"sources\":[\"testcode\"],\n"
+        + "\"names\":[\"__BASIC__\"]\n"
+        + "}\n";
+    try {
+      new CompactSourceMapConsumerV3().parse(sourceMap);
+      fail("Expected SourceMapParseException");
+    } catch (SourceMapParseException expected) {
+    }
+  }
+
+  private static void assertSameMappingsAsV3(
+      String sourceMap, CompactSourceMapConsumerV3 consumer) throws Exception {
+    SourceMapConsumerV3 expected = new SourceMapConsumerV3();
+    expected.parse(sourceMap);
+    for (int line = 0; line < 8; line++) {
+      for (int column = 1; column < 40; column++) {
+        assertThat(consumer.getMappingForLine(line, column))
+            .isEqualTo(expected.getMappingForLine(line, column));
+      }
+    }
+    for (String source : expected.getOriginalSources()) {
+      for (int line = 0; line < 4; line++) {
+        assertThat(toList(consumer.getReverseMapping(source, line, 0)))
+            .isEqualTo(toList(expected.getReverseMapping(source, line, 0)));
+      }
+    }
+  }
+
+  private static List<OriginalMapping> toList(Iterable<OriginalMapping> mappings) {
+    List<OriginalMapping> list = new ArrayList<>();
+    for (OriginalMapping mapping : mappings) {
+      list.add(mapping);
+    }
+    return list;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.debugging.sourcemap;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.javascript.jscomp.SourceMap;
+import com.google.javascript.jscomp.SourceMap.Format;
+import java.io.IOException;
+
+/** Tests for {@link CompactSourceMapGeneratorV3}. */
+public final class CompactSourceMapGeneratorV3Test extends SourceMapTestCase {
+  private Format format = SourceMap.Format.V3_COMPACT;
+
+  @Override
+  protected SourceMapConsumer getSourceMapConsumer() {
+    return new SourceMapConsumerV3();
+  }
+
+  @Override
+  protected Format getSourceMapFormat() {
+    return format;
+  }
+
+  public void testBasicMapping() throws Exception {
+    compileAndCheck("function __BASIC__() { }");
+    compileAndCheck("function __BASIC__(__PARAM1__, __PARAM2__) { "
+        + "var __VAR__ = '__STR__'; }");
+  }
+
+  public void testMultilineMapping() throws Exception {
+    compileAndCheck("function __BASIC__(__PARAM1__, __PARAM2__) {\n"
+        + "var __VAR__ = '__STR__';\n"
+        + "var __ANO__ = \"__STR2__\";\n"
+        + "}");
+  }
+
+  public void testSameOutputAsV3() throws Exception {
+    assertSameOutputAsV3(
+        "function f(a, b) {\n  var c = a + b;\n  return c * 2;\n}\nvar x = f(1, 2);",
+        "a.js",
+        "/** @constructor */ function C() { this.x = 1; }\nC.prototype.m = function() {};",
+        "b.js");
+  }
+
+  public void testSameOutputAsV3WithSourcesContent() throws Exception {
+    sourceMapIncludeSourcesContent = true;
+    assertSameOutputAsV3("var x = 1;\nfunction f() { return x; }", "a.js", "f();", "b.js");
+  }
+
+  public void testSameOutputAsV3WithOffsetsAndPrefix() throws Exception {
+    SourceMapGenerator v3 = new SourceMapGeneratorV3();
+    SourceMapGenerator compact = new CompactSourceMapGeneratorV3();
+    for (SourceMapGenerator generator : new SourceMapGenerator[] {v3, compact}) {
+      generator.setWrapperPrefix("(function() {\n  ");
+      generator.addMapping(
+          "a.js", "a", new FilePosition(1, 2), new FilePosition(0, 0), new FilePosition(0, 5));
+      generator.addMapping(
+          "a.js", null, new FilePosition(1, 4), new FilePosition(0, 2), new FilePosition(0, 3));
+      generator.setStartingPosition(2, 7);
+      generator.addMapping(
+          "b.js", "b", new FilePosition(3, 0), new FilePosition(0, 1), new FilePosition(1, 4));
+      generator.addMapping(
+          "a.js", "a", new FilePosition(5, 1), new FilePosition(1, 0), new FilePosition(1, 2));
+      generator.addSourcesContent("b.js", "var b;");
+    }
+    assertThat(sourceMapToString(compact)).isEqualTo(sourceMapToString(v3));
+
+    v3.reset();
+    compact.reset();
+    assertThat(sourceMapToString(compact)).isEqualTo(sourceMapToString(v3));
+  }
+
+  public void testMappingsOutOfOrder() {
+    SourceMapGenerator generator = new CompactSourceMapGeneratorV3();
+    generator.addMapping(
+        "a.js", null, new FilePosition(1, 0), new FilePosition(1, 0), new FilePosition(1, 4));
+    try {
+      generator.addMapping(
+          "a.js", null, new FilePosition(1, 0), new FilePosition(0, 0), new FilePosition(0, 4));
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  private void assertSameOutputAsV3(String js1, String fileName1, String js2, String fileName2) {
+    format = SourceMap.Format.V3;
+    RunResult expected = compile(js1, fileName1, js2, fileName2);
+    format = SourceMap.Format.V3_COMPACT;
+    RunResult actual = compile(js1, fileName1, js2, fileName2);
+    assertThat(actual.generatedSource).isEqualTo(expected.generatedSource);
+    assertThat(actual.sourceMapFileContent).isEqualTo(expected.sourceMapFileContent);
+  }
+
+  private static String sourceMapToString(SourceMapGenerator generator) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    generator.appendTo(sb, "out.js");
+    return sb.toString();
+  }
+}
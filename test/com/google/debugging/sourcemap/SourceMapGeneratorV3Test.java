@@ -19,7 +19,9 @@ package com.google.debugging.sourcemap;
 import static com.google.common.truth.Truth.assertThat;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.debugging.sourcemap.SourceMapGeneratorV3.ExtensionMergeAction;
+import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -522,6 +524,80 @@ public final class SourceMapGeneratorV3Test extends SourceMapTestCase {
     check(inputs, output.toString(), mapContents.toString());
   }
 
+  public void testComposeMapSection() throws Exception {
+    // out.js was compiled from babel.js and plain.js, babel.js from ts.js,
+    // and ts.js from src.ts.
+    SourceMapGeneratorV3 out = new SourceMapGeneratorV3();
+    out.addMapping("babel.js", "a",
+        new FilePosition(2, 4), new FilePosition(0, 0), new FilePosition(0, 5));
+    out.addMapping("plain.js", null,
+        new FilePosition(1, 1), new FilePosition(0, 10), new FilePosition(0, 12));
+    // The last mapping of a section isn't merged, as its end is unknown.
+    out.addMapping("plain.js", null,
+        new FilePosition(2, 0), new FilePosition(1, 0), new FilePosition(1, 1));
+    SourceMapGeneratorV3 babel = new SourceMapGeneratorV3();
+    babel.addMapping("ts.js", "orig",
+        new FilePosition(5, 2), new FilePosition(2, 4), new FilePosition(2, 8));
+    SourceMapGeneratorV3 ts = new SourceMapGeneratorV3();
+    ts.addMapping("src.ts", null,
+        new FilePosition(7, 3), new FilePosition(5, 2), new FilePosition(5, 9));
+
+    SourceMapGeneratorV3 composed = new SourceMapGeneratorV3();
+    composed.composeMapSection(0, 0, mapToString(out, "out.js"),
+        ImmutableMap.of(
+            "babel.js", parseMap(mapToString(babel, "babel.js")),
+            "ts.js", parseMap(mapToString(ts, "ts.js"))));
+
+    SourceMapConsumerV3 result = parseMap(mapToString(composed, "out.js"));
+    assertThat(result.getOriginalSources()).containsExactly("src.ts", "plain.js");
+    assertThat(result.getMappingForLine(1, 1)).isEqualTo(
+        OriginalMapping.newBuilder()
+            .setOriginalFile("src.ts")
+            .setLineNumber(8)
+            .setColumnPosition(4)
+            .setIdentifier("orig")
+            .build());
+    assertThat(result.getMappingForLine(1, 11)).isEqualTo(
+        OriginalMapping.newBuilder()
+            .setOriginalFile("plain.js")
+            .setLineNumber(2)
+            .setColumnPosition(2)
+            .build());
+  }
+
+  public void testComposeMapSectionWithCycle() throws Exception {
+    SourceMapGeneratorV3 a = new SourceMapGeneratorV3();
+    a.addMapping("b.js", null,
+        new FilePosition(0, 0), new FilePosition(0, 0), new FilePosition(0, 5));
+    a.addMapping("c.js", null,
+        new FilePosition(0, 0), new FilePosition(0, 6), new FilePosition(0, 7));
+    SourceMapGeneratorV3 b = new SourceMapGeneratorV3();
+    b.addMapping("a.js", null,
+        new FilePosition(0, 0), new FilePosition(0, 0), new FilePosition(0, 5));
+
+    SourceMapGeneratorV3 composed = new SourceMapGeneratorV3();
+    composed.composeMapSection(0, 0, mapToString(a, "a.js"),
+        ImmutableMap.of(
+            "a.js", parseMap(mapToString(a, "a.js")),
+            "b.js", parseMap(mapToString(b, "b.js"))));
+
+    assertThat(parseMap(mapToString(composed, "out.js")).getOriginalSources())
+        .containsExactly("b.js");
+  }
+
+  private static String mapToString(SourceMapGeneratorV3 generator, String name)
+      throws IOException {
+    StringBuilder sb = new StringBuilder();
+    generator.appendTo(sb, name);
+    return sb.toString();
+  }
+
+  private static SourceMapConsumerV3 parseMap(String contents) throws Exception {
+    SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+    consumer.parse(contents);
+    return consumer;
+  }
+
   public void testSourceMapExtensions() throws Exception {
     //generating the json
     SourceMapGeneratorV3 mapper = new SourceMapGeneratorV3();
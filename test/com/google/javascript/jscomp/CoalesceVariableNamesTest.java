@@ -28,6 +28,7 @@ public final class CoalesceVariableNamesTest extends CompilerTestCase {
   // picking out which variable names are merged.
 
   private boolean usePseudoName = false;
+  private int numParallelThreads = 1;
 
   @Override
   protected int getNumRepetitions() {
@@ -38,6 +39,14 @@ public final class CoalesceVariableNamesTest extends CompilerTestCase {
   protected void setUp() throws Exception {
     super.setUp();
     usePseudoName = false;
+    numParallelThreads = 1;
+  }
+
+  @Override
+  protected CompilerOptions getOptions(CompilerOptions options) {
+    options = super.getOptions(options);
+    options.setNumParallelThreads(numParallelThreads);
+    return options;
   }
 
   @Override
@@ -726,6 +735,45 @@ public final class CoalesceVariableNamesTest extends CompilerTestCase {
             "}"));
   }
 
+  public void testParallel() {
+    numParallelThreads = 4;
+    test(
+        LINE_JOINER.join(
+            "function FUNC1() {",
+            "  var x = 1; ",
+            "  var y = 2; ",
+            "          y; ",
+            "  function FUNC2() {",
+            "    var z = 3; ",
+            "    var w = 4; ",
+            "            w; ",
+            "  }",
+            "}",
+            "function FUNC3() {",
+            "  var a = 1; ",
+            "          a; ",
+            "  var b = 2; ",
+            "          b; ",
+            "}"),
+        LINE_JOINER.join(
+            "function FUNC1() {",
+            "  function FUNC2() {",
+            "    var z = 3;",
+            "        z = 4;",
+            "            z",
+            "  }",
+            "  var x = 1;",
+            "  x = 2;",
+            "  x",
+            "}",
+            "function FUNC3() {",
+            "  var a = 1;",
+            "          a;",
+            "      a = 2;",
+            "          a;",
+            "}"));
+  }
+
   private void inFunction(String src) {
     testSame("function FUNC(){" + src + "}");
   }
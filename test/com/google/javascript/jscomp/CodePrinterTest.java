@@ -23,6 +23,7 @@ import com.google.javascript.jscomp.TypeICompilerTestCase.TypeInferenceMode;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -783,6 +784,43 @@ public final class CodePrinterTest extends CodePrinterTestBase {
         })));
   }
 
+  public void testWriteToMatchesBuild() throws IOException {
+    StringBuilder js = new StringBuilder();
+    for (int i = 0; i < 3000; i++) {
+      js.append("var x").append(i).append(" = foo(").append(i).append(", 'abc');\n");
+    }
+    Node root = parse(js.toString());
+
+    for (boolean prettyPrint : new boolean[] {false, true}) {
+      CompilerOptions options = new CompilerOptions();
+      options.setPrettyPrint(prettyPrint);
+      options.setLineLengthThreshold(100);
+      options.setPreferLineBreakAtEndOfFile(true);
+
+      SourceMap expectedMap = SourceMap.Format.V3.getInstance();
+      String expected =
+          new CodePrinter.Builder(root)
+              .setCompilerOptions(options)
+              .setSourceMap(expectedMap)
+              .build();
+      SourceMap map = SourceMap.Format.V3.getInstance();
+      StringBuilder out = new StringBuilder();
+      new CodePrinter.Builder(root)
+          .setCompilerOptions(options)
+          .setSourceMap(map)
+          .writeTo(out);
+
+      assertEquals(expected, out.toString());
+      assertEquals(toString(expectedMap), toString(map));
+    }
+  }
+
+  private static String toString(SourceMap map) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    map.appendTo(sb, "out.js");
+    return sb.toString();
+  }
+
   public void testPrettyPrinter() {
     // Ensure that the pretty printer inserts line breaks at appropriate
     // places.
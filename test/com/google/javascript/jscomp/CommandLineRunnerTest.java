@@ -31,12 +31,18 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.io.Files;
+import com.google.gson.Gson;
 import com.google.javascript.jscomp.AbstractCommandLineRunner.FlagEntry;
 import com.google.javascript.jscomp.AbstractCommandLineRunner.FlagUsageException;
 import com.google.javascript.jscomp.AbstractCommandLineRunner.JsSourceType;
+import com.google.javascript.jscomp.AbstractCommandLineRunner.WorkInput;
+import com.google.javascript.jscomp.AbstractCommandLineRunner.WorkRequest;
+import com.google.javascript.jscomp.AbstractCommandLineRunner.WorkResponse;
 import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
 import com.google.javascript.jscomp.SourceMap.LocationMapping;
 import com.google.javascript.rhino.Node;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -2052,6 +2058,49 @@ public final class CommandLineRunnerTest extends TestCase {
         + "\\n\\\"names\\\":[\\\"alert\\\"]\\n}\\n\"}]");
   }
 
+  public void testPersistentWorker() throws IOException {
+    File jsFile = File.createTempFile("worker", ".js");
+    Files.asCharSink(jsFile, UTF_8).write("alert('foo');");
+
+    WorkRequest request = new WorkRequest();
+    request.requestId = 7;
+    request.arguments.add("--js=" + jsFile.getPath());
+    WorkInput input = new WorkInput();
+    input.path = jsFile.getPath();
+    input.digest = "digest";
+    request.inputs.add(input);
+
+    Gson gson = new Gson();
+    ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    CodedOutputStream requestStream = CodedOutputStream.newInstance(requests);
+    // The second compile reuses the input and the externs of the first one.
+    for (int i = 0; i < 2; i++) {
+      requestStream.writeByteArrayNoTag(gson.toJson(request).getBytes(UTF_8));
+    }
+    requestStream.flush();
+
+    ByteArrayOutputStream responses = new ByteArrayOutputStream();
+    AbstractCommandLineRunner.runPersistentWorker(
+        new ByteArrayInputStream(requests.toByteArray()),
+        responses,
+        (requestArgs, in, out, err) -> new CommandLineRunner(requestArgs, in, out, err));
+
+    CodedInputStream responseStream = CodedInputStream.newInstance(responses.toByteArray());
+    for (int i = 0; i < 2; i++) {
+      WorkResponse response =
+          gson.fromJson(new String(responseStream.readByteArray(), UTF_8), WorkResponse.class);
+      assertThat(response.requestId).isEqualTo(7);
+      assertThat(response.exitCode).isEqualTo(0);
+      assertThat(response.output).isEqualTo("alert(\"foo\");\n");
+      if (i == 0) {
+        // The compile runs on other threads than the one serving the request; their CPU time
+        // must be counted. The first compile also loads the externs.
+        assertThat(response.cpuMillis).isGreaterThan(0L);
+      }
+    }
+    assertThat(responseStream.isAtEnd()).isTrue();
+  }
+
   public void testJsonStreamSourceMap() {
     String inputSourceMap =
         "{\n"
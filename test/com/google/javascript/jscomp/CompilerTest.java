@@ -110,6 +110,57 @@ public final class CompilerTest extends TestCase {
     assertEquals(3, jsRoot.getChildCount());
   }
 
+  public void testParallelParsingReportsErrorsInInputOrder() {
+    List<SourceFile> inputs = new ArrayList<>();
+    List<String> expectedOrder = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      inputs.add(SourceFile.fromCode("input" + i, "var x" + i + " = ;"));
+      expectedOrder.add("input" + i);
+    }
+    final List<String> reportedOrder = new ArrayList<>();
+    CompilerOptions options = new CompilerOptions();
+    options.setNumParallelThreads(4);
+    options.setErrorHandler(
+        new ErrorHandler() {
+          @Override
+          public void report(CheckLevel level, JSError error) {
+            reportedOrder.add(error.sourceName);
+          }
+        });
+    Compiler compiler = new Compiler();
+    compiler.init(ImmutableList.<SourceFile>of(), inputs, options);
+    compiler.parseInputs();
+
+    assertThat(reportedOrder).containsExactlyElementsIn(expectedOrder).inOrder();
+    assertThat(compiler.getErrors()).hasLength(20);
+  }
+
+  public void testParallelDependencyInfoWithClosureDependencies() {
+    List<SourceFile> inputs = ImmutableList.of(
+        SourceFile.fromCode(
+            "mix", "goog.provide('mix'); goog.require('gin'); goog.require('tonic');"),
+        SourceFile.fromCode("tonic", "goog.provide('tonic'); var tonic = {};"),
+        SourceFile.fromCode("gin", "goog.provide('gin'); goog.require('tonic'); var gin = {};"),
+        SourceFile.fromCode("unused", "goog.provide('unused'); var unused = {};"));
+    CompilerOptions options = new CompilerOptions();
+    options.setNumParallelThreads(4);
+    options.setDependencyOptions(
+        new DependencyOptions()
+            .setDependencySorting(true)
+            .setDependencyPruning(true)
+            .setEntryPoints(ImmutableList.of(ModuleIdentifier.forClosure("mix"))));
+    Compiler compiler = new Compiler();
+    compiler.init(ImmutableList.<SourceFile>of(), inputs, options);
+    compiler.parseInputs();
+
+    assertThat(compiler.getErrors()).isEmpty();
+    List<String> order = new ArrayList<>();
+    for (CompilerInput input : compiler.getInputsInOrder()) {
+      order.add(input.getName());
+    }
+    assertThat(order).containsExactly("tonic", "gin", "mix").inOrder();
+  }
+
   public void testPrintExterns() {
     List<SourceFile> externs =
         ImmutableList.of(SourceFile.fromCode("extern", "function alert(x) {}"));
@@ -185,6 +236,38 @@ public final class CompilerTest extends TestCase {
     assertEquals("<div ng-show='foo()'>", compiler.getSourceLine(origSourceName, 1));
   }
 
+  public void testInputSourceMapChain() throws Exception {
+    ImmutableMap<String, SourceMapInput> inputSourceMaps = ImmutableMap.of(
+        normalize("generated_js/example.js"),
+        sourcemap(
+            normalize("generated_js/example.srcmap"),
+            normalize("../intermediate/example.js"),
+            new FilePosition(17, 25)),
+        normalize("intermediate/example.js"),
+        sourcemap(
+            normalize("intermediate/example.srcmap"),
+            normalize("../original/source.html"),
+            new FilePosition(4, 0)));
+    String origSourceName = normalize("original/source.html");
+
+    CompilerOptions options = new CompilerOptions();
+    options.inputSourceMaps = inputSourceMaps;
+    Compiler compiler = new Compiler();
+    compiler.init(
+        new ArrayList<SourceFile>(),
+        ImmutableList.of(SourceFile.fromCode(origSourceName, "<div ng-show='foo()'>")),
+        options);
+
+    assertEquals(
+        OriginalMapping.newBuilder()
+            .setOriginalFile(origSourceName)
+            .setLineNumber(5)
+            .setColumnPosition(0)
+            .setIdentifier("testSymbolName")
+            .build(),
+        compiler.getSourceMapping(normalize("generated_js/example.js"), 3, 3));
+  }
+
   private SourceMapInput sourcemap(String sourceMapPath, String originalSource,
       FilePosition originalSourcePosition) throws Exception {
     SourceMapGeneratorV3 sourceMap = new SourceMapGeneratorV3();
@@ -867,6 +950,31 @@ public final class CompilerTest extends TestCase {
     return result;
   }
 
+  public void testCodeBuilderWritingToAppendable() {
+    StringBuilder out = new StringBuilder();
+    Compiler.CodeBuilder cb = new Compiler.CodeBuilder(out);
+    cb.append("foo();\ngoo()");
+    cb.append(";");
+
+    assertEquals("foo();\ngoo();", out.toString());
+    assertEquals(13, cb.getLength());
+    assertEquals(1, cb.getLineIndex());
+    assertEquals(6, cb.getColumnIndex());
+    assertEquals(';', cb.getLastChar());
+    assertEquals(')', cb.getSecondLastChar());
+  }
+
+  public void testToSourceWritingToAppendable() throws Exception {
+    Compiler compiler = new Compiler();
+    compiler.compile(
+        SourceFile.fromCode("externs", ""),
+        SourceFile.fromCode("input", "var x = 1; function f() { return x; }"),
+        new CompilerOptions());
+    StringBuilder out = new StringBuilder();
+    compiler.toSource(out);
+    assertEquals(compiler.toSource(), out.toString());
+  }
+
   public void testConsecutiveSemicolons() {
     Compiler compiler = new Compiler();
     String js = "if(a);";
@@ -1120,6 +1228,67 @@ public final class CompilerTest extends TestCase {
 
   }
 
+  public void testSaveRestoreStateSharesEqualStrings() throws Exception {
+    CompilerOptions options = new CompilerOptions();
+    options.setCheckTypes(true);
+    Compiler compiler = new Compiler(new TestErrorManager());
+    compiler.init(
+        ImmutableList.<SourceFile>of(),
+        Collections.singletonList(
+            SourceFile.fromCode("input.js",
+                Joiner.on('\n').join(
+                    "/** @param {number} value */",
+                    "function f(value) { return value; }",
+                    "/** @param {number} value */",
+                    "function g(value) { return f(value); }"))),
+        options);
+    compiler.parse();
+    compiler.check();
+    String source = compiler.toSource();
+
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    compiler.saveState(byteArrayOutputStream);
+    byteArrayOutputStream.close();
+
+    compiler = new Compiler(new TestErrorManager());
+    compiler.options = options;
+    try (ByteArrayInputStream byteArrayInputStream =
+        new ByteArrayInputStream(byteArrayOutputStream.toByteArray())) {
+      compiler.restoreState(byteArrayInputStream);
+    }
+    assertEquals(source, compiler.toSource());
+
+    Node script = compiler.jsRoot.getFirstChild();
+    String fParam = script.getFirstChild().getJSDocInfo().getParameterNameAt(0);
+    String gParam = script.getSecondChild().getJSDocInfo().getParameterNameAt(0);
+    assertEquals("value", fParam);
+    assertSame(fParam, gParam);
+  }
+
+  public void testCompilerObjectOutputStreamWritesEachStringOnce() throws Exception {
+    List<String> strings = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      // Equal but distinct instances.
+      strings.add(new StringBuilder("someLongPropertyName").toString());
+    }
+
+    ByteArrayOutputStream canonical = new ByteArrayOutputStream();
+    Compiler.CompilerObjectOutputStream out = new Compiler.CompilerObjectOutputStream(canonical);
+    out.writeObject(strings);
+    out.close();
+    assertEquals(1, out.getCanonicalStringCount());
+    assertThat(canonical.size()).isLessThan(serialize(strings).length);
+
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(canonical.toByteArray()));
+    @SuppressWarnings("unchecked")
+    List<String> read = (List<String>) in.readObject();
+    in.close();
+    assertEquals(strings, read);
+    for (String str : read) {
+      assertSame(read.get(0), str);
+    }
+  }
+
   public void testExternsDependencyPruning() {
     List<SourceFile> inputs = ImmutableList.of(
         SourceFile.fromCode("unused", "/** @externs */ goog.provide('unused');"),
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.javascript.rhino.IR;
+import com.google.javascript.rhino.Node;
+import junit.framework.TestCase;
+
+/** Tests for {@link ControlFlowGraphCache}. */
+public final class ControlFlowGraphCacheTest extends TestCase {
+  private Compiler compiler;
+  private Node outer;
+  private Node inner;
+  private ControlFlowGraphCache cache;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    compiler = new Compiler();
+    compiler.initCompilerOptionsIfTesting();
+    Node script = compiler.parseTestCode("function f() { var x = 1; function g() { return x; } }");
+    assertThat(compiler.getErrors()).isEmpty();
+    outer = script.getFirstChild();
+    inner = outer.getLastChild().getLastChild();
+    cache = new ControlFlowGraphCache(compiler);
+  }
+
+  public void testUnchangedScopeIsReused() {
+    ControlFlowGraph<Node> cfg = cache.getCfg(outer, true);
+    assertThat(cache.getCfg(outer, true)).isSameAs(cfg);
+    assertThat(cfg.getEntry().getValue()).isSameAs(outer);
+  }
+
+  public void testEdgeAnnotationsAreCachedSeparately() {
+    ControlFlowGraph<Node> cfg = cache.getCfg(outer, true);
+    assertThat(cache.getCfg(outer, false)).isNotSameAs(cfg);
+  }
+
+  public void testChangedScopeIsRebuilt() {
+    ControlFlowGraph<Node> cfg = cache.getCfg(outer, true);
+    Node newStatement = IR.exprResult(IR.number(5));
+    outer.getLastChild().addChildToFront(newStatement);
+    compiler.reportChangeToEnclosingScope(newStatement);
+
+    ControlFlowGraph<Node> newCfg = cache.getCfg(outer, true);
+    assertThat(newCfg).isNotSameAs(cfg);
+    assertThat(newCfg.getDirectedGraphNode(newStatement)).isNotNull();
+  }
+
+  public void testChangeInInnerFunctionKeepsOuterScope() {
+    ControlFlowGraph<Node> outerCfg = cache.getCfg(outer, true);
+    ControlFlowGraph<Node> innerCfg = cache.getCfg(inner, true);
+    compiler.reportChangeToChangeScope(inner);
+
+    assertThat(cache.getCfg(outer, true)).isSameAs(outerCfg);
+    assertThat(cache.getCfg(inner, true)).isNotSameAs(innerCfg);
+  }
+
+  public void testClear() {
+    ControlFlowGraph<Node> cfg = cache.getCfg(outer, true);
+    cache.clear();
+    assertThat(cache.getCfg(outer, true)).isNotSameAs(cfg);
+  }
+}
@@ -20,6 +20,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static com.google.javascript.jscomp.CompilerTestCase.LINE_JOINER;
 import static java.util.Comparator.comparingInt;
 
+import com.google.common.collect.ImmutableList;
 import com.google.javascript.jscomp.AbstractCompiler.LifeCycleStage;
 import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
@@ -27,8 +28,10 @@ import com.google.javascript.jscomp.DataFlowAnalysis.BranchedFlowState;
 import com.google.javascript.jscomp.DataFlowAnalysis.BranchedForwardDataFlowAnalysis;
 import com.google.javascript.jscomp.DataFlowAnalysis.FlowState;
 import com.google.javascript.jscomp.DataFlowAnalysis.MaxIterationsExceededException;
+import com.google.javascript.jscomp.DataFlowAnalysis.OrderedWorkSet;
 import com.google.javascript.jscomp.JoinOp.BinaryJoinOp;
 import com.google.javascript.jscomp.graph.DiGraph.DiGraphEdge;
+import com.google.javascript.jscomp.graph.DiGraph.DiGraphNode;
 import com.google.javascript.jscomp.graph.GraphNode;
 import com.google.javascript.jscomp.graph.LatticeElement;
 import com.google.javascript.rhino.InputId;
@@ -952,6 +955,57 @@ public final class DataFlowAnalysisTest extends TestCase {
     }
   }
 
+  public void testOrderedWorkSet() {
+    Variable a = new Variable("a");
+    Instruction inst1 = newAssignNumberToVariableInstruction(a, 1);
+    Instruction inst2 = newAssignNumberToVariableInstruction(a, 2);
+    Instruction inst3 = newAssignNumberToVariableInstruction(a, 3);
+    ControlFlowGraph<Instruction> cfg = new ControlFlowGraph<>(inst1, true, true);
+    DiGraphNode<Instruction, Branch> n1 = cfg.createDirectedGraphNode(inst1);
+    DiGraphNode<Instruction, Branch> n2 = cfg.createDirectedGraphNode(inst2);
+    DiGraphNode<Instruction, Branch> n3 = cfg.createDirectedGraphNode(inst3);
+
+    OrderedWorkSet<Instruction> workSet = new OrderedWorkSet<>();
+    workSet.reset(ImmutableList.of(n1, n2, n3));
+    workSet.add(n3);
+    workSet.add(n2);
+    assertThat(workSet.removeFirst()).isSameAs(n2);
+    // A node before the last removed one is still handed out first.
+    workSet.add(n1);
+    workSet.add(n3);
+    assertThat(workSet.removeFirst()).isSameAs(n1);
+    assertThat(workSet.removeFirst()).isSameAs(n3);
+    assertThat(workSet.isEmpty()).isTrue();
+  }
+
+  public void testReversePostOrderWithoutComparator() {
+    // a = 0; do { a = a + 1 } while (b); c = a;
+    // with the nodes created in the reverse order of the flow.
+    Variable a = new Variable("a");
+    Variable b = new Variable("b");
+    Variable c = new Variable("c");
+    Instruction inst1 = newAssignNumberToVariableInstruction(a, 0);
+    Instruction inst2 = new ArithmeticInstruction(a, a, Operation.ADD, 1);
+    Instruction inst3 = new BranchInstruction(b);
+    Instruction inst4 = newAssignVariableToVariableInstruction(c, a);
+    ControlFlowGraph<Instruction> cfg = new ControlFlowGraph<>(inst1, true, true);
+    cfg.createNode(inst4);
+    cfg.createNode(inst3);
+    cfg.createNode(inst2);
+    GraphNode<Instruction, Branch> n1 = cfg.createNode(inst1);
+    cfg.connect(inst1, ControlFlowGraph.Branch.UNCOND, inst2);
+    cfg.connect(inst2, ControlFlowGraph.Branch.UNCOND, inst3);
+    cfg.connect(inst3, ControlFlowGraph.Branch.ON_TRUE, inst2);
+    cfg.connect(inst3, ControlFlowGraph.Branch.ON_FALSE, inst4);
+
+    DummyConstPropagation constProp = new DummyConstPropagation(cfg);
+    constProp.analyze();
+
+    verifyOutHas(n1, a, 0);
+    verifyInHas(cfg.getDirectedGraphNode(inst4), a, null);
+    verifyOutHas(cfg.getDirectedGraphNode(inst4), c, null);
+  }
+
   static void verifyInHas(GraphNode<Instruction, Branch> node, Variable var,
       Integer constant) {
     FlowState<ConstPropLatticeElement> fState = node.getAnnotation();
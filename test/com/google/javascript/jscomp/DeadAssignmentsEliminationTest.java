@@ -23,6 +23,7 @@ import com.google.javascript.rhino.Node;
  *
  */
 public final class DeadAssignmentsEliminationTest extends CompilerTestCase {
+  private int numParallelThreads = 1;
 
   public DeadAssignmentsEliminationTest() {
     super("var extern;");
@@ -32,10 +33,21 @@ public final class DeadAssignmentsEliminationTest extends CompilerTestCase {
   protected void setUp() throws Exception {
     super.setUp();
     enableNormalize();
+    numParallelThreads = 1;
+  }
+
+  @Override
+  protected CompilerOptions getOptions(CompilerOptions options) {
+    options = super.getOptions(options);
+    options.setNumParallelThreads(numParallelThreads);
+    return options;
   }
 
   @Override
   protected CompilerPass getProcessor(final Compiler compiler) {
+    if (numParallelThreads > 1) {
+      return new DeadAssignmentsElimination(compiler);
+    }
     return new CompilerPass() {
       @Override
       public void process(Node externs, Node js) {
@@ -381,6 +393,21 @@ public final class DeadAssignmentsEliminationTest extends CompilerTestCase {
     inFunction("var x; x=x", "var x; x");
   }
 
+  public void testParallel() {
+    numParallelThreads = 4;
+    test(
+        LINE_JOINER.join(
+            "function f1() { var a; a = 1; }",
+            "function f2() { var b; b = foo(); b = 2; return b; }",
+            "function f3() { var c; c = 3; return function() { return c; }; }",
+            "function f4(x) { x = 4; }"),
+        LINE_JOINER.join(
+            "function f1() { var a; 1; }",
+            "function f2() { var b; foo(); b = 2; return b; }",
+            "function f3() { var c; c = 3; return function() { return c; }; }",
+            "function f4(x) { 4; }"));
+  }
+
   private void inFunction(String src) {
     inFunction(src, src);
   }
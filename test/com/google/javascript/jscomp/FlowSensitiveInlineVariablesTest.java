@@ -30,10 +30,20 @@ public final class FlowSensitiveInlineVariablesTest extends CompilerTestCase  {
       "/** @nosideeffects */ function noSFX() {}",
       "                      function hasSFX() {}");
 
+  private int numParallelThreads = 1;
+
   @Override
   protected void setUp() throws Exception {
     super.setUp();
     enableNormalize();
+    numParallelThreads = 1;
+  }
+
+  @Override
+  protected CompilerOptions getOptions(CompilerOptions options) {
+    options = super.getOptions(options);
+    options.setNumParallelThreads(numParallelThreads);
+    return options;
   }
 
   @Override
@@ -744,6 +754,20 @@ public final class FlowSensitiveInlineVariablesTest extends CompilerTestCase  {
     noInline("var [a, b, c] = [1, 2, 3]; print(a + b + c);");
   }
 
+  public void testParallel() {
+    numParallelThreads = 4;
+    test(
+        EXTERN_FUNCTIONS,
+        LINE_JOINER.join(
+            "function f1() { var x = 1; print(x); }",
+            "function f2() { var y = 2; print(y); return function() { var z = 3; print(z); }; }",
+            "function f3() { var w; w = 4; print(w); }"),
+        LINE_JOINER.join(
+            "function f1() { var x; print(1); }",
+            "function f2() { var y; print(2); return function() { var z; print(3); }; }",
+            "function f3() { var w; print(4); }"));
+  }
+
   private void noInline(String input) {
     inline(input, input);
   }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.javascript.rhino.IR;
+import com.google.javascript.rhino.Node;
+import junit.framework.TestCase;
+
+/** Tests for {@link IncrementalAstSize}. */
+public final class IncrementalAstSizeTest extends TestCase {
+  private Compiler compiler;
+  private Node script;
+  private IncrementalAstSize astSize;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    compiler = new Compiler();
+    compiler.initCompilerOptionsIfTesting();
+    script = parse("function f() { var x = 1; } function g() { return 2; } var y = 3;");
+    astSize = new IncrementalAstSize(compiler);
+  }
+
+  public void testReset() {
+    assertThat(astSize.reset(script)).isEqualTo(NodeUtil.countAstSize(script));
+  }
+
+  public void testUnchangedTree() {
+    int size = astSize.reset(script);
+    assertThat(astSize.update()).isEqualTo(size);
+  }
+
+  public void testChangeInFunction() {
+    astSize.reset(script);
+    Node fBody = script.getFirstChild().getLastChild();
+    Node newStatement = IR.exprResult(IR.number(5));
+    fBody.addChildToBack(newStatement);
+    compiler.reportChangeToEnclosingScope(newStatement);
+
+    assertThat(astSize.update()).isEqualTo(NodeUtil.countAstSize(script));
+  }
+
+  public void testDeletedFunction() {
+    astSize.reset(script);
+    Node g = script.getSecondChild();
+    g.detach();
+    NodeUtil.markFunctionsDeleted(g, compiler);
+    compiler.reportChangeToChangeScope(script);
+
+    assertThat(astSize.update()).isEqualTo(NodeUtil.countAstSize(script));
+  }
+
+  public void testNewNestedFunctions() {
+    astSize.reset(script);
+    Node h = parse("function h() { return function() { return 1; }; }").getFirstChild();
+    h.detach();
+    script.addChildToBack(h);
+    NodeUtil.markNewScopesChanged(h, compiler);
+    compiler.reportChangeToChangeScope(script);
+
+    assertThat(astSize.update()).isEqualTo(NodeUtil.countAstSize(script));
+  }
+
+  private static Node parse(String js) {
+    Compiler compiler = new Compiler();
+    compiler.initCompilerOptionsIfTesting();
+    Node n = compiler.parseTestCode(js);
+    assertThat(compiler.getErrors()).isEmpty();
+    return n;
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.javascript.jscomp.testing.JSErrorSubject.assertError;
+
+import com.google.common.collect.ImmutableList;
+import junit.framework.TestCase;
+
+/** Tests for {@link IncrementalRebuilder}. */
+public final class IncrementalRebuilderTest extends TestCase {
+  private static final ImmutableList<SourceFile> EXTERNS =
+      ImmutableList.of(SourceFile.fromCode("externs", "var extVar = 3;"));
+
+  private static final String CLOSURE_BASE =
+      "/** @const */ var goog = goog || {};"
+          + "goog.require = function(x) {};"
+          + "goog.provide = function(x) {};";
+
+  private IncrementalRebuilder rebuilder;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    CompilerOptions options = new CompilerOptions();
+    options.declaredGlobalExternsOnWindow = false;
+    options.setClosurePass(true);
+    options.setInferTypes(true);
+    options.setAllowHotswapReplaceScript(true);
+    options.setChecksOnly(true);
+    options.setContinueAfterErrors(true);
+    options.setCheckSymbols(true);
+    options.setWarningLevel(DiagnosticGroups.CHECK_VARIABLES, CheckLevel.ERROR);
+
+    rebuilder =
+        new IncrementalRebuilder(
+            options,
+            EXTERNS,
+            ImmutableList.of(
+                SourceFile.fromCode("base.js", CLOSURE_BASE),
+                SourceFile.fromCode("a.js", "var aVar = 10;"),
+                SourceFile.fromCode("b.js", "var bVar = aVar + 1;"),
+                SourceFile.fromCode("c.js", "var cVar = 1;")));
+    Result result = rebuilder.build();
+    assertThat(result.errors).isEmpty();
+  }
+
+  public void testUnchangedFileIsNotRechecked() {
+    Result result =
+        rebuilder.rebuild(ImmutableList.of(SourceFile.fromCode("c.js", "var cVar = 1;")));
+    assertThat(result.errors).isEmpty();
+    assertThat(rebuilder.getLastRebuiltFiles()).isEmpty();
+  }
+
+  public void testOnlyDependentsAreRechecked() {
+    rebuilder.rebuild(ImmutableList.of(SourceFile.fromCode("a.js", "var aVar = 20;")));
+    assertThat(rebuilder.getLastRebuiltFiles()).containsExactly("a.js", "b.js");
+
+    rebuilder.rebuild(ImmutableList.of(SourceFile.fromCode("c.js", "var cVar = 2;")));
+    assertThat(rebuilder.getLastRebuiltFiles()).containsExactly("c.js");
+  }
+
+  public void testDependentsOfDependentsAreRechecked() {
+    rebuilder.rebuild(ImmutableList.of(SourceFile.fromCode("c.js", "var cVar = bVar;")));
+    assertThat(rebuilder.getLastRebuiltFiles()).containsExactly("c.js");
+
+    // c.js does not reference a.js, but the type of bVar, which it uses, comes from a.js.
+    rebuilder.rebuild(ImmutableList.of(SourceFile.fromCode("a.js", "var aVar = '10';")));
+    assertThat(rebuilder.getLastRebuiltFiles()).containsExactly("a.js", "b.js", "c.js");
+  }
+
+  public void testRemovedDeclarationIsReportedInDependent() {
+    Result result =
+        rebuilder.rebuild(ImmutableList.of(SourceFile.fromCode("a.js", "var renamed = 10;")));
+    assertThat(result.errors).hasLength(1);
+    assertError(result.errors[0]).hasType(VarCheck.UNDEFINED_VAR_ERROR);
+    assertThat(result.errors[0].sourceName).isEqualTo("b.js");
+
+    // Errors of files that are not rechecked are kept.
+    result = rebuilder.rebuild(ImmutableList.of(SourceFile.fromCode("c.js", "var cVar = 2;")));
+    assertThat(rebuilder.getLastRebuiltFiles()).containsExactly("c.js");
+    assertThat(result.errors).hasLength(1);
+
+    result = rebuilder.rebuild(ImmutableList.of(SourceFile.fromCode("a.js", "var aVar = 10;")));
+    assertThat(result.errors).isEmpty();
+  }
+
+  public void testNewRequireFallsBackToFullBuild() {
+    rebuilder.rebuild(
+        ImmutableList.of(
+            SourceFile.fromCode("c.js", "goog.provide('c'); /** @const */ c.value = 1;")));
+    assertThat(rebuilder.getLastRebuiltFiles())
+        .containsExactly("base.js", "a.js", "b.js", "c.js");
+  }
+}
@@ -21634,4 +21634,67 @@ public final class NewTypeInferenceTest extends NewTypeInferenceTestBase {
         "  x = y;",
         "}"));
   }
+
+  public void testParallelAnalysisOfFunctions() {
+    compilerOptions.setNumParallelThreads(2);
+
+    typeCheck(LINE_JOINER.join(
+        "function f(/** number */ x) { return x; }",
+        "function g(x) {",
+        "  var /** string */ s = f(x);",
+        "};"),
+        NewTypeInference.INVALID_INFERRED_RETURN_TYPE);
+
+    typeCheck(LINE_JOINER.join(
+        "function g(x) {",
+        "  function f() {",
+        "    var /** string */ s = x;",
+        "    x = 5;",
+        "  }",
+        "  f();",
+        "  x - 5;",
+        "}",
+        "function h() {",
+        "  /** @type {number} */ var n = 'str';",
+        "}"),
+        NewTypeInference.CROSS_SCOPE_GOTCHA,
+        NewTypeInference.INVALID_OPERAND_TYPE,
+        NewTypeInference.MISTYPED_ASSIGN_RHS);
+  }
+
+  public void testTypeEnvWithIndexedMap() {
+    String oldMap = System.setProperty("jscomp.newtypes.typeEnvMap", "indexed");
+    try {
+      // More variables than fit in the small form of the map, and joins of
+      // environments that differ in some of them.
+      typeCheck(LINE_JOINER.join(
+          "function f(cond) {",
+          "  var a = 1, b = 2, c = 3, d = 4, e = 5, g = 6, h = 7, i = 8, j = 9, k = 10;",
+          "  if (cond) {",
+          "    a = 'a'; e = 'e'; k = 'k';",
+          "  }",
+          "  b - c - d - g - h - i - j;",
+          "  a - 1;",
+          "}"),
+          NewTypeInference.INVALID_OPERAND_TYPE);
+
+      typeCheck(LINE_JOINER.join(
+          "function f(/** number */ x) {",
+          "  var a, b, c, d, e, g, h, i, j, k;",
+          "  while (x > 0) {",
+          "    a = b = c = d = e = g = h = i = j = k = x;",
+          "    x--;",
+          "  }",
+          "  var /** number|undefined */ n = k;",
+          "  var /** string */ s = a;",
+          "}"),
+          NewTypeInference.MISTYPED_ASSIGN_RHS);
+    } finally {
+      if (oldMap == null) {
+        System.clearProperty("jscomp.newtypes.typeEnvMap");
+      } else {
+        System.setProperty("jscomp.newtypes.typeEnvMap", oldMap);
+      }
+    }
+  }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/** Tests for {@link ParallelModulePrinter}. */
+public final class ParallelModulePrinterTest extends TestCase {
+  private static final int NUM_MODULES = 20;
+
+  private Compiler compiler;
+  private List<JSModule> modules;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    modules = new ArrayList<>();
+    for (int i = 0; i < NUM_MODULES; i++) {
+      JSModule module = new JSModule("m" + i);
+      module.add(SourceFile.fromCode("a" + i + ".js", "var a" + i + " = " + i + ";"));
+      module.add(
+          SourceFile.fromCode(
+              "b" + i + ".js", "function f" + i + "(x) {\n  return x + a" + i + ";\n}"));
+      if (i > 0) {
+        module.addDependency(modules.get(0));
+      }
+      modules.add(module);
+    }
+
+    CompilerOptions options = new CompilerOptions();
+    options.setSourceMapOutputPath("out.map");
+    compiler = new Compiler();
+    compiler.compileModules(
+        ImmutableList.of(SourceFile.fromCode("externs", "")), modules, options);
+    assertThat(compiler.getErrors()).isEmpty();
+  }
+
+  public void testOutputMatchesSequentialPrinting() throws IOException {
+    final List<String> codes = new ArrayList<>();
+    final List<String> sourceMaps = new ArrayList<>();
+    new ParallelModulePrinter(compiler, 4).print(
+        modules,
+        new ParallelModulePrinter.Callback() {
+          @Override
+          public void moduleOutput(ParallelModulePrinter.ModuleOutput output)
+              throws IOException {
+            assertThat(output.module).isSameAs(modules.get(codes.size()));
+            codes.add(output.code);
+            sourceMaps.add(sourceMapToString(output.module, output.sourceMap));
+          }
+        });
+
+    assertThat(codes).hasSize(NUM_MODULES);
+    for (int i = 0; i < NUM_MODULES; i++) {
+      JSModule module = modules.get(i);
+      compiler.getSourceMap().reset();
+      assertThat(codes.get(i)).isEqualTo(compiler.toSource(module));
+      assertThat(sourceMaps.get(i)).isEqualTo(sourceMapToString(module, compiler.getSourceMap()));
+    }
+  }
+
+  public void testCallbackErrorIsRethrown() {
+    try {
+      new ParallelModulePrinter(compiler, 4).print(
+          modules,
+          new ParallelModulePrinter.Callback() {
+            @Override
+            public void moduleOutput(ParallelModulePrinter.ModuleOutput output)
+                throws IOException {
+              throw new IOException("disk full");
+            }
+          });
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertThat(e).hasMessageThat().isEqualTo("disk full");
+    }
+  }
+
+  private static String sourceMapToString(JSModule module, SourceMap sourceMap)
+      throws IOException {
+    StringBuilder sb = new StringBuilder();
+    sourceMap.appendTo(sb, module.getName() + ".js");
+    return sb.toString();
+  }
+}
@@ -116,6 +116,10 @@ public final class PerformanceTrackerTest extends TestCase {
         "Wall time\\(ms\\): [0-9]+",
         "Passes runtime\\(ms\\): [0-9]+",
         "Max mem usage \\(measured after each pass\\)\\(MB\\): -?[0-9]+",
+        "Passes allocated bytes: -?[0-9]+",
+        "Passes CPU time\\(ms\\): -?[0-9]+",
+        "#GCs during passes: [0-9]+",
+        "GC time during passes\\(ms\\): [0-9]+",
         "#Runs: [0-9]+",
         "#Changing runs: [0-9]+",
         "#Loopable runs: [0-9]+",
@@ -134,14 +138,64 @@ public final class PerformanceTrackerTest extends TestCase {
         "Extern sources: [0-9]+",
         "",
         "Summary:",
-        "pass,runtime,allocMem,runs,changingRuns,astReduction,reduction,gzReduction",
+        "pass,runtime,allocMem,runs,changingRuns,astReduction,reduction,gzReduction,"
+            + "allocBytes,cpuTime,gcCount,gcTime",
         "",
         "Log:",
-        "pass,runtime,allocMem,codeChanged,astReduction,reduction,gzReduction,astSize,size,gzSize",
+        "pass,runtime,allocMem,codeChanged,astReduction,reduction,gzReduction,astSize,size,gzSize,"
+            + "allocBytes,cpuTime,gcCount,gcTime,loopIteration",
         "",
         ".*"),
         Pattern.DOTALL);
     String outputString = output.toString();
     assertThat(outputString).matches(p);
   }
+
+  public void testAllocationIsRecordedPerRun() {
+    PerformanceTracker tracker =
+        new PerformanceTracker(emptyExternRoot, emptyJsRoot, TracerMode.TIMING_ONLY, null);
+
+    tracker.recordPassStart("allocating", true);
+    int[][] garbage = new int[1000][];
+    for (int i = 0; i < garbage.length; i++) {
+      garbage[i] = new int[100];
+    }
+    tracker.recordPassStop("allocating", 0);
+
+    Stats st = tracker.getStats().get("allocating");
+    if (JvmMetrics.getCurrentThreadAllocatedBytes() >= 0) {
+      assertThat(st.allocBytes).isAtLeast(1000L * 100 * 4);
+    } else {
+      assertEquals(-1, st.allocBytes);
+    }
+    assertThat(st.gcCount).isAtLeast(0L);
+    assertThat(garbage).hasLength(1000);
+  }
+
+  public void testLoopIterationIsLogged() throws Exception {
+    PerformanceTracker tracker =
+        new PerformanceTracker(emptyExternRoot, emptyJsRoot, TracerMode.TIMING_ONLY, null);
+
+    tracker.recordPassStart("noloop", true);
+    tracker.recordPassStop("noloop", 1);
+    tracker.recordLoopIteration(1);
+    tracker.recordPassStart("loopA", false);
+    tracker.recordPassStop("loopA", 1);
+    tracker.recordLoopIteration(2);
+    tracker.recordPassStart("loopA", false);
+    tracker.recordPassStop("loopA", 1);
+    tracker.recordLoopIteration(0);
+
+    StringBuilder json = new StringBuilder();
+    tracker.outputJsonReport(json);
+    String jsonString = json.toString();
+    assertThat(jsonString).startsWith("{\"total\":{");
+    assertThat(jsonString).contains("\"summary\":[");
+    assertThat(jsonString).contains("{\"pass\":\"noloop\",\"oneTime\":true,");
+    assertThat(jsonString).containsMatch(
+        "\"log\":\\[\\{\"pass\":\"noloop\".*\"loopIteration\":0,"
+            + ".*\"pass\":\"loopA\".*\"loopIteration\":1,"
+            + ".*\"pass\":\"loopA\".*\"loopIteration\":2,");
+    assertThat(jsonString).endsWith("]}");
+  }
 }
@@ -17,6 +17,7 @@ package com.google.javascript.jscomp;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.google.javascript.rhino.Node;
 import junit.framework.TestCase;
 
 /** Tests for PersistentInputStore. */
@@ -52,4 +53,19 @@ public class PersistentInputStoreTest extends TestCase {
     // Stored CompilerInput was revoked from cache.
     assertThat(testStore.getCachedCompilerInput(file)).isNotSameAs(input);
   }
+
+  public void testExternAstIsCopiedBetweenCompiles() {
+    Compiler compiler = new Compiler();
+    compiler.initOptions(new CompilerOptions());
+    SourceFile externs = SourceFile.fromCode("externs.js", "var x;");
+
+    CompilerInput first = testStore.getCachedExternInput(externs, "config");
+    CompilerInput second = testStore.getCachedExternInput(externs, "config");
+    assertThat(second).isNotSameAs(first);
+
+    Node firstRoot = first.getAstRoot(compiler);
+    Node secondRoot = second.getAstRoot(compiler);
+    assertThat(secondRoot).isNotSameAs(firstRoot);
+    assertThat(secondRoot.isEquivalentTo(firstRoot)).isTrue();
+  }
 }
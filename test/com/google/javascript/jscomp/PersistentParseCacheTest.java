@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.google.javascript.jscomp.AbstractCompiler.ConfigContext;
+import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
+import com.google.javascript.jscomp.deps.DependencyInfo;
+import com.google.javascript.jscomp.deps.SimpleDependencyInfo;
+import com.google.javascript.jscomp.parsing.Config;
+import com.google.javascript.rhino.Node;
+import java.nio.file.Path;
+import junit.framework.TestCase;
+
+/** Tests for {@link PersistentParseCache}. */
+public final class PersistentParseCacheTest extends TestCase {
+  private static final String CODE = "/** @param {number} x */ function f(x) { return x + 1; }";
+
+  private Path directory;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    directory = Files.createTempDir().toPath();
+  }
+
+  public void testParsedAstIsReusedByLaterCompilations() throws Exception {
+    SourceFile first = SourceFile.fromCode("a.js", CODE);
+    Compiler compiler = parse(new PersistentParseCache(directory, 1 << 20), first);
+    String expected =
+        compiler.toSource(compiler.getInput(new InputId("a.js")).getAstRoot(compiler));
+    assertThat(compiler.getPersistentParseCache().getSizeInBytes()).isGreaterThan(0L);
+
+    // A new cache instance stands in for a new process.
+    PersistentParseCache cache = new PersistentParseCache(directory, 1 << 20);
+    SourceFile second = SourceFile.fromCode("a.js", CODE);
+    PersistentParseCache.CachedAst cached =
+        cache.getAst(second, CODE, compiler.getParserConfig(ConfigContext.DEFAULT));
+    assertThat(cached).isNotNull();
+    assertThat(compiler.toSource(cached.root)).isEqualTo(expected);
+    assertThat(cached.root.getStaticSourceFile()).isSameAs(second);
+    assertThat(cached.root.getFirstChild().getStaticSourceFile()).isSameAs(second);
+    assertThat(cached.root.getFirstChild().getJSDocInfo()).isNotNull();
+
+    compiler = parse(cache, second);
+    Node actual = compiler.getInput(new InputId("a.js")).getAstRoot(compiler);
+    assertThat(compiler.toSource(actual)).isEqualTo(expected);
+    assertThat(compiler.getErrorCount()).isEqualTo(0);
+  }
+
+  public void testEntriesAreKeyedOnCodeNameAndConfig() throws Exception {
+    PersistentParseCache cache = new PersistentParseCache(directory, 1 << 20);
+    SourceFile file = SourceFile.fromCode("a.js", CODE);
+    Compiler compiler = parse(cache, file);
+    Config config = compiler.getParserConfig(ConfigContext.DEFAULT);
+
+    assertThat(cache.getAst(file, CODE, config)).isNotNull();
+    assertThat(cache.getAst(file, CODE + "\nf(1);", config)).isNull();
+    assertThat(cache.getAst(SourceFile.fromCode("b.js", CODE), CODE, config)).isNull();
+
+    CompilerOptions options = new CompilerOptions();
+    options.setLanguageIn(LanguageMode.ECMASCRIPT5);
+    Compiler es5Compiler = new Compiler();
+    es5Compiler.initOptions(options);
+    assertThat(cache.getAst(file, CODE, es5Compiler.getParserConfig(ConfigContext.DEFAULT)))
+        .isNull();
+  }
+
+  public void testCompilerVersionHasNoPlaceholders() {
+    // Unsubstituted placeholders would be the same for every unreleased build.
+    String version = PersistentParseCache.getCompilerVersion();
+    assertThat(version).isNotNull();
+    assertThat(version).doesNotContain("${");
+    if (version.startsWith("unversioned-")) {
+      // A hash of the compiler classes, not a constant.
+      assertThat(version.length()).isGreaterThan("unversioned-".length() + 32);
+    }
+  }
+
+  public void testCodeWithParseWarningsIsNotCached() throws Exception {
+    PersistentParseCache cache = new PersistentParseCache(directory, 1 << 20);
+    String code = "/** @final @final */ var x;";
+    Compiler compiler = parse(cache, SourceFile.fromCode("a.js", code));
+    assertThat(compiler.getWarningCount()).isGreaterThan(0);
+    assertThat(cache.getSizeInBytes()).isEqualTo(0L);
+  }
+
+  public void testDependencyInfoRoundTrip() throws Exception {
+    PersistentParseCache cache = new PersistentParseCache(directory, 1 << 20);
+    DependencyInfo info =
+        new SimpleDependencyInfo(
+            "a.js",
+            "a.js",
+            ImmutableList.of("a"),
+            ImmutableList.of("b"),
+            ImmutableMap.of("module", "goog"));
+    cache.putDependencyInfo("a.js", "goog.module('a');", info);
+
+    DependencyInfo cached = cache.getDependencyInfo("a.js", "goog.module('a');");
+    assertThat(cached).isEqualTo(info);
+    assertThat(cache.getDependencyInfo("a.js", "goog.module('b');")).isNull();
+  }
+
+  public void testLeastRecentlyUsedEntriesAreEvicted() throws Exception {
+    PersistentParseCache unbounded = new PersistentParseCache(directory, Long.MAX_VALUE);
+    parse(unbounded, SourceFile.fromCode("a.js", CODE));
+    long entrySize = unbounded.getSizeInBytes();
+
+    PersistentParseCache cache = new PersistentParseCache(directory, entrySize * 2 + 1);
+    for (int i = 0; i < 5; i++) {
+      parse(cache, SourceFile.fromCode("file" + i + ".js", CODE));
+      assertThat(cache.getSizeInBytes()).isAtMost(entrySize * 2 + 1);
+    }
+    assertThat(directory.toFile().list().length).isAtMost(2);
+  }
+
+  private static Compiler parse(PersistentParseCache cache, SourceFile file) {
+    Compiler compiler = new Compiler();
+    compiler.setPersistentInputStore(new PersistentInputStore(cache));
+    compiler.init(
+        ImmutableList.<SourceFile>of(), ImmutableList.of(file), new CompilerOptions());
+    compiler.parse();
+    return compiler;
+  }
+}
@@ -21,6 +21,7 @@ import static com.google.common.truth.Truth.assertThat;
 import com.google.common.collect.ImmutableList;
 import com.google.javascript.jscomp.CompilerOptions.TracerMode;
 import com.google.javascript.jscomp.PhaseOptimizer.Loop;
+import com.google.javascript.jscomp.parsing.parser.FeatureSet;
 import com.google.javascript.rhino.IR;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
@@ -195,6 +196,80 @@ public final class PhaseOptimizerTest extends TestCase {
     assertEquals(100, Math.round(progressList.get(3)));
   }
 
+  public void testParallelScriptChecks() {
+    compiler.getOptions().setNumParallelThreads(4);
+    Node root = IR.root();
+    for (int i = 0; i < 10; i++) {
+      Node script = IR.script();
+      script.setStaticSourceFile(SourceFile.fromCode("script" + i + ".js", ""));
+      root.addChildToBack(script);
+    }
+
+    optimizer.consume(
+        ImmutableList.of(
+            createScriptCheckFactory("a"),
+            createScriptCheckFactory("b"),
+            createPassFactory("c", 0, true)));
+    optimizer.process(null, root);
+
+    // Only the pass that is not a script check is run on the whole program.
+    assertEquals(ImmutableList.of("c"), passesRun);
+    List<String> reported = new ArrayList<>();
+    for (JSError error : compiler.getErrors()) {
+      reported.add(error.description);
+    }
+    assertThat(reported).hasSize(20);
+    assertThat(reported).containsAllOf("a script0.js", "b script0.js", "a script9.js");
+  }
+
+  public void testScopeLocalPassOnlySeesChangedScopes() {
+    final Node script1 = IR.script();
+    script1.setStaticSourceFile(SourceFile.fromCode("script1.js", ""));
+    final Node script2 = IR.script();
+    script2.setStaticSourceFile(SourceFile.fromCode("script2.js", ""));
+    Node root = IR.root(script1, script2);
+
+    Loop loop = optimizer.addFixedPointLoop();
+    final int[] numChanges = {2};
+    loop.addLoopedPass(
+        createPassFactory(
+            "x",
+            new CompilerPass() {
+              @Override
+              public void process(Node externs, Node root) {
+                passesRun.add("x");
+                if (numChanges[0] > 0) {
+                  numChanges[0]--;
+                  compiler.reportChangeToChangeScope(script2);
+                }
+              }
+            },
+            false));
+    loop.addLoopedPass(
+        createPassFactory(
+            "local",
+            new ScopeLocalCompilerPass() {
+              @Override
+              public void process(Node externs, Node root) {
+                passesRun.add("local");
+              }
+
+              @Override
+              public void processChangeScopes(
+                  Node externs, Node root, List<Node> changeScopeRoots) {
+                for (Node scopeRoot : changeScopeRoots) {
+                  passesRun.add("local " + scopeRoot.getSourceFileName());
+                }
+              }
+            },
+            false));
+    optimizer.process(null, root);
+
+    // The first run sees the whole program, the second one only the script
+    // that "x" changed in between.
+    assertEquals(ImmutableList.of("x", "local", "x", "x", "local script2.js"), passesRun);
+  }
+
   public void assertPasses(String ... names) {
     optimizer.process(null, dummyRoot);
     assertEquals(ImmutableList.copyOf(names), passesRun);
@@ -225,6 +300,35 @@ public final class PhaseOptimizerTest extends TestCase {
     };
   }
 
+  private static final DiagnosticType SCRIPT_CHECKED =
+      DiagnosticType.error("JSC_SCRIPT_CHECKED", "{0} {1}");
+
+  /** Creates a check that reports an error for each script it checks. */
+  private PassFactory createScriptCheckFactory(final String name) {
+    return new PassFactory.ScriptCheckPassFactory(name) {
+      @Override
+      protected HotSwapCompilerPass create(final AbstractCompiler compiler) {
+        return new HotSwapCompilerPass() {
+          @Override
+          public void process(Node externs, Node root) {
+            passesRun.add(name);
+          }
+
+          @Override
+          public void hotSwapScript(Node scriptRoot, Node originalRoot) {
+            compiler.report(
+                JSError.make(scriptRoot, SCRIPT_CHECKED, name, scriptRoot.getSourceFileName()));
+          }
+        };
+      }
+
+      @Override
+      protected FeatureSet featureSet() {
+        return FeatureSet.latest();
+      }
+    };
+  }
+
   private CompilerPass createPass(final String name, int numChanges) {
     final PhaseOptimizerTest self = this;
     final int[] numChangesClosure = new int[] {numChanges};
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.javascript.rhino.Node;
+import junit.framework.TestCase;
+
+/** Tests for {@link SharedExterns}. */
+public final class SharedExternsTest extends TestCase {
+
+  public void testUnsharedFile() {
+    SourceFile file = SourceFile.fromCode("unshared.js", "var x;");
+    assertThat(SharedExterns.isShared(file)).isFalse();
+    assertThat(SharedExterns.getExternInput(file, "config")).isNull();
+  }
+
+  public void testCompilesCopySharedAst() {
+    SourceFile file = SourceFile.fromCode("shared.js", "/** @type {number} */ var x;");
+    SharedExterns.share(ImmutableList.of(file));
+    assertThat(SharedExterns.isShared(file)).isTrue();
+
+    Node first = compileAndGetExternsRoot(file);
+    Node second = compileAndGetExternsRoot(file);
+    assertThat(second).isNotSameAs(first);
+    assertThat(second.isEquivalentTo(first)).isTrue();
+  }
+
+  private static Node compileAndGetExternsRoot(SourceFile externs) {
+    Compiler compiler = new Compiler();
+    CompilerOptions options = new CompilerOptions();
+    compiler.init(
+        ImmutableList.of(externs), ImmutableList.of(SourceFile.fromCode("in.js", "x;")), options);
+    compiler.parse();
+    assertThat(compiler.getErrors()).isEmpty();
+    return compiler.getExternsRoot().getFirstChild();
+  }
+}
@@ -17811,6 +17811,103 @@ public final class TypeCheckTest extends CompilerTypeTestCase {
             "required: null"));
   }
 
+  public void testParallelInferenceOfLocalFunction() throws Exception {
+    compiler.getOptions().numParallelThreads = 2;
+    testTypes(
+        LINE_JOINER.join(
+            "function f() {",
+            "  var x = 'a';",
+            "  function g() { var /** number */ y = x; }",
+            "}",
+            "function h() { var /** null */ z = 3; }"),
+        new String[] {
+          LINE_JOINER.join(
+              "initializing variable",
+              "found   : string",
+              "required: number"),
+          LINE_JOINER.join(
+              "initializing variable",
+              "found   : number",
+              "required: null")
+        });
+  }
+
+  public void testParallelInferenceOfFunctionChangingOuterTypes() throws Exception {
+    compiler.getOptions().numParallelThreads = 2;
+    testTypes(
+        LINE_JOINER.join(
+            "/** @constructor */",
+            "function Foo() { this.x = 'a'; }",
+            "var ns = {};",
+            "function f() { ns.y = 3; }",
+            "function g() { var /** null */ z = new Foo().x; }"),
+        LINE_JOINER.join(
+            "initializing variable",
+            "found   : string",
+            "required: null"));
+  }
+
+  public void testParallelInferenceUndoesLiteralProperties() throws Exception {
+    // g is inferred speculatively with the declared type of x, and then again
+    // after f changes it, so the speculative type of o.a must not remain.
+    String js = LINE_JOINER.join(
+        "var x;",
+        "function f() { x = 'str'; }",
+        "function g() {",
+        "  var o = {a: x};",
+        "  return o.a;",
+        "}");
+    assertEquals(inferNodeTypes(js, 1), inferNodeTypes(js, 2));
+  }
+
+  public void testParallelInferenceOfLazilyCompletedTypes() throws Exception {
+    // The prototype of h and the call method of k are created when they are
+    // first read, which the functions inferred in parallel must not do.
+    String js = LINE_JOINER.join(
+        "/** @param {number} n */ function k(n) {}",
+        "var h = function() {};",
+        "function f() { return h.prototype; }",
+        "function g() { return k.call(null, 1); }",
+        "function e() { return [f(), g()].toString(); }");
+    assertEquals(inferNodeTypes(js, 1), inferNodeTypes(js, 3));
+  }
+
+  public void testParallelInferenceOfPropertiesRegisteredByEarlierFunctions() throws Exception {
+    // f lends bar to Foo.prototype, and g narrows a record type with bar by
+    // looking up the types with that property in the registry, so g must see
+    // the registration of f as when the functions are inferred in order.
+    String js = LINE_JOINER.join(
+        "/** @constructor */ function Foo() {}",
+        "function f(x) {",
+        "  var o = /** @lends {Foo.prototype} */ ({bar: x});",
+        "}",
+        "/**",
+        " * @param {{bar: number}} r",
+        " * @param {!Object} o",
+        " */",
+        "function g(r, o) {",
+        "  if (r === o) {",
+        "    return r;",
+        "  }",
+        "}");
+    assertEquals(inferNodeTypes(js, 1), inferNodeTypes(js, 3));
+  }
+
+  /** Returns the inferred type of each node of the program, in pre-order. */
+  private List<String> inferNodeTypes(String js, int numParallelThreads) {
+    CompilerOptions options = getDefaultOptions();
+    options.numParallelThreads = numParallelThreads;
+    initializeNewCompiler(options);
+    final List<String> types = new ArrayList<>();
+    NodeUtil.visitPreOrder(parseAndTypeCheckWithScope(js).root, new NodeUtil.Visitor() {
+      @Override
+      public void visit(Node n) {
+        types.add(n.getToken() + " " + n.getLineno() + ":" + n.getCharno() + " " + n.getJSType());
+      }
+    });
+    return types;
+  }
+
   private void testTypes(String js) {
     testTypes(js, (String) null);
   }
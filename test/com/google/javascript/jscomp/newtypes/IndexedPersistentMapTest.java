@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.newtypes;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/** Tests for {@link IndexedPersistentMap}. */
+public final class IndexedPersistentMapTest extends TestCase {
+  // Enough keys for a trie whose root has nested nodes.
+  private static final int NUM_KEYS = 70;
+
+  public void testEmpty() {
+    PersistentMap<String, Integer> map = IndexedPersistentMap.create();
+    assertThat(map).isEmpty();
+    assertNull(map.get("a"));
+    assertNull(map.get(null));
+    assertFalse(map.containsKey("a"));
+    assertSame(map, map.without("a"));
+    assertEquals(new HashMap<String, Integer>(), map);
+  }
+
+  public void testWithAndWithoutAcrossSmallMapSize() {
+    PersistentMap<String, Integer> map = IndexedPersistentMap.create();
+    Map<String, Integer> expected = new HashMap<>();
+    for (int i = 0; i < NUM_KEYS; i++) {
+      map = map.with("k" + i, i);
+      expected.put("k" + i, i);
+      assertMapEquals(expected, map);
+    }
+    // Remove in a different order than the keys were added.
+    for (int i = 0; i < NUM_KEYS; i++) {
+      String key = "k" + ((i * 11) % NUM_KEYS);
+      map = map.without(key);
+      expected.remove(key);
+      assertMapEquals(expected, map);
+    }
+    assertThat(map).isEmpty();
+  }
+
+  public void testWithReplacesValues() {
+    PersistentMap<String, Integer> map = IndexedPersistentMap.create();
+    for (int i = 0; i < NUM_KEYS; i++) {
+      map = map.with("k" + i, i);
+    }
+    PersistentMap<String, Integer> replaced = map;
+    for (int i = 0; i < NUM_KEYS; i += 3) {
+      replaced = replaced.with("k" + i, -i);
+    }
+    assertThat(replaced).hasSize(NUM_KEYS);
+    for (int i = 0; i < NUM_KEYS; i++) {
+      assertEquals(Integer.valueOf(i), map.get("k" + i));
+      assertEquals(Integer.valueOf(i % 3 == 0 ? -i : i), replaced.get("k" + i));
+    }
+    assertFalse(map.equals(replaced));
+  }
+
+  public void testUnchangedMapIsReturned() {
+    Integer one = 1;
+    PersistentMap<String, Integer> small = IndexedPersistentMap.<String, Integer>create()
+        .with("a", one);
+    assertSame(small, small.with("a", one));
+    assertSame(small, small.without("b"));
+
+    PersistentMap<String, Integer> large = small;
+    for (int i = 0; i < NUM_KEYS; i++) {
+      large = large.with("k" + i, i);
+    }
+    assertSame(large, large.with("a", one));
+    assertSame(large, large.without("b"));
+  }
+
+  public void testEqualsAcrossMaps() {
+    PersistentMap<String, Integer> map = IndexedPersistentMap.create();
+    PersistentMap<String, Integer> other = IndexedPersistentMap.create();
+    Map<String, Integer> expected = new HashMap<>();
+    for (int i = 0; i < NUM_KEYS; i++) {
+      map = map.with("k" + i, i);
+      // The other map numbers the keys differently.
+      other = other.with("k" + (NUM_KEYS - 1 - i), NUM_KEYS - 1 - i);
+      expected.put("k" + i, i);
+    }
+    assertEquals(expected, map);
+    assertEquals(map, other);
+    assertEquals(other, map);
+    assertEquals(map.hashCode(), other.hashCode());
+    assertFalse(map.equals(other.without("k0")));
+  }
+
+  private static void assertMapEquals(
+      Map<String, Integer> expected, PersistentMap<String, Integer> map) {
+    assertEquals(expected.size(), map.size());
+    assertEquals(expected, map);
+    assertEquals(map, expected);
+    assertEquals(expected.hashCode(), map.hashCode());
+    Set<String> seen = new HashSet<>();
+    for (Map.Entry<String, Integer> entry : map.entrySet()) {
+      assertTrue("Duplicate key " + entry.getKey(), seen.add(entry.getKey()));
+      assertEquals(expected.get(entry.getKey()), entry.getValue());
+    }
+    assertEquals(expected.keySet(), seen);
+    for (int i = 0; i < NUM_KEYS; i++) {
+      String key = "k" + i;
+      assertEquals(expected.containsKey(key), map.containsKey(key));
+      assertEquals(expected.get(key), map.get(key));
+    }
+  }
+}
@@ -44,6 +44,13 @@ import com.google.javascript.rhino.Node.NodeMismatch;
 import com.google.javascript.rhino.jstype.JSTypeNative;
 import com.google.javascript.rhino.jstype.JSTypeRegistry;
 import com.google.javascript.rhino.testing.TestErrorReporter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 
 import junit.framework.TestCase;
 
@@ -380,7 +387,7 @@ public class NodeTest extends TestCase {
     n.putIntProp(Node.SIDE_EFFECT_FLAGS, 5);
     Node m = new Node(Token.TRUE);
     m.clonePropsFrom(n);
-    assertEquals(m.getPropListHeadForTesting(), n.getPropListHeadForTesting());
+    assertEquals(m.getPropertyMapForTesting(), n.getPropertyMapForTesting());
     assertEquals(5, n.getIntProp(Node.SIDE_EFFECT_FLAGS));
     assertEquals(5, m.getIntProp(Node.SIDE_EFFECT_FLAGS));
   }
@@ -395,7 +402,7 @@ public class NodeTest extends TestCase {
     assertEquals(6, n.getIntProp(Node.SIDE_EFFECT_FLAGS));
     assertEquals(5, m.getIntProp(Node.SIDE_EFFECT_FLAGS));
     assertFalse(
-        m.getPropListHeadForTesting() == n.getPropListHeadForTesting());
+        m.getPropertyMapForTesting() == n.getPropertyMapForTesting());
 
     m.putIntProp(Node.SIDE_EFFECT_FLAGS, 7);
     assertEquals(6, n.getIntProp(Node.SIDE_EFFECT_FLAGS));
@@ -419,17 +426,17 @@ public class NodeTest extends TestCase {
 
     n.putBooleanProp(Node.IS_CONSTANT_NAME, false);
 
-    assertNull(n.lookupProperty(Node.IS_CONSTANT_NAME));
+    assertFalse(n.hasProp(Node.IS_CONSTANT_NAME));
     assertFalse(n.getBooleanProp(Node.IS_CONSTANT_NAME));
 
     n.putBooleanProp(Node.IS_CONSTANT_NAME, true);
 
-    assertNotNull(n.lookupProperty(Node.IS_CONSTANT_NAME));
+    assertTrue(n.hasProp(Node.IS_CONSTANT_NAME));
     assertTrue(n.getBooleanProp(Node.IS_CONSTANT_NAME));
 
     n.putBooleanProp(Node.IS_CONSTANT_NAME, false);
 
-    assertNull(n.lookupProperty(Node.IS_CONSTANT_NAME));
+    assertFalse(n.hasProp(Node.IS_CONSTANT_NAME));
     assertFalse(n.getBooleanProp(Node.IS_CONSTANT_NAME));
   }
 
@@ -616,6 +623,117 @@ public class NodeTest extends TestCase {
     assertEquals(right, left.getNext());
   }
 
+  public void testSerializationPreservesProps() throws Exception {
+    Node name = IR.name("f");
+    name.putProp(Node.ORIGINALNAME_PROP, "g");
+    Node function = IR.function(name, IR.paramList(), IR.block());
+    function.putIntProp(Node.CHANGE_TIME, 123456);
+    function.putBooleanProp(Node.ARROW_FN, true);
+    Node root = IR.script(function);
+
+    Node copy = serializeAndDeserialize(root);
+
+    assertNull(root.checkTreeEquals(copy));
+    Node copiedFunction = copy.getFirstChild();
+    assertEquals(123456, copiedFunction.getIntProp(Node.CHANGE_TIME));
+    assertTrue(copiedFunction.getBooleanProp(Node.ARROW_FN));
+    assertEquals("g", copiedFunction.getFirstChild().getProp(Node.ORIGINALNAME_PROP));
+    assertEquals(function.toString(), copiedFunction.toString());
+  }
+
+  public void testCompactAstRoundTrip() throws Exception {
+    JSTypeRegistry registry = new JSTypeRegistry(new TestErrorReporter(null, null));
+    JSDocInfoBuilder builder = new JSDocInfoBuilder(true);
+    builder.recordParameter("x", new JSTypeExpression(IR.string("number"), "a.js"));
+    builder.recordDescription("Adds one.");
+    JSDocInfo info = builder.build();
+
+    Node param = IR.name("x");
+    Node sum = IR.add(IR.name("x"), IR.number(1));
+    sum.setJSType(registry.getNativeType(JSTypeNative.NUMBER_TYPE));
+    param.setJSType(registry.getNativeType(JSTypeNative.NUMBER_TYPE));
+    Node function = IR.function(IR.name("f"), IR.paramList(param), IR.block(IR.returnNode(sum)));
+    function.setJSDocInfo(info);
+    function.putIntProp(Node.CHANGE_TIME, 123456);
+    Node root = IR.script(IR.exprResult(function), IR.exprResult(IR.string("f")));
+    root.setInputId(new InputId("a.js"));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CompactAstWriter writer = new CompactAstWriter(bytes);
+    writer.writeTree(root);
+    try (ObjectOutputStream out = new HandleOutputStream(bytes, writer)) {
+      out.writeObject(writer.getObjectTable());
+      out.writeObject(sum);
+      out.writeObject(info);
+    }
+
+    InputStream in = new ByteArrayInputStream(bytes.toByteArray());
+    CompactAstReader reader = new CompactAstReader(in);
+    Node copy = reader.readTree();
+    Node copiedSum;
+    JSDocInfo copiedInfo;
+    try (ObjectInputStream objects = new HandleInputStream(in, reader)) {
+      reader.setObjectTable((Object[]) objects.readObject());
+      copiedSum = (Node) objects.readObject();
+      copiedInfo = (JSDocInfo) objects.readObject();
+    }
+
+    assertNull(root.checkTreeEquals(copy));
+    assertEquals(new InputId("a.js"), copy.getInputId());
+    Node copiedFunction = copy.getFirstFirstChild();
+    assertEquals(123456, copiedFunction.getIntProp(Node.CHANGE_TIME));
+    assertSame(copiedFunction.getJSDocInfo(), copiedInfo);
+    assertEquals("Adds one.", copiedInfo.getDescription());
+    assertTrue(copiedInfo.getParameterType("x").getRoot().isEquivalentTo(IR.string("number")));
+
+    // Nodes referred to from the object stream are the ones of the tree, and
+    // each type is written once and shared by the nodes that have it.
+    assertSame(copiedFunction.getLastChild().getFirstFirstChild(), copiedSum);
+    Node copiedParam = copiedFunction.getSecondChild().getFirstChild();
+    assertSame(copiedSum.getJSType(), copiedParam.getJSType());
+  }
+
+  private static final class HandleOutputStream extends ObjectOutputStream {
+    private final CompactAstWriter writer;
+
+    HandleOutputStream(OutputStream out, CompactAstWriter writer) throws IOException {
+      super(out);
+      this.writer = writer;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      return writer.replaceObject(obj);
+    }
+  }
+
+  private static final class HandleInputStream extends ObjectInputStream {
+    private final CompactAstReader reader;
+
+    HandleInputStream(InputStream in, CompactAstReader reader) throws IOException {
+      super(in);
+      this.reader = reader;
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) {
+      return reader.resolveObject(obj);
+    }
+  }
+
+  private static Node serializeAndDeserialize(Node node) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(node);
+    }
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return (Node) in.readObject();
+    }
+  }
+
   private static Node getVarRef(String name) {
     return Node.newString(Token.NAME, name);
   }
@@ -38,8 +38,12 @@
 
 package com.google.javascript.rhino.jstype;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.testing.GcFinalization;
 import com.google.javascript.rhino.testing.Asserts;
 
+import java.lang.ref.WeakReference;
 import junit.framework.TestCase;
 
 /**
@@ -84,6 +88,89 @@ public class JSTypeRegistryTest extends TestCase {
     assertFalse(typeRegistry.getGreatestSubtypeWithProperty(type, "foo").isUnknownType());
   }
 
+  public void testTypeRelationsAreMemoized() {
+    JSTypeRegistry typeRegistry = new JSTypeRegistry(null);
+    JSType number = typeRegistry.getNativeType(JSTypeNative.NUMBER_TYPE);
+    JSType record = typeRegistry.createRecordType(ImmutableMap.of("a", number));
+    ObjectType object = typeRegistry.createAnonymousObjectType(null);
+    object.defineDeclaredProperty("a", number, null);
+
+    long misses = typeRegistry.getTypeRelationCacheMisses();
+    assertTrue(object.isSubtype(record));
+    assertTrue(typeRegistry.getTypeRelationCacheMisses() > misses);
+
+    long hits = typeRegistry.getTypeRelationCacheHits();
+    assertTrue(object.isSubtype(record));
+    assertEquals(hits + 1, typeRegistry.getTypeRelationCacheHits());
+  }
+
+  public void testTypeRelationsAreInvalidatedByChanges() {
+    JSTypeRegistry typeRegistry = new JSTypeRegistry(null);
+    JSType number = typeRegistry.getNativeType(JSTypeNative.NUMBER_TYPE);
+    JSType record = typeRegistry.createRecordType(ImmutableMap.of("a", number));
+    ObjectType object = typeRegistry.createAnonymousObjectType(null);
+
+    assertFalse(object.isSubtype(record));
+
+    object.defineDeclaredProperty("a", number, null);
+    assertTrue(object.isSubtype(record));
+
+    object.removeProperty("a");
+    assertFalse(object.isSubtype(record));
+  }
+
+  public void testUnionTypesAreInterned() {
+    JSTypeRegistry typeRegistry = new JSTypeRegistry(null);
+    JSType union = typeRegistry.createUnionType(
+        JSTypeNative.NULL_TYPE, JSTypeNative.STRING_TYPE);
+    assertSame(union, typeRegistry.createUnionType(
+        JSTypeNative.NULL_TYPE, JSTypeNative.STRING_TYPE));
+    assertNotSame(union, typeRegistry.createUnionType(
+        JSTypeNative.NULL_TYPE, JSTypeNative.NUMBER_TYPE));
+  }
+
+  public void testUnusedUnionTypesAreCollected() {
+    JSTypeRegistry typeRegistry = new JSTypeRegistry(null);
+    WeakReference<JSType> union = new WeakReference<>(
+        typeRegistry.createUnionType(JSTypeNative.NULL_TYPE, JSTypeNative.DATE_TYPE));
+    // The interning table must not keep the union alive.
+    GcFinalization.awaitClear(union);
+    assertNotNull(typeRegistry.createUnionType(
+        JSTypeNative.NULL_TYPE, JSTypeNative.DATE_TYPE));
+  }
+
+  public void testTemplatizedTypesAreInterned() {
+    JSTypeRegistry typeRegistry = new JSTypeRegistry(null);
+    ObjectType array = typeRegistry.getNativeObjectType(JSTypeNative.ARRAY_TYPE);
+    JSType string = typeRegistry.getNativeType(JSTypeNative.STRING_TYPE);
+    JSType number = typeRegistry.getNativeType(JSTypeNative.NUMBER_TYPE);
+
+    TemplatizedType arrayOfString =
+        typeRegistry.createTemplatizedType(array, ImmutableList.of(string));
+    assertSame(arrayOfString,
+        typeRegistry.createTemplatizedType(array, ImmutableList.of(string)));
+    assertNotSame(arrayOfString,
+        typeRegistry.createTemplatizedType(array, ImmutableList.of(number)));
+  }
+
+  public void testInternedTemplatizedTypesFollowChangesToTheBaseType() {
+    JSTypeRegistry typeRegistry = new JSTypeRegistry(null);
+    ObjectType foo = typeRegistry.createConstructorType(
+        "Foo", null, null, null, null, false).getInstanceType();
+    JSType string = typeRegistry.getNativeType(JSTypeNative.STRING_TYPE);
+    JSType number = typeRegistry.getNativeType(JSTypeNative.NUMBER_TYPE);
+    TemplateType key = typeRegistry.createTemplateType("T");
+
+    TemplatizedType before = typeRegistry.createTemplatizedType(foo, ImmutableList.of(string));
+    assertFalse(before.getTemplateTypeMap().hasTemplateType(key));
+
+    foo.extendTemplateTypeMap(
+        typeRegistry.createTemplateTypeMap(ImmutableList.of(key), ImmutableList.of(number)));
+    TemplatizedType after = typeRegistry.createTemplatizedType(foo, ImmutableList.of(string));
+    assertNotSame(before, after);
+    assertTypeEquals(number, after.getTemplateTypeMap().getResolvedTemplateType(key));
+  }
+
   private void assertTypeEquals(JSType a, JSType b) {
     Asserts.assertTypeEquals(a, b);
   }